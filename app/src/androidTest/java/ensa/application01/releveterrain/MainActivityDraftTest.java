@@ -0,0 +1,185 @@
+/**
+ * MainActivityDraftTest - Test instrumenté du brouillon du formulaire de saisie.
+ */
+package ensa.application01.releveterrain;
+
+import android.content.Context;
+import android.os.StrictMode;
+import android.os.SystemClock;
+import android.util.JsonReader;
+
+import androidx.test.core.app.ActivityScenario;
+import androidx.test.core.app.ApplicationProvider;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static androidx.test.espresso.Espresso.onIdle;
+import static androidx.test.espresso.Espresso.onView;
+import static androidx.test.espresso.action.ViewActions.click;
+import static androidx.test.espresso.action.ViewActions.closeSoftKeyboard;
+import static androidx.test.espresso.action.ViewActions.scrollTo;
+import static androidx.test.espresso.action.ViewActions.typeText;
+import static androidx.test.espresso.assertion.ViewAssertions.matches;
+import static androidx.test.espresso.matcher.ViewMatchers.withId;
+import static androidx.test.espresso.matcher.ViewMatchers.withText;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Vérifie le cycle de vie du brouillon de {@link MainActivity} sous une politique StrictMode qui tue le processus
+ * à la moindre lecture ou écriture disque sur le thread principal :
+ * <ol>
+ *     <li>la saisie est écrite dans le brouillon lorsque l'activité est recréée par une rotation ;</li>
+ *     <li>une nouvelle activité, lancée sans état sauvegardé, restaure le formulaire depuis ce brouillon ;</li>
+ *     <li>l'enregistrement du relevé supprime le brouillon.</li>
+ * </ol>
+ * Le relevé enregistré est supprimé de la base à la fin du test.
+ */
+@RunWith(AndroidJUnit4.class)
+public class MainActivityDraftTest {
+
+    /** Nom du site saisi, unique pour retrouver le relevé à supprimer. */
+    private static final String SITE_NAME = "Brouillon " + System.currentTimeMillis();
+
+    /** Délai maximal d'attente d'une opération en arrière-plan, en millisecondes. */
+    private static final long TIMEOUT_MS = 10_000;
+
+    private Context context;
+    private DraftStore draftStore;
+    private File draftFile;
+    private StrictMode.ThreadPolicy previousPolicy;
+
+    @Before
+    public void setUp() throws InterruptedException {
+        context = ApplicationProvider.getApplicationContext();
+        draftStore = DraftStore.get(context, "main");
+        draftStore.clear();
+        draftStore.awaitIdle();
+        draftFile = new File(new File(context.getFilesDir(), "drafts"), "main.json");
+        AtomicReference<StrictMode.ThreadPolicy> previous = new AtomicReference<>();
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> {
+            previous.set(StrictMode.getThreadPolicy());
+            StrictMode.setThreadPolicy(new StrictMode.ThreadPolicy.Builder()
+                    .detectDiskReads()
+                    .detectDiskWrites()
+                    .penaltyLog()
+                    .penaltyDeath()
+                    .build());
+        });
+        previousPolicy = previous.get();
+    }
+
+    @After
+    public void tearDown() {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> StrictMode.setThreadPolicy(previousPolicy));
+        DatabaseHelper databaseHelper = EntryRepository.getInstance(context).getDatabaseHelper();
+        for (Entry entry : databaseHelper.getEntriesPage(Long.MAX_VALUE, 20)) {
+            if (SITE_NAME.equals(entry.getSiteName())) {
+                databaseHelper.deleteEntry(entry.getId());
+            }
+        }
+    }
+
+    @Test
+    public void draftSurvivesRotationIsRestoredAndClearedOnSave() throws Exception {
+        try (ActivityScenario<MainActivity> scenario = ActivityScenario.launch(MainActivity.class)) {
+            awaitDraftReady(scenario);
+            onView(withId(R.id.editTextSiteName)).perform(scrollTo(), typeText(SITE_NAME), closeSoftKeyboard());
+            onView(withId(R.id.editTextDescription)).perform(scrollTo(), typeText("Talus en cours d'érosion"),
+                    closeSoftKeyboard());
+
+            // La rotation met l'activité en pause : le brouillon en attente est écrit sans attendre le délai de saisie
+            scenario.recreate();
+            draftStore.awaitIdle();
+
+            assertTrue("Le brouillon doit être écrit avant la recréation", draftFile.exists());
+            assertEquals(SITE_NAME, readDraftField("site_name"));
+            assertEquals("Talus en cours d'érosion", readDraftField("description"));
+            onView(withId(R.id.editTextSiteName)).check(matches(withText(SITE_NAME)));
+        }
+
+        // Nouvelle activité sans état sauvegardé, comme après l'arrêt du processus : le formulaire vient du brouillon
+        try (ActivityScenario<MainActivity> scenario = ActivityScenario.launch(MainActivity.class)) {
+            awaitDraftReady(scenario);
+            onView(withId(R.id.editTextSiteName)).check(matches(withText(SITE_NAME)));
+            onView(withId(R.id.editTextDescription)).check(matches(withText("Talus en cours d'érosion")));
+
+            onView(withId(R.id.editTextDate)).perform(scrollTo(), typeText("15/06/2024"), closeSoftKeyboard());
+            onView(withId(R.id.editTextObservations)).perform(scrollTo(), typeText("RAS"), closeSoftKeyboard());
+            onView(withId(R.id.checkBoxGoodCondition)).perform(scrollTo(), click());
+            onView(withId(R.id.buttonSave)).perform(scrollTo(), click());
+
+            awaitDraftDeleted();
+            assertFalse(draftFile.exists());
+        }
+    }
+
+    /**
+     * Attend que l'activité ait relu le brouillon : une saisie antérieure ne serait pas sauvegardée.
+     */
+    private void awaitDraftReady(ActivityScenario<MainActivity> scenario) throws InterruptedException {
+        long deadline = SystemClock.elapsedRealtime() + TIMEOUT_MS;
+        AtomicBoolean ready = new AtomicBoolean();
+        while (true) {
+            draftStore.awaitIdle();
+            onIdle();
+            scenario.onActivity(activity -> ready.set(activity.isDraftReady()));
+            if (ready.get()) {
+                return;
+            }
+            if (SystemClock.elapsedRealtime() > deadline) {
+                fail("Brouillon non relu après " + TIMEOUT_MS + " ms");
+            }
+            SystemClock.sleep(50);
+        }
+    }
+
+    /**
+     * Attend la suppression du brouillon, demandée une fois le relevé inséré par la file d'écriture.
+     */
+    private void awaitDraftDeleted() throws InterruptedException {
+        long deadline = SystemClock.elapsedRealtime() + TIMEOUT_MS;
+        while (true) {
+            onIdle();
+            draftStore.awaitIdle();
+            if (!draftFile.exists()) {
+                return;
+            }
+            if (SystemClock.elapsedRealtime() > deadline) {
+                fail("Brouillon toujours présent " + TIMEOUT_MS + " ms après l'enregistrement");
+            }
+            SystemClock.sleep(50);
+        }
+    }
+
+    /**
+     * @return La valeur d'un champ texte du brouillon sur disque, ou `null` s'il est absent.
+     */
+    private String readDraftField(String name) throws IOException {
+        try (JsonReader json = new JsonReader(new InputStreamReader(new FileInputStream(draftFile), StandardCharsets.UTF_8))) {
+            json.beginObject();
+            while (json.hasNext()) {
+                if (json.nextName().equals(name)) {
+                    return json.nextString();
+                }
+                json.skipValue();
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,259 @@
+/**
+ * PerformanceBenchmark - Mesures de performance de la persistance et de la liste des relevés, sur l'appareil.
+ */
+package ensa.application01.releveterrain;
+
+import android.content.Context;
+import android.os.Build;
+import android.os.SystemClock;
+import android.util.JsonWriter;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test instrumenté exécutant sur l'appareil les mêmes cas que les bancs JMH de la JVM ({@link BenchmarkCases}),
+ * sur une base dédiée (`benchmark.db`) qui ne touche pas aux relevés de l'utilisateur :
+ * <ul>
+ *     <li>débit d'insertion ligne à ligne et par lots ;</li>
+ *     <li>latence d'un parcours complet et d'une page, en tête et en fin de table, à 1 000, 10 000 et 100 000 lignes ;</li>
+ *     <li>coût du décodage curseur → {@link Entry} ;</li>
+ *     <li>coût de la liaison d'une ligne de la liste, avec et sans mesure de la vue, sur le thread principal.</li>
+ * </ul>
+ * Chaque mesure est précédée d'exécutions d'échauffement ; les résultats (médiane, minimum, maximum) sont écrits en JSON
+ * dans `Android/data/<paquet>/files/benchmarks` et dans le journal (étiquette {@link #TAG}).
+ * <p>
+ * Lancement : `./gradlew connectedDebugAndroidTest -Pandroid.testInstrumentationRunnerArguments.class=ensa.application01.releveterrain.PerformanceBenchmark`.
+ * Les chiffres d'une variante debug surestiment les coûts de l'interface ; ils servent à comparer deux exécutions sur le même appareil.
+ */
+@RunWith(AndroidJUnit4.class)
+public class PerformanceBenchmark {
+
+    /** Étiquette des journaux : la ligne JSON des résultats y est aussi écrite, pour être relevée par `adb logcat`. */
+    static final String TAG = "ReleveBenchmark";
+
+    /** Nom de la base dédiée aux mesures. */
+    private static final String DATABASE_NAME = "benchmark.db";
+
+    /** Exécutions d'échauffement avant chaque mesure. */
+    private static final int WARMUP_RUNS = 2;
+
+    /** Exécutions mesurées des lectures et de la liaison. */
+    private static final int RUNS = 7;
+
+    /** Exécutions mesurées des insertions, plus coûteuses. */
+    private static final int INSERT_RUNS = 3;
+
+    /**
+     * Opération mesurée.
+     */
+    private interface Operation {
+        void run() throws Exception;
+    }
+
+    /**
+     * Résultat d'une mesure : durées de chaque exécution, rapportées à une opération.
+     */
+    private static class Result {
+        /** Nom de la mesure. */
+        final String name;
+        /** Taille de la table au moment de la mesure. */
+        final int rows;
+        /** Nombre d'opérations élémentaires par exécution. */
+        final int operationsPerRun;
+        /** Durée de chaque exécution, en nanosecondes. */
+        final long[] nanos;
+
+        Result(String name, int rows, int operationsPerRun, long[] nanos) {
+            this.name = name;
+            this.rows = rows;
+            this.operationsPerRun = operationsPerRun;
+            this.nanos = nanos;
+        }
+    }
+
+    /** Contexte de l'application testée. */
+    private Context context;
+
+    /** Générateur des données, à graine fixe. */
+    private BenchmarkData data;
+
+    /** Résultats, dans l'ordre des mesures. */
+    private final List<Result> results = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        data = new BenchmarkData();
+        results.clear();
+    }
+
+    @After
+    public void tearDown() {
+        context.deleteDatabase(DATABASE_NAME);
+    }
+
+    /**
+     * Exécute toutes les mesures et écrit les résultats ; dure de l'ordre de la minute.
+     */
+    @Test
+    public void measureAll() throws Exception {
+        DatabaseHelper insertHelper = BenchmarkCases.openFresh(context, DATABASE_NAME);
+        try {
+            measure("insert_single", 0, BenchmarkCases.INSERT_ROWS, INSERT_RUNS,
+                    () -> BenchmarkCases.insertSingle(insertHelper, data.generate(BenchmarkCases.INSERT_ROWS)));
+            measure("insert_batched", 0, BenchmarkCases.INSERT_ROWS, INSERT_RUNS,
+                    () -> BenchmarkCases.insertBatched(insertHelper, data.generate(BenchmarkCases.INSERT_ROWS)));
+        } finally {
+            insertHelper.close();
+        }
+
+        // Les lectures sont mesurées sur une table neuve, qui grandit d'une taille à la suivante
+        DatabaseHelper readHelper = BenchmarkCases.openFresh(context, DATABASE_NAME);
+        try {
+            int rows = 0;
+            for (int size : BenchmarkCases.DATASET_SIZES) {
+                readHelper.insertEntries(data.generate(size - rows), DatabaseHelper.DEFAULT_BATCH_SIZE);
+                rows = size;
+                measure("full_scan", size, size, RUNS, () -> BenchmarkCases.fullScan(readHelper));
+                measure("page_first", size, 1, RUNS, () -> BenchmarkCases.firstPage(readHelper));
+                measure("page_last", size, 1, RUNS, () -> BenchmarkCases.lastPage(readHelper));
+                measure("decode_entries", size, BenchmarkCases.DECODE_ROWS, RUNS, () -> BenchmarkCases.decodeEntries(readHelper));
+                measure("step_cursor", size, BenchmarkCases.DECODE_ROWS, RUNS, () -> BenchmarkCases.stepCursor(readHelper));
+            }
+            measureBinding(readHelper);
+        } finally {
+            readHelper.close();
+        }
+
+        File file = writeResults();
+        assertTrue(file.length() > 0);
+    }
+
+    /**
+     * Mesure la liaison des lignes de la liste, sur le thread principal comme dans l'application.
+     */
+    private void measureBinding(DatabaseHelper databaseHelper) throws Exception {
+        List<Entry> entries = databaseHelper.getEntriesFrom(0, BenchmarkCases.BIND_ROWS);
+        ThumbnailLoader thumbnailLoader = new ThumbnailLoader(context, databaseHelper, new AttachmentStore(context));
+        AtomicReference<Exception> failure = new AtomicReference<>();
+        try {
+            InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> {
+                try {
+                    EntryAdapter.EntryViewHolder holder = BenchmarkCases.createViewHolder(context, thumbnailLoader);
+                    measure("bind", entries.size(), entries.size(), RUNS,
+                            () -> BenchmarkCases.bind(holder, entries, false));
+                    measure("bind_measure", entries.size(), entries.size(), RUNS,
+                            () -> BenchmarkCases.bind(holder, entries, true));
+                } catch (Exception e) {
+                    failure.set(e);
+                }
+            });
+        } finally {
+            // Les recherches de vignettes lancées par la liaison doivent se terminer avant la fermeture de la base
+            thumbnailLoader.shutdown();
+        }
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+    }
+
+    /**
+     * Exécute une opération plusieurs fois après échauffement et enregistre la durée de chaque exécution.
+     *
+     * @param name             Nom de la mesure.
+     * @param rows             Taille de la table au moment de la mesure (0 si sans objet).
+     * @param operationsPerRun Nombre d'opérations élémentaires par exécution (lignes insérées, lignes lues…).
+     * @param runs             Nombre d'exécutions mesurées.
+     * @param operation        Opération à mesurer.
+     */
+    private void measure(String name, int rows, int operationsPerRun, int runs, Operation operation) throws Exception {
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            operation.run();
+        }
+        long[] nanos = new long[runs];
+        for (int i = 0; i < runs; i++) {
+            long start = SystemClock.elapsedRealtimeNanos();
+            operation.run();
+            nanos[i] = SystemClock.elapsedRealtimeNanos() - start;
+        }
+        results.add(new Result(name, rows, operationsPerRun, nanos));
+    }
+
+    /**
+     * Écrit les résultats dans `Android/data/<paquet>/files/benchmarks` et dans le journal.
+     *
+     * @return Le fichier écrit.
+     */
+    private File writeResults() throws IOException {
+        StringWriter json = new StringWriter();
+        writeJson(json);
+        Log.i(TAG, json.toString());
+        File dir = context.getExternalFilesDir("benchmarks");
+        if (dir == null || (!dir.isDirectory() && !dir.mkdirs())) {
+            throw new IOException("Répertoire des mesures indisponible");
+        }
+        String stamp = new SimpleDateFormat("yyyyMMdd-HHmmss", Locale.ROOT).format(new Date());
+        File file = new File(dir, "benchmark-" + stamp + ".json");
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            writer.write(json.toString());
+        }
+        return file;
+    }
+
+    /**
+     * Écrit les résultats en JSON sur une ligne :
+     * `{"device": ..., "sdk": ..., "results": [{"name": ..., "rows": ..., "median_ns": ..., "ns_per_op": ..., "ops_per_second": ...}]}`.
+     */
+    private void writeJson(Writer target) throws IOException {
+        JsonWriter json = new JsonWriter(target);
+        json.beginObject();
+        json.name("timestamp_ms").value(System.currentTimeMillis());
+        json.name("device").value(Build.MANUFACTURER + " " + Build.MODEL);
+        json.name("sdk").value(Build.VERSION.SDK_INT);
+        json.name("debuggable").value(BuildConfig.DEBUG);
+        json.name("results").beginArray();
+        for (Result result : results) {
+            long[] sorted = result.nanos.clone();
+            Arrays.sort(sorted);
+            long median = sorted[sorted.length / 2];
+            json.beginObject();
+            json.name("name").value(result.name);
+            json.name("rows").value(result.rows);
+            json.name("runs").value(sorted.length);
+            json.name("operations_per_run").value(result.operationsPerRun);
+            json.name("median_ns").value(median);
+            json.name("min_ns").value(sorted[0]);
+            json.name("max_ns").value(sorted[sorted.length - 1]);
+            json.name("ns_per_op").value(median / result.operationsPerRun);
+            json.name("ops_per_second").value(median == 0 ? 0 : result.operationsPerRun * 1_000_000_000L / median);
+            json.endObject();
+        }
+        json.endArray();
+        json.endObject();
+        json.flush();
+    }
+}
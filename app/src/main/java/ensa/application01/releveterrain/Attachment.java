@@ -0,0 +1,82 @@
+/**
+ * Attachment - Photo jointe à un relevé.
+ */
+package ensa.application01.releveterrain;
+
+/**
+ * Ligne de la table `attachments` : la photo elle-même est un fichier de l'application,
+ * la base n'en conserve que le nom et les dimensions pour que les lignes restent petites.
+ */
+public class Attachment {
+
+    /** Identifiant de la pièce jointe, ou -1 si elle n'a pas encore été enregistrée. */
+    private final long id;
+    /** Identifiant de l'entrée à laquelle la photo est jointe. */
+    private final long entryId;
+    /** Nom du fichier dans le répertoire des pièces jointes. */
+    private final String fileName;
+    /** Largeur de l'image enregistrée, en pixels. */
+    private final int width;
+    /** Hauteur de l'image enregistrée, en pixels. */
+    private final int height;
+    /** Taille du fichier, en octets. */
+    private final long sizeBytes;
+    /** Date de l'ajout, en millisecondes depuis l'époque Unix. */
+    private final long createdMillis;
+
+    /**
+     * Constructeur d'une pièce jointe.
+     *
+     * @param id            Identifiant de la pièce jointe, ou -1.
+     * @param entryId       Identifiant de l'entrée.
+     * @param fileName      Nom du fichier dans le répertoire des pièces jointes.
+     * @param width         Largeur de l'image, en pixels.
+     * @param height        Hauteur de l'image, en pixels.
+     * @param sizeBytes     Taille du fichier, en octets.
+     * @param createdMillis Date de l'ajout, en millisecondes depuis l'époque Unix.
+     */
+    public Attachment(long id, long entryId, String fileName, int width, int height, long sizeBytes, long createdMillis) {
+        this.id = id;
+        this.entryId = entryId;
+        this.fileName = fileName;
+        this.width = width;
+        this.height = height;
+        this.sizeBytes = sizeBytes;
+        this.createdMillis = createdMillis;
+    }
+
+    /** @return L'identifiant de la pièce jointe. */
+    public long getId() {
+        return id;
+    }
+
+    /** @return L'identifiant de l'entrée à laquelle la photo est jointe. */
+    public long getEntryId() {
+        return entryId;
+    }
+
+    /** @return Le nom du fichier dans le répertoire des pièces jointes. */
+    public String getFileName() {
+        return fileName;
+    }
+
+    /** @return La largeur de l'image, en pixels. */
+    public int getWidth() {
+        return width;
+    }
+
+    /** @return La hauteur de l'image, en pixels. */
+    public int getHeight() {
+        return height;
+    }
+
+    /** @return La taille du fichier, en octets. */
+    public long getSizeBytes() {
+        return sizeBytes;
+    }
+
+    /** @return La date de l'ajout, en millisecondes depuis l'époque Unix. */
+    public long getCreatedMillis() {
+        return createdMillis;
+    }
+}
@@ -0,0 +1,265 @@
+/**
+ * AttachmentStore - Stockage des photos jointes aux relevés, sous forme de fichiers réduits.
+ */
+package ensa.application01.releveterrain;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.ImageDecoder;
+import android.net.Uri;
+import android.util.Size;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Enregistre les photos des relevés dans le stockage privé de l'application et produit leurs vignettes.
+ * <ul>
+ *     <li>Les photos sont décodées directement à une résolution plafonnée ({@link #MAX_IMAGE_DIMENSION}) :
+ *     l'image pleine résolution n'est jamais chargée en mémoire, et l'orientation EXIF est appliquée au décodage.</li>
+ *     <li>Les vignettes sont produites une seule fois, à partir de la photo réduite, et conservées dans le cache disque.
+ *     Si le système vide ce cache, elles sont régénérées à la demande.</li>
+ * </ul>
+ * Toutes les méthodes sont bloquantes et doivent être appelées hors du thread principal.
+ */
+public class AttachmentStore {
+
+    /** Plus grande dimension d'une photo enregistrée, en pixels. */
+    static final int MAX_IMAGE_DIMENSION = 2048;
+
+    /** Qualité JPEG des photos enregistrées. */
+    private static final int IMAGE_QUALITY = 85;
+
+    /** Plus grande dimension d'une vignette, en pixels (64 dp sur un écran xxhdpi). */
+    static final int THUMBNAIL_DIMENSION = 192;
+
+    /** Qualité JPEG des vignettes. */
+    private static final int THUMBNAIL_QUALITY = 80;
+
+    /** Âge minimal d'un fichier non référencé avant sa suppression, en millisecondes : un ajout peut être en cours. */
+    private static final long ORPHAN_MIN_AGE_MS = 60 * 60_000;
+
+    /** Contexte de l'application, utilisé pour lire les photos choisies et résoudre les répertoires. */
+    private final Context context;
+
+    /**
+     * Constructeur du stockage.
+     *
+     * @param context Contexte de l'application.
+     */
+    public AttachmentStore(Context context) {
+        this.context = context;
+    }
+
+    /**
+     * @return Le répertoire des photos, dans le stockage privé de l'application.
+     * Il n'est pas résolu dans le constructeur : `getFilesDir()` touche le disque, et le stockage est créé sur le thread principal.
+     */
+    private File attachmentsDir() {
+        return new File(context.getFilesDir(), "attachments");
+    }
+
+    /**
+     * @return Le répertoire des vignettes, dans le cache de l'application.
+     */
+    private File thumbnailsDir() {
+        return new File(context.getCacheDir(), "thumbnails");
+    }
+
+    /**
+     * @param attachment Pièce jointe.
+     * @return Le fichier de la photo.
+     */
+    public File getFile(Attachment attachment) {
+        return new File(attachmentsDir(), attachment.getFileName());
+    }
+
+    /**
+     * Copie une photo choisie par l'utilisateur dans le stockage de l'application, réduite et recompressée,
+     * puis produit sa vignette. La référence n'est pas enregistrée en base : c'est le rôle de l'appelant.
+     *
+     * @param entryId Identifiant de l'entrée à laquelle la photo est jointe.
+     * @param source  Photo choisie par l'utilisateur.
+     * @return La pièce jointe décrivant le fichier écrit, sans identifiant.
+     * @throws IOException Si la photo ne peut pas être lue, décodée ou écrite.
+     */
+    public Attachment storePhoto(long entryId, Uri source) throws IOException {
+        Bitmap bitmap = decode(ImageDecoder.createSource(context.getContentResolver(), source), MAX_IMAGE_DIMENSION);
+        try {
+            String fileName = UUID.randomUUID() + ".jpg";
+            File file = new File(attachmentsDir(), fileName);
+            writeJpeg(bitmap, IMAGE_QUALITY, file);
+            Attachment attachment = new Attachment(-1, entryId, fileName, bitmap.getWidth(), bitmap.getHeight(),
+                    file.length(), System.currentTimeMillis());
+            writeThumbnail(attachment, bitmap);
+            return attachment;
+        } finally {
+            bitmap.recycle();
+        }
+    }
+
+    /**
+     * Lit la vignette d'une pièce jointe depuis le cache disque, en la produisant si elle n'y est pas.
+     *
+     * @param attachment Pièce jointe.
+     * @return La vignette décodée.
+     * @throws IOException Si ni la vignette ni la photo ne peuvent être lues.
+     */
+    public Bitmap loadThumbnail(Attachment attachment) throws IOException {
+        File thumbnail = getThumbnailFile(attachment);
+        if (thumbnail.isFile()) {
+            try {
+                return ImageDecoder.decodeBitmap(ImageDecoder.createSource(thumbnail));
+            } catch (IOException e) {
+                // Vignette illisible : elle est régénérée ci-dessous
+            }
+        }
+        Bitmap bitmap = decode(ImageDecoder.createSource(getFile(attachment)), THUMBNAIL_DIMENSION);
+        writeJpeg(bitmap, THUMBNAIL_QUALITY, thumbnail);
+        return bitmap;
+    }
+
+    /**
+     * Supprime le fichier d'une photo et sa vignette, par exemple après la suppression de son entrée.
+     *
+     * @param attachment Pièce jointe supprimée.
+     */
+    public void delete(Attachment attachment) {
+        getFile(attachment).delete();
+        getThumbnailFile(attachment).delete();
+    }
+
+    /**
+     * Déplace une photo vers le répertoire d'archive, hors de portée de {@link #deleteOrphanFiles(Set)}.
+     * Le déplacement est un simple renommage dans le stockage privé : aucune donnée n'est recopiée.
+     * La vignette, régénérable, est supprimée.
+     *
+     * @param attachment Pièce jointe à archiver.
+     * @param archiveDir Répertoire de destination.
+     * @return `true` si la photo a été déplacée ou n'existait déjà plus.
+     */
+    public boolean moveToArchive(Attachment attachment, File archiveDir) {
+        File file = getFile(attachment);
+        if (!file.exists()) {
+            return true;
+        }
+        if (!archiveDir.isDirectory() && !archiveDir.mkdirs()) {
+            return false;
+        }
+        if (!file.renameTo(new File(archiveDir, attachment.getFileName()))) {
+            return false;
+        }
+        getThumbnailFile(attachment).delete();
+        return true;
+    }
+
+    /**
+     * Replace dans le stockage courant une photo déplacée par {@link #moveToArchive(Attachment, File)}.
+     *
+     * @param attachment Pièce jointe à restaurer.
+     * @param archiveDir Répertoire où la photo a été déplacée.
+     */
+    public void restoreFromArchive(Attachment attachment, File archiveDir) {
+        new File(archiveDir, attachment.getFileName()).renameTo(getFile(attachment));
+    }
+
+    /**
+     * Supprime les photos qui ne sont plus référencées en base (entrée supprimée, ajout interrompu) et leurs vignettes.
+     * Les fichiers récents sont conservés : ils peuvent appartenir à un ajout dont la référence n'est pas encore écrite.
+     *
+     * @param referenced Noms des fichiers référencés par la table `attachments`.
+     * @return Le nombre de photos supprimées.
+     */
+    public int deleteOrphanFiles(Set<String> referenced) {
+        File[] files = attachmentsDir().listFiles();
+        if (files == null) {
+            return 0;
+        }
+        File thumbnailsDir = thumbnailsDir();
+        long threshold = System.currentTimeMillis() - ORPHAN_MIN_AGE_MS;
+        int deleted = 0;
+        for (File file : files) {
+            if (!referenced.contains(file.getName()) && file.lastModified() < threshold && file.delete()) {
+                new File(thumbnailsDir, file.getName()).delete();
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * @return Le fichier de la vignette d'une pièce jointe, nommé comme la photo.
+     */
+    private File getThumbnailFile(Attachment attachment) {
+        return new File(thumbnailsDir(), attachment.getFileName());
+    }
+
+    /**
+     * Produit la vignette d'une photo à partir de l'image déjà décodée, sans relire le fichier.
+     */
+    private void writeThumbnail(Attachment attachment, Bitmap image) throws IOException {
+        Size size = scaledSize(image.getWidth(), image.getHeight(), THUMBNAIL_DIMENSION);
+        Bitmap thumbnail = Bitmap.createScaledBitmap(image, size.getWidth(), size.getHeight(), true);
+        try {
+            writeJpeg(thumbnail, THUMBNAIL_QUALITY, getThumbnailFile(attachment));
+        } finally {
+            if (thumbnail != image) {
+                thumbnail.recycle();
+            }
+        }
+    }
+
+    /**
+     * Décode une image directement à la taille voulue : le décodeur sous-échantillonne pendant la lecture,
+     * si bien que la mémoire utilisée dépend de la taille cible et non de la taille de l'image source.
+     *
+     * @param source       Image à décoder.
+     * @param maxDimension Plus grande dimension souhaitée, en pixels ; une image plus petite est gardée telle quelle.
+     * @return L'image décodée, modifiable par le processeur (nécessaire pour la recompresser).
+     */
+    private static Bitmap decode(ImageDecoder.Source source, int maxDimension) throws IOException {
+        return ImageDecoder.decodeBitmap(source, (decoder, info, src) -> {
+            Size size = scaledSize(info.getSize().getWidth(), info.getSize().getHeight(), maxDimension);
+            decoder.setTargetSize(size.getWidth(), size.getHeight());
+            decoder.setAllocator(ImageDecoder.ALLOCATOR_SOFTWARE);
+        });
+    }
+
+    /**
+     * @return Les dimensions d'une image réduite pour que sa plus grande dimension ne dépasse pas `maxDimension`,
+     * proportions conservées.
+     */
+    private static Size scaledSize(int width, int height, int maxDimension) {
+        int largest = Math.max(width, height);
+        if (largest <= maxDimension) {
+            return new Size(width, height);
+        }
+        float scale = (float) maxDimension / largest;
+        return new Size(Math.max(1, Math.round(width * scale)), Math.max(1, Math.round(height * scale)));
+    }
+
+    /**
+     * Écrit une image en JPEG dans un fichier temporaire renommé à la fin :
+     * un fichier interrompu en cours d'écriture n'est jamais pris pour une image valide.
+     */
+    private static void writeJpeg(Bitmap bitmap, int quality, File target) throws IOException {
+        File dir = target.getParentFile();
+        if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Impossible de créer le répertoire " + dir);
+        }
+        File temp = new File(dir, target.getName() + ".tmp");
+        try (FileOutputStream output = new FileOutputStream(temp)) {
+            if (!bitmap.compress(Bitmap.CompressFormat.JPEG, quality, output)) {
+                throw new IOException("Échec de la compression de " + target.getName());
+            }
+            output.getFD().sync();
+        }
+        if (!temp.renameTo(target)) {
+            temp.delete();
+            throw new IOException("Impossible d'écrire " + target);
+        }
+    }
+}
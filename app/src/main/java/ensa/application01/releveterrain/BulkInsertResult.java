@@ -0,0 +1,140 @@
+/**
+ * BulkInsertResult - Bilan d'une insertion groupée d'entrées.
+ */
+package ensa.application01.releveterrain;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Résultat retourné par {@link DatabaseHelper#insertEntries(Iterable, int, boolean)}, ou cumulé lot par lot par un import.
+ * Une ligne en échec n'interrompt pas le lot : elle est simplement consignée ici avec sa position et son erreur.
+ */
+public class BulkInsertResult {
+
+    /** Nombre de lignes effectivement insérées. */
+    private int insertedCount;
+
+    /** Nombre de lignes ignorées car déjà présentes (insertion avec dédoublonnage). */
+    private int skippedCount;
+
+    /** Plus petit identifiant inséré, ou -1 si aucune ligne n'a été insérée. */
+    private long firstInsertedId = -1;
+
+    /** Plus grand identifiant inséré, ou -1 si aucune ligne n'a été insérée. */
+    private long lastInsertedId = -1;
+
+    /** Lignes qui n'ont pas pu être insérées. */
+    private final List<RowFailure> failures = new ArrayList<>();
+
+    /**
+     * Comptabilise une ligne insérée avec succès.
+     *
+     * @param id Identifiant attribué à la ligne.
+     */
+    void recordInserted(long id) {
+        insertedCount++;
+        if (firstInsertedId == -1) {
+            firstInsertedId = id;
+        }
+        lastInsertedId = id;
+    }
+
+    /**
+     * Comptabilise une ligne ignorée car une entrée identique existe déjà.
+     */
+    void recordSkipped() {
+        skippedCount++;
+    }
+
+    /**
+     * Consigne l'échec d'une ligne.
+     *
+     * @param index Position de la ligne dans la collection d'origine.
+     * @param entry Entrée concernée.
+     * @param error Erreur rencontrée lors de l'insertion.
+     */
+    void recordFailure(int index, Entry entry, Exception error) {
+        failures.add(new RowFailure(index, entry, error));
+    }
+
+    /**
+     * Ajoute le bilan d'un lot à ce bilan, pour un import inséré en plusieurs appels successifs.
+     *
+     * @param batch       Bilan du lot.
+     * @param indexOffset Position de la première ligne du lot dans l'ensemble importé.
+     */
+    void append(BulkInsertResult batch, int indexOffset) {
+        insertedCount += batch.insertedCount;
+        skippedCount += batch.skippedCount;
+        if (firstInsertedId == -1) {
+            firstInsertedId = batch.firstInsertedId;
+        }
+        if (batch.lastInsertedId != -1) {
+            lastInsertedId = batch.lastInsertedId;
+        }
+        for (RowFailure failure : batch.failures) {
+            failures.add(new RowFailure(failure.index + indexOffset, failure.entry, failure.error));
+        }
+    }
+
+    /** @return Le nombre de lignes insérées. */
+    public int getInsertedCount() {
+        return insertedCount;
+    }
+
+    /** @return Le nombre de lignes ignorées car déjà présentes. */
+    public int getSkippedCount() {
+        return skippedCount;
+    }
+
+    /** @return Le plus petit identifiant inséré, ou -1 si aucune ligne n'a été insérée. */
+    public long getFirstInsertedId() {
+        return firstInsertedId;
+    }
+
+    /** @return Le plus grand identifiant inséré, ou -1 si aucune ligne n'a été insérée. */
+    public long getLastInsertedId() {
+        return lastInsertedId;
+    }
+
+    /** @return Les lignes en échec, dans l'ordre où elles ont été rencontrées. */
+    public List<RowFailure> getFailures() {
+        return Collections.unmodifiableList(failures);
+    }
+
+    /**
+     * Description d'une ligne qui n'a pas pu être insérée.
+     */
+    public static class RowFailure {
+
+        /** Position de la ligne dans la collection d'origine. */
+        private final int index;
+        /** Entrée concernée. */
+        private final Entry entry;
+        /** Erreur rencontrée. */
+        private final Exception error;
+
+        RowFailure(int index, Entry entry, Exception error) {
+            this.index = index;
+            this.entry = entry;
+            this.error = error;
+        }
+
+        /** @return La position de la ligne dans la collection d'origine. */
+        public int getIndex() {
+            return index;
+        }
+
+        /** @return L'entrée concernée. */
+        public Entry getEntry() {
+            return entry;
+        }
+
+        /** @return L'erreur rencontrée. */
+        public Exception getError() {
+            return error;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/**
+ * Coordinates - Position GPS numérique d'un relevé.
+ */
+package ensa.application01.releveterrain;
+
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Position GPS (latitude, longitude) en degrés décimaux.
+ * Permet aussi de relire le texte « Latitude: x\nLongitude: y » historiquement enregistré dans la colonne `coordinates`.
+ */
+public class Coordinates {
+
+    /** Expression reconnaissant le texte produit par l'écran de saisie. */
+    private static final Pattern TEXT_PATTERN = Pattern.compile(
+            "Latitude:\\s*(-?\\d+(?:\\.\\d+)?(?:[eE]-?\\d+)?)\\s*[,\\n]?\\s*Longitude:\\s*(-?\\d+(?:\\.\\d+)?(?:[eE]-?\\d+)?)");
+
+    /** Latitude en degrés. */
+    private final double latitude;
+    /** Longitude en degrés. */
+    private final double longitude;
+
+    /**
+     * Constructeur d'une position.
+     *
+     * @param latitude  Latitude en degrés.
+     * @param longitude Longitude en degrés.
+     */
+    public Coordinates(double latitude, double longitude) {
+        this.latitude = latitude;
+        this.longitude = longitude;
+    }
+
+    /**
+     * Relit une position à partir du texte affiché par l'écran de saisie.
+     *
+     * @param text Texte de la forme « Latitude: x\nLongitude: y ».
+     * @return La position lue, ou `null` si le texte ne contient pas de coordonnées valides.
+     */
+    public static Coordinates parse(String text) {
+        if (text == null) {
+            return null;
+        }
+        Matcher matcher = TEXT_PATTERN.matcher(text);
+        if (!matcher.find()) {
+            return null;
+        }
+        double latitude = Double.parseDouble(matcher.group(1));
+        double longitude = Double.parseDouble(matcher.group(2));
+        if (latitude < -90 || latitude > 90 || longitude < -180 || longitude > 180) {
+            return null;
+        }
+        return new Coordinates(latitude, longitude);
+    }
+
+    /**
+     * @return Le texte affiché à l'utilisateur et stocké dans la colonne `coordinates`.
+     */
+    public String format() {
+        return "Latitude: " + latitude + "\nLongitude: " + longitude;
+    }
+
+    /** @return La latitude en degrés. */
+    public double getLatitude() {
+        return latitude;
+    }
+
+    /** @return La longitude en degrés. */
+    public double getLongitude() {
+        return longitude;
+    }
+}
@@ -7,8 +7,25 @@ package ensa.application01.releveterrain;
 import android.content.ContentValues;
 import android.content.Context;
 import android.database.Cursor;
+import android.database.DatabaseUtils;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.database.sqlite.SQLiteStatement;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * Cette classe `DatabaseHelper` est responsable de la gestion de la base de données SQLite utilisée dans l'application de relevé terrain.
@@ -20,7 +37,11 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     /** Nom de la base de données */
     private static final String DATABASE_NAME = "ReleveTerrain.db";
     /** Version de la base de données */
-    private static final int DATABASE_VERSION = 1;
+    private static final int DATABASE_VERSION = 10;
+    /** Mode de synchronisation du journal : en WAL, `NORMAL` ne synchronise le disque qu'aux points de contrôle. */
+    private static final String SYNCHRONOUS_MODE = "NORMAL";
+    /** Taille du cache de pages de la connexion d'écriture, en Kio (valeur négative pour SQLite). */
+    private static final int PAGE_CACHE_SIZE_KIB = 4096;
 
     // Constantes pour la table et les colonnes
     /** Nom de la table où les entrées seront stockées */
@@ -41,19 +62,225 @@ public class DatabaseHelper extends SQLiteOpenHelper {
     private static final String COLUMN_OBSERVATIONS = "observations";
     /** Condition actuelle du site */
     private static final String COLUMN_CONDITION = "condition";
+    /** Date de l'entrée en millisecondes depuis l'époque Unix, triable et indexée (version 2) */
+    private static final String COLUMN_DATE_EPOCH = "date_epoch";
+    /** Latitude du site en degrés décimaux (version 3) */
+    private static final String COLUMN_LATITUDE = "latitude";
+    /** Longitude du site en degrés décimaux (version 3) */
+    private static final String COLUMN_LONGITUDE = "longitude";
+    /** Clé spatiale de la cellule de grille contenant le site, voir {@link GeoGrid} (version 3) */
+    private static final String COLUMN_GEO_CELL = "geo_cell";
+    /** Point de trace GPS le plus proche du moment de l'enregistrement (version 7) */
+    private static final String COLUMN_TRACK_POINT_ID = "track_point_id";
+    /** Précision horizontale de la position capturée, en mètres (version 8) */
+    private static final String COLUMN_FIX_ACCURACY = "fix_accuracy";
+    /** Temps nécessaire pour obtenir la position capturée, en millisecondes (version 8) */
+    private static final String COLUMN_FIX_TIME = "fix_time_ms";
+    /** Identifiant du modèle de formulaire utilisé pour la saisie (version 10) */
+    private static final String COLUMN_TEMPLATE_ID = "template_id";
+    /** Valeurs des champs propres au modèle, sous forme d'objet JSON (version 10) */
+    private static final String COLUMN_EXTRA_VALUES = "extra_values";
+
+    // Trace GPS enregistrée en continu
+    /** Table des positions enregistrées par le suivi GPS (version 7) */
+    private static final String TABLE_TRACK_POINTS = "track_points";
+    /** Date de la position, en millisecondes depuis l'époque Unix */
+    private static final String COLUMN_TRACK_TIME = "time_ms";
+    /** Précision horizontale estimée, en mètres */
+    private static final String COLUMN_TRACK_ACCURACY = "accuracy";
+    /** Vitesse mesurée, en mètres par seconde */
+    private static final String COLUMN_TRACK_SPEED = "speed";
+
+    // Photos jointes aux relevés
+    /** Table des photos jointes aux entrées ; les images sont des fichiers, seules leurs références sont en base (version 9) */
+    private static final String TABLE_ATTACHMENTS = "attachments";
+    /** Identifiant de l'entrée à laquelle la photo est jointe */
+    private static final String COLUMN_ATTACHMENT_ENTRY_ID = "entry_id";
+    /** Nom du fichier dans le répertoire des pièces jointes */
+    private static final String COLUMN_ATTACHMENT_FILE = "file_name";
+    /** Largeur de l'image enregistrée, en pixels */
+    private static final String COLUMN_ATTACHMENT_WIDTH = "width";
+    /** Hauteur de l'image enregistrée, en pixels */
+    private static final String COLUMN_ATTACHMENT_HEIGHT = "height";
+    /** Taille du fichier, en octets */
+    private static final String COLUMN_ATTACHMENT_SIZE = "size_bytes";
+    /** Date de l'ajout, en millisecondes depuis l'époque Unix */
+    private static final String COLUMN_ATTACHMENT_CREATED = "created_ms";
+    /** Colonnes lues pour construire un {@link Attachment} */
+    private static final String ATTACHMENT_COLUMNS = "id, entry_id, file_name, width, height, size_bytes, created_ms";
+
+    // Index plein texte
+    /** Table virtuelle d'indexation plein texte de `description` et `observations` (version 4) */
+    private static final String TABLE_ENTRIES_FTS = "entries_fts";
+
+    // Journal des modifications à synchroniser
+    /** Table listant les entrées modifiées depuis la dernière synchronisation, une ligne au plus par entrée (version 6) */
+    private static final String TABLE_ENTRY_CHANGES = "entry_changes";
+    /** Numéro d'ordre de la modification, croissant */
+    private static final String COLUMN_CHANGE_SEQ = "seq";
+    /** Identifiant de l'entrée modifiée */
+    private static final String COLUMN_CHANGE_ENTRY_ID = "entry_id";
+    /** Nature de la dernière modification : {@link EntryChange#OPERATION_UPSERT} ou {@link EntryChange#OPERATION_DELETE} */
+    private static final String COLUMN_CHANGE_OPERATION = "operation";
+
+    // Suivi des migrations de données exécutées en arrière-plan
+    /** Table mémorisant l'avancement des migrations de données, pour pouvoir les reprendre après une interruption */
+    private static final String TABLE_MIGRATION_STATE = "migration_state";
+    /** Nom de la migration de données */
+    private static final String COLUMN_MIGRATION_NAME = "name";
+    /** Dernier identifiant d'entrée traité par la migration */
+    private static final String COLUMN_MIGRATION_CURSOR = "last_id";
+    /** Migration remplissant `date_epoch` à partir de la date texte */
+    private static final String MIGRATION_DATE_EPOCH = "date_epoch";
+    /** Migration remplissant `latitude`, `longitude` et `geo_cell` à partir du texte des coordonnées */
+    private static final String MIGRATION_COORDINATES = "coordinates";
+    /** Migrations de données, exécutées dans cet ordre */
+    private static final String[] DATA_MIGRATIONS = {MIGRATION_DATE_EPOCH, MIGRATION_COORDINATES};
+
+    /** Colonnes sélectionnées pour décoder une entrée, dans l'ordre attendu par {@link #readEntries(Cursor)}. */
+    private static final String ENTRY_COLUMNS = "id as _id, site_name, date, date_epoch, coordinates, latitude, longitude, description, terrain_type, observations, condition, track_point_id, fix_accuracy, fix_time_ms, template_id, extra_values";
+
+    /** Requête d'insertion précompilée utilisée par les insertions groupées. */
+    private static final String INSERT_ENTRY_SQL = "INSERT INTO " + TABLE_ENTRIES + " (" +
+            COLUMN_SITE_NAME + ", " + COLUMN_DATE + ", " + COLUMN_DATE_EPOCH + ", " + COLUMN_COORDINATES + ", " +
+            COLUMN_LATITUDE + ", " + COLUMN_LONGITUDE + ", " + COLUMN_GEO_CELL + ", " +
+            COLUMN_DESCRIPTION + ", " + COLUMN_TERRAIN_TYPE + ", " + COLUMN_OBSERVATIONS + ", " + COLUMN_CONDITION + ", " +
+            COLUMN_TRACK_POINT_ID + ", " + COLUMN_FIX_ACCURACY + ", " + COLUMN_FIX_TIME + ", " +
+            COLUMN_TEMPLATE_ID + ", " + COLUMN_EXTRA_VALUES +
+            ") VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    /**
+     * Variante de {@link #INSERT_ENTRY_SQL} qui n'insère rien si une entrée de même site, date et coordonnées existe déjà.
+     * Les paramètres ?1, ?2 et ?4 sont réutilisés pour la recherche du doublon, résolue par l'index `idx_entries_dedup`.
+     * L'opérateur `IS` compare aussi correctement les valeurs nulles.
+     */
+    private static final String INSERT_ENTRY_IF_ABSENT_SQL = "INSERT INTO " + TABLE_ENTRIES + " (" +
+            COLUMN_SITE_NAME + ", " + COLUMN_DATE + ", " + COLUMN_DATE_EPOCH + ", " + COLUMN_COORDINATES + ", " +
+            COLUMN_LATITUDE + ", " + COLUMN_LONGITUDE + ", " + COLUMN_GEO_CELL + ", " +
+            COLUMN_DESCRIPTION + ", " + COLUMN_TERRAIN_TYPE + ", " + COLUMN_OBSERVATIONS + ", " + COLUMN_CONDITION + ", " +
+            COLUMN_TRACK_POINT_ID + ", " + COLUMN_FIX_ACCURACY + ", " + COLUMN_FIX_TIME + ", " +
+            COLUMN_TEMPLATE_ID + ", " + COLUMN_EXTRA_VALUES +
+            ") SELECT ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ? WHERE NOT EXISTS (SELECT 1 FROM " + TABLE_ENTRIES + " WHERE " +
+            COLUMN_SITE_NAME + " IS ?1 AND " + COLUMN_DATE + " IS ?2 AND " + COLUMN_COORDINATES + " IS ?4)";
+
+    /** Nombre de lignes validées par transaction lors d'une insertion groupée, si l'appelant n'en précise pas. */
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
+    /** Nombre de lignes traitées par transaction lors d'une migration de données en arrière-plan. */
+    public static final int MIGRATION_BATCH_SIZE = 1000;
+
+    /** Nombre maximal de lignes de grille interrogées séparément par une recherche spatiale. */
+    private static final int MAX_GRID_ROWS_PER_QUERY = 32;
+
+    /**
+     * Statistiques demandées à `matchinfo` pour le classement des recherches FTS4 : expressions, colonnes,
+     * nombre de documents, longueurs moyenne et du document, et occurrences par expression et par colonne.
+     */
+    private static final String MATCHINFO_FORMAT = "pcnalx";
+
+    /** Saturation de la fréquence d'un mot dans le classement BM25 (valeur usuelle, celle de FTS5). */
+    private static final double BM25_K1 = 1.2;
+
+    /** Normalisation par la longueur du document dans le classement BM25 (valeur usuelle, celle de FTS5). */
+    private static final double BM25_B = 0.75;
+
+    /**
+     * Nombre de documents candidats notés par résultat demandé, avec FTS4 : seuls les `limit × 20` documents
+     * correspondants les plus récents sont classés, de sorte qu'un mot court présent partout ne fasse pas noter
+     * tout le corpus.
+     */
+    private static final int FTS4_CANDIDATES_PER_RESULT = 20;
+
+    /** Identifiant à utiliser comme borne de départ pour charger la première page. */
+    public static final long FIRST_PAGE = Long.MAX_VALUE;
+
+    /** Écouteurs prévenus après chaque insertion validée. */
+    private final List<OnEntriesInsertedListener> insertedListeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Écouteur prévenu lorsque de nouvelles entrées ont été insérées et validées.
+     * Les identifiants étant attribués dans l'ordre croissant, une insertion est décrite par une plage d'identifiants.
+     * L'appel a lieu sur le thread qui a effectué l'insertion.
+     */
+    public interface OnEntriesInsertedListener {
+        /**
+         * Appelée après la validation d'une ou plusieurs insertions.
+         *
+         * @param firstId Plus petit identifiant inséré.
+         * @param lastId  Plus grand identifiant inséré.
+         */
+        void onEntriesInserted(long firstId, long lastId);
+    }
+
+    /** Variante de l'index plein texte (FTS5 ou FTS4), lue une fois depuis `sqlite_master`. */
+    private volatile Boolean ftsVersion5;
 
     /**
      * Constructeur pour initialiser la base de données avec le contexte de l'application.
+     * La base est ouverte en mode WAL (write-ahead logging) : les lectures s'exécutent sur des connexions
+     * distinctes et ne sont plus bloquées par une insertion ou un import en cours.
      *
      * @param context Le contexte de l'application, généralement utilisé pour accéder aux ressources du système.
      */
     public DatabaseHelper(Context context) {
-        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        this(context, DATABASE_NAME);
+    }
+
+    /**
+     * Constructeur ouvrant une base distincte, avec le même schéma et les mêmes réglages,
+     * par exemple pour mesurer les performances sans toucher aux relevés de l'utilisateur.
+     *
+     * @param context Le contexte de l'application.
+     * @param name    Nom du fichier de la base.
+     */
+    public DatabaseHelper(Context context, String name) {
+        this(context, name, true);
+    }
+
+    /**
+     * Constructeur permettant d'ouvrir la base sans WAL, avec le journal d'annulation et la synchronisation par défaut
+     * de SQLite : réservé aux mesures comparant les deux modes de journalisation.
+     *
+     * @param context           Le contexte de l'application.
+     * @param name              Nom du fichier de la base.
+     * @param writeAheadLogging `true` pour les réglages de l'application (WAL, synchronisation {@value #SYNCHRONOUS_MODE}).
+     */
+    DatabaseHelper(Context context, String name, boolean writeAheadLogging) {
+        super(context, name, DATABASE_VERSION, openParams(writeAheadLogging));
+        setWriteAheadLoggingEnabled(writeAheadLogging);
+    }
+
+    /**
+     * @param writeAheadLogging `true` pour ouvrir la base en mode WAL.
+     * @return Les paramètres d'ouverture de la base.
+     */
+    private static SQLiteDatabase.OpenParams openParams(boolean writeAheadLogging) {
+        SQLiteDatabase.OpenParams.Builder builder = new SQLiteDatabase.OpenParams.Builder();
+        if (writeAheadLogging) {
+            builder.addOpenFlags(SQLiteDatabase.ENABLE_WRITE_AHEAD_LOGGING).setSynchronousMode(SYNCHRONOUS_MODE);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Méthode appelée à l'ouverture de la connexion, avant la création ou la mise à jour du schéma.
+     * Agrandit le cache de pages utilisé par les écritures et les migrations, et demande le mode `auto_vacuum = INCREMENTAL` :
+     * il n'est retenu que par une base encore vide, donc à la première installation, qui évite ainsi le `VACUUM` complet
+     * de {@link #enableIncrementalVacuum()} ; sur une base existante, la commande est sans effet.
+     *
+     * @param db L'instance SQLiteDatabase en cours de configuration.
+     */
+    @Override
+    public void onConfigure(SQLiteDatabase db) {
+        super.onConfigure(db);
+        db.execSQL("PRAGMA cache_size = -" + PAGE_CACHE_SIZE_KIB);
+        db.execSQL("PRAGMA auto_vacuum = INCREMENTAL");
     }
 
     /**
      * Méthode appelée lors de la création initiale de la base de données.
-     * Elle crée la table nécessaire pour stocker les données liées aux relevés terrain.
+     * Elle crée la table de la version 1, puis applique les mêmes migrations qu'une base existante :
+     * une installation neuve et une installation mise à jour aboutissent ainsi au même schéma.
      *
      * @param db L'instance SQLiteDatabase permettant d'exécuter des commandes SQL.
      */
@@ -69,11 +296,15 @@ public class DatabaseHelper extends SQLiteOpenHelper {
                 COLUMN_OBSERVATIONS + " TEXT," +
                 COLUMN_CONDITION + " TEXT)";
         db.execSQL(CREATE_TABLE_ENTRIES);
+        onUpgrade(db, 1, DATABASE_VERSION);
     }
 
     /**
      * Méthode appelée lors de la mise à jour de la base de données si la version change.
-     * Cette méthode supprime la table existante et la recrée avec la nouvelle version.
+     * Les migrations sont appliquées une à une, de la version suivant `oldVersion` jusqu'à `newVersion`,
+     * sans jamais supprimer les relevés existants.
+     * Elles ne modifient que le schéma (colonnes, index) et restent donc rapides quelle que soit la taille de la table ;
+     * le recalcul éventuel des données est confié à {@link #runDataMigrationStep(int)}.
      *
      * @param db         L'instance SQLiteDatabase permettant d'exécuter des commandes SQL.
      * @param oldVersion Version précédente de la base de données.
@@ -81,8 +312,370 @@ public class DatabaseHelper extends SQLiteOpenHelper {
      */
     @Override
     public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-        db.execSQL("DROP TABLE IF EXISTS " + TABLE_ENTRIES);
-        onCreate(db);
+        for (int version = oldVersion + 1; version <= newVersion; version++) {
+            switch (version) {
+                case 2:
+                    migrateToVersion2(db);
+                    break;
+                case 3:
+                    migrateToVersion3(db);
+                    break;
+                case 4:
+                    migrateToVersion4(db);
+                    break;
+                case 5:
+                    migrateToVersion5(db);
+                    break;
+                case 6:
+                    migrateToVersion6(db);
+                    break;
+                case 7:
+                    migrateToVersion7(db);
+                    break;
+                case 8:
+                    migrateToVersion8(db);
+                    break;
+                case 9:
+                    migrateToVersion9(db);
+                    break;
+                case 10:
+                    migrateToVersion10(db);
+                    break;
+                default:
+                    throw new IllegalStateException("Migration inconnue vers la version " + version);
+            }
+        }
+    }
+
+    /**
+     * Migration vers la version 2 : ajoute la date triable `date_epoch` et les index utilisés par les filtres.
+     * La colonne est remplie ensuite, par lots, par {@link #runDataMigrationStep(int)}.
+     *
+     * @param db L'instance SQLiteDatabase permettant d'exécuter des commandes SQL.
+     */
+    private void migrateToVersion2(SQLiteDatabase db) {
+        db.execSQL("ALTER TABLE " + TABLE_ENTRIES + " ADD COLUMN " + COLUMN_DATE_EPOCH + " INTEGER");
+        db.execSQL("CREATE TABLE " + TABLE_MIGRATION_STATE + "(" +
+                COLUMN_MIGRATION_NAME + " TEXT PRIMARY KEY," +
+                COLUMN_MIGRATION_CURSOR + " INTEGER NOT NULL)");
+        db.execSQL("INSERT INTO " + TABLE_MIGRATION_STATE + " VALUES ('" + MIGRATION_DATE_EPOCH + "', 0)");
+
+        db.execSQL("CREATE INDEX idx_entries_site_name ON " + TABLE_ENTRIES + "(" + COLUMN_SITE_NAME + ")");
+        db.execSQL("CREATE INDEX idx_entries_date_epoch ON " + TABLE_ENTRIES + "(" + COLUMN_DATE_EPOCH + ", " + COLUMN_ID + ")");
+        db.execSQL("CREATE INDEX idx_entries_terrain_date ON " + TABLE_ENTRIES + "(" + COLUMN_TERRAIN_TYPE + ", " + COLUMN_DATE_EPOCH + ")");
+        db.execSQL("CREATE INDEX idx_entries_condition_date ON " + TABLE_ENTRIES + "(" + COLUMN_CONDITION + ", " + COLUMN_DATE_EPOCH + ")");
+    }
+
+    /**
+     * Migration vers la version 3 : ajoute la position numérique du site et sa clé spatiale indexée.
+     * Les colonnes sont remplies ensuite, par lots, en relisant le texte de la colonne `coordinates`.
+     *
+     * @param db L'instance SQLiteDatabase permettant d'exécuter des commandes SQL.
+     */
+    private void migrateToVersion3(SQLiteDatabase db) {
+        db.execSQL("ALTER TABLE " + TABLE_ENTRIES + " ADD COLUMN " + COLUMN_LATITUDE + " REAL");
+        db.execSQL("ALTER TABLE " + TABLE_ENTRIES + " ADD COLUMN " + COLUMN_LONGITUDE + " REAL");
+        db.execSQL("ALTER TABLE " + TABLE_ENTRIES + " ADD COLUMN " + COLUMN_GEO_CELL + " INTEGER");
+        db.execSQL("INSERT INTO " + TABLE_MIGRATION_STATE + " VALUES ('" + MIGRATION_COORDINATES + "', 0)");
+        db.execSQL("CREATE INDEX idx_entries_geo_cell ON " + TABLE_ENTRIES + "(" + COLUMN_GEO_CELL + ")");
+    }
+
+    /**
+     * Migration vers la version 4 : ajoute un index plein texte sur `description` et `observations`.
+     * L'index est une table FTS5 à contenu externe (le texte n'est pas dupliqué), ou FTS4 si le moteur SQLite
+     * de l'appareil ne propose pas FTS5. Le tokenizer `unicode61` supprime les accents : « erosion » trouve « érosion ».
+     * Des déclencheurs maintiennent l'index à jour à chaque insertion, modification ou suppression d'une entrée.
+     *
+     * @param db L'instance SQLiteDatabase permettant d'exécuter des commandes SQL.
+     */
+    private void migrateToVersion4(SQLiteDatabase db) {
+        try {
+            db.execSQL("CREATE VIRTUAL TABLE " + TABLE_ENTRIES_FTS + " USING fts5(" +
+                    COLUMN_DESCRIPTION + ", " + COLUMN_OBSERVATIONS + ", content='" + TABLE_ENTRIES + "', " +
+                    "content_rowid='" + COLUMN_ID + "', tokenize='unicode61 remove_diacritics 2')");
+            db.execSQL("CREATE TRIGGER entries_fts_ai AFTER INSERT ON " + TABLE_ENTRIES + " BEGIN " +
+                    "INSERT INTO " + TABLE_ENTRIES_FTS + "(rowid, description, observations) " +
+                    "VALUES (new.id, new.description, new.observations); END");
+            db.execSQL("CREATE TRIGGER entries_fts_ad AFTER DELETE ON " + TABLE_ENTRIES + " BEGIN " +
+                    "INSERT INTO " + TABLE_ENTRIES_FTS + "(" + TABLE_ENTRIES_FTS + ", rowid, description, observations) " +
+                    "VALUES ('delete', old.id, old.description, old.observations); END");
+            db.execSQL("CREATE TRIGGER entries_fts_au AFTER UPDATE OF description, observations ON " + TABLE_ENTRIES + " BEGIN " +
+                    "INSERT INTO " + TABLE_ENTRIES_FTS + "(" + TABLE_ENTRIES_FTS + ", rowid, description, observations) " +
+                    "VALUES ('delete', old.id, old.description, old.observations); " +
+                    "INSERT INTO " + TABLE_ENTRIES_FTS + "(rowid, description, observations) " +
+                    "VALUES (new.id, new.description, new.observations); END");
+        } catch (SQLiteException e) {
+            // FTS5 indisponible : repli sur FTS4, qui sait aussi ignorer les accents
+            db.execSQL("CREATE VIRTUAL TABLE " + TABLE_ENTRIES_FTS + " USING fts4(" +
+                    COLUMN_DESCRIPTION + ", " + COLUMN_OBSERVATIONS + ", content=\"" + TABLE_ENTRIES + "\", " +
+                    "tokenize=unicode61 \"remove_diacritics=1\")");
+            db.execSQL("CREATE TRIGGER entries_fts_bd BEFORE DELETE ON " + TABLE_ENTRIES + " BEGIN " +
+                    "DELETE FROM " + TABLE_ENTRIES_FTS + " WHERE docid = old.id; END");
+            db.execSQL("CREATE TRIGGER entries_fts_bu BEFORE UPDATE OF description, observations ON " + TABLE_ENTRIES + " BEGIN " +
+                    "DELETE FROM " + TABLE_ENTRIES_FTS + " WHERE docid = old.id; END");
+            db.execSQL("CREATE TRIGGER entries_fts_ai AFTER INSERT ON " + TABLE_ENTRIES + " BEGIN " +
+                    "INSERT INTO " + TABLE_ENTRIES_FTS + "(docid, description, observations) " +
+                    "VALUES (new.id, new.description, new.observations); END");
+            db.execSQL("CREATE TRIGGER entries_fts_au AFTER UPDATE OF description, observations ON " + TABLE_ENTRIES + " BEGIN " +
+                    "INSERT INTO " + TABLE_ENTRIES_FTS + "(docid, description, observations) " +
+                    "VALUES (new.id, new.description, new.observations); END");
+        }
+        // Indexation des relevés existants, dans la même transaction que la création de la table
+        db.execSQL("INSERT INTO " + TABLE_ENTRIES_FTS + "(" + TABLE_ENTRIES_FTS + ") VALUES ('rebuild')");
+    }
+
+    /**
+     * Migration vers la version 5 : ajoute l'index de dédoublonnage utilisé par l'import.
+     * Il porte sur (site_name, date, coordinates) et remplace l'index sur `site_name` seul, qui en est un préfixe.
+     * L'index n'est pas unique : des doublons saisis à la main avant cette version restent possibles.
+     *
+     * @param db L'instance SQLiteDatabase permettant d'exécuter des commandes SQL.
+     */
+    private void migrateToVersion5(SQLiteDatabase db) {
+        db.execSQL("CREATE INDEX idx_entries_dedup ON " + TABLE_ENTRIES + "(" +
+                COLUMN_SITE_NAME + ", " + COLUMN_DATE + ", " + COLUMN_COORDINATES + ")");
+        db.execSQL("DROP INDEX IF EXISTS idx_entries_site_name");
+    }
+
+    /**
+     * Migration vers la version 6 : ajoute le journal des modifications utilisé par la synchronisation.
+     * Des déclencheurs y consignent chaque insertion, modification des champs saisis ou suppression d'une entrée.
+     * La contrainte d'unicité sur `entry_id` et `INSERT OR REPLACE` fusionnent les modifications successives d'une
+     * même entrée : le journal ne grandit qu'avec le nombre d'entrées modifiées, pas avec le nombre de modifications.
+     * Les recalculs d'arrière-plan (`date_epoch`, position) ne touchent pas les colonnes surveillées et ne sont pas journalisés.
+     * Les entrées existantes sont consignées une fois, pour être envoyées lors de la première synchronisation.
+     *
+     * @param db L'instance SQLiteDatabase permettant d'exécuter des commandes SQL.
+     */
+    private void migrateToVersion6(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_ENTRY_CHANGES + "(" +
+                COLUMN_CHANGE_SEQ + " INTEGER PRIMARY KEY," +
+                COLUMN_CHANGE_ENTRY_ID + " INTEGER NOT NULL UNIQUE," +
+                COLUMN_CHANGE_OPERATION + " TEXT NOT NULL)");
+        String logChange = "INSERT OR REPLACE INTO " + TABLE_ENTRY_CHANGES + "(" + COLUMN_CHANGE_ENTRY_ID + ", " +
+                COLUMN_CHANGE_OPERATION + ") VALUES ";
+        db.execSQL("CREATE TRIGGER entry_changes_ai AFTER INSERT ON " + TABLE_ENTRIES + " BEGIN " +
+                logChange + "(new.id, '" + EntryChange.OPERATION_UPSERT + "'); END");
+        db.execSQL("CREATE TRIGGER entry_changes_au AFTER UPDATE OF " +
+                COLUMN_SITE_NAME + ", " + COLUMN_DATE + ", " + COLUMN_COORDINATES + ", " + COLUMN_DESCRIPTION + ", " +
+                COLUMN_TERRAIN_TYPE + ", " + COLUMN_OBSERVATIONS + ", " + COLUMN_CONDITION + " ON " + TABLE_ENTRIES + " BEGIN " +
+                logChange + "(new.id, '" + EntryChange.OPERATION_UPSERT + "'); END");
+        db.execSQL("CREATE TRIGGER entry_changes_ad AFTER DELETE ON " + TABLE_ENTRIES + " BEGIN " +
+                logChange + "(old.id, '" + EntryChange.OPERATION_DELETE + "'); END");
+        db.execSQL("INSERT INTO " + TABLE_ENTRY_CHANGES + "(" + COLUMN_CHANGE_ENTRY_ID + ", " + COLUMN_CHANGE_OPERATION + ") " +
+                "SELECT " + COLUMN_ID + ", '" + EntryChange.OPERATION_UPSERT + "' FROM " + TABLE_ENTRIES + " ORDER BY " + COLUMN_ID);
+    }
+
+    /**
+     * Migration vers la version 7 : ajoute la table de trace GPS et le lien de chaque entrée vers son point de trace.
+     * L'index sur `time_ms` permet de retrouver le point le plus proche d'un instant par deux lectures d'index.
+     *
+     * @param db L'instance SQLiteDatabase permettant d'exécuter des commandes SQL.
+     */
+    private void migrateToVersion7(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_TRACK_POINTS + "(" +
+                COLUMN_ID + " INTEGER PRIMARY KEY AUTOINCREMENT," +
+                COLUMN_TRACK_TIME + " INTEGER NOT NULL," +
+                COLUMN_LATITUDE + " REAL NOT NULL," +
+                COLUMN_LONGITUDE + " REAL NOT NULL," +
+                COLUMN_TRACK_ACCURACY + " REAL," +
+                COLUMN_TRACK_SPEED + " REAL)");
+        db.execSQL("CREATE INDEX idx_track_points_time ON " + TABLE_TRACK_POINTS + "(" + COLUMN_TRACK_TIME + ")");
+        db.execSQL("ALTER TABLE " + TABLE_ENTRIES + " ADD COLUMN " + COLUMN_TRACK_POINT_ID + " INTEGER");
+    }
+
+    /**
+     * Migration vers la version 8 : ajoute la précision de la position capturée et le temps mis à l'obtenir.
+     *
+     * @param db L'instance SQLiteDatabase permettant d'exécuter des commandes SQL.
+     */
+    private void migrateToVersion8(SQLiteDatabase db) {
+        db.execSQL("ALTER TABLE " + TABLE_ENTRIES + " ADD COLUMN " + COLUMN_FIX_ACCURACY + " REAL");
+        db.execSQL("ALTER TABLE " + TABLE_ENTRIES + " ADD COLUMN " + COLUMN_FIX_TIME + " INTEGER");
+    }
+
+    /**
+     * Migration vers la version 9 : ajoute la table des photos jointes.
+     * L'index (`entry_id`, `id`) sert à la fois à lister les photos d'une entrée et à trouver la première d'entre elles.
+     * Un déclencheur supprime les références d'une entrée supprimée ; les fichiers eux-mêmes sont retirés par {@link AttachmentStore}.
+     *
+     * @param db L'instance SQLiteDatabase permettant d'exécuter des commandes SQL.
+     */
+    private void migrateToVersion9(SQLiteDatabase db) {
+        db.execSQL("CREATE TABLE " + TABLE_ATTACHMENTS + "(" +
+                COLUMN_ID + " INTEGER PRIMARY KEY AUTOINCREMENT," +
+                COLUMN_ATTACHMENT_ENTRY_ID + " INTEGER NOT NULL," +
+                COLUMN_ATTACHMENT_FILE + " TEXT NOT NULL," +
+                COLUMN_ATTACHMENT_WIDTH + " INTEGER NOT NULL," +
+                COLUMN_ATTACHMENT_HEIGHT + " INTEGER NOT NULL," +
+                COLUMN_ATTACHMENT_SIZE + " INTEGER NOT NULL," +
+                COLUMN_ATTACHMENT_CREATED + " INTEGER NOT NULL)");
+        db.execSQL("CREATE INDEX idx_attachments_entry ON " + TABLE_ATTACHMENTS +
+                "(" + COLUMN_ATTACHMENT_ENTRY_ID + ", " + COLUMN_ID + ")");
+        db.execSQL("CREATE TRIGGER attachments_entry_ad AFTER DELETE ON " + TABLE_ENTRIES + " BEGIN " +
+                "DELETE FROM " + TABLE_ATTACHMENTS + " WHERE " + COLUMN_ATTACHMENT_ENTRY_ID + " = old.id; END");
+    }
+
+    /**
+     * Migration vers la version 10 : ajoute le modèle de formulaire de chaque entrée et les valeurs de ses champs propres.
+     * Les entrées existantes relèvent du modèle par défaut, dont tous les champs sont des colonnes fixes.
+     * Le déclencheur du journal est recréé pour consigner aussi la modification de ces deux colonnes.
+     * Les index des champs propres sont créés au chargement des modèles, par {@link #ensureFieldIndexes(List)}.
+     *
+     * @param db L'instance SQLiteDatabase permettant d'exécuter des commandes SQL.
+     */
+    private void migrateToVersion10(SQLiteDatabase db) {
+        db.execSQL("ALTER TABLE " + TABLE_ENTRIES + " ADD COLUMN " + COLUMN_TEMPLATE_ID + " TEXT NOT NULL DEFAULT '" +
+                FormPlan.DEFAULT_TEMPLATE + "'");
+        db.execSQL("ALTER TABLE " + TABLE_ENTRIES + " ADD COLUMN " + COLUMN_EXTRA_VALUES + " TEXT");
+        db.execSQL("DROP TRIGGER IF EXISTS entry_changes_au");
+        db.execSQL("CREATE TRIGGER entry_changes_au AFTER UPDATE OF " +
+                COLUMN_SITE_NAME + ", " + COLUMN_DATE + ", " + COLUMN_COORDINATES + ", " + COLUMN_DESCRIPTION + ", " +
+                COLUMN_TERRAIN_TYPE + ", " + COLUMN_OBSERVATIONS + ", " + COLUMN_CONDITION + ", " +
+                COLUMN_TEMPLATE_ID + ", " + COLUMN_EXTRA_VALUES + " ON " + TABLE_ENTRIES + " BEGIN " +
+                "INSERT OR REPLACE INTO " + TABLE_ENTRY_CHANGES + "(" + COLUMN_CHANGE_ENTRY_ID + ", " +
+                COLUMN_CHANGE_OPERATION + ") VALUES (new.id, '" + EntryChange.OPERATION_UPSERT + "'); END");
+    }
+
+    /**
+     * Crée, s'ils n'existent pas encore, les index des champs propres marqués `indexed` dans les modèles de formulaire.
+     * Chaque index porte sur (`template_id`, `json_extract(extra_values, '$.<clé>')`) : la recherche d'une valeur
+     * par {@link #getEntriesByFieldValue} le parcourt sans décoder le JSON de chaque ligne.
+     * Un nouveau modèle n'exige ainsi ni colonne ni changement de version du schéma. Le nom de l'index ne dépend que
+     * de la clé : deux modèles déclarant le même champ partagent le même index.
+     * Les clés ont été contrôlées à la compilation du modèle et peuvent être insérées telles quelles dans le SQL.
+     *
+     * @param plans Modèles de formulaire chargés.
+     */
+    public void ensureFieldIndexes(List<FormPlan> plans) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        Set<String> keys = new HashSet<>();
+        for (FormPlan plan : plans) {
+            for (int i = 0; i < plan.size(); i++) {
+                FormPlan.Field field = plan.get(i);
+                if (field.isIndexed() && keys.add(field.getKey())) {
+                    db.execSQL("CREATE INDEX IF NOT EXISTS idx_entries_field_" + field.getKey() + " ON " + TABLE_ENTRIES +
+                            "(" + COLUMN_TEMPLATE_ID + ", " + fieldExpression(field.getKey()) + ")");
+                }
+            }
+        }
+    }
+
+    /**
+     * @param key Clé d'un champ propre, contrôlée par {@link FormPlan}.
+     * @return L'expression SQL lisant ce champ ; elle doit être identique dans l'index et dans les requêtes.
+     */
+    private static String fieldExpression(String key) {
+        return "json_extract(" + COLUMN_EXTRA_VALUES + ", '$." + key + "')";
+    }
+
+    /**
+     * Exécute un lot de la première migration de données encore en attente.
+     * Chaque lot est validé dans sa propre transaction avec la position atteinte : si l'application est tuée,
+     * la migration reprend au lot suivant au lieu de recommencer depuis le début.
+     *
+     * @param batchSize Nombre maximal de lignes traitées par ce lot.
+     * @return `true` si un lot a été traité (il peut en rester d'autres), `false` si toutes les migrations de données sont terminées.
+     */
+    public boolean runDataMigrationStep(int batchSize) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        db.beginTransaction();
+        try {
+            for (String name : DATA_MIGRATIONS) {
+                long lastId = readMigrationCursor(db, name);
+                if (lastId < 0) {
+                    continue;
+                }
+                // Une position négative marque la migration comme terminée
+                writeMigrationCursor(db, name, migrateBatch(db, name, lastId, batchSize));
+                db.setTransactionSuccessful();
+                return true;
+            }
+            db.setTransactionSuccessful();
+            return false;
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    /**
+     * Traite un lot d'une migration de données, à partir de l'entrée suivant `lastId`.
+     *
+     * @param db        Base ouverte en écriture, dans une transaction.
+     * @param name      Nom de la migration.
+     * @param lastId    Dernier identifiant déjà traité.
+     * @param batchSize Nombre maximal de lignes à traiter.
+     * @return Le dernier identifiant traité, ou -1 si la migration est terminée.
+     */
+    private static long migrateBatch(SQLiteDatabase db, String name, long lastId, int batchSize) {
+        boolean coordinates = MIGRATION_COORDINATES.equals(name);
+        String sourceColumn = coordinates ? COLUMN_COORDINATES : COLUMN_DATE;
+        Cursor cursor = db.rawQuery("SELECT " + COLUMN_ID + ", " + sourceColumn + " FROM " + TABLE_ENTRIES +
+                        " WHERE " + COLUMN_ID + " > ? ORDER BY " + COLUMN_ID + " LIMIT ?",
+                new String[]{String.valueOf(lastId), String.valueOf(batchSize)});
+        SQLiteStatement update = db.compileStatement(coordinates
+                ? "UPDATE " + TABLE_ENTRIES + " SET " + COLUMN_LATITUDE + " = ?, " + COLUMN_LONGITUDE + " = ?, " +
+                COLUMN_GEO_CELL + " = ? WHERE " + COLUMN_ID + " = ? AND " + COLUMN_LATITUDE + " IS NULL"
+                : "UPDATE " + TABLE_ENTRIES + " SET " + COLUMN_DATE_EPOCH + " = ? WHERE " + COLUMN_ID + " = ?");
+        int processed = 0;
+        try {
+            while (cursor.moveToNext()) {
+                lastId = cursor.getLong(0);
+                processed++;
+                if (coordinates) {
+                    Coordinates location = Coordinates.parse(cursor.getString(1));
+                    if (location == null) {
+                        continue;
+                    }
+                    update.bindDouble(1, location.getLatitude());
+                    update.bindDouble(2, location.getLongitude());
+                    update.bindLong(3, GeoGrid.cellOf(location.getLatitude(), location.getLongitude()));
+                    update.bindLong(4, lastId);
+                } else {
+                    Long epoch = DateParser.toEpochMillis(cursor.getString(1));
+                    if (epoch == null) {
+                        continue;
+                    }
+                    update.bindLong(1, epoch);
+                    update.bindLong(2, lastId);
+                }
+                update.executeUpdateDelete();
+            }
+        } finally {
+            cursor.close();
+            update.close();
+        }
+        return processed < batchSize ? -1 : lastId;
+    }
+
+    /**
+     * Lit la position atteinte par une migration de données.
+     *
+     * @param db   Base ouverte en écriture.
+     * @param name Nom de la migration.
+     * @return Le dernier identifiant traité, ou -1 si la migration est terminée ou inexistante.
+     */
+    private static long readMigrationCursor(SQLiteDatabase db, String name) {
+        Cursor cursor = db.rawQuery("SELECT " + COLUMN_MIGRATION_CURSOR + " FROM " + TABLE_MIGRATION_STATE +
+                " WHERE " + COLUMN_MIGRATION_NAME + " = ?", new String[]{name});
+        try {
+            return cursor.moveToFirst() ? cursor.getLong(0) : -1;
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Enregistre la position atteinte par une migration de données.
+     *
+     * @param db     Base ouverte en écriture.
+     * @param name   Nom de la migration.
+     * @param lastId Dernier identifiant traité, ou -1 si la migration est terminée.
+     */
+    private static void writeMigrationCursor(SQLiteDatabase db, String name, long lastId) {
+        ContentValues values = new ContentValues();
+        values.put(COLUMN_MIGRATION_CURSOR, lastId);
+        db.update(TABLE_MIGRATION_STATE, values, COLUMN_MIGRATION_NAME + " = ?", new String[]{name});
     }
 
     /**
@@ -99,17 +692,285 @@ public class DatabaseHelper extends SQLiteOpenHelper {
      */
     public long insertEntry(String siteName, String date, String coordinates, String description, String observations,
                             String terrainType, String condition) {
+        return insertEntry(new Entry(-1, siteName, date, coordinates, description, terrainType, observations, condition));
+    }
+
+    /**
+     * Insère une nouvelle entrée dans la table `entries`.
+     * La date triable et la position numérique sont calculées ici, de sorte que toutes les insertions
+     * alimentent les colonnes indexées de la même manière.
+     *
+     * @param entry Entrée à insérer (son identifiant est ignoré).
+     * @return L'ID de la ligne insérée, ou -1 si l'insertion a échoué.
+     */
+    public long insertEntry(Entry entry) {
         SQLiteDatabase db = this.getWritableDatabase();
+        long id = db.insert(TABLE_ENTRIES, null, valuesOf(entry));
+        if (id != -1 && !db.inTransaction()) {
+            notifyEntriesInserted(id, id);
+        }
+        return id;
+    }
+
+    /**
+     * Met à jour une entrée existante : tous ses champs sont remplacés par ceux de `entry`,
+     * et la date triable et la position numérique sont recalculées comme à l'insertion.
+     * Le déclencheur du journal consigne la modification pour la prochaine synchronisation.
+     *
+     * @param entry Entrée à enregistrer, identifiée par son `id`.
+     * @return `true` si l'entrée existait et a été mise à jour.
+     */
+    public boolean updateEntry(Entry entry) {
+        return this.getWritableDatabase().update(TABLE_ENTRIES, valuesOf(entry), COLUMN_ID + " = ?",
+                new String[]{String.valueOf(entry.getId())}) > 0;
+    }
+
+    /**
+     * Supprime une entrée. Ses références de photos sont supprimées par déclencheur, et la suppression
+     * est consignée dans le journal pour être transmise au serveur ; les fichiers restent à la charge de l'appelant.
+     *
+     * @param id Identifiant de l'entrée.
+     * @return `true` si l'entrée existait et a été supprimée.
+     */
+    public boolean deleteEntry(long id) {
+        return this.getWritableDatabase().delete(TABLE_ENTRIES, COLUMN_ID + " = ?",
+                new String[]{String.valueOf(id)}) > 0;
+    }
+
+    /**
+     * Prépare les valeurs des colonnes d'une entrée pour une insertion ou une mise à jour.
+     * Une position inconnue est écrite explicitement à `NULL`, pour qu'une mise à jour efface l'ancienne.
+     *
+     * @param entry Entrée à enregistrer.
+     * @return Les valeurs de toutes les colonnes saisies ou calculées, sans l'identifiant.
+     */
+    private static ContentValues valuesOf(Entry entry) {
         ContentValues values = new ContentValues();
-        values.put(COLUMN_SITE_NAME, siteName);
-        values.put(COLUMN_DATE, date);
-        values.put(COLUMN_COORDINATES, coordinates);
-        values.put(COLUMN_DESCRIPTION, description);
-        values.put(COLUMN_TERRAIN_TYPE, terrainType);
-        values.put(COLUMN_OBSERVATIONS, observations);
-        values.put(COLUMN_CONDITION, condition);
+        values.put(COLUMN_SITE_NAME, entry.getSiteName());
+        values.put(COLUMN_DATE, entry.getDate());
+        values.put(COLUMN_DATE_EPOCH, dateEpochOf(entry));
+        values.put(COLUMN_COORDINATES, entry.getCoordinates());
+        Coordinates location = locationOf(entry);
+        if (location != null) {
+            values.put(COLUMN_LATITUDE, location.getLatitude());
+            values.put(COLUMN_LONGITUDE, location.getLongitude());
+            values.put(COLUMN_GEO_CELL, GeoGrid.cellOf(location.getLatitude(), location.getLongitude()));
+        } else {
+            values.putNull(COLUMN_LATITUDE);
+            values.putNull(COLUMN_LONGITUDE);
+            values.putNull(COLUMN_GEO_CELL);
+        }
+        values.put(COLUMN_DESCRIPTION, entry.getDescription());
+        values.put(COLUMN_TERRAIN_TYPE, entry.getTerrainType());
+        values.put(COLUMN_OBSERVATIONS, entry.getObservations());
+        values.put(COLUMN_CONDITION, entry.getCondition());
+        values.put(COLUMN_TRACK_POINT_ID, entry.getTrackPointId());
+        values.put(COLUMN_FIX_ACCURACY, entry.getFixAccuracy());
+        values.put(COLUMN_FIX_TIME, entry.getFixTimeMillis());
+        values.put(COLUMN_TEMPLATE_ID, entry.getTemplateId());
+        values.put(COLUMN_EXTRA_VALUES, entry.getExtraValues());
+        return values;
+    }
+
+    /**
+     * Enregistre un écouteur des insertions.
+     *
+     * @param listener Écouteur à ajouter.
+     */
+    public void addOnEntriesInsertedListener(OnEntriesInsertedListener listener) {
+        insertedListeners.add(listener);
+    }
+
+    /**
+     * Retire un écouteur des insertions.
+     *
+     * @param listener Écouteur à retirer.
+     */
+    public void removeOnEntriesInsertedListener(OnEntriesInsertedListener listener) {
+        insertedListeners.remove(listener);
+    }
 
-        return db.insert(TABLE_ENTRIES, null, values);
+    /**
+     * Prévient les écouteurs qu'une plage d'entrées vient d'être insérée.
+     *
+     * @param firstId Plus petit identifiant inséré.
+     * @param lastId  Plus grand identifiant inséré.
+     */
+    private void notifyEntriesInserted(long firstId, long lastId) {
+        for (OnEntriesInsertedListener listener : insertedListeners) {
+            listener.onEntriesInserted(firstId, lastId);
+        }
+    }
+
+    /**
+     * Détermine la position numérique d'une entrée : celle fournie par l'appelant, sinon celle relue dans le texte des coordonnées.
+     *
+     * @param entry Entrée à localiser.
+     * @return La position de l'entrée, ou `null` si elle est inconnue.
+     */
+    private static Coordinates locationOf(Entry entry) {
+        if (entry.getLatitude() != null && entry.getLongitude() != null) {
+            return new Coordinates(entry.getLatitude(), entry.getLongitude());
+        }
+        return Coordinates.parse(entry.getCoordinates());
+    }
+
+    /**
+     * Détermine la date triable d'une entrée : celle déjà calculée par l'appelant, sinon celle relue dans le texte de la date.
+     *
+     * @param entry Entrée à dater.
+     * @return La date en millisecondes depuis l'époque Unix, ou `null` si elle est inconnue.
+     */
+    private static Long dateEpochOf(Entry entry) {
+        if (entry.getDateEpoch() != null) {
+            return entry.getDateEpoch();
+        }
+        return DateParser.toEpochMillis(entry.getDate());
+    }
+
+    /**
+     * Insère un ensemble d'entrées en une seule passe, sans dédoublonnage.
+     *
+     * @param entries   Entrées à insérer ; elles sont parcourues une seule fois et peuvent être produites à la volée.
+     * @param batchSize Nombre de lignes validées par transaction.
+     * @return Le bilan de l'insertion : nombre de lignes insérées et lignes en échec.
+     * @see #insertEntries(Iterable, int, boolean)
+     */
+    public BulkInsertResult insertEntries(Iterable<Entry> entries, int batchSize) {
+        return insertEntries(entries, batchSize, false);
+    }
+
+    /**
+     * Insère un ensemble d'entrées en une seule passe.
+     * Une unique requête précompilée est réutilisée pour toutes les lignes, et les insertions sont regroupées
+     * dans des transactions explicites validées toutes les `batchSize` lignes : le journal n'est synchronisé
+     * qu'une fois par lot au lieu d'une fois par ligne.
+     * L'échec d'une ligne (contrainte, valeur invalide…) est consigné dans le résultat sans interrompre le lot.
+     * Les écouteurs sont prévenus après la validation de chaque transaction, avec la plage d'identifiants insérés.
+     * En mode dédoublonnage, une entrée dont le site, la date et les coordonnées existent déjà (y compris plus tôt
+     * dans le même appel) est ignorée : la recherche du doublon fait partie de la requête d'insertion et utilise un index.
+     *
+     * @param entries        Entrées à insérer ; elles sont parcourues une seule fois et peuvent être produites à la volée.
+     * @param batchSize      Nombre de lignes validées par transaction.
+     * @param skipDuplicates `true` pour ignorer les entrées déjà présentes.
+     * @return Le bilan de l'insertion : nombre de lignes insérées, ignorées et en échec.
+     */
+    public BulkInsertResult insertEntries(Iterable<Entry> entries, int batchSize, boolean skipDuplicates) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("batchSize doit être strictement positif : " + batchSize);
+        }
+        SQLiteDatabase db = this.getWritableDatabase();
+        BulkInsertResult result = new BulkInsertResult();
+        SQLiteStatement statement = db.compileStatement(skipDuplicates ? INSERT_ENTRY_IF_ABSENT_SQL : INSERT_ENTRY_SQL);
+        try {
+            int index = 0;
+            int inBatch = 0;
+            long batchFirstId = -1;
+            long batchLastId = -1;
+            long batchStart = PerfMetrics.start();
+            db.beginTransaction();
+            try {
+                for (Entry entry : entries) {
+                    try {
+                        bindEntry(statement, entry);
+                        long id = statement.executeInsert();
+                        if (id != -1) {
+                            result.recordInserted(id);
+                            if (batchFirstId == -1) {
+                                batchFirstId = id;
+                            }
+                            batchLastId = id;
+                        } else if (skipDuplicates) {
+                            result.recordSkipped();
+                        } else {
+                            result.recordFailure(index, entry, new SQLiteException("Insertion refusée"));
+                        }
+                    } catch (SQLiteException e) {
+                        result.recordFailure(index, entry, e);
+                    }
+                    index++;
+                    if (++inBatch == batchSize) {
+                        db.setTransactionSuccessful();
+                        db.endTransaction();
+                        PerfMetrics.stop(PerfMetrics.Metric.INSERT_BATCH, batchStart);
+                        if (batchFirstId != -1) {
+                            notifyEntriesInserted(batchFirstId, batchLastId);
+                            batchFirstId = -1;
+                        }
+                        batchStart = PerfMetrics.start();
+                        db.beginTransaction();
+                        inBatch = 0;
+                    }
+                }
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+            if (inBatch > 0) {
+                PerfMetrics.stop(PerfMetrics.Metric.INSERT_BATCH, batchStart);
+            }
+            if (batchFirstId != -1) {
+                notifyEntriesInserted(batchFirstId, batchLastId);
+            }
+        } finally {
+            statement.close();
+        }
+        return result;
+    }
+
+    /**
+     * Lie les colonnes d'une entrée aux paramètres de la requête {@link #INSERT_ENTRY_SQL} ou {@link #INSERT_ENTRY_IF_ABSENT_SQL}.
+     *
+     * @param statement Requête précompilée à réutiliser.
+     * @param entry     Entrée à lier.
+     */
+    private static void bindEntry(SQLiteStatement statement, Entry entry) {
+        statement.clearBindings();
+        bindText(statement, 1, entry.getSiteName());
+        bindText(statement, 2, entry.getDate());
+        Long dateEpoch = dateEpochOf(entry);
+        if (dateEpoch == null) {
+            statement.bindNull(3);
+        } else {
+            statement.bindLong(3, dateEpoch);
+        }
+        bindText(statement, 4, entry.getCoordinates());
+        Coordinates location = locationOf(entry);
+        if (location != null) {
+            statement.bindDouble(5, location.getLatitude());
+            statement.bindDouble(6, location.getLongitude());
+            statement.bindLong(7, GeoGrid.cellOf(location.getLatitude(), location.getLongitude()));
+        }
+        bindText(statement, 8, entry.getDescription());
+        bindText(statement, 9, entry.getTerrainType());
+        bindText(statement, 10, entry.getObservations());
+        bindText(statement, 11, entry.getCondition());
+        if (entry.getTrackPointId() != null) {
+            statement.bindLong(12, entry.getTrackPointId());
+        }
+        if (entry.getFixAccuracy() != null) {
+            statement.bindDouble(13, entry.getFixAccuracy());
+        }
+        if (entry.getFixTimeMillis() != null) {
+            statement.bindLong(14, entry.getFixTimeMillis());
+        }
+        statement.bindString(15, entry.getTemplateId());
+        bindText(statement, 16, entry.getExtraValues());
+    }
+
+    /**
+     * Lie une valeur texte, éventuellement nulle, à un paramètre de requête.
+     *
+     * @param statement Requête précompilée.
+     * @param index     Position du paramètre (à partir de 1).
+     * @param value     Valeur à lier, ou `null`.
+     */
+    private static void bindText(SQLiteStatement statement, int index, String value) {
+        if (value == null) {
+            statement.bindNull(index);
+        } else {
+            statement.bindString(index, value);
+        }
     }
 
     /**
@@ -120,6 +981,869 @@ public class DatabaseHelper extends SQLiteOpenHelper {
      */
     public Cursor getAllEntries() {
         SQLiteDatabase db = this.getReadableDatabase();
-        return db.rawQuery("SELECT id as _id, site_name, date, coordinates, description, terrain_type, observations, condition FROM " + TABLE_ENTRIES, null);
+        return db.rawQuery("SELECT " + ENTRY_COLUMNS + " FROM " + TABLE_ENTRIES, null);
+    }
+
+    /**
+     * Récupère une page d'entrées, de la plus récente à la plus ancienne, par pagination sur la clé `id`.
+     * La requête parcourt directement l'index de la clé primaire : son coût dépend de la taille de la page
+     * et non du nombre total de lignes, contrairement à un `OFFSET` ou à un `getCount()` sur toute la table.
+     *
+     * @param beforeId Identifiant de la dernière entrée déjà chargée, ou {@link #FIRST_PAGE} pour la première page.
+     * @param limit    Nombre maximal d'entrées à retourner.
+     * @return Les entrées dont l'identifiant est strictement inférieur à `beforeId`, triées par `id` décroissant.
+     */
+    public List<Entry> getEntriesPage(long beforeId, int limit) {
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.rawQuery("SELECT " + ENTRY_COLUMNS + " FROM " + TABLE_ENTRIES +
+                        " WHERE " + COLUMN_ID + " < ? ORDER BY " + COLUMN_ID + " DESC LIMIT ?",
+                new String[]{String.valueOf(beforeId), String.valueOf(limit)});
+        return readEntries(cursor);
+    }
+
+    /**
+     * Récupère une entrée par son identifiant.
+     *
+     * @param id Identifiant de l'entrée.
+     * @return L'entrée, ou `null` si elle n'existe pas.
+     */
+    public Entry getEntry(long id) {
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.rawQuery("SELECT " + ENTRY_COLUMNS + " FROM " + TABLE_ENTRIES + " WHERE " + COLUMN_ID + " = ?",
+                new String[]{String.valueOf(id)});
+        List<Entry> entries = readEntries(cursor);
+        return entries.isEmpty() ? null : entries.get(0);
+    }
+
+    /**
+     * Enregistre un lot de positions de la trace GPS dans une seule transaction, avec une requête précompilée.
+     *
+     * @param points Positions à enregistrer, telles que livrées par le service de localisation.
+     * @return Le nombre de positions enregistrées.
+     */
+    public int insertTrackPoints(List<TrackPoint> points) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        SQLiteStatement statement = db.compileStatement("INSERT INTO " + TABLE_TRACK_POINTS + " (" +
+                COLUMN_TRACK_TIME + ", " + COLUMN_LATITUDE + ", " + COLUMN_LONGITUDE + ", " +
+                COLUMN_TRACK_ACCURACY + ", " + COLUMN_TRACK_SPEED + ") VALUES (?, ?, ?, ?, ?)");
+        int inserted = 0;
+        db.beginTransaction();
+        try {
+            for (TrackPoint point : points) {
+                statement.clearBindings();
+                statement.bindLong(1, point.getTimeMillis());
+                statement.bindDouble(2, point.getLatitude());
+                statement.bindDouble(3, point.getLongitude());
+                if (point.getAccuracy() != null) {
+                    statement.bindDouble(4, point.getAccuracy());
+                }
+                if (point.getSpeed() != null) {
+                    statement.bindDouble(5, point.getSpeed());
+                }
+                if (statement.executeInsert() != -1) {
+                    inserted++;
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            statement.close();
+        }
+        return inserted;
+    }
+
+    /**
+     * Recherche le point de trace le plus proche d'un instant : le dernier point avant et le premier point après
+     * sont lus chacun par une seule descente dans l'index `idx_track_points_time`.
+     *
+     * @param timeMillis Instant recherché, en millisecondes depuis l'époque Unix.
+     * @param maxGapMillis Écart maximal accepté entre l'instant et le point, en millisecondes.
+     * @return Le point le plus proche, ou `null` si aucun point n'est assez proche.
+     */
+    public TrackPoint getNearestTrackPoint(long timeMillis, long maxGapMillis) {
+        SQLiteDatabase db = this.getReadableDatabase();
+        String columns = COLUMN_ID + ", " + COLUMN_TRACK_TIME + ", " + COLUMN_LATITUDE + ", " + COLUMN_LONGITUDE + ", " +
+                COLUMN_TRACK_ACCURACY + ", " + COLUMN_TRACK_SPEED;
+        String time = String.valueOf(timeMillis);
+        TrackPoint before = readTrackPoint(db.rawQuery("SELECT " + columns + " FROM " + TABLE_TRACK_POINTS +
+                " WHERE " + COLUMN_TRACK_TIME + " <= ? ORDER BY " + COLUMN_TRACK_TIME + " DESC LIMIT 1", new String[]{time}));
+        TrackPoint after = readTrackPoint(db.rawQuery("SELECT " + columns + " FROM " + TABLE_TRACK_POINTS +
+                " WHERE " + COLUMN_TRACK_TIME + " > ? ORDER BY " + COLUMN_TRACK_TIME + " LIMIT 1", new String[]{time}));
+        TrackPoint nearest = before;
+        if (after != null && (before == null ||
+                after.getTimeMillis() - timeMillis < timeMillis - before.getTimeMillis())) {
+            nearest = after;
+        }
+        if (nearest == null || Math.abs(nearest.getTimeMillis() - timeMillis) > maxGapMillis) {
+            return null;
+        }
+        return nearest;
+    }
+
+    /**
+     * Décode la première ligne d'un curseur de points de trace, puis le ferme.
+     *
+     * @param cursor Curseur sur les colonnes id, time_ms, latitude, longitude, accuracy, speed.
+     * @return Le point lu, ou `null` si le curseur est vide.
+     */
+    private static TrackPoint readTrackPoint(Cursor cursor) {
+        try {
+            if (!cursor.moveToFirst()) {
+                return null;
+            }
+            return new TrackPoint(cursor.getLong(0), cursor.getLong(1), cursor.getDouble(2), cursor.getDouble(3),
+                    cursor.isNull(4) ? null : (float) cursor.getDouble(4),
+                    cursor.isNull(5) ? null : (float) cursor.getDouble(5));
+        } finally {
+            cursor.close();
+        }
+    }
+
+    /**
+     * Enregistre la référence d'une photo jointe à une entrée.
+     *
+     * @param attachment Pièce jointe dont le fichier est déjà écrit (son identifiant est ignoré).
+     * @return L'identifiant de la ligne insérée, ou -1 en cas d'échec.
+     */
+    public long insertAttachment(Attachment attachment) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        ContentValues values = new ContentValues();
+        values.put(COLUMN_ATTACHMENT_ENTRY_ID, attachment.getEntryId());
+        values.put(COLUMN_ATTACHMENT_FILE, attachment.getFileName());
+        values.put(COLUMN_ATTACHMENT_WIDTH, attachment.getWidth());
+        values.put(COLUMN_ATTACHMENT_HEIGHT, attachment.getHeight());
+        values.put(COLUMN_ATTACHMENT_SIZE, attachment.getSizeBytes());
+        values.put(COLUMN_ATTACHMENT_CREATED, attachment.getCreatedMillis());
+        return db.insert(TABLE_ATTACHMENTS, null, values);
+    }
+
+    /**
+     * Récupère les photos jointes à une entrée, dans leur ordre d'ajout.
+     *
+     * @param entryId Identifiant de l'entrée.
+     * @return Les pièces jointes de l'entrée, éventuellement vide.
+     */
+    public List<Attachment> getAttachments(long entryId) {
+        return readAttachments(this.getReadableDatabase().rawQuery("SELECT " + ATTACHMENT_COLUMNS + " FROM " + TABLE_ATTACHMENTS +
+                " WHERE " + COLUMN_ATTACHMENT_ENTRY_ID + " = ? ORDER BY " + COLUMN_ID, new String[]{String.valueOf(entryId)}));
+    }
+
+    /**
+     * Récupère la première photo jointe à une entrée, utilisée comme vignette dans la liste.
+     * La lecture se limite à une descente dans l'index `idx_attachments_entry`.
+     *
+     * @param entryId Identifiant de l'entrée.
+     * @return La première pièce jointe, ou `null` si l'entrée n'a pas de photo.
+     */
+    public Attachment getFirstAttachment(long entryId) {
+        List<Attachment> attachments = readAttachments(this.getReadableDatabase().rawQuery("SELECT " + ATTACHMENT_COLUMNS +
+                " FROM " + TABLE_ATTACHMENTS + " WHERE " + COLUMN_ATTACHMENT_ENTRY_ID + " = ? ORDER BY " + COLUMN_ID + " LIMIT 1",
+                new String[]{String.valueOf(entryId)}));
+        return attachments.isEmpty() ? null : attachments.get(0);
+    }
+
+    /**
+     * Récupère les noms de tous les fichiers référencés par la table des pièces jointes.
+     *
+     * @return Les noms de fichiers connus.
+     */
+    public Set<String> getAttachmentFileNames() {
+        Set<String> names = new HashSet<>();
+        try (Cursor cursor = this.getReadableDatabase().rawQuery("SELECT " + COLUMN_ATTACHMENT_FILE + " FROM " + TABLE_ATTACHMENTS, null)) {
+            while (cursor.moveToNext()) {
+                names.add(cursor.getString(0));
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Compte les lignes des tables principales, pour l'écran de diagnostic.
+     *
+     * @return Le nombre de lignes de chaque table, dans un ordre stable.
+     */
+    public Map<String, Long> getRowCounts() {
+        SQLiteDatabase db = this.getReadableDatabase();
+        Map<String, Long> counts = new LinkedHashMap<>();
+        for (String table : new String[]{TABLE_ENTRIES, TABLE_ENTRY_CHANGES, TABLE_TRACK_POINTS, TABLE_ATTACHMENTS}) {
+            counts.put(table, DatabaseUtils.queryNumEntries(db, table));
+        }
+        return counts;
+    }
+
+    /**
+     * Mesure la place occupée par la base : fichier principal et journal WAL, dont les pages n'ont pas encore été recopiées.
+     *
+     * @return Les tailles en octets, sous les clés `file_bytes` et `wal_bytes`.
+     */
+    public Map<String, Long> getStorageSizes() {
+        File file = new File(this.getReadableDatabase().getPath());
+        Map<String, Long> sizes = new LinkedHashMap<>();
+        sizes.put("file_bytes", file.length());
+        sizes.put("wal_bytes", new File(file.getPath() + "-wal").length());
+        return sizes;
+    }
+
+    /**
+     * Décode un curseur de pièces jointes, puis le ferme.
+     *
+     * @param cursor Curseur sur {@link #ATTACHMENT_COLUMNS}.
+     * @return Les pièces jointes lues.
+     */
+    private static List<Attachment> readAttachments(Cursor cursor) {
+        List<Attachment> attachments = new ArrayList<>();
+        try {
+            while (cursor.moveToNext()) {
+                attachments.add(new Attachment(cursor.getLong(0), cursor.getLong(1), cursor.getString(2),
+                        cursor.getInt(3), cursor.getInt(4), cursor.getLong(5), cursor.getLong(6)));
+            }
+        } finally {
+            cursor.close();
+        }
+        return attachments;
+    }
+
+    /**
+     * Récupère les plus anciennes modifications non encore synchronisées, avec le contenu actuel des entrées concernées.
+     * Le coût est proportionnel au nombre de modifications lues, et non à la taille de la table.
+     *
+     * @param limit Nombre maximal de modifications à retourner.
+     * @return Les modifications, par numéro d'ordre croissant.
+     */
+    public List<EntryChange> getPendingChanges(int limit) {
+        SQLiteDatabase db = this.getReadableDatabase();
+        List<EntryChange> changes = new ArrayList<>();
+        StringBuilder upsertIds = new StringBuilder();
+        Cursor cursor = db.rawQuery("SELECT " + COLUMN_CHANGE_SEQ + ", " + COLUMN_CHANGE_ENTRY_ID + ", " + COLUMN_CHANGE_OPERATION +
+                " FROM " + TABLE_ENTRY_CHANGES + " ORDER BY " + COLUMN_CHANGE_SEQ + " LIMIT ?",
+                new String[]{String.valueOf(limit)});
+        try {
+            while (cursor.moveToNext()) {
+                long entryId = cursor.getLong(1);
+                boolean deleted = EntryChange.OPERATION_DELETE.equals(cursor.getString(2));
+                changes.add(new EntryChange(cursor.getLong(0), entryId, deleted, null));
+                if (!deleted) {
+                    upsertIds.append(upsertIds.length() == 0 ? "" : ",").append(entryId);
+                }
+            }
+        } finally {
+            cursor.close();
+        }
+        if (upsertIds.length() == 0) {
+            return changes;
+        }
+
+        // Contenu actuel des entrées modifiées, lu en une seule requête par clé primaire
+        Map<Long, Entry> entries = new HashMap<>();
+        for (Entry entry : readEntries(db.rawQuery("SELECT " + ENTRY_COLUMNS + " FROM " + TABLE_ENTRIES +
+                " WHERE " + COLUMN_ID + " IN (" + upsertIds + ")", null))) {
+            entries.put(entry.getId(), entry);
+        }
+        List<EntryChange> resolved = new ArrayList<>(changes.size());
+        for (EntryChange change : changes) {
+            if (change.isDeleted()) {
+                resolved.add(change);
+            } else {
+                // Une entrée disparue entre les deux lectures est transmise comme supprimée
+                Entry entry = entries.get(change.getEntryId());
+                resolved.add(new EntryChange(change.getSeq(), change.getEntryId(), entry == null, entry));
+            }
+        }
+        return resolved;
+    }
+
+    /**
+     * Retire du journal les modifications synchronisées.
+     * Une entrée modifiée de nouveau pendant l'envoi a reçu un numéro d'ordre plus grand et reste donc à synchroniser.
+     *
+     * @param upToSeq Numéro d'ordre de la dernière modification acceptée par le serveur.
+     * @return Le nombre de modifications retirées.
+     */
+    public int acknowledgeChanges(long upToSeq) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        return db.delete(TABLE_ENTRY_CHANGES, COLUMN_CHANGE_SEQ + " <= ?", new String[]{String.valueOf(upToSeq)});
+    }
+
+    /**
+     * Récupère les plus anciennes entrées pouvant être archivées : datées d'avant `cutoffEpochMillis` et déjà synchronisées,
+     * c'est-à-dire sans modification en attente dans le journal. Une entrée dont la date n'a pas pu être lue n'est jamais archivée.
+     * La lecture suit l'index `idx_entries_date_epoch` et l'index unique du journal.
+     *
+     * @param cutoffEpochMillis Date limite, en millisecondes depuis l'époque Unix (exclue).
+     * @param limit             Nombre maximal d'entrées à retourner.
+     * @return Les entrées, de la plus ancienne à la plus récente.
+     */
+    public List<Entry> getArchivableEntries(long cutoffEpochMillis, int limit) {
+        return readEntries(this.getReadableDatabase().rawQuery("SELECT " + ENTRY_COLUMNS + " FROM " + TABLE_ENTRIES +
+                " WHERE " + COLUMN_DATE_EPOCH + " < ? AND NOT EXISTS (SELECT 1 FROM " + TABLE_ENTRY_CHANGES + " c WHERE c." +
+                COLUMN_CHANGE_ENTRY_ID + " = " + TABLE_ENTRIES + "." + COLUMN_ID + ")" +
+                " ORDER BY " + COLUMN_DATE_EPOCH + ", " + COLUMN_ID + " LIMIT ?",
+                new String[]{String.valueOf(cutoffEpochMillis), String.valueOf(limit)}));
+    }
+
+    /**
+     * Supprime des entrées qui viennent d'être archivées, dans une seule transaction.
+     * Une entrée modifiée depuis sa lecture (modification en attente dans le journal) est conservée.
+     * Les suppressions consignées par le déclencheur du journal sont aussitôt retirées : l'archivage est local
+     * et ne doit pas effacer les relevés du serveur.
+     *
+     * @param ids Identifiants des entrées archivées.
+     * @return Les identifiants effectivement supprimés.
+     */
+    public List<Long> deleteArchivedEntries(List<Long> ids) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        List<Long> deleted = new ArrayList<>(ids.size());
+        SQLiteStatement delete = db.compileStatement("DELETE FROM " + TABLE_ENTRIES + " WHERE " + COLUMN_ID + " = ? " +
+                "AND NOT EXISTS (SELECT 1 FROM " + TABLE_ENTRY_CHANGES + " WHERE " + COLUMN_CHANGE_ENTRY_ID + " = ?1)");
+        SQLiteStatement forget = db.compileStatement("DELETE FROM " + TABLE_ENTRY_CHANGES + " WHERE " +
+                COLUMN_CHANGE_ENTRY_ID + " = ?");
+        db.beginTransaction();
+        try {
+            for (long id : ids) {
+                delete.bindLong(1, id);
+                if (delete.executeUpdateDelete() > 0) {
+                    forget.bindLong(1, id);
+                    forget.executeUpdateDelete();
+                    deleted.add(id);
+                }
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+            delete.close();
+            forget.close();
+        }
+        return deleted;
+    }
+
+    /**
+     * @return `true` si la base est en mode `auto_vacuum = INCREMENTAL` : les pages libérées peuvent alors être rendues
+     * au système par {@link #incrementalVacuum(int)}, sans réécrire tout le fichier.
+     */
+    public boolean isIncrementalVacuumEnabled() {
+        return DatabaseUtils.longForQuery(this.getReadableDatabase(), "PRAGMA auto_vacuum", null) == 2;
+    }
+
+    /**
+     * Passe la base en mode `auto_vacuum = INCREMENTAL`. Le mode ne s'applique à une base existante qu'après
+     * un `VACUUM` complet, qui réécrit tout le fichier : l'opération n'est faite qu'une fois, hors de toute transaction,
+     * et bloque les autres écritures pendant sa durée.
+     */
+    public void enableIncrementalVacuum() {
+        SQLiteDatabase db = this.getWritableDatabase();
+        db.execSQL("PRAGMA auto_vacuum = INCREMENTAL");
+        db.execSQL("VACUUM");
+    }
+
+    /**
+     * @return Le nombre de pages libres du fichier, réutilisables ou restituables par {@link #incrementalVacuum(int)}.
+     */
+    public long getFreePageCount() {
+        return DatabaseUtils.longForQuery(this.getReadableDatabase(), "PRAGMA freelist_count", null);
+    }
+
+    /**
+     * Rend au système une partie des pages libres en tronquant le fichier.
+     * Le travail est borné par `maxPages` : l'appelant enchaîne de courts appels plutôt qu'un long verrou.
+     *
+     * @param maxPages Nombre maximal de pages restituées.
+     * @return Le nombre de pages libres restantes.
+     */
+    public long incrementalVacuum(int maxPages) {
+        SQLiteDatabase db = this.getWritableDatabase();
+        // Chaque pas de la requête libère une page : getCount() l'exécute jusqu'au bout
+        try (Cursor cursor = db.rawQuery("PRAGMA incremental_vacuum(" + maxPages + ")", null)) {
+            cursor.getCount();
+        }
+        return getFreePageCount();
+    }
+
+    /**
+     * @return Le nombre d'entrées modifiées depuis la dernière synchronisation.
+     */
+    public long countPendingChanges() {
+        return DatabaseUtils.queryNumEntries(this.getReadableDatabase(), TABLE_ENTRY_CHANGES);
+    }
+
+    /**
+     * @return Le nombre d'entrées par type de terrain (une valeur absente est comptée sous la clé vide).
+     */
+    public Map<String, Integer> getCountsByTerrainType() {
+        return countBy(COLUMN_TERRAIN_TYPE);
+    }
+
+    /**
+     * @return Le nombre d'entrées par condition (une valeur absente est comptée sous la clé vide).
+     */
+    public Map<String, Integer> getCountsByCondition() {
+        return countBy(COLUMN_CONDITION);
+    }
+
+    /**
+     * Compte les entrées par valeur d'une colonne. Les colonnes regroupées sont en tête d'un index composite,
+     * ce qui permet à SQLite de compter en parcourant l'index plutôt que la table.
+     *
+     * @param column Colonne de regroupement (constante de cette classe).
+     * @return Le nombre d'entrées par valeur.
+     */
+    private Map<String, Integer> countBy(String column) {
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.rawQuery("SELECT IFNULL(" + column + ", ''), COUNT(*) FROM " + TABLE_ENTRIES +
+                " GROUP BY " + column, null);
+        Map<String, Integer> counts = new HashMap<>();
+        try {
+            while (cursor.moveToNext()) {
+                counts.merge(cursor.getString(0), cursor.getInt(1), Integer::sum);
+            }
+        } finally {
+            cursor.close();
+        }
+        return counts;
+    }
+
+    /**
+     * Récupère une fenêtre d'entrées dans l'ordre croissant des identifiants, à partir d'une position donnée.
+     * Utilisée par les traitements en flux (export) pour parcourir toute la table par fenêtres de taille fixe.
+     *
+     * @param afterId Identifiant de la dernière entrée déjà traitée, ou 0 pour commencer au début.
+     * @param limit   Nombre maximal d'entrées à retourner.
+     * @return Les entrées dont l'identifiant est strictement supérieur à `afterId`, triées par `id` croissant.
+     */
+    public List<Entry> getEntriesFrom(long afterId, int limit) {
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.rawQuery("SELECT " + ENTRY_COLUMNS + " FROM " + TABLE_ENTRIES +
+                        " WHERE " + COLUMN_ID + " > ? ORDER BY " + COLUMN_ID + " LIMIT ?",
+                new String[]{String.valueOf(afterId), String.valueOf(limit)});
+        return readEntries(cursor);
+    }
+
+    /**
+     * Récupère les entrées dont un champ propre indexé a la valeur donnée, de la plus récente à la plus ancienne.
+     * La requête parcourt l'index `idx_entries_field_<clé>` créé par {@link #ensureFieldIndexes(List)}.
+     * Un champ numérique est comparé comme nombre : « 12 » trouve aussi une valeur enregistrée `12.0`.
+     *
+     * @param templateIds Modèles déclarant ce champ.
+     * @param key         Clé du champ, contrôlée par {@link FormPlan}.
+     * @param numeric     `true` si le champ est numérique.
+     * @param value       Valeur recherchée.
+     * @param limit       Nombre maximal d'entrées à retourner.
+     * @return Les entrées correspondantes, triées par `id` décroissant.
+     */
+    public List<Entry> getEntriesByFieldValue(List<String> templateIds, String key, boolean numeric, String value,
+                                              int limit) {
+        if (templateIds.isEmpty()) {
+            return new ArrayList<>();
+        }
+        StringBuilder placeholders = new StringBuilder();
+        String[] args = new String[templateIds.size() + 2];
+        for (int i = 0; i < templateIds.size(); i++) {
+            placeholders.append(i == 0 ? "?" : ", ?");
+            args[i] = templateIds.get(i);
+        }
+        args[templateIds.size()] = value;
+        args[templateIds.size() + 1] = String.valueOf(limit);
+        Cursor cursor = this.getReadableDatabase().rawQuery("SELECT " + ENTRY_COLUMNS + " FROM " + TABLE_ENTRIES +
+                " WHERE " + COLUMN_TEMPLATE_ID + " IN (" + placeholders + ") AND " + fieldExpression(key) + " = " +
+                (numeric ? "CAST(? AS REAL)" : "?") + " ORDER BY " + COLUMN_ID + " DESC LIMIT ?", args);
+        return readEntries(cursor);
+    }
+
+    /**
+     * Récupère les entrées plus récentes qu'une entrée déjà affichée, de la plus récente à la plus ancienne.
+     * Utilisée pour compléter une liste après une insertion : le coût dépend du nombre de nouvelles lignes seulement.
+     *
+     * @param afterId Identifiant de l'entrée la plus récente déjà chargée.
+     * @param limit   Nombre maximal d'entrées à retourner.
+     * @return Les entrées dont l'identifiant est strictement supérieur à `afterId`, triées par `id` décroissant.
+     */
+    public List<Entry> getEntriesAfter(long afterId, int limit) {
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor = db.rawQuery("SELECT " + ENTRY_COLUMNS + " FROM " + TABLE_ENTRIES +
+                        " WHERE " + COLUMN_ID + " > ? ORDER BY " + COLUMN_ID + " DESC LIMIT ?",
+                new String[]{String.valueOf(afterId), String.valueOf(limit)});
+        return readEntries(cursor);
+    }
+
+    /**
+     * Récupère une page d'entrées triées par date décroissante, par pagination sur le couple (`date_epoch`, `id`).
+     * L'identifiant départage les entrées ayant la même date afin qu'aucune ligne ne soit sautée ni répétée ;
+     * la requête parcourt l'index `idx_entries_date_epoch`. Les entrées dont la date n'a pas pu être interprétée
+     * n'apparaissent pas dans ce tri.
+     *
+     * @param beforeDateEpoch Date (`date_epoch`) de la dernière entrée déjà chargée, ou `null` pour la première page.
+     * @param beforeId        Identifiant de la dernière entrée déjà chargée.
+     * @param limit           Nombre maximal d'entrées à retourner.
+     * @return Les entrées situées après la borne (`beforeDateEpoch`, `beforeId`) dans l'ordre décroissant.
+     */
+    public List<Entry> getEntriesPageByDate(Long beforeDateEpoch, long beforeId, int limit) {
+        SQLiteDatabase db = this.getReadableDatabase();
+        Cursor cursor;
+        if (beforeDateEpoch == null) {
+            cursor = db.rawQuery("SELECT " + ENTRY_COLUMNS + " FROM " + TABLE_ENTRIES +
+                            " WHERE " + COLUMN_DATE_EPOCH + " IS NOT NULL" +
+                            " ORDER BY " + COLUMN_DATE_EPOCH + " DESC, " + COLUMN_ID + " DESC LIMIT ?",
+                    new String[]{String.valueOf(limit)});
+        } else {
+            String epoch = String.valueOf(beforeDateEpoch);
+            cursor = db.rawQuery("SELECT " + ENTRY_COLUMNS + " FROM " + TABLE_ENTRIES +
+                            " WHERE " + COLUMN_DATE_EPOCH + " < ? OR (" + COLUMN_DATE_EPOCH + " = ? AND " + COLUMN_ID + " < ?)" +
+                            " ORDER BY " + COLUMN_DATE_EPOCH + " DESC, " + COLUMN_ID + " DESC LIMIT ?",
+                    new String[]{epoch, epoch, String.valueOf(beforeId), String.valueOf(limit)});
+        }
+        return readEntries(cursor);
+    }
+
+    /**
+     * Récupère les entrées d'une période, filtrées par condition et/ou par type de terrain,
+     * de la plus récente à la plus ancienne (par exemple « tous les sites endommagés ce mois-ci »).
+     * Les index composites (`condition`, `date_epoch`) et (`terrain_type`, `date_epoch`) permettent à SQLite
+     * de se positionner directement sur la plage demandée au lieu de parcourir toute la table.
+     *
+     * @param condition   Condition recherchée, ou `null` pour ne pas filtrer.
+     * @param terrainType Type de terrain recherché, ou `null` pour ne pas filtrer.
+     * @param fromEpoch   Début de la période (inclus), en millisecondes depuis l'époque Unix.
+     * @param toEpoch     Fin de la période (exclue), en millisecondes depuis l'époque Unix.
+     * @param limit       Nombre maximal d'entrées à retourner.
+     * @return Les entrées correspondantes.
+     */
+    public List<Entry> getEntriesFiltered(String condition, String terrainType, long fromEpoch, long toEpoch, int limit) {
+        SQLiteDatabase db = this.getReadableDatabase();
+        StringBuilder where = new StringBuilder(COLUMN_DATE_EPOCH + " >= ? AND " + COLUMN_DATE_EPOCH + " < ?");
+        List<String> args = new ArrayList<>();
+        args.add(String.valueOf(fromEpoch));
+        args.add(String.valueOf(toEpoch));
+        if (condition != null) {
+            where.append(" AND ").append(COLUMN_CONDITION).append(" = ?");
+            args.add(condition);
+        }
+        if (terrainType != null) {
+            where.append(" AND ").append(COLUMN_TERRAIN_TYPE).append(" = ?");
+            args.add(terrainType);
+        }
+        args.add(String.valueOf(limit));
+        Cursor cursor = db.rawQuery("SELECT " + ENTRY_COLUMNS + " FROM " + TABLE_ENTRIES + " WHERE " + where +
+                " ORDER BY " + COLUMN_DATE_EPOCH + " DESC, " + COLUMN_ID + " DESC LIMIT ?", args.toArray(new String[0]));
+        return readEntries(cursor);
+    }
+
+    /**
+     * Récupère les entrées situées dans un rectangle géographique.
+     * Chaque ligne de la grille {@link GeoGrid} couverte par le rectangle devient un parcours de plage sur l'index
+     * `idx_entries_geo_cell` ; seules les lignes candidates sont ensuite comparées aux bornes exactes.
+     * Au-delà de {@link #MAX_GRID_ROWS_PER_QUERY} lignes de grille, une seule plage couvrant toute la bande de latitude est utilisée.
+     *
+     * @param latMin Latitude minimale, en degrés.
+     * @param latMax Latitude maximale, en degrés.
+     * @param lonMin Longitude minimale, en degrés.
+     * @param lonMax Longitude maximale, en degrés.
+     * @param limit  Nombre maximal d'entrées à retourner.
+     * @return Les entrées situées dans le rectangle, de la plus récente à la plus ancienne.
+     */
+    public List<Entry> getEntriesInBoundingBox(double latMin, double latMax, double lonMin, double lonMax, int limit) {
+        List<String> args = new ArrayList<>();
+        String where = boundingBoxWhere(latMin, latMax, lonMin, lonMax, args);
+        args.add(String.valueOf(limit));
+
+        Cursor cursor = this.getReadableDatabase().rawQuery("SELECT " + ENTRY_COLUMNS + " FROM " + TABLE_ENTRIES +
+                " WHERE " + where + " ORDER BY " + COLUMN_ID + " DESC LIMIT ?", args.toArray(new String[0]));
+        return readEntries(cursor);
+    }
+
+    /**
+     * Construit la condition sélectionnant les entrées d'un rectangle géographique.
+     * Chaque ligne de la grille {@link GeoGrid} couverte par le rectangle devient un parcours de plage sur l'index
+     * `idx_entries_geo_cell` ; seules les lignes candidates sont ensuite comparées aux bornes exactes.
+     *
+     * @param latMin Latitude minimale, en degrés.
+     * @param latMax Latitude maximale, en degrés.
+     * @param lonMin Longitude minimale, en degrés.
+     * @param lonMax Longitude maximale, en degrés.
+     * @param args   Liste à laquelle sont ajoutés les paramètres de la condition.
+     * @return La condition, à placer après `WHERE`.
+     */
+    private static String boundingBoxWhere(double latMin, double latMax, double lonMin, double lonMax, List<String> args) {
+        long rowMin = GeoGrid.rowOf(latMin);
+        long rowMax = GeoGrid.rowOf(latMax);
+        long columnMin = GeoGrid.columnOf(lonMin);
+        long columnMax = GeoGrid.columnOf(lonMax);
+
+        StringBuilder where = new StringBuilder("(");
+        if (rowMax - rowMin + 1 > MAX_GRID_ROWS_PER_QUERY) {
+            where.append(COLUMN_GEO_CELL).append(" BETWEEN ? AND ?");
+            args.add(String.valueOf(rowMin * GeoGrid.COLUMNS));
+            args.add(String.valueOf(rowMax * GeoGrid.COLUMNS + GeoGrid.COLUMNS - 1));
+        } else {
+            for (long row = rowMin; row <= rowMax; row++) {
+                if (row > rowMin) {
+                    where.append(" OR ");
+                }
+                where.append(COLUMN_GEO_CELL).append(" BETWEEN ? AND ?");
+                args.add(String.valueOf(row * GeoGrid.COLUMNS + columnMin));
+                args.add(String.valueOf(row * GeoGrid.COLUMNS + columnMax));
+            }
+        }
+        where.append(") AND ").append(COLUMN_LATITUDE).append(" BETWEEN ? AND ? AND ")
+                .append(COLUMN_LONGITUDE).append(" BETWEEN ? AND ?");
+        args.add(String.valueOf(latMin));
+        args.add(String.valueOf(latMax));
+        args.add(String.valueOf(lonMin));
+        args.add(String.valueOf(lonMax));
+        return where.toString();
+    }
+
+    /**
+     * Récupère les entrées situées à moins d'une certaine distance d'une position, de la plus proche à la plus éloignée.
+     * Tous les candidats du rectangle englobant sont d'abord lus sans limite, mais seulement leur identifiant et leur
+     * position : ils sont filtrés et triés par distance exacte, et la limite n'est appliquée qu'ensuite, ce qui garantit
+     * que les entrées retournées sont bien les plus proches. Seules celles-ci sont enfin lues en entier.
+     *
+     * @param latitude     Latitude du centre, en degrés.
+     * @param longitude    Longitude du centre, en degrés.
+     * @param radiusMeters Rayon de recherche, en mètres.
+     * @param limit        Nombre maximal d'entrées à retourner.
+     * @return Les `limit` entrées les plus proches situées dans le cercle, triées par distance croissante.
+     */
+    public List<Entry> getEntriesWithinRadius(double latitude, double longitude, double radiusMeters, int limit) {
+        double[] box = GeoGrid.boundingBox(latitude, longitude, radiusMeters);
+        List<String> args = new ArrayList<>();
+        String where = boundingBoxWhere(box[0], box[1], box[2], box[3], args);
+        SQLiteDatabase db = this.getReadableDatabase();
+
+        // Première passe : positions des candidats, pour trier le cercle entier avant de tronquer
+        List<double[]> nearest = new ArrayList<>();
+        try (Cursor cursor = db.rawQuery("SELECT " + COLUMN_ID + ", " + COLUMN_LATITUDE + ", " + COLUMN_LONGITUDE +
+                " FROM " + TABLE_ENTRIES + " WHERE " + where, args.toArray(new String[0]))) {
+            while (cursor.moveToNext()) {
+                double distance = GeoGrid.distanceMeters(latitude, longitude, cursor.getDouble(1), cursor.getDouble(2));
+                if (distance <= radiusMeters) {
+                    nearest.add(new double[]{distance, cursor.getLong(0)});
+                }
+            }
+        }
+        nearest.sort((a, b) -> a[0] != b[0] ? Double.compare(a[0], b[0]) : Double.compare(b[1], a[1]));
+        if (nearest.size() > limit) {
+            nearest = nearest.subList(0, Math.max(0, limit));
+        }
+        if (nearest.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        // Seconde passe : contenu des seules entrées retenues
+        return readEntriesInOrder(db, nearest);
+    }
+
+    /**
+     * Lit des entrées par clé primaire, en une seule requête, et les retourne dans l'ordre donné.
+     * Une entrée supprimée entre-temps est simplement omise.
+     *
+     * @param db     Base ouverte.
+     * @param ranked Entrées à lire, dans l'ordre voulu, sous la forme {clé de tri, identifiant}.
+     * @return Les entrées lues, dans l'ordre de `ranked`.
+     */
+    private static List<Entry> readEntriesInOrder(SQLiteDatabase db, List<double[]> ranked) {
+        StringBuilder ids = new StringBuilder();
+        for (double[] candidate : ranked) {
+            ids.append(ids.length() == 0 ? "" : ",").append((long) candidate[1]);
+        }
+        Map<Long, Entry> entries = new HashMap<>();
+        for (Entry entry : readEntries(db.rawQuery("SELECT " + ENTRY_COLUMNS + " FROM " + TABLE_ENTRIES +
+                " WHERE " + COLUMN_ID + " IN (" + ids + ")", null))) {
+            entries.put(entry.getId(), entry);
+        }
+        List<Entry> result = new ArrayList<>(ranked.size());
+        for (double[] candidate : ranked) {
+            Entry entry = entries.get((long) candidate[1]);
+            if (entry != null) {
+                result.add(entry);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Recherche les entrées dont la description ou les observations contiennent tous les mots saisis.
+     * Chaque mot est traité comme un préfixe (« fiss » trouve « fissure ») et les accents sont ignorés.
+     * Les résultats sont classés par pertinence BM25 : par la fonction `rank` de FTS5, ou avec FTS4 par
+     * {@link #bm25(byte[])}, calculé en Java à partir des statistiques `matchinfo` des documents correspondants
+     * les plus récents (au plus {@link #FTS4_CANDIDATES_PER_RESULT} par résultat demandé).
+     * À pertinence égale, l'entrée la plus récente passe en premier.
+     *
+     * @param query Texte saisi par l'utilisateur.
+     * @param limit Nombre maximal d'entrées à retourner.
+     * @return Les entrées correspondantes, de la plus pertinente à la moins pertinente,
+     * ou une liste vide si le texte ne contient aucun mot.
+     */
+    public List<Entry> searchEntries(String query, int limit) {
+        String match = toMatchExpression(query);
+        if (match == null) {
+            return new ArrayList<>();
+        }
+        SQLiteDatabase db = this.getReadableDatabase();
+        if (isFts5(db)) {
+            return readEntries(db.rawQuery("SELECT " + ENTRY_COLUMNS + " FROM (SELECT rowid AS fts_id, rank AS fts_rank FROM " +
+                            TABLE_ENTRIES_FTS + " WHERE " + TABLE_ENTRIES_FTS + " MATCH ? ORDER BY rank, rowid DESC LIMIT ?) " +
+                            "JOIN " + TABLE_ENTRIES + " ON " + COLUMN_ID + " = fts_id ORDER BY fts_rank, " + COLUMN_ID + " DESC",
+                    new String[]{match, String.valueOf(limit)}));
+        }
+
+        // FTS4 n'a pas de classement intégré : les candidats les plus récents sont notés, puis seuls les meilleurs sont lus.
+        // FTS4 parcourt lui-même les documents par docid décroissant : la limite arrête la lecture, et matchinfo
+        // n'est calculé que pour les candidats retenus.
+        List<double[]> ranked = new ArrayList<>();
+        long candidates = (long) Math.max(0, limit) * FTS4_CANDIDATES_PER_RESULT;
+        try (Cursor cursor = db.rawQuery("SELECT docid, matchinfo(" + TABLE_ENTRIES_FTS + ", '" + MATCHINFO_FORMAT + "') FROM " +
+                TABLE_ENTRIES_FTS + " WHERE " + TABLE_ENTRIES_FTS + " MATCH ? ORDER BY docid DESC LIMIT ?",
+                new String[]{match, String.valueOf(candidates)})) {
+            while (cursor.moveToNext()) {
+                ranked.add(new double[]{bm25(cursor.getBlob(1)), cursor.getLong(0)});
+            }
+        }
+        ranked.sort((a, b) -> a[0] != b[0] ? Double.compare(b[0], a[0]) : Double.compare(b[1], a[1]));
+        if (ranked.size() > limit) {
+            ranked = ranked.subList(0, Math.max(0, limit));
+        }
+        if (ranked.isEmpty()) {
+            return new ArrayList<>();
+        }
+        return readEntriesInOrder(db, ranked);
+    }
+
+    /**
+     * Calcule le score BM25 d'un document à partir de la sortie de `matchinfo` au format {@link #MATCHINFO_FORMAT} :
+     * nombre d'expressions (p) et de colonnes (c), nombre de documents (n), longueur moyenne (a) et longueur du document (l)
+     * par colonne, puis pour chaque expression et chaque colonne le triplet (x) occurrences dans le document,
+     * occurrences dans l'index, documents contenant l'expression. Les colonnes ont le même poids, comme pour `bm25()` de FTS5.
+     * L'IDF utilisée reste positive même pour un mot présent dans plus de la moitié des documents.
+     *
+     * @param matchinfo Valeurs de `matchinfo`, entiers 32 bits non signés dans l'ordre des octets de l'appareil.
+     * @return Le score du document : plus il est grand, plus le document est pertinent.
+     */
+    static double bm25(byte[] matchinfo) {
+        IntBuffer values = ByteBuffer.wrap(matchinfo).order(ByteOrder.nativeOrder()).asIntBuffer();
+        int phrases = values.get(0);
+        int columns = values.get(1);
+        long documents = values.get(2) & 0xFFFFFFFFL;
+        int averageLengths = 3;
+        int lengths = averageLengths + columns;
+        int hits = lengths + columns;
+        double score = 0;
+        for (int phrase = 0; phrase < phrases; phrase++) {
+            for (int column = 0; column < columns; column++) {
+                int x = hits + 3 * (column + phrase * columns);
+                long frequency = values.get(x) & 0xFFFFFFFFL;
+                if (frequency == 0) {
+                    continue;
+                }
+                long documentsWithPhrase = values.get(x + 2) & 0xFFFFFFFFL;
+                double idf = Math.log(1 + (documents - documentsWithPhrase + 0.5) / (documentsWithPhrase + 0.5));
+                double length = values.get(lengths + column) & 0xFFFFFFFFL;
+                double averageLength = Math.max(1, values.get(averageLengths + column) & 0xFFFFFFFFL);
+                score += idf * frequency * (BM25_K1 + 1) /
+                        (frequency + BM25_K1 * (1 - BM25_B + BM25_B * length / averageLength));
+            }
+        }
+        return score;
+    }
+
+    /**
+     * Convertit le texte saisi en expression MATCH : chaque mot devient un préfixe entre guillemets,
+     * ce qui neutralise les caractères spéciaux de la syntaxe FTS.
+     *
+     * @param query Texte saisi par l'utilisateur.
+     * @return L'expression MATCH, ou `null` si le texte ne contient aucun mot.
+     */
+    private static String toMatchExpression(String query) {
+        if (query == null) {
+            return null;
+        }
+        StringBuilder match = new StringBuilder();
+        for (String token : query.split("[^\\p{L}\\p{N}]+")) {
+            if (token.isEmpty()) {
+                continue;
+            }
+            if (match.length() > 0) {
+                match.append(' ');
+            }
+            match.append('"').append(token).append("\"*");
+        }
+        return match.length() == 0 ? null : match.toString();
+    }
+
+    /**
+     * Indique si l'index plein texte a été créé avec FTS5 (sinon FTS4). Le résultat est mémorisé après la première lecture.
+     *
+     * @param db Base ouverte.
+     * @return `true` pour FTS5, `false` pour FTS4.
+     */
+    private boolean isFts5(SQLiteDatabase db) {
+        Boolean fts5 = ftsVersion5;
+        if (fts5 == null) {
+            Cursor cursor = db.rawQuery("SELECT sql FROM sqlite_master WHERE name = ?", new String[]{TABLE_ENTRIES_FTS});
+            try {
+                fts5 = cursor.moveToFirst() && cursor.getString(0).toLowerCase(Locale.ROOT).contains("fts5");
+            } finally {
+                cursor.close();
+            }
+            ftsVersion5 = fts5;
+        }
+        return fts5;
+    }
+
+    /**
+     * Décode toutes les lignes d'un curseur en objets {@link Entry}, puis ferme le curseur.
+     * Les index de colonnes sont résolus une seule fois avant la boucle.
+     *
+     * @param cursor Curseur dont les colonnes suivent {@link #ENTRY_COLUMNS}.
+     * @return La liste des entrées décodées.
+     */
+    private static List<Entry> readEntries(Cursor cursor) {
+        try {
+            List<Entry> entries = new ArrayList<>(cursor.getCount());
+            int idIndex = cursor.getColumnIndexOrThrow("_id");
+            int siteNameIndex = cursor.getColumnIndexOrThrow(COLUMN_SITE_NAME);
+            int dateIndex = cursor.getColumnIndexOrThrow(COLUMN_DATE);
+            int dateEpochIndex = cursor.getColumnIndexOrThrow(COLUMN_DATE_EPOCH);
+            int coordinatesIndex = cursor.getColumnIndexOrThrow(COLUMN_COORDINATES);
+            int latitudeIndex = cursor.getColumnIndexOrThrow(COLUMN_LATITUDE);
+            int longitudeIndex = cursor.getColumnIndexOrThrow(COLUMN_LONGITUDE);
+            int descriptionIndex = cursor.getColumnIndexOrThrow(COLUMN_DESCRIPTION);
+            int terrainTypeIndex = cursor.getColumnIndexOrThrow(COLUMN_TERRAIN_TYPE);
+            int observationsIndex = cursor.getColumnIndexOrThrow(COLUMN_OBSERVATIONS);
+            int conditionIndex = cursor.getColumnIndexOrThrow(COLUMN_CONDITION);
+            int trackPointIndex = cursor.getColumnIndexOrThrow(COLUMN_TRACK_POINT_ID);
+            int fixAccuracyIndex = cursor.getColumnIndexOrThrow(COLUMN_FIX_ACCURACY);
+            int fixTimeIndex = cursor.getColumnIndexOrThrow(COLUMN_FIX_TIME);
+            int templateIndex = cursor.getColumnIndexOrThrow(COLUMN_TEMPLATE_ID);
+            int extraValuesIndex = cursor.getColumnIndexOrThrow(COLUMN_EXTRA_VALUES);
+            while (cursor.moveToNext()) {
+                Entry entry = new Entry(
+                        cursor.getLong(idIndex),
+                        cursor.getString(siteNameIndex),
+                        cursor.getString(dateIndex),
+                        cursor.getString(coordinatesIndex),
+                        cursor.getString(descriptionIndex),
+                        cursor.getString(terrainTypeIndex),
+                        cursor.getString(observationsIndex),
+                        cursor.getString(conditionIndex));
+                if (!cursor.isNull(dateEpochIndex)) {
+                    entry.setDateEpoch(cursor.getLong(dateEpochIndex));
+                }
+                if (!cursor.isNull(latitudeIndex) && !cursor.isNull(longitudeIndex)) {
+                    entry.setLocation(cursor.getDouble(latitudeIndex), cursor.getDouble(longitudeIndex));
+                }
+                if (!cursor.isNull(trackPointIndex)) {
+                    entry.setTrackPointId(cursor.getLong(trackPointIndex));
+                }
+                if (!cursor.isNull(fixAccuracyIndex) || !cursor.isNull(fixTimeIndex)) {
+                    entry.setFixQuality(cursor.isNull(fixAccuracyIndex) ? null : cursor.getFloat(fixAccuracyIndex),
+                            cursor.isNull(fixTimeIndex) ? null : cursor.getLong(fixTimeIndex));
+                }
+                entry.setTemplate(cursor.getString(templateIndex), cursor.getString(extraValuesIndex));
+                entries.add(entry);
+            }
+            return entries;
+        } finally {
+            cursor.close();
+        }
     }
 }
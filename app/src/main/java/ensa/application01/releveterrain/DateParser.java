@@ -0,0 +1,56 @@
+/**
+ * DateParser - Conversion des dates saisies librement en valeurs triables.
+ */
+package ensa.application01.releveterrain;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.format.ResolverStyle;
+
+/**
+ * Utilitaire convertissant la date d'un relevé, saisie sous forme de texte, en millisecondes depuis l'époque Unix.
+ * Cette valeur est stockée dans la colonne `date_epoch` afin de pouvoir trier et filtrer les relevés par date via un index.
+ */
+public final class DateParser {
+
+    /** Formats acceptés, essayés dans l'ordre. Les formats français (jour en premier) sont prioritaires. */
+    private static final DateTimeFormatter[] FORMATS = {
+            DateTimeFormatter.ofPattern("d/M/uuuu").withResolverStyle(ResolverStyle.STRICT),
+            DateTimeFormatter.ofPattern("d-M-uuuu").withResolverStyle(ResolverStyle.STRICT),
+            DateTimeFormatter.ofPattern("d.M.uuuu").withResolverStyle(ResolverStyle.STRICT),
+            DateTimeFormatter.ofPattern("uuuu-M-d").withResolverStyle(ResolverStyle.STRICT),
+            DateTimeFormatter.ofPattern("uuuu/M/d").withResolverStyle(ResolverStyle.STRICT),
+            DateTimeFormatter.ofPattern("d/M/uu").withResolverStyle(ResolverStyle.STRICT),
+    };
+
+    /** Classe utilitaire : pas d'instance. */
+    private DateParser() {
+    }
+
+    /**
+     * Convertit une date saisie en millisecondes depuis l'époque Unix (minuit, fuseau horaire de l'appareil).
+     *
+     * @param text Date saisie par l'utilisateur, par exemple « 17/10/2024 » ou « 2024-10-17 ».
+     * @return Le nombre de millisecondes correspondant, ou `null` si le texte n'est pas une date reconnue.
+     */
+    public static Long toEpochMillis(String text) {
+        if (text == null) {
+            return null;
+        }
+        String trimmed = text.trim();
+        if (trimmed.isEmpty()) {
+            return null;
+        }
+        for (DateTimeFormatter format : FORMATS) {
+            try {
+                LocalDate date = LocalDate.parse(trimmed, format);
+                return date.atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+            } catch (DateTimeParseException ignored) {
+                // Format suivant
+            }
+        }
+        return null;
+    }
+}
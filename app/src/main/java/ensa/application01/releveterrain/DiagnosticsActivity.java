@@ -0,0 +1,111 @@
+/**
+ * DiagnosticsActivity - Écran de diagnostic affichant les mesures de performance et l'état de la base.
+ * Il s'ouvre par un appui long sur le titre de la liste des relevés.
+ */
+package ensa.application01.releveterrain;
+
+import android.os.Bundle;
+import android.widget.Button;
+import android.widget.CheckBox;
+import android.widget.TextView;
+import android.widget.Toast;
+
+import androidx.appcompat.app.AppCompatActivity;
+
+import java.io.File;
+
+/**
+ * Affiche le rapport de diagnostic produit par {@link EntryRepository#loadDiagnostics(EntryRepository.Callback)} :
+ * histogrammes de latence ({@link PerfMetrics}), taille de la base, nombre de lignes et compteurs du cache.
+ * Le rapport peut être exporté en JSON dans le stockage de l'application, pour être récupéré par `adb pull`.
+ */
+public class DiagnosticsActivity extends AppCompatActivity {
+
+    /** Dépôt partagé des entrées. */
+    private EntryRepository entryRepository;
+
+    /** Zone d'affichage du rapport. */
+    private TextView textViewDiagnostics;
+
+    /** Bouton d'export du rapport. */
+    private Button buttonExportDiagnostics;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_diagnostics);
+
+        entryRepository = EntryRepository.getInstance(this);
+        textViewDiagnostics = findViewById(R.id.textViewDiagnostics);
+        buttonExportDiagnostics = findViewById(R.id.buttonExportDiagnostics);
+        CheckBox checkBoxMetricsEnabled = findViewById(R.id.checkBoxMetricsEnabled);
+        checkBoxMetricsEnabled.setChecked(PerfMetrics.isEnabled());
+        checkBoxMetricsEnabled.setOnCheckedChangeListener((buttonView, isChecked) -> {
+            entryRepository.setMetricsEnabled(isChecked);
+            refresh();
+        });
+        findViewById(R.id.buttonRefreshDiagnostics).setOnClickListener(v -> refresh());
+        findViewById(R.id.buttonResetMetrics).setOnClickListener(v -> {
+            PerfMetrics.reset();
+            refresh();
+        });
+        buttonExportDiagnostics.setOnClickListener(v -> exportDiagnostics());
+    }
+
+    /**
+     * Actualise le rapport à chaque retour sur l'écran.
+     */
+    @Override
+    protected void onStart() {
+        super.onStart();
+        refresh();
+    }
+
+    /**
+     * Produit le rapport en arrière-plan (la taille de la base et le nombre de lignes sont lus sur le disque), puis l'affiche.
+     */
+    private void refresh() {
+        entryRepository.loadDiagnostics(new EntryRepository.Callback<String>() {
+            @Override
+            public void onSuccess(String report) {
+                if (!isDestroyed()) {
+                    textViewDiagnostics.setText(report);
+                }
+            }
+
+            @Override
+            public void onError(Exception error) {
+                if (!isDestroyed()) {
+                    textViewDiagnostics.setText("Rapport indisponible : " + error.getMessage());
+                }
+            }
+        });
+    }
+
+    /**
+     * Écrit le rapport dans le répertoire `diagnostics` du stockage externe de l'application.
+     * Le répertoire est résolu par le dépôt, en arrière-plan : sa résolution touche le disque.
+     */
+    private void exportDiagnostics() {
+        buttonExportDiagnostics.setEnabled(false);
+        entryRepository.exportDiagnostics(new EntryRepository.Callback<File>() {
+            @Override
+            public void onSuccess(File file) {
+                if (isDestroyed()) {
+                    return;
+                }
+                buttonExportDiagnostics.setEnabled(true);
+                Toast.makeText(DiagnosticsActivity.this, "Rapport exporté dans " + file.getPath(), Toast.LENGTH_LONG).show();
+            }
+
+            @Override
+            public void onError(Exception error) {
+                if (isDestroyed()) {
+                    return;
+                }
+                buttonExportDiagnostics.setEnabled(true);
+                Toast.makeText(DiagnosticsActivity.this, "Échec de l'export : " + error.getMessage(), Toast.LENGTH_LONG).show();
+            }
+        });
+    }
+}
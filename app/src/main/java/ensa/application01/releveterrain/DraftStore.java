@@ -0,0 +1,284 @@
+/**
+ * DraftStore - Sauvegarde automatique du relevé en cours de saisie.
+ */
+package ensa.application01.releveterrain;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.AtomicFile;
+import android.util.JsonReader;
+import android.util.JsonToken;
+import android.util.JsonWriter;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Conserve le brouillon du formulaire de saisie dans un fichier JSON, pour le retrouver si l'application est tuée.
+ * <ul>
+ *     <li>Toutes les lectures et écritures s'exécutent sur un thread dédié : le thread principal ne touche jamais le disque.</li>
+ *     <li>Les demandes de sauvegarde sont fusionnées : si plusieurs brouillons arrivent pendant une écriture,
+ *     seul le dernier est écrit ensuite.</li>
+ *     <li>Le fichier est remplacé atomiquement ({@link AtomicFile}) : une écriture interrompue laisse le brouillon précédent intact.</li>
+ * </ul>
+ * Il n'existe qu'un stockage par brouillon dans le processus ({@link #get(Context, String)}) : l'activité recréée après une rotation
+ * partage le thread de l'ancienne, et sa lecture passe donc toujours après la dernière écriture demandée avant la rotation.
+ * Le brouillon est une {@link Entry} sans identifiant ; seuls les champs saisis et la position capturée sont conservés.
+ */
+public class DraftStore {
+
+    /** Capacité de la file des opérations en attente ; les sauvegardes étant fusionnées, elle n'est jamais remplie en pratique. */
+    private static final int QUEUE_CAPACITY = 8;
+
+    /** Stockages déjà créés, indexés par nom de brouillon. */
+    private static final Map<String, DraftStore> INSTANCES = new HashMap<>();
+
+    /** Contexte de l'application. */
+    private final Context context;
+
+    /** Nom du fichier du brouillon. */
+    private final String fileName;
+
+    /** Fichier du brouillon, résolu sur le thread dédié au premier accès (résoudre le répertoire touche le disque). */
+    private AtomicFile file;
+
+    /** Exécuteur des accès au fichier : un seul thread, les opérations sont traitées dans l'ordre. */
+    private final ThreadPoolExecutor executor;
+
+    /** Handler permettant de remettre les résultats sur le thread principal. */
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    /** Dernier brouillon demandé, pas encore écrit. */
+    private final AtomicReference<Entry> pending = new AtomicReference<>();
+
+    /** Indique qu'une écriture est déjà planifiée et écrira {@link #pending}. */
+    private final AtomicBoolean writeScheduled = new AtomicBoolean();
+
+    /**
+     * Constructeur du stockage.
+     *
+     * @param context Contexte de l'application.
+     * @param name    Nom du brouillon, un fichier par formulaire.
+     */
+    private DraftStore(Context context, String name) {
+        this.context = context;
+        fileName = name + ".json";
+        executor = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(QUEUE_CAPACITY), new EntryRepository.BackgroundThreadFactory("releve-draft"));
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Retourne le stockage d'un brouillon, partagé par tout le processus.
+     *
+     * @param context Contexte quelconque ; seul le contexte de l'application est conservé.
+     * @param name    Nom du brouillon, un fichier par formulaire.
+     * @return Le stockage du brouillon.
+     */
+    public static synchronized DraftStore get(Context context, String name) {
+        DraftStore store = INSTANCES.get(name);
+        if (store == null) {
+            store = new DraftStore(context.getApplicationContext(), name);
+            INSTANCES.put(name, store);
+        }
+        return store;
+    }
+
+    /**
+     * Demande l'écriture d'un brouillon en arrière-plan. Peut être appelée depuis le thread principal.
+     *
+     * @param draft Contenu du formulaire.
+     */
+    public void save(Entry draft) {
+        pending.set(draft);
+        if (writeScheduled.compareAndSet(false, true)) {
+            executor.execute(() -> {
+                writeScheduled.set(false);
+                Entry latest = pending.getAndSet(null);
+                if (latest != null) {
+                    write(latest);
+                }
+            });
+        }
+    }
+
+    /**
+     * Supprime le brouillon, par exemple une fois le relevé enregistré. Une sauvegarde encore en attente est abandonnée.
+     */
+    public void clear() {
+        pending.set(null);
+        executor.execute(() -> file().delete());
+    }
+
+    /**
+     * Lit le brouillon en arrière-plan.
+     *
+     * @param callback Rappel recevant le brouillon sur le thread principal, ou `null` s'il n'y en a pas.
+     */
+    public void load(EntryRepository.Callback<Entry> callback) {
+        executor.execute(() -> {
+            Entry draft;
+            try {
+                draft = read();
+            } catch (IOException | RuntimeException e) {
+                // Brouillon illisible : il est ignoré, le prochain le remplacera
+                draft = null;
+            }
+            Entry result = draft;
+            mainHandler.post(() -> callback.onSuccess(result));
+        });
+    }
+
+    /**
+     * Attend que les opérations déjà demandées soient terminées. Réservée aux tests, hors du thread principal.
+     *
+     * @throws InterruptedException Si l'attente est interrompue.
+     */
+    void awaitIdle() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+        executor.execute(done::countDown);
+        done.await();
+    }
+
+    /**
+     * @return Le fichier du brouillon. À n'appeler que sur le thread dédié.
+     */
+    private AtomicFile file() {
+        if (file == null) {
+            file = new AtomicFile(new File(new File(context.getFilesDir(), "drafts"), fileName));
+        }
+        return file;
+    }
+
+    /**
+     * Écrit un brouillon dans le fichier. Une erreur d'écriture est ignorée : le brouillon précédent est conservé.
+     */
+    private void write(Entry draft) {
+        AtomicFile file = file();
+        File dir = file.getBaseFile().getParentFile();
+        if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+            return;
+        }
+        FileOutputStream output = null;
+        try {
+            output = file.startWrite();
+            JsonWriter json = new JsonWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+            json.beginObject();
+            json.name("site_name").value(draft.getSiteName());
+            json.name("date").value(draft.getDate());
+            json.name("coordinates").value(draft.getCoordinates());
+            json.name("latitude").value(draft.getLatitude());
+            json.name("longitude").value(draft.getLongitude());
+            json.name("fix_accuracy").value(draft.getFixAccuracy());
+            json.name("fix_time_ms").value(draft.getFixTimeMillis());
+            json.name("description").value(draft.getDescription());
+            json.name("terrain_type").value(draft.getTerrainType());
+            json.name("observations").value(draft.getObservations());
+            json.name("condition").value(draft.getCondition());
+            json.name("template_id").value(draft.getTemplateId());
+            json.name("extra_values").value(draft.getExtraValues());
+            json.endObject();
+            json.flush();
+            file.finishWrite(output);
+        } catch (IOException e) {
+            if (output != null) {
+                file.failWrite(output);
+            }
+        }
+    }
+
+    /**
+     * @return Le brouillon enregistré, ou `null` s'il n'y en a pas.
+     */
+    private Entry read() throws IOException {
+        FileInputStream input;
+        try {
+            input = file().openRead();
+        } catch (FileNotFoundException e) {
+            return null;
+        }
+        String siteName = null, date = null, coordinates = null, description = null;
+        String terrainType = null, observations = null, condition = null;
+        String templateId = null, extraValues = null;
+        Double latitude = null, longitude = null;
+        Float fixAccuracy = null;
+        Long fixTime = null;
+        try (JsonReader json = new JsonReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            json.beginObject();
+            while (json.hasNext()) {
+                String name = json.nextName();
+                if (json.peek() == JsonToken.NULL) {
+                    json.nextNull();
+                    continue;
+                }
+                switch (name) {
+                    case "site_name":
+                        siteName = json.nextString();
+                        break;
+                    case "date":
+                        date = json.nextString();
+                        break;
+                    case "coordinates":
+                        coordinates = json.nextString();
+                        break;
+                    case "latitude":
+                        latitude = json.nextDouble();
+                        break;
+                    case "longitude":
+                        longitude = json.nextDouble();
+                        break;
+                    case "fix_accuracy":
+                        fixAccuracy = (float) json.nextDouble();
+                        break;
+                    case "fix_time_ms":
+                        fixTime = json.nextLong();
+                        break;
+                    case "description":
+                        description = json.nextString();
+                        break;
+                    case "terrain_type":
+                        terrainType = json.nextString();
+                        break;
+                    case "observations":
+                        observations = json.nextString();
+                        break;
+                    case "condition":
+                        condition = json.nextString();
+                        break;
+                    case "template_id":
+                        templateId = json.nextString();
+                        break;
+                    case "extra_values":
+                        extraValues = json.nextString();
+                        break;
+                    default:
+                        json.skipValue();
+                        break;
+                }
+            }
+            json.endObject();
+        }
+        Entry draft = new Entry(-1, siteName, date, coordinates, description, terrainType, observations, condition);
+        draft.setTemplate(templateId, extraValues);
+        if (latitude != null && longitude != null) {
+            draft.setLocation(latitude, longitude);
+            draft.setFixQuality(fixAccuracy, fixTime);
+        }
+        return draft;
+    }
+}
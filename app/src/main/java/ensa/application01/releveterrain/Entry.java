@@ -0,0 +1,199 @@
+/**
+ * Entry - Modèle représentant un relevé de terrain décodé depuis la base de données.
+ */
+package ensa.application01.releveterrain;
+
+/**
+ * Représentation en mémoire d'une ligne de la table `entries`.
+ * Les instances sont construites une seule fois à partir du curseur, puis réutilisées par l'interface.
+ */
+public class Entry {
+
+    /** Identifiant de l'entrée, ou -1 si elle n'a pas encore été enregistrée. */
+    private final long id;
+    /** Nom du site ou de l'emplacement. */
+    private final String siteName;
+    /** Date du relevé telle que saisie. */
+    private final String date;
+    /** Coordonnées GPS du site. */
+    private final String coordinates;
+    /** Description détaillée du site. */
+    private final String description;
+    /** Type de terrain associé au site. */
+    private final String terrainType;
+    /** Observations collectées sur le site. */
+    private final String observations;
+    /** Condition actuelle du site. */
+    private final String condition;
+    /** Date du relevé en millisecondes depuis l'époque Unix, ou `null` si la date saisie n'est pas reconnue. */
+    private Long dateEpoch;
+    /** Latitude du site en degrés, ou `null` si la position est inconnue. */
+    private Double latitude;
+    /** Longitude du site en degrés, ou `null` si la position est inconnue. */
+    private Double longitude;
+    /** Identifiant du point de trace GPS le plus proche de l'enregistrement, ou `null` si le suivi était arrêté. */
+    private Long trackPointId;
+    /** Précision horizontale de la position capturée en mètres, ou `null` si elle est inconnue. */
+    private Float fixAccuracy;
+    /** Temps mis à obtenir la position capturée en millisecondes, ou `null` s'il est inconnu. */
+    private Long fixTimeMillis;
+    /** Identifiant du modèle de formulaire utilisé pour la saisie. */
+    private String templateId = FormPlan.DEFAULT_TEMPLATE;
+    /** Valeurs des champs propres au modèle, sous forme d'objet JSON, ou `null` s'il n'y en a pas. */
+    private String extraValues;
+
+    /**
+     * Constructeur complet d'une entrée.
+     *
+     * @param id           Identifiant de l'entrée, ou -1 si elle n'est pas encore enregistrée.
+     * @param siteName     Nom du site.
+     * @param date         Date du relevé.
+     * @param coordinates  Coordonnées GPS du site.
+     * @param description  Description du site.
+     * @param terrainType  Type de terrain.
+     * @param observations Observations collectées.
+     * @param condition    Condition du site.
+     */
+    public Entry(long id, String siteName, String date, String coordinates, String description,
+                 String terrainType, String observations, String condition) {
+        this.id = id;
+        this.siteName = siteName;
+        this.date = date;
+        this.coordinates = coordinates;
+        this.description = description;
+        this.terrainType = terrainType;
+        this.observations = observations;
+        this.condition = condition;
+    }
+
+    /** @return L'identifiant de l'entrée. */
+    public long getId() {
+        return id;
+    }
+
+    /** @return Le nom du site. */
+    public String getSiteName() {
+        return siteName;
+    }
+
+    /** @return La date du relevé. */
+    public String getDate() {
+        return date;
+    }
+
+    /** @return La date du relevé en millisecondes depuis l'époque Unix, ou `null` si elle est inconnue. */
+    public Long getDateEpoch() {
+        return dateEpoch;
+    }
+
+    /**
+     * Définit la date triable du relevé, lue depuis la colonne `date_epoch` ou calculée à l'avance par l'import.
+     *
+     * @param dateEpoch Date en millisecondes depuis l'époque Unix, ou `null`.
+     */
+    public void setDateEpoch(Long dateEpoch) {
+        this.dateEpoch = dateEpoch;
+    }
+
+    /** @return Les coordonnées GPS du site. */
+    public String getCoordinates() {
+        return coordinates;
+    }
+
+    /** @return La latitude du site en degrés, ou `null` si elle est inconnue. */
+    public Double getLatitude() {
+        return latitude;
+    }
+
+    /** @return La longitude du site en degrés, ou `null` si elle est inconnue. */
+    public Double getLongitude() {
+        return longitude;
+    }
+
+    /**
+     * Définit la position numérique du site.
+     *
+     * @param latitude  Latitude en degrés.
+     * @param longitude Longitude en degrés.
+     */
+    public void setLocation(double latitude, double longitude) {
+        this.latitude = latitude;
+        this.longitude = longitude;
+    }
+
+    /** @return L'identifiant du point de trace GPS associé, ou `null`. */
+    public Long getTrackPointId() {
+        return trackPointId;
+    }
+
+    /**
+     * Associe l'entrée à un point de la trace GPS.
+     *
+     * @param trackPointId Identifiant du point de trace, ou `null`.
+     */
+    public void setTrackPointId(Long trackPointId) {
+        this.trackPointId = trackPointId;
+    }
+
+    /** @return La précision horizontale de la position capturée en mètres, ou `null`. */
+    public Float getFixAccuracy() {
+        return fixAccuracy;
+    }
+
+    /** @return Le temps mis à obtenir la position capturée en millisecondes, ou `null`. */
+    public Long getFixTimeMillis() {
+        return fixTimeMillis;
+    }
+
+    /**
+     * Définit la qualité de la position capturée.
+     *
+     * @param fixAccuracy   Précision horizontale en mètres, ou `null`.
+     * @param fixTimeMillis Temps mis à obtenir la position en millisecondes, ou `null`.
+     */
+    public void setFixQuality(Float fixAccuracy, Long fixTimeMillis) {
+        this.fixAccuracy = fixAccuracy;
+        this.fixTimeMillis = fixTimeMillis;
+    }
+
+    /** @return La description du site. */
+    public String getDescription() {
+        return description;
+    }
+
+    /** @return Le type de terrain. */
+    public String getTerrainType() {
+        return terrainType;
+    }
+
+    /** @return Les observations collectées. */
+    public String getObservations() {
+        return observations;
+    }
+
+    /** @return La condition du site. */
+    public String getCondition() {
+        return condition;
+    }
+
+    /** @return L'identifiant du modèle de formulaire de l'entrée. */
+    public String getTemplateId() {
+        return templateId;
+    }
+
+    /** @return Les valeurs des champs propres au modèle (objet JSON), ou `null`. */
+    public String getExtraValues() {
+        return extraValues;
+    }
+
+    /**
+     * Définit le modèle de formulaire de l'entrée et les valeurs de ses champs propres.
+     *
+     * @param templateId  Identifiant du modèle, ou `null` pour le modèle par défaut.
+     * @param extraValues Objet JSON produit par {@link FormPlan#encodeExtraValues(CharSequence[])}, ou `null`.
+     */
+    public void setTemplate(String templateId, String extraValues) {
+        this.templateId = templateId != null ? templateId : FormPlan.DEFAULT_TEMPLATE;
+        this.extraValues = extraValues;
+    }
+}
@@ -0,0 +1,322 @@
+/**
+ * EntryAdapter - Adaptateur de la liste des relevés basé sur `RecyclerView`.
+ */
+package ensa.application01.releveterrain;
+
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ImageView;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * Adaptateur affichant un résumé de chaque relevé : vignette de la première photo, site, date, état et début de la description.
+ * Les identifiants stables proviennent de `entries.id`, et les changements de contenu sont calculés par `DiffUtil`
+ * en arrière-plan : l'ajout d'une page n'insère que les nouvelles lignes, sans relier celles déjà affichées.
+ * Lorsque la vignette d'une entrée affichée est invalidée, seule la vignette de sa ligne est rechargée.
+ */
+public class EntryAdapter extends ListAdapter<Entry, EntryAdapter.EntryViewHolder> {
+
+    /** Comparaison des entrées : même identifiant, puis mêmes champs affichés. */
+    private static final DiffUtil.ItemCallback<Entry> DIFF_CALLBACK = new DiffUtil.ItemCallback<Entry>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull Entry oldItem, @NonNull Entry newItem) {
+            return oldItem.getId() == newItem.getId();
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull Entry oldItem, @NonNull Entry newItem) {
+            return Objects.equals(oldItem.getSiteName(), newItem.getSiteName())
+                    && Objects.equals(oldItem.getDate(), newItem.getDate())
+                    && Objects.equals(oldItem.getCondition(), newItem.getCondition())
+                    && Objects.equals(oldItem.getDescription(), newItem.getDescription());
+        }
+    };
+
+    /** Charge utile d'une liaison partielle : seule la vignette est à recharger. */
+    private static final Object THUMBNAIL_PAYLOAD = new Object();
+
+    /**
+     * Dernière liste soumise. Elle peut être plus récente que {@link #getCurrentList()} tant que le calcul
+     * des différences n'est pas terminé ; c'est elle qui sert de base aux pages suivantes.
+     */
+    private List<Entry> latestList = Collections.emptyList();
+
+    /** Chargeur asynchrone des vignettes. */
+    private final ThumbnailLoader thumbnailLoader;
+
+    /** Relie la vignette de la ligne d'une entrée invalidée. */
+    private final ThumbnailLoader.OnInvalidatedListener thumbnailListener = this::onThumbnailInvalidated;
+
+    /** Écouteur des appuis longs sur une ligne, ou `null`. */
+    private OnEntryLongClickListener longClickListener;
+
+    /**
+     * Écouteur prévenu d'un appui long sur une ligne de la liste.
+     */
+    public interface OnEntryLongClickListener {
+        /**
+         * @param entry Entrée affichée par la ligne.
+         */
+        void onEntryLongClick(Entry entry);
+    }
+
+    /**
+     * Constructeur de l'adaptateur.
+     *
+     * @param thumbnailLoader Chargeur asynchrone des vignettes.
+     */
+    public EntryAdapter(ThumbnailLoader thumbnailLoader) {
+        super(DIFF_CALLBACK);
+        this.thumbnailLoader = thumbnailLoader;
+        setHasStableIds(true);
+    }
+
+    /**
+     * @param listener Écouteur des appuis longs sur les lignes, ou `null`.
+     */
+    public void setOnEntryLongClickListener(OnEntryLongClickListener listener) {
+        longClickListener = listener;
+    }
+
+    /**
+     * Ajoute une page d'entrées à la fin de la liste.
+     *
+     * @param page Entrées à ajouter, déjà triées.
+     */
+    public void appendPage(List<Entry> page) {
+        List<Entry> next = new ArrayList<>(latestList.size() + page.size());
+        next.addAll(latestList);
+        next.addAll(page);
+        submit(next);
+    }
+
+    /**
+     * Ajoute de nouvelles entrées en tête de liste ; seules ces lignes sont insérées dans la vue.
+     *
+     * @param newest Entrées à ajouter, de la plus récente à la plus ancienne.
+     */
+    public void prependEntries(List<Entry> newest) {
+        List<Entry> next = new ArrayList<>(newest.size() + latestList.size());
+        next.addAll(newest);
+        next.addAll(latestList);
+        submit(next);
+    }
+
+    /**
+     * Remplace tout le contenu de la liste, par exemple par les résultats d'une recherche.
+     *
+     * @param newEntries Nouvelles entrées à afficher.
+     */
+    public void replaceAll(List<Entry> newEntries) {
+        submit(new ArrayList<>(newEntries));
+    }
+
+    /**
+     * Remplace une entrée modifiée, si elle est affichée.
+     *
+     * @param entry Entrée modifiée.
+     */
+    public void updateEntry(Entry entry) {
+        for (int i = 0; i < latestList.size(); i++) {
+            if (latestList.get(i).getId() == entry.getId()) {
+                List<Entry> next = new ArrayList<>(latestList);
+                next.set(i, entry);
+                submit(next);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Retire des entrées supprimées ; seules leurs lignes disparaissent de la vue.
+     *
+     * @param ids Identifiants des entrées supprimées.
+     */
+    public void removeEntries(Collection<Long> ids) {
+        Set<Long> removed = new HashSet<>(ids);
+        List<Entry> next = new ArrayList<>(latestList.size());
+        for (Entry entry : latestList) {
+            if (!removed.contains(entry.getId())) {
+                next.add(entry);
+            }
+        }
+        if (next.size() != latestList.size()) {
+            submit(next);
+        }
+    }
+
+    /**
+     * @return Le nombre d'entrées de la dernière liste soumise.
+     */
+    public int getLoadedCount() {
+        return latestList.size();
+    }
+
+    /**
+     * @return L'identifiant de l'entrée la plus récente chargée, ou 0 si la liste est vide.
+     */
+    public long getFirstLoadedId() {
+        return latestList.isEmpty() ? 0 : latestList.get(0).getId();
+    }
+
+    /**
+     * @return L'identifiant de la dernière entrée chargée, ou {@link DatabaseHelper#FIRST_PAGE} si la liste est vide.
+     */
+    public long getLastLoadedId() {
+        return latestList.isEmpty() ? DatabaseHelper.FIRST_PAGE : latestList.get(latestList.size() - 1).getId();
+    }
+
+    /**
+     * Mémorise et soumet une nouvelle liste au calcul des différences.
+     *
+     * @param list Liste complète à afficher.
+     */
+    private void submit(List<Entry> list) {
+        latestList = list;
+        submitList(list);
+    }
+
+    /**
+     * Recharge la vignette de la ligne d'une entrée, si elle est affichée.
+     *
+     * @param entryId Identifiant de l'entrée dont la vignette a changé.
+     */
+    private void onThumbnailInvalidated(long entryId) {
+        List<Entry> current = getCurrentList();
+        for (int i = 0; i < current.size(); i++) {
+            if (current.get(i).getId() == entryId) {
+                notifyItemChanged(i, THUMBNAIL_PAYLOAD);
+                return;
+            }
+        }
+    }
+
+    @Override
+    public void onAttachedToRecyclerView(@NonNull RecyclerView recyclerView) {
+        thumbnailLoader.addOnInvalidatedListener(thumbnailListener);
+    }
+
+    @Override
+    public void onDetachedFromRecyclerView(@NonNull RecyclerView recyclerView) {
+        thumbnailLoader.removeOnInvalidatedListener(thumbnailListener);
+    }
+
+    @Override
+    public long getItemId(int position) {
+        return getItem(position).getId();
+    }
+
+    @NonNull
+    @Override
+    public EntryViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View view = LayoutInflater.from(parent.getContext()).inflate(R.layout.item_entry_summary, parent, false);
+        EntryViewHolder holder = new EntryViewHolder(view, thumbnailLoader);
+        view.setOnLongClickListener(v -> {
+            int position = holder.getBindingAdapterPosition();
+            if (longClickListener == null || position == RecyclerView.NO_POSITION) {
+                return false;
+            }
+            longClickListener.onEntryLongClick(getItem(position));
+            return true;
+        });
+        return holder;
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull EntryViewHolder holder, int position) {
+        long start = PerfMetrics.start();
+        holder.bind(getItem(position));
+        PerfMetrics.stop(PerfMetrics.Metric.LIST_BIND, start);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull EntryViewHolder holder, int position, @NonNull List<Object> payloads) {
+        if (payloads.contains(THUMBNAIL_PAYLOAD)) {
+            holder.bindThumbnail(getItem(position).getId());
+        } else {
+            onBindViewHolder(holder, position);
+        }
+    }
+
+    @Override
+    public void onViewRecycled(@NonNull EntryViewHolder holder) {
+        holder.recycle();
+    }
+
+    /**
+     * Ligne de la liste : les vues sont résolues une seule fois, et la liaison se limite à quatre `setText`
+     * sur des chaînes déjà décodées, suivis de la demande de vignette. Celle-ci ne crée aucun objet : le cache
+     * mémoire est indexé par `long`, et une vignette absente du cache réutilise la requête de chargement de la vue ;
+     * seul l'ajout de cette requête à la file d'arrière-plan alloue un maillon.
+     */
+    static class EntryViewHolder extends RecyclerView.ViewHolder {
+
+        /** Nom du site. */
+        private final TextView siteName;
+        /** Date du relevé. */
+        private final TextView date;
+        /** État des infrastructures. */
+        private final TextView condition;
+        /** Description, tronquée par la mise en page. */
+        private final TextView description;
+        /** Vignette de la première photo. */
+        private final ImageView thumbnail;
+        /** Chargeur asynchrone des vignettes. */
+        private final ThumbnailLoader thumbnailLoader;
+
+        EntryViewHolder(View itemView, ThumbnailLoader thumbnailLoader) {
+            super(itemView);
+            this.thumbnailLoader = thumbnailLoader;
+            thumbnail = itemView.findViewById(R.id.imageThumbnail);
+            siteName = itemView.findViewById(R.id.textSiteName);
+            date = itemView.findViewById(R.id.textDate);
+            condition = itemView.findViewById(R.id.textCondition);
+            description = itemView.findViewById(R.id.textDescription);
+        }
+
+        /**
+         * Affiche le résumé d'une entrée.
+         *
+         * @param entry Entrée à afficher.
+         */
+        void bind(Entry entry) {
+            siteName.setText(entry.getSiteName());
+            date.setText(entry.getDate());
+            condition.setText(entry.getCondition());
+            description.setText(entry.getDescription());
+            bindThumbnail(entry.getId());
+        }
+
+        /**
+         * Affiche ou recharge la vignette d'une entrée, sans toucher aux textes de la ligne.
+         *
+         * @param entryId Identifiant de l'entrée.
+         */
+        void bindThumbnail(long entryId) {
+            thumbnailLoader.load(entryId, thumbnail);
+        }
+
+        /**
+         * Abandonne le chargement de la vignette d'une ligne sortie de l'écran, pour ne pas décoder une image
+         * qui ne sera plus affichée.
+         */
+        void recycle() {
+            thumbnailLoader.cancel(thumbnail);
+            thumbnail.setImageDrawable(null);
+        }
+    }
+}
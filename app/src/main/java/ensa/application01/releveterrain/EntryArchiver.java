@@ -0,0 +1,209 @@
+/**
+ * EntryArchiver - Archivage des relevés anciens dans des fichiers compressés, hors de la base.
+ */
+package ensa.application01.releveterrain;
+
+import android.util.JsonWriter;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Déplace les relevés anciens et déjà synchronisés de la table `entries` vers des fichiers JSON Lines compressés (gzip) :
+ * la base, et donc le coût des parcours et de la recherche, reste bornée sur un appareil utilisé pendant des années.
+ * <ul>
+ *     <li>Chaque lot produit son propre fichier `releves-<date>-<id>.jsonl.gz`, écrit sous un nom temporaire, synchronisé sur disque
+ *     puis renommé ; les lignes ne sont supprimées de la base qu'ensuite. Une interruption laisse au pire un relevé
+ *     à la fois en base et dans une archive, jamais nulle part.</li>
+ *     <li>Chaque ligne est un objet JSON décrivant un relevé, avec ses photos. Les fichiers des photos sont déplacés
+ *     dans le sous-répertoire `photos` de l'archive.</li>
+ *     <li>Seules les entrées sans modification en attente sont archivées : le serveur en possède déjà la dernière version,
+ *     et l'archivage n'y est pas transmis comme une suppression.</li>
+ * </ul>
+ * Si la suppression échoue, les photos sont remises en place et le fichier du lot est effacé : la base et les photos
+ * restent comme avant l'appel.
+ * {@link #archiveBatch(long)} est bloquante et doit être appelée depuis la file d'écriture du dépôt.
+ */
+public class EntryArchiver {
+
+    /** Nombre maximal d'entrées archivées par lot, donc par fichier et par transaction. */
+    static final int BATCH_SIZE = 1000;
+
+    /** Helper d'accès à la base de données. */
+    private final DatabaseHelper databaseHelper;
+
+    /** Stockage des photos jointes. */
+    private final AttachmentStore attachmentStore;
+
+    /** Répertoire des archives. */
+    private final File archiveDir;
+
+    /**
+     * Constructeur de l'archiveur.
+     *
+     * @param databaseHelper  Helper d'accès à la base de données.
+     * @param attachmentStore Stockage des photos jointes.
+     * @param archiveDir      Répertoire des archives, créé au besoin.
+     */
+    public EntryArchiver(DatabaseHelper databaseHelper, AttachmentStore attachmentStore, File archiveDir) {
+        this.databaseHelper = databaseHelper;
+        this.attachmentStore = attachmentStore;
+        this.archiveDir = archiveDir;
+    }
+
+    /**
+     * Archive un lot des plus anciennes entrées datées d'avant `cutoffEpochMillis` et déjà synchronisées.
+     *
+     * @param cutoffEpochMillis Date limite, en millisecondes depuis l'époque Unix (exclue).
+     * @return Les identifiants des entrées archivées et supprimées de la base ; une liste vide s'il n'y en a plus.
+     * @throws IOException Si le fichier d'archive ne peut pas être écrit ; la base n'est alors pas modifiée.
+     */
+    public List<Long> archiveBatch(long cutoffEpochMillis) throws IOException {
+        List<Entry> entries = databaseHelper.getArchivableEntries(cutoffEpochMillis, BATCH_SIZE);
+        if (entries.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Map<Long, List<Attachment>> attachments = new LinkedHashMap<>();
+        List<Long> ids = new ArrayList<>(entries.size());
+        for (Entry entry : entries) {
+            ids.add(entry.getId());
+            List<Attachment> photos = databaseHelper.getAttachments(entry.getId());
+            if (!photos.isEmpty()) {
+                attachments.put(entry.getId(), photos);
+            }
+        }
+        File archive = new File(archiveDir, "releves-" + System.currentTimeMillis() + "-" + ids.get(0) + ".jsonl.gz");
+        writeArchive(entries, attachments, archive);
+
+        // Les photos sont mises à l'abri avant la suppression des lignes, qui les rendrait orphelines
+        File photosDir = new File(archiveDir, "photos");
+        List<Attachment> moved = new ArrayList<>();
+        for (List<Attachment> photos : attachments.values()) {
+            for (Attachment photo : photos) {
+                if (!attachmentStore.moveToArchive(photo, photosDir)) {
+                    restore(moved, photosDir);
+                    throw new IOException("Impossible d'archiver la photo " + photo.getFileName());
+                }
+                moved.add(photo);
+            }
+        }
+        List<Long> deleted;
+        try {
+            deleted = databaseHelper.deleteArchivedEntries(ids);
+        } catch (RuntimeException e) {
+            // Transaction annulée : les lignes sont toujours en base, leurs photos doivent y être aussi
+            restore(moved, photosDir);
+            archive.delete();
+            throw e;
+        }
+        if (deleted.size() < ids.size()) {
+            // Entrées modifiées entre-temps : elles restent en base avec leurs photos
+            Set<Long> kept = new HashSet<>(ids);
+            kept.removeAll(deleted);
+            for (long id : kept) {
+                List<Attachment> photos = attachments.get(id);
+                if (photos != null) {
+                    for (Attachment photo : photos) {
+                        attachmentStore.restoreFromArchive(photo, photosDir);
+                    }
+                }
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * Remet à leur place des photos déplacées dans l'archive.
+     */
+    private void restore(List<Attachment> moved, File photosDir) {
+        for (Attachment photo : moved) {
+            attachmentStore.restoreFromArchive(photo, photosDir);
+        }
+    }
+
+    /**
+     * Écrit un lot d'entrées dans un fichier JSON Lines compressé, sous un nom temporaire renommé à la fin.
+     */
+    private static void writeArchive(List<Entry> entries, Map<Long, List<Attachment>> attachments, File target)
+            throws IOException {
+        File dir = target.getParentFile();
+        if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Impossible de créer le répertoire " + dir);
+        }
+        File temp = new File(dir, target.getName() + ".tmp");
+        try (FileOutputStream output = new FileOutputStream(temp)) {
+            GZIPOutputStream gzip = new GZIPOutputStream(output);
+            Writer writer = new BufferedWriter(new OutputStreamWriter(gzip, StandardCharsets.UTF_8));
+            for (Entry entry : entries) {
+                writer.write(toJson(entry, attachments.get(entry.getId())));
+                writer.write('\n');
+            }
+            writer.flush();
+            gzip.finish();
+            output.getFD().sync();
+        } catch (IOException e) {
+            temp.delete();
+            throw e;
+        }
+        if (!temp.renameTo(target)) {
+            temp.delete();
+            throw new IOException("Impossible d'écrire " + target);
+        }
+    }
+
+    /**
+     * @return Une entrée et ses photos sous forme d'objet JSON sur une seule ligne.
+     */
+    private static String toJson(Entry entry, List<Attachment> photos) throws IOException {
+        StringWriter buffer = new StringWriter();
+        JsonWriter json = new JsonWriter(buffer);
+        json.beginObject();
+        json.name("id").value(entry.getId());
+        json.name("site_name").value(entry.getSiteName());
+        json.name("date").value(entry.getDate());
+        json.name("date_epoch").value(entry.getDateEpoch());
+        json.name("coordinates").value(entry.getCoordinates());
+        json.name("latitude").value(entry.getLatitude());
+        json.name("longitude").value(entry.getLongitude());
+        json.name("description").value(entry.getDescription());
+        json.name("terrain_type").value(entry.getTerrainType());
+        json.name("observations").value(entry.getObservations());
+        json.name("condition").value(entry.getCondition());
+        json.name("track_point_id").value(entry.getTrackPointId());
+        json.name("fix_accuracy").value(entry.getFixAccuracy());
+        json.name("fix_time_ms").value(entry.getFixTimeMillis());
+        json.name("template_id").value(entry.getTemplateId());
+        json.name("extra_values").value(entry.getExtraValues());
+        json.name("photos");
+        json.beginArray();
+        if (photos != null) {
+            for (Attachment photo : photos) {
+                json.beginObject();
+                json.name("file_name").value(photo.getFileName());
+                json.name("width").value(photo.getWidth());
+                json.name("height").value(photo.getHeight());
+                json.name("size_bytes").value(photo.getSizeBytes());
+                json.name("created_ms").value(photo.getCreatedMillis());
+                json.endObject();
+            }
+        }
+        json.endArray();
+        json.endObject();
+        json.close();
+        return buffer.toString();
+    }
+}
@@ -0,0 +1,343 @@
+/**
+ * EntryCache - Cache mémoire des relevés récents et des statistiques de synthèse.
+ */
+package ensa.application01.releveterrain;
+
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.util.LruCache;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache mémoire borné des entrées décodées, indexées par `id`, avec :
+ * <ul>
+ *     <li>la première page de la liste (les relevés les plus récents), servie sans accès disque à la réouverture de la liste ;</li>
+ *     <li>les effectifs par type de terrain et par condition.</li>
+ * </ul>
+ * Le budget mémoire est proportionnel à la classe mémoire de l'appareil et le cache se vide lorsque le système manque de mémoire.
+ * Une insertion met à jour le cache précisément (ajout en tête et incrément des effectifs) au lieu de tout invalider ;
+ * une modification ou une suppression remplace ou retire l'entrée et n'oublie que les effectifs.
+ * Chaque écriture incrémente une version : un résultat de lecture n'est mis en cache que si aucune écriture
+ * n'a eu lieu pendant la lecture, de sorte qu'une lecture concurrente ne réintroduit jamais une entrée périmée.
+ * Toutes les méthodes peuvent être appelées depuis n'importe quel thread.
+ */
+public class EntryCache implements ComponentCallbacks2 {
+
+    /** Fraction de la classe mémoire de l'application consacrée au cache (1/64). */
+    private static final int MEMORY_CLASS_DIVISOR = 64;
+
+    /** Nombre maximal d'entrées conservées dans la première page, qui grandit à chaque insertion. */
+    private static final int HEAD_MAX_SIZE = 200;
+
+    /** Coût fixe estimé d'un objet {@link Entry} et de ses chaînes, en octets, hors caractères. */
+    private static final int ENTRY_OVERHEAD_BYTES = 200;
+
+    /** Entrées décodées, indexées par identifiant ; la taille est mesurée en octets estimés. */
+    private final LruCache<Long, Entry> entries;
+
+    /** Première page de la liste, de la plus récente à la plus ancienne, ou `null` si elle n'est pas connue. */
+    private List<Entry> head;
+
+    /** Indique que la première page contient toutes les entrées de la table. */
+    private boolean headComplete;
+
+    /** Effectifs par type de terrain, ou `null` s'ils ne sont pas connus. */
+    private Map<String, Integer> countsByTerrainType;
+
+    /** Effectifs par condition, ou `null` s'ils ne sont pas connus. */
+    private Map<String, Integer> countsByCondition;
+
+    /** Version des données en cache, incrémentée à chaque insertion, modification, suppression ou invalidation. */
+    private long version;
+
+    /** Nombre de demandes de première page ou de statistiques servies depuis la mémoire. */
+    private final AtomicLong summaryHits = new AtomicLong();
+
+    /** Nombre de demandes de première page ou de statistiques ayant nécessité un accès disque. */
+    private final AtomicLong summaryMisses = new AtomicLong();
+
+    /**
+     * Crée un cache dont le budget dépend de la mémoire disponible pour l'application.
+     *
+     * @param context Contexte de l'application.
+     */
+    public EntryCache(Context context) {
+        ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        int maxBytes = activityManager.getMemoryClass() * 1024 * 1024 / MEMORY_CLASS_DIVISOR;
+        entries = new LruCache<Long, Entry>(maxBytes) {
+            @Override
+            protected int sizeOf(@NonNull Long key, @NonNull Entry value) {
+                return estimateSize(value);
+            }
+        };
+        context.registerComponentCallbacks(this);
+    }
+
+    /**
+     * Estime l'empreinte mémoire d'une entrée (deux octets par caractère).
+     *
+     * @param entry Entrée à mesurer.
+     * @return La taille estimée, en octets.
+     */
+    private static int estimateSize(Entry entry) {
+        return ENTRY_OVERHEAD_BYTES + 2 * (length(entry.getSiteName()) + length(entry.getDate())
+                + length(entry.getCoordinates()) + length(entry.getDescription()) + length(entry.getTerrainType())
+                + length(entry.getObservations()) + length(entry.getCondition()) + length(entry.getExtraValues()));
+    }
+
+    private static int length(String value) {
+        return value == null ? 0 : value.length();
+    }
+
+    /**
+     * @param id Identifiant de l'entrée.
+     * @return L'entrée en cache, ou `null` si elle n'y est pas.
+     */
+    public Entry get(long id) {
+        return entries.get(id);
+    }
+
+    /**
+     * Ajoute des entrées décodées au cache, sauf si une écriture a eu lieu depuis le début de la lecture :
+     * une lecture concurrente d'une modification ou d'une suppression remettrait sinon en cache une entrée périmée
+     * ou disparue. Les entrées écartées seront simplement relues à la prochaine demande.
+     *
+     * @param loaded      Entrées lues depuis la base.
+     * @param readVersion Version relevée par {@link #getVersion()} avant la lecture.
+     */
+    public synchronized void putAll(List<Entry> loaded, long readVersion) {
+        if (readVersion != version) {
+            return;
+        }
+        for (Entry entry : loaded) {
+            entries.put(entry.getId(), entry);
+        }
+    }
+
+    /**
+     * Retourne la première page si elle est en cache et assez longue.
+     *
+     * @param limit Taille de page demandée.
+     * @return Une copie des `limit` entrées les plus récentes, ou `null` en cas d'absence.
+     */
+    public synchronized List<Entry> getHead(int limit) {
+        if (head != null && (head.size() >= limit || headComplete)) {
+            summaryHits.incrementAndGet();
+            return new ArrayList<>(head.subList(0, Math.min(limit, head.size())));
+        }
+        summaryMisses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * @return La version courante des données en cache, à relever avant une lecture en base.
+     */
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    /**
+     * Mémorise la première page de la liste et ses entrées, sauf si une écriture a eu lieu depuis le début de la lecture.
+     *
+     * @param page        Entrées les plus récentes.
+     * @param complete    `true` si la page contient toutes les entrées de la table.
+     * @param readVersion Version relevée par {@link #getVersion()} avant la lecture.
+     */
+    public synchronized void putHead(List<Entry> page, boolean complete, long readVersion) {
+        if (readVersion != version) {
+            return;
+        }
+        head = new ArrayList<>(page);
+        headComplete = complete;
+        putAll(page, readVersion);
+    }
+
+    /**
+     * @return Les effectifs par type de terrain en cache, ou `null` en cas d'absence.
+     */
+    public synchronized Map<String, Integer> getCountsByTerrainType() {
+        return copyCounts(countsByTerrainType);
+    }
+
+    /**
+     * @return Les effectifs par condition en cache, ou `null` en cas d'absence.
+     */
+    public synchronized Map<String, Integer> getCountsByCondition() {
+        return copyCounts(countsByCondition);
+    }
+
+    /**
+     * Mémorise les effectifs lus depuis la base, sauf si une écriture a eu lieu depuis le début de la lecture.
+     *
+     * @param byTerrainType Effectifs par type de terrain.
+     * @param byCondition   Effectifs par condition.
+     * @param readVersion   Version relevée par {@link #getVersion()} avant la lecture.
+     */
+    public synchronized void putCounts(Map<String, Integer> byTerrainType, Map<String, Integer> byCondition,
+                                       long readVersion) {
+        if (readVersion != version) {
+            return;
+        }
+        countsByTerrainType = new HashMap<>(byTerrainType);
+        countsByCondition = new HashMap<>(byCondition);
+    }
+
+    /**
+     * Comptabilise une demande de statistiques selon qu'elle a été servie depuis la mémoire ou non.
+     *
+     * @param hit `true` si les statistiques étaient en cache.
+     */
+    void recordCountsLookup(boolean hit) {
+        (hit ? summaryHits : summaryMisses).incrementAndGet();
+    }
+
+    /**
+     * Met à jour le cache après l'insertion d'une entrée : elle est ajoutée en tête de la première page
+     * et les effectifs correspondants sont incrémentés.
+     *
+     * @param entry Entrée insérée, relue depuis la base.
+     */
+    public synchronized void onInserted(Entry entry) {
+        version++;
+        entries.put(entry.getId(), entry);
+        if (head != null) {
+            head.add(0, entry);
+            if (head.size() > HEAD_MAX_SIZE) {
+                head.remove(head.size() - 1);
+                headComplete = false;
+            }
+        }
+        if (countsByTerrainType != null) {
+            countsByTerrainType.merge(countKey(entry.getTerrainType()), 1, Integer::sum);
+        }
+        if (countsByCondition != null) {
+            countsByCondition.merge(countKey(entry.getCondition()), 1, Integer::sum);
+        }
+    }
+
+    /**
+     * Met à jour le cache après la modification d'une entrée : elle est remplacée là où elle figure,
+     * et les effectifs sont oubliés, son type de terrain ou sa condition ayant pu changer.
+     *
+     * @param entry Entrée modifiée, relue depuis la base.
+     */
+    public synchronized void onUpdated(Entry entry) {
+        version++;
+        entries.put(entry.getId(), entry);
+        if (head != null) {
+            for (int i = 0; i < head.size(); i++) {
+                if (head.get(i).getId() == entry.getId()) {
+                    head.set(i, entry);
+                    break;
+                }
+            }
+        }
+        countsByTerrainType = null;
+        countsByCondition = null;
+    }
+
+    /**
+     * Met à jour le cache après la suppression ou l'archivage d'entrées : elles sont retirées partout,
+     * et les effectifs sont oubliés.
+     *
+     * @param ids Identifiants des entrées supprimées.
+     */
+    public synchronized void onDeleted(Collection<Long> ids) {
+        version++;
+        for (Long id : ids) {
+            entries.remove(id);
+        }
+        if (head != null) {
+            Set<Long> removed = new HashSet<>(ids);
+            head.removeIf(entry -> removed.contains(entry.getId()));
+        }
+        countsByTerrainType = null;
+        countsByCondition = null;
+    }
+
+    /**
+     * Invalide la première page et les effectifs, par exemple après une insertion groupée
+     * dont les entrées ne sont pas toutes relues. Les entrées déjà décodées restent valides.
+     */
+    public synchronized void invalidateSummaries() {
+        version++;
+        head = null;
+        countsByTerrainType = null;
+        countsByCondition = null;
+    }
+
+    /** @return Le nombre d'entrées trouvées dans le cache par identifiant. */
+    public long getHitCount() {
+        return entries.hitCount() + summaryHits.get();
+    }
+
+    /** @return Le nombre d'entrées ou de synthèses absentes du cache. */
+    public long getMissCount() {
+        return entries.missCount() + summaryMisses.get();
+    }
+
+    /** @return Le nombre d'entrées évincées pour respecter le budget mémoire. */
+    public long getEvictionCount() {
+        return entries.evictionCount();
+    }
+
+    /** @return L'occupation actuelle du cache, en octets estimés. */
+    public int getSizeBytes() {
+        return entries.size();
+    }
+
+    /** @return Le budget mémoire du cache, en octets. */
+    public int getMaxSizeBytes() {
+        return entries.maxSize();
+    }
+
+    /**
+     * Libère tout ou partie du cache lorsque le système manque de mémoire.
+     *
+     * @param level Niveau de pression mémoire signalé par le système.
+     */
+    @Override
+    public void onTrimMemory(int level) {
+        if (level >= TRIM_MEMORY_BACKGROUND) {
+            entries.evictAll();
+            invalidateSummaries();
+        } else if (level >= TRIM_MEMORY_UI_HIDDEN) {
+            entries.trimToSize(entries.maxSize() / 2);
+        }
+    }
+
+    @Override
+    public void onConfigurationChanged(@NonNull Configuration newConfig) {
+    }
+
+    @Override
+    public void onLowMemory() {
+        onTrimMemory(TRIM_MEMORY_COMPLETE);
+    }
+
+    /**
+     * @param value Valeur d'une colonne regroupée.
+     * @return La clé d'effectif correspondante : la valeur elle-même, ou une chaîne vide pour `null`
+     * (comme `IFNULL(colonne, '')` côté SQL).
+     */
+    static String countKey(String value) {
+        return value == null ? "" : value;
+    }
+
+    private static Map<String, Integer> copyCounts(Map<String, Integer> counts) {
+        return counts == null ? null : Collections.unmodifiableMap(new HashMap<>(counts));
+    }
+}
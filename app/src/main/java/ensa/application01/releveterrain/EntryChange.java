@@ -0,0 +1,60 @@
+/**
+ * EntryChange - Modification d'une entrée en attente de synchronisation.
+ */
+package ensa.application01.releveterrain;
+
+/**
+ * Ligne du journal `entry_changes` : la dernière modification connue d'une entrée, et son contenu actuel.
+ */
+public class EntryChange {
+
+    /** Opération journalisée lorsqu'une entrée est créée ou modifiée. */
+    public static final String OPERATION_UPSERT = "upsert";
+
+    /** Opération journalisée lorsqu'une entrée est supprimée. */
+    public static final String OPERATION_DELETE = "delete";
+
+    /** Numéro d'ordre de la modification dans le journal. */
+    private final long seq;
+    /** Identifiant de l'entrée modifiée. */
+    private final long entryId;
+    /** `true` si l'entrée a été supprimée. */
+    private final boolean deleted;
+    /** Contenu actuel de l'entrée, ou `null` si elle a été supprimée. */
+    private final Entry entry;
+
+    /**
+     * Constructeur d'une modification.
+     *
+     * @param seq     Numéro d'ordre de la modification.
+     * @param entryId Identifiant de l'entrée.
+     * @param deleted `true` si l'entrée a été supprimée.
+     * @param entry   Contenu actuel de l'entrée, ou `null`.
+     */
+    public EntryChange(long seq, long entryId, boolean deleted, Entry entry) {
+        this.seq = seq;
+        this.entryId = entryId;
+        this.deleted = deleted;
+        this.entry = entry;
+    }
+
+    /** @return Le numéro d'ordre de la modification. */
+    public long getSeq() {
+        return seq;
+    }
+
+    /** @return L'identifiant de l'entrée modifiée. */
+    public long getEntryId() {
+        return entryId;
+    }
+
+    /** @return `true` si l'entrée a été supprimée. */
+    public boolean isDeleted() {
+        return deleted;
+    }
+
+    /** @return Le contenu actuel de l'entrée, ou `null` si elle a été supprimée. */
+    public Entry getEntry() {
+        return entry;
+    }
+}
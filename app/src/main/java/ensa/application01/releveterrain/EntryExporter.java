@@ -0,0 +1,367 @@
+/**
+ * EntryExporter - Export des relevés au format CSV ou GeoJSON.
+ */
+package ensa.application01.releveterrain;
+
+import android.content.SharedPreferences;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Moteur d'export en flux de la table `entries`.
+ * Les entrées sont lues par fenêtres de taille fixe (pagination sur `id`) et encodées dans un tampon de taille fixe
+ * vidé dans un canal NIO : la mémoire utilisée reste constante quel que soit le nombre de lignes.
+ * Le fichier est écrit sous un nom temporaire, synchronisé sur le support puis renommé, de sorte qu'un export interrompu
+ * (erreur, arrêt de l'application ou coupure d'alimentation) ne laisse pas de fichier tronqué.
+ */
+public class EntryExporter {
+
+    /** Formats d'export disponibles. */
+    public enum Format {
+        /** Valeurs séparées par des virgules (RFC 4180), une ligne par relevé. */
+        CSV("csv"),
+        /** FeatureCollection GeoJSON, un point par relevé. */
+        GEOJSON("geojson");
+
+        /** Extension du fichier produit. */
+        private final String extension;
+
+        Format(String extension) {
+            this.extension = extension;
+        }
+
+        /** @return L'extension du fichier produit, sans point. */
+        public String getExtension() {
+            return extension;
+        }
+    }
+
+    /** Nombre d'entrées lues par fenêtre. */
+    private static final int WINDOW_SIZE = 1000;
+
+    /** Taille du tampon d'écriture, en octets. */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /** Préfixe des clés mémorisant le dernier identifiant exporté, par format. */
+    private static final String KEY_LAST_EXPORTED_ID = "last_exported_id_";
+
+    /** En-tête du fichier CSV. */
+    private static final String CSV_HEADER = "id,site_name,date,date_epoch,latitude,longitude,coordinates," +
+            "description,terrain_type,observations,condition,template_id,extra_values\r\n";
+
+    /** Helper d'accès à la base de données. */
+    private final DatabaseHelper databaseHelper;
+
+    /** Préférences mémorisant la position du dernier export, pour le mode incrémental. */
+    private final SharedPreferences preferences;
+
+    /**
+     * Constructeur du moteur d'export.
+     *
+     * @param databaseHelper Helper d'accès à la base de données.
+     * @param preferences    Préférences où mémoriser le dernier identifiant exporté.
+     */
+    public EntryExporter(DatabaseHelper databaseHelper, SharedPreferences preferences) {
+        this.databaseHelper = databaseHelper;
+        this.preferences = preferences;
+    }
+
+    /**
+     * Exporte les entrées dans un fichier.
+     *
+     * @param target      Fichier à produire ; il est remplacé s'il existe.
+     * @param format      Format du fichier.
+     * @param gzip        `true` pour compresser le fichier au format gzip.
+     * @param incremental `true` pour n'exporter que les entrées créées depuis le dernier export réussi dans ce format.
+     * @return Le nombre d'entrées exportées.
+     * @throws IOException Si le fichier ne peut pas être écrit.
+     */
+    public int export(File target, Format format, boolean gzip, boolean incremental) throws IOException {
+        long afterId = incremental ? preferences.getLong(KEY_LAST_EXPORTED_ID + format.name(), 0) : 0;
+        File temporary = new File(target.getPath() + ".tmp");
+        int count = 0;
+        long lastId = afterId;
+
+        try (FileChannel fileChannel = FileChannel.open(temporary.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+             GZIPOutputStream gzipStream = gzip ? new GZIPOutputStream(Channels.newOutputStream(fileChannel), BUFFER_SIZE) : null;
+             ChannelWriter writer = new ChannelWriter(gzipStream != null ? Channels.newChannel(gzipStream) : fileChannel)) {
+            StringBuilder row = new StringBuilder(512);
+            writer.write(format == Format.CSV ? CSV_HEADER : "{\"type\":\"FeatureCollection\",\"features\":[\n");
+            List<Entry> window;
+            do {
+                window = databaseHelper.getEntriesFrom(lastId, WINDOW_SIZE);
+                for (Entry entry : window) {
+                    row.setLength(0);
+                    if (format == Format.CSV) {
+                        appendCsv(row, entry);
+                    } else {
+                        if (count > 0) {
+                            row.append(",\n");
+                        }
+                        appendFeature(row, entry);
+                    }
+                    writer.write(row);
+                    lastId = entry.getId();
+                    count++;
+                }
+            } while (window.size() == WINDOW_SIZE);
+            if (format == Format.GEOJSON) {
+                writer.write("\n]}\n");
+            }
+            writer.flush();
+            if (gzipStream != null) {
+                gzipStream.finish();
+            }
+            // Contenu sur le support avant le renommage : après une coupure, le nom définitif ne désigne jamais un fichier incomplet
+            fileChannel.force(true);
+        } catch (IOException | RuntimeException e) {
+            temporary.delete();
+            throw e;
+        }
+
+        if (!temporary.renameTo(target)) {
+            temporary.delete();
+            throw new IOException("Impossible de renommer " + temporary + " en " + target);
+        }
+        preferences.edit().putLong(KEY_LAST_EXPORTED_ID + format.name(), lastId).apply();
+        return count;
+    }
+
+    /**
+     * Ajoute une ligne CSV décrivant une entrée.
+     */
+    private static void appendCsv(StringBuilder row, Entry entry) {
+        row.append(entry.getId()).append(',');
+        appendCsvField(row, entry.getSiteName());
+        row.append(',');
+        appendCsvField(row, entry.getDate());
+        row.append(',');
+        if (entry.getDateEpoch() != null) {
+            row.append(entry.getDateEpoch());
+        }
+        row.append(',');
+        if (entry.getLatitude() != null) {
+            row.append(entry.getLatitude());
+        }
+        row.append(',');
+        if (entry.getLongitude() != null) {
+            row.append(entry.getLongitude());
+        }
+        row.append(',');
+        appendCsvField(row, entry.getCoordinates());
+        row.append(',');
+        appendCsvField(row, entry.getDescription());
+        row.append(',');
+        appendCsvField(row, entry.getTerrainType());
+        row.append(',');
+        appendCsvField(row, entry.getObservations());
+        row.append(',');
+        appendCsvField(row, entry.getCondition());
+        row.append(',');
+        appendCsvField(row, entry.getTemplateId());
+        row.append(',');
+        appendCsvField(row, entry.getExtraValues());
+        row.append("\r\n");
+    }
+
+    /**
+     * Ajoute un champ CSV, entre guillemets s'il contient un séparateur, un guillemet ou un saut de ligne.
+     */
+    private static void appendCsvField(StringBuilder row, String value) {
+        if (value == null) {
+            return;
+        }
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if (!quote) {
+            row.append(value);
+            return;
+        }
+        row.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"') {
+                row.append('"');
+            }
+            row.append(c);
+        }
+        row.append('"');
+    }
+
+    /**
+     * Ajoute une Feature GeoJSON décrivant une entrée ; la géométrie est nulle si la position est inconnue.
+     */
+    private static void appendFeature(StringBuilder row, Entry entry) {
+        row.append("{\"type\":\"Feature\",\"id\":").append(entry.getId()).append(",\"geometry\":");
+        if (entry.getLatitude() != null && entry.getLongitude() != null) {
+            row.append("{\"type\":\"Point\",\"coordinates\":[")
+                    .append(String.format(Locale.ROOT, "%.7f", entry.getLongitude())).append(',')
+                    .append(String.format(Locale.ROOT, "%.7f", entry.getLatitude())).append("]}");
+        } else {
+            row.append("null");
+        }
+        row.append(",\"properties\":{");
+        appendJsonProperty(row, "site_name", entry.getSiteName(), false);
+        appendJsonProperty(row, "date", entry.getDate(), true);
+        appendJsonProperty(row, "coordinates", entry.getCoordinates(), true);
+        row.append(",\"date_epoch\":").append(entry.getDateEpoch() == null ? "null" : entry.getDateEpoch().toString());
+        appendJsonProperty(row, "description", entry.getDescription(), true);
+        appendJsonProperty(row, "terrain_type", entry.getTerrainType(), true);
+        appendJsonProperty(row, "observations", entry.getObservations(), true);
+        appendJsonProperty(row, "condition", entry.getCondition(), true);
+        appendJsonProperty(row, "template_id", entry.getTemplateId(), true);
+        appendJsonProperty(row, "extra_values", entry.getExtraValues(), true);
+        row.append("}}");
+    }
+
+    /**
+     * Ajoute une propriété JSON de type texte, échappée.
+     */
+    private static void appendJsonProperty(StringBuilder row, String name, String value, boolean separator) {
+        if (separator) {
+            row.append(',');
+        }
+        row.append('"').append(name).append("\":");
+        if (value == null) {
+            row.append("null");
+            return;
+        }
+        row.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    row.append("\\\"");
+                    break;
+                case '\\':
+                    row.append("\\\\");
+                    break;
+                case '\n':
+                    row.append("\\n");
+                    break;
+                case '\r':
+                    row.append("\\r");
+                    break;
+                case '\t':
+                    row.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        row.append(String.format(Locale.ROOT, "\\u%04x", (int) c));
+                    } else {
+                        row.append(c);
+                    }
+            }
+        }
+        row.append('"');
+    }
+
+    /**
+     * Écrit du texte UTF-8 dans un canal à travers un tampon d'octets de taille fixe.
+     */
+    private static class ChannelWriter implements AutoCloseable {
+
+        /** Canal de destination. */
+        private final WritableByteChannel channel;
+        /** Tampon d'octets réutilisé pour toutes les écritures. */
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        /** Encodeur UTF-8 réutilisé. */
+        private final CharsetEncoder encoder = StandardCharsets.UTF_8.newEncoder();
+
+        ChannelWriter(WritableByteChannel channel) {
+            this.channel = channel;
+        }
+
+        /**
+         * Encode du texte dans le tampon, en le vidant dans le canal chaque fois qu'il est plein.
+         *
+         * @param text Texte à écrire.
+         * @throws IOException Si l'écriture dans le canal échoue.
+         */
+        void write(CharSequence text) throws IOException {
+            CharBuffer chars = CharBuffer.wrap(text);
+            while (true) {
+                CoderResult result = encoder.encode(chars, buffer, false);
+                if (result.isOverflow()) {
+                    drain();
+                } else if (result.isError()) {
+                    result.throwException();
+                } else {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * Écrit dans le canal tout le texte encodé jusqu'ici.
+         *
+         * @throws IOException Si l'écriture dans le canal échoue.
+         */
+        void flush() throws IOException {
+            drain();
+        }
+
+        /**
+         * Vide le tampon dans le canal.
+         */
+        private void drain() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                drain();
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * Bilan d'un export terminé.
+     */
+    public static class Summary {
+
+        /** Fichier produit. */
+        private final File file;
+        /** Nombre d'entrées exportées. */
+        private final int count;
+
+        Summary(File file, int count) {
+            this.file = file;
+            this.count = count;
+        }
+
+        /** @return Le fichier produit. */
+        public File getFile() {
+            return file;
+        }
+
+        /** @return Le nombre d'entrées exportées. */
+        public int getCount() {
+            return count;
+        }
+    }
+}
@@ -0,0 +1,869 @@
+/**
+ * EntryImporter - Import en flux de relevés depuis un fichier CSV ou GeoJSON.
+ */
+package ensa.application01.releveterrain;
+
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.JsonReader;
+import android.util.JsonToken;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Moteur d'import des fichiers produits par {@link EntryExporter} (ou compatibles), éventuellement compressés en gzip.
+ * <p>
+ * Trois étages travaillent en parallèle :
+ * <ul>
+ *     <li>un thread de lecture découpe le fichier en paquets d'enregistrements bruts ;</li>
+ *     <li>un pool de threads décode chaque paquet CSV (champs, date, position) ;</li>
+ *     <li>le thread appelant regroupe les entrées décodées en lots, dans l'ordre du fichier, et remet chaque lot
+ *     à un {@link BatchWriter} qui l'insère en une transaction.</li>
+ * </ul>
+ * Les paquets transitent par une file bornée : la lecture se met en pause lorsque l'écriture prend du retard,
+ * de sorte que la mémoire utilisée ne dépend pas de la taille du fichier. Seule l'insertion d'un lot occupe l'écrivain
+ * de la base : entre deux lots, les autres écritures de l'application (enregistrement d'un relevé…) passent.
+ * Les entrées déjà présentes (même site, même date, mêmes coordonnées) sont ignorées.
+ */
+public class EntryImporter {
+
+    /**
+     * Écouteur recevant l'avancement de l'import, depuis le thread de l'import.
+     */
+    public interface ProgressListener {
+        /**
+         * Appelée régulièrement pendant l'import.
+         *
+         * @param progress Avancement courant.
+         */
+        void onProgress(Progress progress);
+    }
+
+    /** Nombre d'enregistrements par paquet transmis aux threads de décodage. */
+    private static final int CHUNK_SIZE = 1000;
+
+    /** Nombre de lignes validées par transaction, soit par lot remis à l'écrivain. */
+    static final int BATCH_SIZE = 2000;
+
+    /** Nombre de threads de décodage : on laisse un cœur à l'insertion des lots. */
+    private static final int PARSE_THREADS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+
+    /** Nombre maximal de paquets lus mais pas encore insérés. */
+    private static final int QUEUE_CAPACITY = 2 * PARSE_THREADS + 2;
+
+    /** Taille des tampons de lecture, en octets. */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /** Intervalle minimal entre deux notifications d'avancement, en millisecondes. */
+    private static final long PROGRESS_INTERVAL_MS = 250;
+
+    /** Marqueur de fin de fichier déposé dans la file par le thread de lecture. */
+    private static final Future<List<Entry>> END_OF_INPUT = CompletableFuture.completedFuture(new ArrayList<>());
+
+    /**
+     * Écrivain des lots d'entrées décodées.
+     */
+    public interface BatchWriter {
+        /**
+         * Insère un lot en une transaction, en ignorant les entrées déjà présentes. Appelée depuis le thread de l'import,
+         * un lot après l'autre : le lot suivant n'est remis qu'une fois celui-ci validé.
+         *
+         * @param batch Entrées du lot, dans l'ordre du fichier.
+         * @return Le bilan de l'insertion du lot, les positions des lignes en échec étant relatives au lot.
+         * @throws Exception Si le lot n'a pas pu être inséré ; l'import s'arrête, les lots précédents restent acquis.
+         */
+        BulkInsertResult write(List<Entry> batch) throws Exception;
+    }
+
+    /** Écrivain des lots. */
+    private final BatchWriter batchWriter;
+
+    /** Compteur des enregistrements illisibles, incrémenté par les threads de décodage. */
+    private final AtomicInteger malformedRows = new AtomicInteger();
+
+    /**
+     * Constructeur du moteur d'import, insérant chaque lot directement sur le thread de l'import.
+     *
+     * @param databaseHelper Helper d'accès à la base de données.
+     */
+    public EntryImporter(DatabaseHelper databaseHelper) {
+        this(batch -> databaseHelper.insertEntries(batch, batch.size(), true));
+    }
+
+    /**
+     * Constructeur du moteur d'import.
+     *
+     * @param batchWriter Écrivain des lots, par exemple une tâche soumise à la file d'écriture de la base.
+     */
+    public EntryImporter(BatchWriter batchWriter) {
+        this.batchWriter = batchWriter;
+    }
+
+    /**
+     * Importe un fichier. Le format (CSV ou GeoJSON) et la compression gzip sont détectés à partir du contenu.
+     * Cette méthode est bloquante et doit être appelée depuis un thread d'arrière-plan dédié à l'import,
+     * distinct du thread d'écriture de la base si l'écrivain des lots y soumet ses insertions.
+     *
+     * @param input      Flux du fichier ; il n'est pas fermé par cette méthode.
+     * @param totalBytes Taille du fichier en octets, ou -1 si elle est inconnue.
+     * @param listener   Écouteur de l'avancement, ou `null`.
+     * @return Le bilan de l'import.
+     * @throws IOException Si le fichier ne peut pas être lu ou n'est pas dans un format reconnu.
+     */
+    public Summary importFrom(InputStream input, long totalBytes, ProgressListener listener) throws IOException {
+        long start = SystemClock.elapsedRealtime();
+        CountingInputStream counting = new CountingInputStream(input);
+        InputStream decoded = new BufferedInputStream(counting, BUFFER_SIZE);
+        if (isGzip(decoded)) {
+            decoded = new BufferedInputStream(new GZIPInputStream(decoded, BUFFER_SIZE), BUFFER_SIZE);
+        }
+        boolean geoJson = firstSignificantByte(decoded) == '{';
+        BufferedReader reader = new BufferedReader(new InputStreamReader(decoded, StandardCharsets.UTF_8), BUFFER_SIZE);
+        skipByteOrderMark(reader);
+
+        BlockingQueue<Future<List<Entry>>> chunks = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        ExecutorService parsePool = Executors.newFixedThreadPool(PARSE_THREADS, runnable -> new Thread(() -> {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            runnable.run();
+        }, "releve-import-parse"));
+        Thread readerThread = new Thread(() -> {
+            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+            try {
+                if (geoJson) {
+                    readGeoJson(reader, chunks);
+                } else {
+                    readCsv(reader, chunks, parsePool);
+                }
+                chunks.put(END_OF_INPUT);
+            } catch (InterruptedException | InterruptedIOException e) {
+                // L'import a été abandonné : rien à signaler
+            } catch (IOException | RuntimeException e) {
+                CompletableFuture<List<Entry>> failure = new CompletableFuture<>();
+                failure.completeExceptionally(e);
+                try {
+                    chunks.put(failure);
+                } catch (InterruptedException ignored) {
+                    // L'import a été abandonné
+                }
+            }
+        }, "releve-import-read");
+
+        ChunkIterator entries = new ChunkIterator(chunks, counting, totalBytes, start, listener);
+        readerThread.start();
+        try {
+            BulkInsertResult result = new BulkInsertResult();
+            List<Entry> batch = new ArrayList<>(BATCH_SIZE);
+            int batchStart = 0;
+            while (entries.hasNext()) {
+                batch.add(entries.next());
+                if (batch.size() == BATCH_SIZE) {
+                    result.append(writeBatch(batch), batchStart);
+                    batchStart += batch.size();
+                    batch = new ArrayList<>(BATCH_SIZE);
+                }
+            }
+            if (!batch.isEmpty()) {
+                result.append(writeBatch(batch), batchStart);
+            }
+            if (entries.failure != null) {
+                throw entries.failure;
+            }
+            return new Summary(entries.rowsRead, malformedRows.get(), result, SystemClock.elapsedRealtime() - start);
+        } finally {
+            readerThread.interrupt();
+            parsePool.shutdownNow();
+        }
+    }
+
+    /**
+     * Remet un lot à l'écrivain et attend sa validation. La file des paquets continue de se remplir pendant ce temps.
+     *
+     * @param batch Lot à insérer.
+     * @return Le bilan de l'insertion du lot.
+     * @throws IOException Si l'insertion a échoué.
+     */
+    private BulkInsertResult writeBatch(List<Entry> batch) throws IOException {
+        try {
+            return batchWriter.write(batch);
+        } catch (IOException | RuntimeException e) {
+            throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Import interrompu");
+        } catch (Exception e) {
+            throw new IOException(e);
+        }
+    }
+
+    /**
+     * Indique si le flux commence par l'en-tête gzip, sans consommer d'octet.
+     */
+    private static boolean isGzip(InputStream stream) throws IOException {
+        stream.mark(2);
+        int first = stream.read();
+        int second = stream.read();
+        stream.reset();
+        return first == 0x1f && second == 0x8b;
+    }
+
+    /**
+     * Retourne le premier octet qui n'est ni un espace ni une marque d'ordre des octets, sans rien consommer.
+     */
+    private static int firstSignificantByte(InputStream stream) throws IOException {
+        stream.mark(BUFFER_SIZE);
+        try {
+            for (int i = 0; i < BUFFER_SIZE; i++) {
+                int b = stream.read();
+                if (b == -1 || (b != ' ' && b != '\t' && b != '\r' && b != '\n' && b != 0xef && b != 0xbb && b != 0xbf)) {
+                    return b;
+                }
+            }
+            return -1;
+        } finally {
+            stream.reset();
+        }
+    }
+
+    /**
+     * Ignore la marque d'ordre des octets (BOM) qu'ajoutent certains tableurs en tête des fichiers UTF-8.
+     */
+    private static void skipByteOrderMark(BufferedReader reader) throws IOException {
+        reader.mark(1);
+        if (reader.read() != '\uFEFF') {
+            reader.reset();
+        }
+    }
+
+    /**
+     * Lit un fichier CSV : l'en-tête désigne les colonnes, puis les enregistrements bruts sont regroupés en paquets
+     * décodés par le pool. Les paquets sont déposés dans la file dans l'ordre du fichier.
+     */
+    private void readCsv(BufferedReader reader, BlockingQueue<Future<List<Entry>>> chunks, ExecutorService parsePool)
+            throws IOException, InterruptedException {
+        String header = readRecord(reader);
+        if (header == null) {
+            return;
+        }
+        CsvColumns columns = new CsvColumns(parseCsvRecord(header, new ArrayList<>()));
+        List<String> chunk = new ArrayList<>(CHUNK_SIZE);
+        String record;
+        while ((record = readRecord(reader)) != null) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            if (record.isEmpty()) {
+                continue;
+            }
+            chunk.add(record);
+            if (chunk.size() == CHUNK_SIZE) {
+                List<String> records = chunk;
+                chunks.put(parsePool.submit(() -> decodeCsvChunk(records, columns)));
+                chunk = new ArrayList<>(CHUNK_SIZE);
+            }
+        }
+        if (!chunk.isEmpty()) {
+            List<String> records = chunk;
+            chunks.put(parsePool.submit(() -> decodeCsvChunk(records, columns)));
+        }
+    }
+
+    /**
+     * Lit un enregistrement CSV complet : un champ entre guillemets peut contenir des sauts de ligne.
+     *
+     * @return L'enregistrement brut, ou `null` en fin de fichier.
+     */
+    private static String readRecord(BufferedReader reader) throws IOException {
+        String line = reader.readLine();
+        if (line == null || line.indexOf('"') < 0) {
+            return line;
+        }
+        int quotes = countQuotes(line);
+        if (quotes % 2 == 0) {
+            return line;
+        }
+        StringBuilder record = new StringBuilder(line);
+        while (quotes % 2 != 0) {
+            String next = reader.readLine();
+            if (next == null) {
+                // Guillemet jamais refermé : l'enregistrement sera rejeté au décodage
+                break;
+            }
+            record.append('\n').append(next);
+            quotes += countQuotes(next);
+        }
+        return record.toString();
+    }
+
+    /** @return Le nombre de guillemets dans une ligne. */
+    private static int countQuotes(String line) {
+        int count = 0;
+        for (int i = line.indexOf('"'); i >= 0; i = line.indexOf('"', i + 1)) {
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Décode un paquet d'enregistrements CSV, sur un thread du pool.
+     * La date triable et la position sont calculées ici, pour décharger le thread d'écriture.
+     */
+    private List<Entry> decodeCsvChunk(List<String> records, CsvColumns columns) {
+        List<Entry> entries = new ArrayList<>(records.size());
+        List<String> fields = new ArrayList<>(columns.count);
+        for (String record : records) {
+            try {
+                parseCsvRecord(record, fields);
+            } catch (IllegalArgumentException e) {
+                malformedRows.incrementAndGet();
+                continue;
+            }
+            Entry entry = new Entry(-1, columns.get(fields, columns.siteName), columns.get(fields, columns.date),
+                    columns.get(fields, columns.coordinates), columns.get(fields, columns.description),
+                    columns.get(fields, columns.terrainType), columns.get(fields, columns.observations),
+                    columns.get(fields, columns.condition));
+            entry.setTemplate(emptyToNull(columns.get(fields, columns.templateId)),
+                    emptyToNull(columns.get(fields, columns.extraValues)));
+            Double latitude = parseDouble(columns.get(fields, columns.latitude));
+            Double longitude = parseDouble(columns.get(fields, columns.longitude));
+            prepare(entry, latitude, longitude);
+            entries.add(entry);
+        }
+        return entries;
+    }
+
+    /**
+     * Découpe un enregistrement CSV (RFC 4180) en champs.
+     *
+     * @param record Enregistrement brut.
+     * @param fields Liste réutilisée recevant les champs.
+     * @return La liste des champs.
+     * @throws IllegalArgumentException Si un guillemet n'est pas refermé ou est suivi d'autre chose qu'un séparateur.
+     */
+    private static List<String> parseCsvRecord(String record, List<String> fields) {
+        fields.clear();
+        StringBuilder field = new StringBuilder();
+        int length = record.length();
+        int i = 0;
+        while (true) {
+            field.setLength(0);
+            if (i < length && record.charAt(i) == '"') {
+                i++;
+                while (true) {
+                    if (i >= length) {
+                        throw new IllegalArgumentException("Guillemet non refermé");
+                    }
+                    char c = record.charAt(i++);
+                    if (c == '"') {
+                        if (i < length && record.charAt(i) == '"') {
+                            field.append('"');
+                            i++;
+                        } else {
+                            break;
+                        }
+                    } else {
+                        field.append(c);
+                    }
+                }
+                if (i < length && record.charAt(i) != ',') {
+                    throw new IllegalArgumentException("Caractère inattendu après un guillemet");
+                }
+            } else {
+                int end = record.indexOf(',', i);
+                if (end < 0) {
+                    end = length;
+                }
+                field.append(record, i, end);
+                i = end;
+            }
+            fields.add(field.toString());
+            if (i >= length) {
+                return fields;
+            }
+            // Séparateur
+            i++;
+        }
+    }
+
+    /**
+     * Lit un fichier GeoJSON (FeatureCollection) au fil de l'eau. Le décodage JSON est séquentiel par nature :
+     * il se fait sur le thread de lecture, et les paquets déposés dans la file sont déjà décodés.
+     */
+    private void readGeoJson(BufferedReader reader, BlockingQueue<Future<List<Entry>>> chunks)
+            throws IOException, InterruptedException {
+        JsonReader json = new JsonReader(reader);
+        try {
+            json.beginObject();
+            while (json.hasNext()) {
+                if (!"features".equals(json.nextName())) {
+                    json.skipValue();
+                    continue;
+                }
+                List<Entry> chunk = new ArrayList<>(CHUNK_SIZE);
+                json.beginArray();
+                while (json.hasNext()) {
+                    if (Thread.interrupted()) {
+                        throw new InterruptedException();
+                    }
+                    chunk.add(readFeature(json));
+                    if (chunk.size() == CHUNK_SIZE) {
+                        chunks.put(CompletableFuture.completedFuture(chunk));
+                        chunk = new ArrayList<>(CHUNK_SIZE);
+                    }
+                }
+                json.endArray();
+                if (!chunk.isEmpty()) {
+                    chunks.put(CompletableFuture.completedFuture(chunk));
+                }
+            }
+            json.endObject();
+        } catch (IllegalStateException | NumberFormatException e) {
+            throw new IOException("GeoJSON invalide : " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Lit une Feature GeoJSON : la géométrie Point donne la position, les propriétés donnent les champs du relevé.
+     */
+    private static Entry readFeature(JsonReader json) throws IOException {
+        Double latitude = null;
+        Double longitude = null;
+        String siteName = null;
+        String date = null;
+        String coordinates = null;
+        String description = null;
+        String terrainType = null;
+        String observations = null;
+        String condition = null;
+        String templateId = null;
+        String extraValues = null;
+
+        json.beginObject();
+        while (json.hasNext()) {
+            String name = json.nextName();
+            if ("geometry".equals(name) && json.peek() == JsonToken.BEGIN_OBJECT) {
+                json.beginObject();
+                while (json.hasNext()) {
+                    if ("coordinates".equals(json.nextName()) && json.peek() == JsonToken.BEGIN_ARRAY) {
+                        json.beginArray();
+                        longitude = json.nextDouble();
+                        latitude = json.nextDouble();
+                        while (json.hasNext()) {
+                            // Altitude éventuelle
+                            json.skipValue();
+                        }
+                        json.endArray();
+                    } else {
+                        json.skipValue();
+                    }
+                }
+                json.endObject();
+            } else if ("properties".equals(name) && json.peek() == JsonToken.BEGIN_OBJECT) {
+                json.beginObject();
+                while (json.hasNext()) {
+                    switch (json.nextName()) {
+                        case "site_name":
+                            siteName = nextString(json);
+                            break;
+                        case "date":
+                            date = nextString(json);
+                            break;
+                        case "coordinates":
+                            coordinates = nextString(json);
+                            break;
+                        case "description":
+                            description = nextString(json);
+                            break;
+                        case "terrain_type":
+                            terrainType = nextString(json);
+                            break;
+                        case "observations":
+                            observations = nextString(json);
+                            break;
+                        case "condition":
+                            condition = nextString(json);
+                            break;
+                        case "template_id":
+                            templateId = nextString(json);
+                            break;
+                        case "extra_values":
+                            extraValues = nextString(json);
+                            break;
+                        default:
+                            json.skipValue();
+                    }
+                }
+                json.endObject();
+            } else {
+                json.skipValue();
+            }
+        }
+        json.endObject();
+
+        if (coordinates == null && latitude != null && longitude != null) {
+            coordinates = new Coordinates(latitude, longitude).format();
+        }
+        Entry entry = new Entry(-1, siteName, date, coordinates, description, terrainType, observations, condition);
+        entry.setTemplate(emptyToNull(templateId), emptyToNull(extraValues));
+        prepare(entry, latitude, longitude);
+        return entry;
+    }
+
+    /**
+     * @return La valeur, ou `null` si elle est absente ou vide (colonne CSV vide, anciens fichiers).
+     */
+    private static String emptyToNull(String value) {
+        return value == null || value.isEmpty() ? null : value;
+    }
+
+    /**
+     * Lit une valeur texte ou numérique, ou `null`.
+     */
+    private static String nextString(JsonReader json) throws IOException {
+        JsonToken token = json.peek();
+        if (token == JsonToken.STRING || token == JsonToken.NUMBER) {
+            return json.nextString();
+        }
+        json.skipValue();
+        return null;
+    }
+
+    /**
+     * Calcule à l'avance la date triable et la position d'une entrée, pour que l'écrivain n'ait plus qu'à les lier.
+     *
+     * @param entry     Entrée décodée.
+     * @param latitude  Latitude lue dans le fichier, ou `null`.
+     * @param longitude Longitude lue dans le fichier, ou `null`.
+     */
+    private static void prepare(Entry entry, Double latitude, Double longitude) {
+        entry.setDateEpoch(DateParser.toEpochMillis(entry.getDate()));
+        if (latitude != null && longitude != null) {
+            entry.setLocation(latitude, longitude);
+        } else {
+            Coordinates location = Coordinates.parse(entry.getCoordinates());
+            if (location != null) {
+                entry.setLocation(location.getLatitude(), location.getLongitude());
+            }
+        }
+    }
+
+    /**
+     * @return Le nombre lu, ou `null` si le texte est vide ou invalide.
+     */
+    private static Double parseDouble(String text) {
+        if (text == null || text.isEmpty()) {
+            return null;
+        }
+        try {
+            return Double.parseDouble(text);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Positions des colonnes connues dans l'en-tête CSV ; -1 si la colonne est absente.
+     */
+    private static class CsvColumns {
+
+        /** Nombre de colonnes de l'en-tête. */
+        final int count;
+        /** Position de chaque colonne connue. */
+        final int siteName;
+        final int date;
+        final int coordinates;
+        final int latitude;
+        final int longitude;
+        final int description;
+        final int terrainType;
+        final int observations;
+        final int condition;
+        final int templateId;
+        final int extraValues;
+
+        /**
+         * @param header Noms des colonnes, dans l'ordre du fichier.
+         * @throws IOException Si l'en-tête ne contient pas la colonne `site_name`.
+         */
+        CsvColumns(List<String> header) throws IOException {
+            List<String> names = new ArrayList<>(header.size());
+            for (String name : header) {
+                names.add(name.trim().toLowerCase(Locale.ROOT));
+            }
+            count = names.size();
+            siteName = names.indexOf("site_name");
+            date = names.indexOf("date");
+            coordinates = names.indexOf("coordinates");
+            latitude = names.indexOf("latitude");
+            longitude = names.indexOf("longitude");
+            description = names.indexOf("description");
+            terrainType = names.indexOf("terrain_type");
+            observations = names.indexOf("observations");
+            condition = names.indexOf("condition");
+            templateId = names.indexOf("template_id");
+            extraValues = names.indexOf("extra_values");
+            if (siteName < 0) {
+                throw new IOException("En-tête CSV invalide : colonne site_name absente");
+            }
+        }
+
+        /**
+         * @return La valeur de la colonne, une chaîne vide si l'enregistrement est plus court, ou `null` si la colonne est absente.
+         */
+        String get(List<String> fields, int column) {
+            if (column < 0) {
+                return null;
+            }
+            return column < fields.size() ? fields.get(column) : "";
+        }
+    }
+
+    /**
+     * Présente les paquets de la file comme une suite d'entrées, consommée par le thread de l'import.
+     * C'est aussi lui qui compte les enregistrements lus et publie l'avancement.
+     */
+    private static class ChunkIterator implements Iterator<Entry> {
+
+        /** File des paquets, dans l'ordre du fichier. */
+        private final BlockingQueue<Future<List<Entry>>> chunks;
+        /** Flux du fichier, pour connaître le nombre d'octets lus. */
+        private final CountingInputStream counting;
+        /** Taille du fichier, ou -1 si elle est inconnue. */
+        private final long totalBytes;
+        /** Date de début de l'import. */
+        private final long start;
+        /** Écouteur de l'avancement, ou `null`. */
+        private final ProgressListener listener;
+
+        /** Paquet en cours de consommation. */
+        private List<Entry> current = new ArrayList<>();
+        /** Position dans le paquet en cours. */
+        private int position;
+        /** Indique que le marqueur de fin a été reçu. */
+        private boolean finished;
+        /** Nombre d'entrées remises au regroupement en lots. */
+        private int rowsRead;
+        /** Date de la dernière notification d'avancement. */
+        private long lastProgress;
+        /** Erreur de lecture ou de décodage qui a interrompu l'import. */
+        private IOException failure;
+
+        ChunkIterator(BlockingQueue<Future<List<Entry>>> chunks, CountingInputStream counting, long totalBytes,
+                      long start, ProgressListener listener) {
+            this.chunks = chunks;
+            this.counting = counting;
+            this.totalBytes = totalBytes;
+            this.start = start;
+            this.listener = listener;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (position == current.size()) {
+                if (finished) {
+                    return false;
+                }
+                takeChunk();
+            }
+            return true;
+        }
+
+        @Override
+        public Entry next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            rowsRead++;
+            return current.get(position++);
+        }
+
+        /**
+         * Attend le paquet suivant dans l'ordre du fichier. Une erreur termine la suite : les lots déjà validés restent acquis.
+         */
+        private void takeChunk() {
+            try {
+                Future<List<Entry>> next = chunks.take();
+                if (next == END_OF_INPUT) {
+                    finished = true;
+                } else {
+                    current = next.get();
+                    position = 0;
+                }
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                failure = cause instanceof IOException ? (IOException) cause : new IOException(cause);
+                finished = true;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failure = new InterruptedIOException("Import interrompu");
+                finished = true;
+            }
+            if (finished) {
+                current = new ArrayList<>();
+                position = 0;
+            }
+            long now = SystemClock.elapsedRealtime();
+            if (listener != null && (finished || now - lastProgress >= PROGRESS_INTERVAL_MS)) {
+                lastProgress = now;
+                listener.onProgress(new Progress(counting.getCount(), totalBytes, rowsRead, now - start));
+            }
+        }
+    }
+
+    /**
+     * Flux comptant les octets lus, pour mesurer l'avancement dans le fichier (compressé ou non).
+     */
+    private static class CountingInputStream extends FilterInputStream {
+
+        /** Nombre d'octets lus, consulté depuis le thread de l'import. */
+        private volatile long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int read = super.read(buffer, offset, length);
+            if (read > 0) {
+                count += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+
+        /** @return Le nombre d'octets lus jusqu'ici. */
+        long getCount() {
+            return count;
+        }
+    }
+
+    /**
+     * Avancement d'un import.
+     */
+    public static class Progress {
+
+        /** Nombre d'octets du fichier déjà lus. */
+        private final long bytesRead;
+        /** Taille du fichier, ou -1 si elle est inconnue. */
+        private final long totalBytes;
+        /** Nombre d'enregistrements transmis à l'écriture. */
+        private final int rowsRead;
+        /** Temps écoulé depuis le début de l'import, en millisecondes. */
+        private final long elapsedMillis;
+
+        Progress(long bytesRead, long totalBytes, int rowsRead, long elapsedMillis) {
+            this.bytesRead = bytesRead;
+            this.totalBytes = totalBytes;
+            this.rowsRead = rowsRead;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        /** @return Le nombre d'octets du fichier déjà lus. */
+        public long getBytesRead() {
+            return bytesRead;
+        }
+
+        /** @return La taille du fichier, ou -1 si elle est inconnue. */
+        public long getTotalBytes() {
+            return totalBytes;
+        }
+
+        /** @return Le pourcentage du fichier déjà lu, ou -1 si sa taille est inconnue. */
+        public int getPercent() {
+            return totalBytes > 0 ? (int) Math.min(100, bytesRead * 100 / totalBytes) : -1;
+        }
+
+        /** @return Le nombre d'enregistrements transmis à l'écriture. */
+        public int getRowsRead() {
+            return rowsRead;
+        }
+
+        /** @return Le débit moyen depuis le début de l'import, en enregistrements par seconde. */
+        public int getRowsPerSecond() {
+            return elapsedMillis > 0 ? (int) (rowsRead * 1000L / elapsedMillis) : 0;
+        }
+    }
+
+    /**
+     * Bilan d'un import terminé.
+     */
+    public static class Summary {
+
+        /** Nombre d'enregistrements lus et décodés. */
+        private final int rowsRead;
+        /** Nombre d'enregistrements illisibles, écartés au décodage. */
+        private final int malformedRows;
+        /** Bilan de l'insertion : lignes insérées, ignorées et en échec. */
+        private final BulkInsertResult result;
+        /** Durée totale de l'import, en millisecondes. */
+        private final long elapsedMillis;
+
+        Summary(int rowsRead, int malformedRows, BulkInsertResult result, long elapsedMillis) {
+            this.rowsRead = rowsRead;
+            this.malformedRows = malformedRows;
+            this.result = result;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        /** @return Le nombre d'enregistrements lus et décodés. */
+        public int getRowsRead() {
+            return rowsRead;
+        }
+
+        /** @return Le nombre d'enregistrements illisibles. */
+        public int getMalformedRows() {
+            return malformedRows;
+        }
+
+        /** @return Le bilan de l'insertion. */
+        public BulkInsertResult getResult() {
+            return result;
+        }
+
+        /** @return La durée totale de l'import, en millisecondes. */
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        /** @return Le débit moyen de l'import, en enregistrements par seconde. */
+        public int getRowsPerSecond() {
+            return elapsedMillis > 0 ? (int) (rowsRead * 1000L / elapsedMillis) : 0;
+        }
+    }
+}
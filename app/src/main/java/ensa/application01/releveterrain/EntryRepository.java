@@ -0,0 +1,1008 @@
+/**
+ * EntryRepository - Point d'accès asynchrone aux relevés de terrain.
+ * Cette classe encapsule `DatabaseHelper` et exécute toutes les lectures et écritures hors du thread principal.
+ */
+package ensa.application01.releveterrain;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+import android.provider.OpenableColumns;
+import android.util.JsonWriter;
+
+import com.google.android.gms.tasks.Task;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Dépôt des entrées partagé par toute l'application.
+ * Les lectures passent par un petit pool de threads borné, les écritures par une file à écrivain unique :
+ * deux enregistrements simultanés ne se disputent donc jamais le verrou de la base.
+ * Les résultats sont toujours remis sur le thread principal via un {@link Callback}.
+ */
+public class EntryRepository {
+
+    /** Nombre de threads dédiés aux lectures. */
+    private static final int READ_THREADS = 2;
+
+    /** Capacité maximale de la file des lectures en attente. */
+    private static final int READ_QUEUE_CAPACITY = 32;
+
+    /** Capacité maximale de la file des écritures en attente. */
+    private static final int WRITE_QUEUE_CAPACITY = 256;
+
+    /** Capacité maximale de la file des photos en attente de traitement. */
+    private static final int IMAGE_QUEUE_CAPACITY = 16;
+
+    /** Capacité maximale de la file des imports en attente. */
+    private static final int IMPORT_QUEUE_CAPACITY = 4;
+
+    /** Recherche sur un champ propre indexé d'un modèle de formulaire : « clé:valeur » ou « clé=valeur ». */
+    private static final Pattern FIELD_QUERY = Pattern.compile("([a-z][a-z0-9_]*)\\s*[:=]\\s*(.+)");
+
+    /** Instance unique du dépôt. */
+    private static volatile EntryRepository instance;
+
+    /** Écart maximal entre l'enregistrement d'une entrée et le point de trace qui lui est associé, en millisecondes. */
+    private static final long MAX_TRACK_GAP_MS = 2 * 60_000;
+
+    /** Intervalle minimal entre deux demandes de synchronisation, en millisecondes. */
+    private static final long SYNC_REQUEST_INTERVAL_MS = 60_000;
+
+    /** Nom du fichier de préférences du moteur d'export. */
+    private static final String EXPORT_PREFERENCES = "export";
+
+    /** Nom du fichier de préférences de l'écran de diagnostic. */
+    private static final String DIAGNOSTICS_PREFERENCES = "diagnostics";
+
+    /** Clé de la préférence activant les mesures de performance. */
+    private static final String KEY_METRICS_ENABLED = "metrics_enabled";
+
+    /** Contexte de l'application. */
+    private final Context context;
+
+    /** Helper unique d'accès à la base de données. */
+    private final DatabaseHelper databaseHelper;
+
+    /** Exécuteur des lectures. */
+    private final ThreadPoolExecutor readExecutor;
+
+    /** Exécuteur des écritures : un seul thread, les tâches sont traitées dans l'ordre de soumission. */
+    private final ThreadPoolExecutor writeExecutor;
+
+    /**
+     * Exécuteur du traitement des photos : un seul thread, pour qu'une seule image à la fois soit décodée en mémoire
+     * et que ce travail ne retarde ni les lectures ni les écritures.
+     */
+    private final ThreadPoolExecutor imageExecutor;
+
+    /**
+     * Exécuteur des imports : un seul thread, qui lit le fichier et regroupe les entrées en lots ;
+     * chaque lot est ensuite inséré par une tâche distincte de la file d'écriture.
+     */
+    private final ThreadPoolExecutor importExecutor;
+
+    /** Stockage des photos jointes. */
+    private final AttachmentStore attachmentStore;
+
+    /** Chargeur des vignettes de la liste. */
+    private final ThumbnailLoader thumbnailLoader;
+
+    /** Handler permettant de remettre les résultats sur le thread principal. */
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    /** Cache mémoire des entrées récentes et des effectifs. */
+    private final EntryCache cache;
+
+    /** Indique que {@link #warmUp()} a déjà été appelée ; lu et écrit sur le thread principal. */
+    private boolean warmedUp;
+
+    /** Date de la dernière demande de synchronisation (horloge {@link SystemClock#elapsedRealtime()}). */
+    private volatile long lastSyncRequest;
+
+    /** Écouteurs des insertions, prévenus sur le thread principal. */
+    private final List<DatabaseHelper.OnEntriesInsertedListener> insertedListeners = new CopyOnWriteArrayList<>();
+
+    /** Écouteurs des modifications et suppressions, prévenus sur le thread principal. */
+    private final List<OnEntriesChangedListener> changedListeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Interface de rappel recevant le résultat d'une opération asynchrone sur le thread principal.
+     *
+     * @param <T> Type du résultat.
+     */
+    public interface Callback<T> {
+        /**
+         * Appelée lorsque l'opération a réussi.
+         *
+         * @param result Résultat de l'opération.
+         */
+        void onSuccess(T result);
+
+        /**
+         * Appelée lorsque l'opération a échoué ou n'a pas pu être planifiée.
+         *
+         * @param error Erreur rencontrée.
+         */
+        void onError(Exception error);
+    }
+
+    /**
+     * Écouteur prévenu, sur le thread principal, des entrées modifiées, supprimées ou archivées.
+     */
+    public interface OnEntriesChangedListener {
+        /**
+         * Appelée après la modification d'une entrée.
+         *
+         * @param entry Entrée modifiée, relue depuis la base.
+         */
+        void onEntryUpdated(Entry entry);
+
+        /**
+         * Appelée après la suppression d'entrées, par l'utilisateur ou par l'archivage.
+         *
+         * @param ids Identifiants des entrées retirées de la base.
+         */
+        void onEntriesDeleted(List<Long> ids);
+    }
+
+    /**
+     * Constructeur privé : utiliser {@link #getInstance(Context)}.
+     *
+     * @param context Contexte de l'application.
+     */
+    private EntryRepository(Context context) {
+        this(context, new DatabaseHelper(context));
+    }
+
+    /**
+     * Crée un dépôt sur une base donnée, pour les tests : l'instance partagée reste celle de {@link #getInstance(Context)}.
+     *
+     * @param context        Contexte de l'application.
+     * @param databaseHelper Helper de la base à utiliser.
+     */
+    EntryRepository(Context context, DatabaseHelper databaseHelper) {
+        this.context = context;
+        this.databaseHelper = databaseHelper;
+        cache = new EntryCache(context);
+        readExecutor = new ThreadPoolExecutor(READ_THREADS, READ_THREADS, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(READ_QUEUE_CAPACITY), new BackgroundThreadFactory("releve-db-read"));
+        readExecutor.allowCoreThreadTimeOut(true);
+        writeExecutor = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(WRITE_QUEUE_CAPACITY), new BackgroundThreadFactory("releve-db-write"));
+        writeExecutor.allowCoreThreadTimeOut(true);
+        imageExecutor = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(IMAGE_QUEUE_CAPACITY), new BackgroundThreadFactory("releve-image"));
+        imageExecutor.allowCoreThreadTimeOut(true);
+        importExecutor = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(IMPORT_QUEUE_CAPACITY), new BackgroundThreadFactory("releve-import"));
+        importExecutor.allowCoreThreadTimeOut(true);
+        attachmentStore = new AttachmentStore(context);
+        thumbnailLoader = new ThumbnailLoader(context, databaseHelper, attachmentStore);
+        databaseHelper.addOnEntriesInsertedListener(this::onEntriesInserted);
+    }
+
+    /**
+     * Reçoit les insertions validées, sur le thread d'écriture : met le cache à jour avant de prévenir l'interface,
+     * de sorte qu'une lecture déclenchée par la notification voie déjà les nouvelles données.
+     * Une entrée isolée est relue et ajoutée au cache ; une plage (insertion groupée) invalide les synthèses.
+     *
+     * @param firstId Plus petit identifiant inséré.
+     * @param lastId  Plus grand identifiant inséré.
+     */
+    private void onEntriesInserted(long firstId, long lastId) {
+        Entry inserted = firstId == lastId ? databaseHelper.getEntry(firstId) : null;
+        if (inserted != null) {
+            cache.onInserted(inserted);
+        } else {
+            cache.invalidateSummaries();
+        }
+        requestSync();
+        mainHandler.post(() -> {
+            for (DatabaseHelper.OnEntriesInsertedListener listener : insertedListeners) {
+                listener.onEntriesInserted(firstId, lastId);
+            }
+        });
+    }
+
+    /**
+     * Demande une synchronisation après de nouvelles modifications, au plus une fois par minute :
+     * WorkManager n'est pas sollicité à chaque lot d'un import.
+     */
+    private void requestSync() {
+        long now = SystemClock.elapsedRealtime();
+        if (lastSyncRequest == 0 || now - lastSyncRequest >= SYNC_REQUEST_INTERVAL_MS) {
+            lastSyncRequest = now;
+            SyncWorker.requestSync(context);
+        }
+    }
+
+    /**
+     * @return Le helper partagé, pour les lectures des tâches d'arrière-plan du paquet (synchronisation) qui s'exécutent
+     * hors des files du dépôt ; leurs écritures passent par la file d'écriture (voir {@link #acknowledgeSyncedChanges(long)}).
+     */
+    DatabaseHelper getDatabaseHelper() {
+        return databaseHelper;
+    }
+
+    /**
+     * @return Le cache mémoire des entrées, pour consulter ses compteurs.
+     */
+    public EntryCache getCache() {
+        return cache;
+    }
+
+    /**
+     * @return Le chargeur des vignettes affichées dans la liste.
+     */
+    public ThumbnailLoader getThumbnailLoader() {
+        return thumbnailLoader;
+    }
+
+    /**
+     * Enregistre un écouteur prévenu, sur le thread principal, de chaque insertion validée.
+     *
+     * @param listener Écouteur à ajouter.
+     */
+    public void addOnEntriesInsertedListener(DatabaseHelper.OnEntriesInsertedListener listener) {
+        insertedListeners.add(listener);
+    }
+
+    /**
+     * Retire un écouteur des insertions.
+     *
+     * @param listener Écouteur à retirer.
+     */
+    public void removeOnEntriesInsertedListener(DatabaseHelper.OnEntriesInsertedListener listener) {
+        insertedListeners.remove(listener);
+    }
+
+    /**
+     * Enregistre un écouteur prévenu, sur le thread principal, de chaque modification ou suppression.
+     *
+     * @param listener Écouteur à ajouter.
+     */
+    public void addOnEntriesChangedListener(OnEntriesChangedListener listener) {
+        changedListeners.add(listener);
+    }
+
+    /**
+     * Retire un écouteur des modifications et suppressions.
+     *
+     * @param listener Écouteur à retirer.
+     */
+    public void removeOnEntriesChangedListener(OnEntriesChangedListener listener) {
+        changedListeners.remove(listener);
+    }
+
+    /**
+     * Retourne l'instance unique du dépôt, en la créant si nécessaire.
+     *
+     * @param context N'importe quel contexte : seul le contexte de l'application est conservé.
+     * @return Le dépôt partagé.
+     */
+    public static EntryRepository getInstance(Context context) {
+        if (instance == null) {
+            synchronized (EntryRepository.class) {
+                if (instance == null) {
+                    instance = new EntryRepository(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * Ouvre la base de données en arrière-plan afin que la création ou la mise à jour du schéma
+     * ne soit jamais exécutée lors d'un clic de l'utilisateur.
+     * Seul le premier appel a un effet : les écrans peuvent l'appeler à chaque création sans répéter les planifications.
+     * À appeler depuis le thread principal, de préférence après le premier affichage.
+     */
+    public void warmUp() {
+        if (warmedUp) {
+            return;
+        }
+        warmedUp = true;
+        submitWrite(() -> {
+            databaseHelper.getWritableDatabase();
+            SyncWorker.schedulePeriodic(context);
+            MaintenanceWorker.schedulePeriodic(context);
+            PerfMetrics.setEnabled(context.getSharedPreferences(DIAGNOSTICS_PREFERENCES, Context.MODE_PRIVATE)
+                    .getBoolean(KEY_METRICS_ENABLED, PerfMetrics.isEnabled()));
+            return null;
+        }, null);
+        scheduleDataMigrationStep();
+        // Tâche distincte : un modèle de formulaire invalide ne doit pas empêcher les planifications ci-dessus
+        submitWrite(() -> {
+            databaseHelper.ensureFieldIndexes(FormTemplates.getAll(context));
+            return null;
+        }, null);
+        submit(imageExecutor, () -> attachmentStore.deleteOrphanFiles(databaseHelper.getAttachmentFileNames()), null);
+    }
+
+    /**
+     * Planifie un lot de la migration de données en attente sur la file d'écriture, puis le suivant tant qu'il en reste.
+     * Chaque lot est une tâche distincte : un enregistrement de l'utilisateur n'attend jamais la fin de toute la migration.
+     */
+    private void scheduleDataMigrationStep() {
+        submitWrite(() -> databaseHelper.runDataMigrationStep(DatabaseHelper.MIGRATION_BATCH_SIZE),
+                new Callback<Boolean>() {
+                    @Override
+                    public void onSuccess(Boolean remaining) {
+                        if (remaining) {
+                            scheduleDataMigrationStep();
+                        }
+                    }
+
+                    @Override
+                    public void onError(Exception error) {
+                        // La migration reprendra à la prochaine ouverture de l'application
+                    }
+                });
+    }
+
+    /**
+     * Insère une entrée dans la base via la file d'écriture.
+     * Si le suivi GPS a enregistré un point proche de cet instant, l'entrée lui est associée.
+     *
+     * @param entry    Entrée à enregistrer (son identifiant est ignoré).
+     * @param callback Rappel recevant l'identifiant de la ligne insérée, ou -1 en cas d'échec.
+     */
+    public void insertEntry(Entry entry, Callback<Long> callback) {
+        submitWrite(timed(PerfMetrics.Metric.INSERT, () -> {
+            if (entry.getTrackPointId() == null) {
+                TrackPoint point = databaseHelper.getNearestTrackPoint(System.currentTimeMillis(), MAX_TRACK_GAP_MS);
+                if (point != null) {
+                    entry.setTrackPointId(point.getId());
+                }
+            }
+            return databaseHelper.insertEntry(entry);
+        }), callback);
+    }
+
+    /**
+     * Insère une entrée une fois terminée une tâche préalable, typiquement la livraison des positions accumulées
+     * par le suivi GPS ({@link TrackLogger#flush()}), pour que l'entrée soit rattachée au bon point de trace.
+     * L'attente n'est liée à aucun écran : l'entrée est enregistrée même si l'activité qui l'a demandée est arrêtée
+     * ou recréée entre-temps, et le rappel doit vérifier que son écran existe encore avant de le modifier.
+     * Un échec de la tâche préalable n'empêche pas l'insertion.
+     *
+     * @param before   Tâche à attendre.
+     * @param entry    Entrée à enregistrer (son identifiant est ignoré).
+     * @param callback Rappel recevant l'identifiant de la ligne insérée, ou -1 en cas d'échec.
+     */
+    public void insertEntryAfter(Task<?> before, Entry entry, Callback<Long> callback) {
+        before.addOnCompleteListener(task -> insertEntry(entry, callback));
+    }
+
+    /**
+     * Met à jour une entrée via la file d'écriture ; tous ses champs sont remplacés.
+     * Le cache est mis à jour et la modification sera transmise à la prochaine synchronisation.
+     *
+     * @param entry    Entrée à enregistrer, identifiée par son `id`.
+     * @param callback Rappel recevant `true` si l'entrée existait et a été mise à jour.
+     */
+    public void updateEntry(Entry entry, Callback<Boolean> callback) {
+        submitWrite(() -> {
+            if (!databaseHelper.updateEntry(entry)) {
+                return false;
+            }
+            Entry updated = databaseHelper.getEntry(entry.getId());
+            if (updated != null) {
+                cache.onUpdated(updated);
+                requestSync();
+                mainHandler.post(() -> {
+                    for (OnEntriesChangedListener listener : changedListeners) {
+                        listener.onEntryUpdated(updated);
+                    }
+                });
+            }
+            return true;
+        }, callback);
+    }
+
+    /**
+     * Supprime une entrée via la file d'écriture, avec les fichiers de ses photos.
+     * La suppression sera transmise à la prochaine synchronisation.
+     *
+     * @param id       Identifiant de l'entrée.
+     * @param callback Rappel recevant `true` si l'entrée existait et a été supprimée.
+     */
+    public void deleteEntry(long id, Callback<Boolean> callback) {
+        submitWrite(() -> {
+            List<Attachment> attachments = databaseHelper.getAttachments(id);
+            if (!databaseHelper.deleteEntry(id)) {
+                return false;
+            }
+            for (Attachment attachment : attachments) {
+                attachmentStore.delete(attachment);
+            }
+            onEntriesDeleted(Collections.singletonList(id));
+            requestSync();
+            return true;
+        }, callback);
+    }
+
+    /**
+     * Reporte des suppressions validées dans le cache, puis prévient la liste des vignettes et les écouteurs.
+     *
+     * @param ids Identifiants des entrées supprimées.
+     */
+    private void onEntriesDeleted(List<Long> ids) {
+        cache.onDeleted(ids);
+        mainHandler.post(() -> {
+            for (long id : ids) {
+                thumbnailLoader.invalidate(id);
+            }
+            for (OnEntriesChangedListener listener : changedListeners) {
+                listener.onEntriesDeleted(ids);
+            }
+        });
+    }
+
+    /**
+     * Archive un lot d'entrées anciennes et déjà synchronisées (voir {@link EntryArchiver}), sur la file d'écriture.
+     * Méthode bloquante, réservée aux tâches de maintenance qui s'exécutent hors du thread principal :
+     * chaque lot est une tâche distincte, si bien qu'un enregistrement de l'utilisateur n'attend jamais plus d'un lot.
+     *
+     * @param cutoffEpochMillis Date limite, en millisecondes depuis l'époque Unix (exclue).
+     * @return Le nombre d'entrées archivées ; 0 s'il n'en reste plus.
+     * @throws Exception Si l'archive ne peut pas être écrite ou si la file d'écriture est pleine.
+     */
+    int archiveOldEntries(long cutoffEpochMillis) throws Exception {
+        return runOnWriter(() -> {
+            List<Long> archived = new EntryArchiver(databaseHelper, attachmentStore,
+                    new File(context.getFilesDir(), "archive")).archiveBatch(cutoffEpochMillis);
+            if (!archived.isEmpty()) {
+                onEntriesDeleted(archived);
+            }
+            return archived.size();
+        });
+    }
+
+    /**
+     * Retire du journal les modifications acceptées par le serveur, sur la file d'écriture.
+     * Méthode bloquante, réservée à la synchronisation qui s'exécute hors du thread principal.
+     *
+     * @param upToSeq Numéro d'ordre de la dernière modification acceptée.
+     * @return Le nombre de modifications retirées.
+     * @throws Exception Si l'écriture échoue ou si la file d'écriture est pleine.
+     */
+    int acknowledgeSyncedChanges(long upToSeq) throws Exception {
+        return runOnWriter(() -> databaseHelper.acknowledgeChanges(upToSeq));
+    }
+
+    /**
+     * Rend au système les pages libérées par les suppressions, par petites étapes sur la file d'écriture.
+     * Une base créée avant l'activation de `auto_vacuum = INCREMENTAL` à la création est d'abord convertie, une seule fois,
+     * par un `VACUUM` complet.
+     * Méthode bloquante, réservée aux tâches de maintenance.
+     *
+     * @param pagesPerStep Nombre maximal de pages restituées par étape.
+     * @param stopped      Indique que la tâche doit s'interrompre entre deux étapes.
+     * @return Le nombre de pages restituées.
+     * @throws Exception Si une étape échoue ou si la file d'écriture est pleine.
+     */
+    long compactDatabase(int pagesPerStep, BooleanSupplier stopped) throws Exception {
+        if (!runOnWriter(databaseHelper::isIncrementalVacuumEnabled)) {
+            long before = runOnWriter(databaseHelper::getFreePageCount);
+            runOnWriter(() -> {
+                databaseHelper.enableIncrementalVacuum();
+                return null;
+            });
+            return before;
+        }
+        long initial = runOnWriter(databaseHelper::getFreePageCount);
+        long remaining = initial;
+        while (remaining > 0 && !stopped.getAsBoolean()) {
+            remaining = runOnWriter(() -> databaseHelper.incrementalVacuum(pagesPerStep));
+        }
+        return initial - remaining;
+    }
+
+    /**
+     * Enregistre un lot de positions du suivi GPS via la file d'écriture, dans une seule transaction.
+     *
+     * @param points   Positions à enregistrer.
+     * @param callback Rappel recevant le nombre de positions enregistrées, ou `null`.
+     */
+    public void insertTrackPoints(List<TrackPoint> points, Callback<Integer> callback) {
+        submitWrite(() -> databaseHelper.insertTrackPoints(points), callback);
+    }
+
+    /**
+     * Joint des photos à une entrée. Les photos sont réduites et leurs vignettes produites sur le thread des images,
+     * puis leurs références sont enregistrées via la file d'écriture : la base ne reçoit que des lignes de quelques octets.
+     *
+     * @param entryId  Identifiant de l'entrée.
+     * @param photos   Photos choisies par l'utilisateur.
+     * @param callback Rappel recevant le nombre de photos jointes, ou `null`.
+     */
+    public void addPhotos(long entryId, List<Uri> photos, Callback<Integer> callback) {
+        submit(imageExecutor, () -> {
+            List<Attachment> stored = new ArrayList<>(photos.size());
+            for (Uri photo : photos) {
+                stored.add(attachmentStore.storePhoto(entryId, photo));
+            }
+            return stored;
+        }, new Callback<List<Attachment>>() {
+            @Override
+            public void onSuccess(List<Attachment> stored) {
+                submitWrite(() -> {
+                    int inserted = 0;
+                    for (Attachment attachment : stored) {
+                        if (databaseHelper.insertAttachment(attachment) != -1) {
+                            inserted++;
+                        }
+                    }
+                    return inserted;
+                }, new Callback<Integer>() {
+                    @Override
+                    public void onSuccess(Integer inserted) {
+                        thumbnailLoader.invalidate(entryId);
+                        if (callback != null) {
+                            callback.onSuccess(inserted);
+                        }
+                    }
+
+                    @Override
+                    public void onError(Exception error) {
+                        if (callback != null) {
+                            callback.onError(error);
+                        }
+                    }
+                });
+            }
+
+            @Override
+            public void onError(Exception error) {
+                if (callback != null) {
+                    callback.onError(error);
+                }
+            }
+        });
+    }
+
+    /**
+     * Insère un ensemble d'entrées en transactions groupées via la file d'écriture.
+     *
+     * @param entries  Entrées à insérer.
+     * @param callback Rappel recevant le bilan de l'insertion.
+     */
+    public void insertEntries(Iterable<Entry> entries, Callback<BulkInsertResult> callback) {
+        submitWrite(() -> databaseHelper.insertEntries(entries, DatabaseHelper.DEFAULT_BATCH_SIZE), callback);
+    }
+
+    /**
+     * Charge une page d'entrées par pagination sur la clé `id`.
+     *
+     * @param beforeId Identifiant de la dernière entrée déjà chargée, ou {@link DatabaseHelper#FIRST_PAGE}.
+     * @param limit    Nombre maximal d'entrées à retourner.
+     * @param callback Rappel recevant la page chargée.
+     */
+    public void loadEntriesPage(long beforeId, int limit, Callback<List<Entry>> callback) {
+        if (beforeId == DatabaseHelper.FIRST_PAGE) {
+            // La première page est servie depuis la mémoire lorsqu'elle est connue
+            List<Entry> head = cache.getHead(limit);
+            if (head != null) {
+                mainHandler.post(() -> callback.onSuccess(head));
+                return;
+            }
+        }
+        submitRead(timed(PerfMetrics.Metric.QUERY, () -> {
+            long version = cache.getVersion();
+            List<Entry> page = databaseHelper.getEntriesPage(beforeId, limit);
+            if (beforeId == DatabaseHelper.FIRST_PAGE) {
+                cache.putHead(page, page.size() < limit, version);
+            } else {
+                cache.putAll(page, version);
+            }
+            return page;
+        }), callback);
+    }
+
+    /**
+     * Charge une entrée par son identifiant, depuis le cache si possible.
+     *
+     * @param id       Identifiant de l'entrée.
+     * @param callback Rappel recevant l'entrée, ou `null` si elle n'existe pas.
+     */
+    public void loadEntry(long id, Callback<Entry> callback) {
+        Entry cached = cache.get(id);
+        if (cached != null) {
+            mainHandler.post(() -> callback.onSuccess(cached));
+            return;
+        }
+        submitRead(timed(PerfMetrics.Metric.QUERY, () -> {
+            long version = cache.getVersion();
+            Entry entry = databaseHelper.getEntry(id);
+            if (entry != null) {
+                cache.putAll(Collections.singletonList(entry), version);
+            }
+            return entry;
+        }), callback);
+    }
+
+    /**
+     * Charge les effectifs par type de terrain et par condition, depuis le cache si possible.
+     *
+     * @param callback Rappel recevant la synthèse.
+     */
+    public void loadStatistics(Callback<EntryStatistics> callback) {
+        Map<String, Integer> byTerrainType = cache.getCountsByTerrainType();
+        Map<String, Integer> byCondition = cache.getCountsByCondition();
+        if (byTerrainType != null && byCondition != null) {
+            cache.recordCountsLookup(true);
+            mainHandler.post(() -> callback.onSuccess(new EntryStatistics(byTerrainType, byCondition)));
+            return;
+        }
+        cache.recordCountsLookup(false);
+        submitRead(timed(PerfMetrics.Metric.QUERY, () -> {
+            long version = cache.getVersion();
+            Map<String, Integer> terrainCounts = databaseHelper.getCountsByTerrainType();
+            Map<String, Integer> conditionCounts = databaseHelper.getCountsByCondition();
+            cache.putCounts(terrainCounts, conditionCounts, version);
+            return new EntryStatistics(terrainCounts, conditionCounts);
+        }), callback);
+    }
+
+    /**
+     * Charge les entrées plus récentes que la dernière entrée affichée.
+     *
+     * @param afterId  Identifiant de l'entrée la plus récente déjà chargée.
+     * @param limit    Nombre maximal d'entrées à retourner.
+     * @param callback Rappel recevant les nouvelles entrées, de la plus récente à la plus ancienne.
+     */
+    public void loadEntriesAfter(long afterId, int limit, Callback<List<Entry>> callback) {
+        submitRead(timed(PerfMetrics.Metric.QUERY, () -> databaseHelper.getEntriesAfter(afterId, limit)), callback);
+    }
+
+    /**
+     * Charge les entrées situées à moins d'une certaine distance d'une position.
+     *
+     * @param latitude     Latitude du centre, en degrés.
+     * @param longitude    Longitude du centre, en degrés.
+     * @param radiusMeters Rayon de recherche, en mètres.
+     * @param limit        Nombre maximal d'entrées à retourner : les plus proches sont retenues.
+     * @param callback     Rappel recevant les entrées, de la plus proche à la plus éloignée.
+     */
+    public void loadEntriesNear(double latitude, double longitude, double radiusMeters, int limit,
+                                Callback<List<Entry>> callback) {
+        submitRead(timed(PerfMetrics.Metric.QUERY,
+                () -> databaseHelper.getEntriesWithinRadius(latitude, longitude, radiusMeters, limit)), callback);
+    }
+
+    /**
+     * Recherche les entrées par mots-clés dans la description et les observations.
+     * Une requête de la forme « clé:valeur », dont la clé est un champ indexé d'un modèle de formulaire,
+     * recherche plutôt cette valeur exacte dans ce champ, par son index.
+     *
+     * @param query    Texte saisi par l'utilisateur.
+     * @param limit    Nombre maximal d'entrées à retourner.
+     * @param callback Rappel recevant les entrées, de la plus pertinente à la moins pertinente
+     *                 (de la plus récente à la plus ancienne pour une recherche sur un champ).
+     */
+    public void searchEntries(String query, int limit, Callback<List<Entry>> callback) {
+        submitRead(timed(PerfMetrics.Metric.QUERY, () -> {
+            Matcher matcher = FIELD_QUERY.matcher(query);
+            if (matcher.matches()) {
+                String key = matcher.group(1);
+                List<String> templateIds = new ArrayList<>();
+                boolean numeric = false;
+                for (FormPlan plan : FormTemplates.getAll(context)) {
+                    int index = plan.indexOf(key);
+                    if (index >= 0 && plan.get(index).isIndexed()) {
+                        templateIds.add(plan.getId());
+                        // Le type d'une clé est le même dans tous les modèles (voir FormTemplates.checkFieldTypes)
+                        numeric = plan.get(index).getType() == FormPlan.Type.NUMBER;
+                    }
+                }
+                if (!templateIds.isEmpty()) {
+                    return databaseHelper.getEntriesByFieldValue(templateIds, key, numeric, matcher.group(2).trim(), limit);
+                }
+            }
+            return databaseHelper.searchEntries(query, limit);
+        }), callback);
+    }
+
+    /**
+     * Charge les modèles de formulaire, compilés une seule fois par processus.
+     *
+     * @param callback Rappel recevant les modèles, le modèle par défaut en premier.
+     */
+    public void loadFormTemplates(Callback<List<FormPlan>> callback) {
+        submitRead(() -> FormTemplates.getAll(context), callback);
+    }
+
+    /**
+     * Exporte les entrées dans un fichier horodaté du répertoire `exports` du stockage externe de l'application,
+     * au format CSV ou GeoJSON, en arrière-plan : la résolution de ce répertoire touche aussi le disque.
+     *
+     * @param format      Format du fichier.
+     * @param gzip        `true` pour compresser le fichier.
+     * @param incremental `true` pour n'exporter que les entrées créées depuis le dernier export dans ce format.
+     * @param callback    Rappel recevant le fichier produit et le nombre d'entrées exportées.
+     */
+    public void exportEntries(EntryExporter.Format format, boolean gzip, boolean incremental,
+                              Callback<EntryExporter.Summary> callback) {
+        submitRead(() -> {
+            File dir = context.getExternalFilesDir("exports");
+            if (dir == null) {
+                throw new IOException("Stockage indisponible pour l'export.");
+            }
+            File target = new File(dir, "releves-" +
+                    new SimpleDateFormat("yyyyMMdd-HHmmss", Locale.ROOT).format(new Date()) +
+                    "." + format.getExtension() + (gzip ? ".gz" : ""));
+            int count = new EntryExporter(databaseHelper,
+                    context.getSharedPreferences(EXPORT_PREFERENCES, Context.MODE_PRIVATE))
+                    .export(target, format, gzip, incremental);
+            return new EntryExporter.Summary(target, count);
+        }, callback);
+    }
+
+    /**
+     * Importe un fichier CSV ou GeoJSON (éventuellement compressé). La lecture et le décodage ont lieu sur le thread
+     * des imports ; chaque lot de {@link EntryImporter#BATCH_SIZE} entrées est inséré par sa propre tâche de la file
+     * d'écriture, de sorte qu'un enregistrement de l'utilisateur n'attend que la fin du lot en cours, et non de l'import.
+     * Les entrées déjà présentes sont ignorées.
+     *
+     * @param uri      Document choisi par l'utilisateur.
+     * @param listener Écouteur de l'avancement, prévenu sur le thread principal, ou `null`.
+     * @param callback Rappel recevant le bilan de l'import.
+     */
+    public void importEntries(Uri uri, EntryImporter.ProgressListener listener, Callback<EntryImporter.Summary> callback) {
+        EntryImporter.ProgressListener mainThreadListener = listener == null ? null
+                : progress -> mainHandler.post(() -> listener.onProgress(progress));
+        EntryImporter importer = new EntryImporter(
+                batch -> runOnWriter(() -> databaseHelper.insertEntries(batch, batch.size(), true)));
+        submit(importExecutor, () -> {
+            long size = querySize(uri);
+            try (InputStream input = context.getContentResolver().openInputStream(uri)) {
+                if (input == null) {
+                    throw new FileNotFoundException(uri.toString());
+                }
+                return importer.importFrom(input, size, mainThreadListener);
+            }
+        }, callback);
+    }
+
+    /**
+     * Active ou désactive les mesures de performance, et mémorise ce choix pour les prochains lancements.
+     *
+     * @param enabled `true` pour enregistrer les mesures.
+     */
+    public void setMetricsEnabled(boolean enabled) {
+        PerfMetrics.setEnabled(enabled);
+        submitWrite(() -> context.getSharedPreferences(DIAGNOSTICS_PREFERENCES, Context.MODE_PRIVATE).edit()
+                .putBoolean(KEY_METRICS_ENABLED, enabled).commit(), null);
+    }
+
+    /**
+     * Produit le rapport de diagnostic en arrière-plan : mesures de latence, taille de la base, nombre de lignes
+     * et compteurs du cache.
+     *
+     * @param callback Rappel recevant le rapport, document JSON indenté.
+     */
+    public void loadDiagnostics(Callback<String> callback) {
+        submitRead(this::buildDiagnostics, callback);
+    }
+
+    /**
+     * Écrit le rapport de diagnostic dans un fichier horodaté du répertoire `diagnostics` du stockage externe
+     * de l'application, en arrière-plan : la résolution de ce répertoire touche le disque.
+     *
+     * @param callback Rappel recevant le fichier écrit.
+     */
+    public void exportDiagnostics(Callback<File> callback) {
+        submitRead(() -> {
+            File dir = context.getExternalFilesDir("diagnostics");
+            if (dir == null) {
+                throw new IOException("Stockage indisponible pour l'export.");
+            }
+            File target = new File(dir, "diagnostic-" +
+                    new SimpleDateFormat("yyyyMMdd-HHmmss", Locale.ROOT).format(new Date()) + ".json");
+            try (Writer writer = new OutputStreamWriter(new FileOutputStream(target), StandardCharsets.UTF_8)) {
+                writer.write(buildDiagnostics());
+            }
+            return target;
+        }, callback);
+    }
+
+    /**
+     * @return Le rapport de diagnostic, document JSON indenté. À appeler hors du thread principal.
+     */
+    private String buildDiagnostics() throws IOException {
+        StringWriter buffer = new StringWriter();
+        try (JsonWriter json = new JsonWriter(buffer)) {
+            json.setIndent("  ");
+            json.beginObject();
+            json.name("generated_at_ms").value(System.currentTimeMillis());
+            json.name("metrics_enabled").value(PerfMetrics.isEnabled());
+            json.name("metrics");
+            PerfMetrics.writeJson(json);
+            json.name("database");
+            json.beginObject();
+            for (Map.Entry<String, Long> size : databaseHelper.getStorageSizes().entrySet()) {
+                json.name(size.getKey()).value(size.getValue());
+            }
+            json.name("rows");
+            json.beginObject();
+            for (Map.Entry<String, Long> count : databaseHelper.getRowCounts().entrySet()) {
+                json.name(count.getKey()).value(count.getValue());
+            }
+            json.endObject();
+            json.endObject();
+            json.name("cache");
+            json.beginObject();
+            json.name("hits").value(cache.getHitCount());
+            json.name("misses").value(cache.getMissCount());
+            json.name("evictions").value(cache.getEvictionCount());
+            json.endObject();
+            json.endObject();
+        }
+        return buffer.toString();
+    }
+
+    /**
+     * Retourne la taille d'un document, si le fournisseur la connaît.
+     *
+     * @param uri Document à mesurer.
+     * @return La taille en octets, ou -1 si elle est inconnue.
+     */
+    private long querySize(Uri uri) {
+        try (Cursor cursor = context.getContentResolver().query(uri, new String[]{OpenableColumns.SIZE},
+                null, null, null)) {
+            if (cursor != null && cursor.moveToFirst() && !cursor.isNull(0)) {
+                return cursor.getLong(0);
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Enveloppe une tâche pour mesurer sa durée. Si les mesures sont désactivées, la tâche est retournée telle quelle.
+     *
+     * @param metric Chemin mesuré.
+     * @param task   Tâche à mesurer.
+     * @param <T>    Type du résultat.
+     * @return La tâche à soumettre.
+     */
+    private static <T> Callable<T> timed(PerfMetrics.Metric metric, Callable<T> task) {
+        if (!PerfMetrics.isEnabled()) {
+            return task;
+        }
+        return () -> {
+            long start = PerfMetrics.start();
+            try {
+                return task.call();
+            } finally {
+                PerfMetrics.stop(metric, start);
+            }
+        };
+    }
+
+    /**
+     * Soumet une lecture au pool de lecture.
+     *
+     * @param task     Tâche à exécuter en arrière-plan.
+     * @param callback Rappel recevant le résultat, ou `null` si le résultat est ignoré.
+     * @param <T>      Type du résultat.
+     */
+    private <T> void submitRead(Callable<T> task, Callback<T> callback) {
+        submit(readExecutor, task, callback);
+    }
+
+    /**
+     * Soumet une écriture à la file à écrivain unique.
+     *
+     * @param task     Tâche à exécuter en arrière-plan.
+     * @param callback Rappel recevant le résultat, ou `null` si le résultat est ignoré.
+     * @param <T>      Type du résultat.
+     */
+    private <T> void submitWrite(Callable<T> task, Callback<T> callback) {
+        submit(writeExecutor, task, callback);
+    }
+
+    /**
+     * Exécute une tâche sur la file d'écriture et attend son résultat. Réservée aux threads d'arrière-plan
+     * (tâches WorkManager, thread des imports) : appelée depuis la file d'écriture elle-même, elle se bloquerait indéfiniment.
+     *
+     * @param task Tâche à exécuter.
+     * @param <T>  Type du résultat.
+     * @return Le résultat de la tâche.
+     * @throws Exception L'erreur levée par la tâche, ou {@link RejectedExecutionException} si la file est pleine.
+     */
+    private <T> T runOnWriter(Callable<T> task) throws Exception {
+        try {
+            return writeExecutor.submit(task).get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            throw cause instanceof Exception ? (Exception) cause : e;
+        }
+    }
+
+    /**
+     * Exécute une tâche sur l'exécuteur donné et remet son résultat sur le thread principal.
+     * Si la file de l'exécuteur est pleine, l'erreur est remise au rappel au lieu de bloquer l'appelant.
+     *
+     * @param executor Exécuteur cible.
+     * @param task     Tâche à exécuter.
+     * @param callback Rappel recevant le résultat, ou `null`.
+     * @param <T>      Type du résultat.
+     */
+    private <T> void submit(ThreadPoolExecutor executor, Callable<T> task, Callback<T> callback) {
+        try {
+            executor.execute(() -> {
+                try {
+                    T result = task.call();
+                    if (callback != null) {
+                        mainHandler.post(() -> callback.onSuccess(result));
+                    }
+                } catch (Exception e) {
+                    if (callback != null) {
+                        mainHandler.post(() -> callback.onError(e));
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            if (callback != null) {
+                mainHandler.post(() -> callback.onError(e));
+            }
+        }
+    }
+
+    /**
+     * Fabrique de threads nommés, exécutés avec une priorité d'arrière-plan pour ne pas concurrencer l'interface.
+     */
+    static class BackgroundThreadFactory implements ThreadFactory {
+
+        /** Préfixe du nom des threads créés. */
+        private final String namePrefix;
+
+        /** Compteur utilisé pour numéroter les threads. */
+        private final AtomicInteger count = new AtomicInteger();
+
+        BackgroundThreadFactory(String namePrefix) {
+            this.namePrefix = namePrefix;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            return new Thread(() -> {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                runnable.run();
+            }, namePrefix + "-" + count.incrementAndGet());
+        }
+    }
+}
@@ -0,0 +1,47 @@
+/**
+ * EntryStatistics - Synthèse des relevés enregistrés.
+ */
+package ensa.application01.releveterrain;
+
+import java.util.Map;
+
+/**
+ * Effectifs des relevés par type de terrain et par condition, tels qu'affichés en tête de la liste.
+ */
+public class EntryStatistics {
+
+    /** Nombre d'entrées par type de terrain. */
+    private final Map<String, Integer> countsByTerrainType;
+    /** Nombre d'entrées par condition. */
+    private final Map<String, Integer> countsByCondition;
+
+    /**
+     * Constructeur de la synthèse.
+     *
+     * @param countsByTerrainType Nombre d'entrées par type de terrain.
+     * @param countsByCondition   Nombre d'entrées par condition.
+     */
+    public EntryStatistics(Map<String, Integer> countsByTerrainType, Map<String, Integer> countsByCondition) {
+        this.countsByTerrainType = countsByTerrainType;
+        this.countsByCondition = countsByCondition;
+    }
+
+    /** @return Le nombre total d'entrées. */
+    public int getTotal() {
+        int total = 0;
+        for (int count : countsByCondition.values()) {
+            total += count;
+        }
+        return total;
+    }
+
+    /** @return Le nombre d'entrées par type de terrain. */
+    public Map<String, Integer> getCountsByTerrainType() {
+        return countsByTerrainType;
+    }
+
+    /** @return Le nombre d'entrées par condition. */
+    public Map<String, Integer> getCountsByCondition() {
+        return countsByCondition;
+    }
+}
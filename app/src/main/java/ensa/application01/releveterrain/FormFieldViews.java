@@ -0,0 +1,231 @@
+/**
+ * FormFieldViews - Champs de saisie propres à un modèle de formulaire, construits à partir de son FormPlan.
+ */
+package ensa.application01.releveterrain;
+
+import android.content.Context;
+import android.graphics.Color;
+import android.graphics.Typeface;
+import android.text.Editable;
+import android.text.InputType;
+import android.text.TextWatcher;
+import android.util.TypedValue;
+import android.view.View;
+import android.widget.AdapterView;
+import android.widget.ArrayAdapter;
+import android.widget.EditText;
+import android.widget.LinearLayout;
+import android.widget.Spinner;
+import android.widget.TextView;
+
+import java.util.Map;
+
+/**
+ * Construit, dans un conteneur vertical du formulaire, les champs d'un modèle qui ne correspondent à aucune colonne fixe
+ * (les champs de {@link FormPlan#CORE_KEYS} restent ceux de `activity_main.xml`). La présentation reprend celle du
+ * formulaire : libellé en gras, champ de saisie encadré, liste déroulante pour un champ à choix.
+ * <p>
+ * Les vues et leurs écouteurs sont créés une fois par modèle. Un champ affichant une erreur est revalidé à chaque frappe
+ * par {@link FormPlan.Field#validateWhileTyping(CharSequence)}, qui n'alloue rien : l'erreur disparaît dès que la saisie est corrigée.
+ * À utiliser depuis le thread principal.
+ */
+public class FormFieldViews {
+
+    /** Texte de la première ligne d'une liste à choix, qui signifie « aucune valeur ». */
+    private static final String NO_CHOICE = "—";
+
+    /** Conteneur des champs propres au modèle. */
+    private final LinearLayout container;
+
+    /** Action exécutée à chaque modification d'un champ (sauvegarde différée du brouillon). */
+    private final Runnable onChanged;
+
+    /** Modèle affiché, ou `null` avant le premier appel à {@link #bind(FormPlan)}. */
+    private FormPlan plan;
+
+    /** Vue de saisie de chaque champ, indexée par position dans le modèle ; `null` pour un champ fixe. */
+    private View[] inputs = new View[0];
+
+    /**
+     * Constructeur.
+     *
+     * @param container Conteneur vertical recevant les champs.
+     * @param onChanged Action exécutée à chaque modification d'un champ.
+     */
+    public FormFieldViews(LinearLayout container, Runnable onChanged) {
+        this.container = container;
+        this.onChanged = onChanged;
+    }
+
+    /**
+     * Remplace les champs affichés par ceux d'un modèle. Les valeurs saisies dans l'ancien modèle sont abandonnées.
+     *
+     * @param plan Modèle à afficher.
+     */
+    public void bind(FormPlan plan) {
+        this.plan = plan;
+        container.removeAllViews();
+        inputs = new View[plan.size()];
+        Context context = container.getContext();
+        for (int i = 0; i < plan.size(); i++) {
+            FormPlan.Field field = plan.get(i);
+            if (field.isCore()) {
+                continue;
+            }
+            TextView label = new TextView(context);
+            label.setText(field.isRequired() ? field.getLabel() + " *" : field.getLabel());
+            label.setTypeface(label.getTypeface(), Typeface.BOLD);
+            label.setTextColor(Color.parseColor("#333333"));
+            LinearLayout.LayoutParams labelParams = new LinearLayout.LayoutParams(
+                    LinearLayout.LayoutParams.WRAP_CONTENT, LinearLayout.LayoutParams.WRAP_CONTENT);
+            labelParams.topMargin = dp(16);
+            container.addView(label, labelParams);
+
+            View input = field.getType() == FormPlan.Type.CHOICE ? createSpinner(context, field) : createEditText(context, field);
+            LinearLayout.LayoutParams inputParams = new LinearLayout.LayoutParams(
+                    LinearLayout.LayoutParams.MATCH_PARENT, LinearLayout.LayoutParams.WRAP_CONTENT);
+            inputParams.topMargin = dp(4);
+            container.addView(input, inputParams);
+            inputs[i] = input;
+        }
+        container.setVisibility(container.getChildCount() > 0 ? View.VISIBLE : View.GONE);
+    }
+
+    /**
+     * Crée le champ de saisie d'un champ texte, date ou numérique, avec sa revalidation au fil de la frappe.
+     */
+    private EditText createEditText(Context context, FormPlan.Field field) {
+        EditText editText = new EditText(context);
+        editText.setBackgroundResource(android.R.drawable.edit_text);
+        editText.setPadding(dp(12), dp(12), dp(12), dp(12));
+        if (field.getHint() != null) {
+            editText.setHint(field.getHint());
+        }
+        switch (field.getType()) {
+            case NUMBER:
+                editText.setInputType(InputType.TYPE_CLASS_NUMBER | InputType.TYPE_NUMBER_FLAG_DECIMAL
+                        | InputType.TYPE_NUMBER_FLAG_SIGNED);
+                break;
+            case DATE:
+                editText.setInputType(InputType.TYPE_CLASS_DATETIME | InputType.TYPE_DATETIME_VARIATION_DATE);
+                break;
+            default:
+                editText.setInputType(InputType.TYPE_CLASS_TEXT | InputType.TYPE_TEXT_FLAG_CAP_SENTENCES);
+                break;
+        }
+        editText.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence text, int start, int count, int after) {
+            }
+
+            @Override
+            public void onTextChanged(CharSequence text, int start, int before, int count) {
+            }
+
+            @Override
+            public void afterTextChanged(Editable text) {
+                if (editText.getError() != null) {
+                    editText.setError(field.validateWhileTyping(text));
+                }
+                onChanged.run();
+            }
+        });
+        return editText;
+    }
+
+    /**
+     * Crée la liste déroulante d'un champ à choix ; la première ligne signifie « aucune valeur ».
+     */
+    private Spinner createSpinner(Context context, FormPlan.Field field) {
+        Spinner spinner = new Spinner(context);
+        String[] options = field.getOptions();
+        String[] items = new String[options.length + 1];
+        items[0] = NO_CHOICE;
+        System.arraycopy(options, 0, items, 1, options.length);
+        ArrayAdapter<String> adapter = new ArrayAdapter<>(context, android.R.layout.simple_spinner_item, items);
+        adapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
+        spinner.setAdapter(adapter);
+        spinner.setPadding(dp(12), dp(12), dp(12), dp(12));
+        spinner.setOnItemSelectedListener(new AdapterView.OnItemSelectedListener() {
+            @Override
+            public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
+                onChanged.run();
+            }
+
+            @Override
+            public void onNothingSelected(AdapterView<?> parent) {
+            }
+        });
+        return spinner;
+    }
+
+    /**
+     * @param index Position du champ dans le modèle.
+     * @return La vue de saisie du champ, ou `null` pour un champ fixe.
+     */
+    public View getView(int index) {
+        return inputs[index];
+    }
+
+    /**
+     * Retourne la saisie d'un champ sans la copier : le texte du champ lui-même, ou l'option choisie.
+     *
+     * @param index Position du champ dans le modèle.
+     * @return La saisie, une chaîne vide si aucune option n'est choisie, ou `null` pour un champ fixe.
+     */
+    public CharSequence getValue(int index) {
+        View input = inputs[index];
+        if (input instanceof EditText) {
+            return ((EditText) input).getText();
+        }
+        if (input instanceof Spinner) {
+            Spinner spinner = (Spinner) input;
+            return spinner.getSelectedItemPosition() > 0 ? (String) spinner.getSelectedItem() : "";
+        }
+        return null;
+    }
+
+    /**
+     * Remplit les champs à partir de valeurs enregistrées (brouillon) ; une valeur inconnue d'un champ à choix est ignorée.
+     *
+     * @param values Valeurs par clé, issues de {@link FormPlan#decodeExtraValues(String)}.
+     */
+    public void setValues(Map<String, String> values) {
+        for (int i = 0; i < inputs.length; i++) {
+            View input = inputs[i];
+            String value = input != null ? values.get(plan.get(i).getKey()) : null;
+            if (value == null) {
+                continue;
+            }
+            if (input instanceof EditText) {
+                ((EditText) input).setText(value);
+            } else if (input instanceof Spinner) {
+                String[] options = plan.get(i).getOptions();
+                for (int option = 0; option < options.length; option++) {
+                    if (options[option].equals(value)) {
+                        ((Spinner) input).setSelection(option + 1);
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return `true` si aucun champ propre au modèle n'est rempli.
+     */
+    public boolean isEmpty() {
+        for (int i = 0; i < inputs.length; i++) {
+            CharSequence value = inputs[i] != null ? getValue(i) : null;
+            if (value != null && value.length() > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int dp(int value) {
+        return (int) TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, value,
+                container.getResources().getDisplayMetrics());
+    }
+}
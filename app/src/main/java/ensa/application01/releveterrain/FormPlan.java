@@ -0,0 +1,572 @@
+/**
+ * FormPlan - Modèle de formulaire de relevé compilé à partir de sa définition JSON.
+ */
+package ensa.application01.releveterrain;
+
+import android.util.JsonReader;
+import android.util.JsonToken;
+import android.util.JsonWriter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Modèle de formulaire (« template ») compilé une fois au chargement : champs, règles de validation et messages d'erreur
+ * sont résolus à la compilation, et la validation d'une saisie ne fait plus que comparer des longueurs, des caractères
+ * et des nombres, sans créer d'objet.
+ * <p>
+ * Les champs dont la clé figure dans {@link #CORE_KEYS} correspondent aux colonnes fixes de la table `entries`, communes
+ * à tous les modèles ; les autres sont enregistrés dans la colonne JSON `extra_values`. Un champ marqué `indexed` est
+ * indexé par une expression `json_extract` (voir {@link DatabaseHelper#ensureFieldIndexes(List)}).
+ * <p>
+ * Format de la définition (fichier `assets/forms/<id>.json`) :
+ * <pre>
+ * { "id": "berge", "title": "Relevé de berge",
+ *   "fields": [ { "key": "site_name", "label": "Nom du site", "required": true, "max_length": 200 },
+ *               { "key": "hauteur_eau_cm", "label": "Hauteur d'eau (cm)", "type": "number", "min": 0, "max": 1000,
+ *                 "indexed": true } ] }
+ * </pre>
+ * Types : `text`, `date`, `number` et `choice` (avec `options`). Règles : `required`, `min_length`, `max_length`,
+ * `min`, `max` et `pattern` (expression régulière, vérifiée seulement à l'enregistrement). `message` remplace
+ * le message d'erreur d'un champ obligatoire laissé vide.
+ */
+public final class FormPlan {
+
+    /** Identifiant du modèle utilisé par défaut, et attribué aux relevés antérieurs aux modèles. */
+    public static final String DEFAULT_TEMPLATE = "releve";
+
+    /** Clés des champs enregistrés dans les colonnes fixes de la table `entries`. */
+    public static final Set<String> CORE_KEYS = Collections.unmodifiableSet(new HashSet<>(List.of(
+            "site_name", "date", "description", "terrain_type", "observations", "condition")));
+
+    /**
+     * Forme imposée aux identifiants de modèle et aux clés de champ : ils sont repris tels quels dans le nom des index
+     * et dans le chemin JSON des requêtes, et ne doivent donc contenir aucun caractère significatif en SQL.
+     */
+    private static final Pattern IDENTIFIER = Pattern.compile("[a-z][a-z0-9_]{0,31}");
+
+    /** Type de saisie d'un champ. */
+    public enum Type {
+        /** Texte libre. */
+        TEXT,
+        /** Date saisie en texte (clavier adapté), interprétée par {@link DateParser}. */
+        DATE,
+        /** Nombre décimal, enregistré comme nombre JSON. */
+        NUMBER,
+        /** Valeur choisie dans une liste fermée. */
+        CHOICE
+    }
+
+    /** Identifiant du modèle. */
+    private final String id;
+
+    /** Titre affiché en tête du formulaire. */
+    private final String title;
+
+    /** Champs, dans l'ordre d'affichage. */
+    private final Field[] fields;
+
+    /** Position de chaque champ, indexée par clé. */
+    private final Map<String, Integer> positions;
+
+    private FormPlan(String id, String title, Field[] fields) {
+        this.id = id;
+        this.title = title;
+        this.fields = fields;
+        positions = new HashMap<>();
+        for (int i = 0; i < fields.length; i++) {
+            positions.put(fields[i].key, i);
+        }
+    }
+
+    /** @return L'identifiant du modèle. */
+    public String getId() {
+        return id;
+    }
+
+    /** @return Le titre du formulaire. */
+    public String getTitle() {
+        return title;
+    }
+
+    /** @return Le nombre de champs du modèle. */
+    public int size() {
+        return fields.length;
+    }
+
+    /**
+     * @param index Position du champ.
+     * @return Le champ à cette position.
+     */
+    public Field get(int index) {
+        return fields[index];
+    }
+
+    /**
+     * @param key Clé du champ.
+     * @return La position du champ, ou -1 si le modèle ne le déclare pas.
+     */
+    public int indexOf(String key) {
+        Integer position = positions.get(key);
+        return position == null ? -1 : position;
+    }
+
+    /**
+     * Encode les valeurs des champs propres au modèle (hors {@link #CORE_KEYS}) pour la colonne `extra_values`.
+     * Les valeurs vides sont omises ; les nombres sont écrits comme nombres JSON, pour être comparés comme tels par SQLite.
+     *
+     * @param values Valeur de chaque champ, indexée par position ; `null` pour un champ sans valeur.
+     * @return L'objet JSON, ou `null` si aucun champ propre au modèle n'est rempli.
+     */
+    public String encodeExtraValues(CharSequence[] values) {
+        StringWriter buffer = new StringWriter();
+        int written = 0;
+        try (JsonWriter json = new JsonWriter(buffer)) {
+            json.beginObject();
+            for (int i = 0; i < fields.length; i++) {
+                Field field = fields[i];
+                if (field.core || values[i] == null || isBlank(values[i])) {
+                    continue;
+                }
+                json.name(field.key);
+                double number = field.type == Type.NUMBER ? parseNumber(values[i]) : Double.NaN;
+                if (!Double.isNaN(number)) {
+                    if (number == Math.rint(number) && Math.abs(number) < 1e15) {
+                        json.value((long) number);
+                    } else {
+                        json.value(number);
+                    }
+                } else {
+                    json.value(values[i].toString().trim());
+                }
+                written++;
+            }
+            json.endObject();
+        } catch (IOException e) {
+            // Écriture en mémoire : ne peut pas échouer
+            throw new IllegalStateException(e);
+        }
+        return written == 0 ? null : buffer.toString();
+    }
+
+    /**
+     * Décode le contenu de la colonne `extra_values`.
+     *
+     * @param extraValues Objet JSON, ou `null`.
+     * @return Les valeurs par clé, sous forme de texte ; une table vide si `extraValues` est absent ou illisible.
+     */
+    public static Map<String, String> decodeExtraValues(String extraValues) {
+        Map<String, String> values = new HashMap<>();
+        if (extraValues == null || extraValues.isEmpty()) {
+            return values;
+        }
+        try (JsonReader json = new JsonReader(new StringReader(extraValues))) {
+            json.beginObject();
+            while (json.hasNext()) {
+                String key = json.nextName();
+                if (json.peek() == JsonToken.NULL) {
+                    json.nextNull();
+                } else if (json.peek() == JsonToken.STRING || json.peek() == JsonToken.NUMBER) {
+                    // Un nombre est relu sous sa forme textuelle, sans passer par un double
+                    values.put(key, json.nextString());
+                } else {
+                    json.skipValue();
+                }
+            }
+            json.endObject();
+        } catch (IOException | IllegalStateException e) {
+            values.clear();
+        }
+        return values;
+    }
+
+    /**
+     * Compile la définition JSON d'un modèle.
+     *
+     * @param input Flux de la définition, fermé à la fin de la lecture.
+     * @return Le modèle compilé.
+     * @throws IOException Si la définition est illisible ou invalide (clé en double, type ou règle inconnus...).
+     */
+    public static FormPlan compile(InputStream input) throws IOException {
+        String id = null;
+        String title = null;
+        List<Field> fields = new ArrayList<>();
+        try (JsonReader json = new JsonReader(new InputStreamReader(input, StandardCharsets.UTF_8))) {
+            json.beginObject();
+            while (json.hasNext()) {
+                switch (json.nextName()) {
+                    case "id":
+                        id = json.nextString();
+                        break;
+                    case "title":
+                        title = json.nextString();
+                        break;
+                    case "fields":
+                        json.beginArray();
+                        while (json.hasNext()) {
+                            fields.add(compileField(json));
+                        }
+                        json.endArray();
+                        break;
+                    default:
+                        json.skipValue();
+                        break;
+                }
+            }
+            json.endObject();
+        } catch (IllegalStateException | NumberFormatException e) {
+            throw new IOException("Définition de formulaire invalide : " + e.getMessage(), e);
+        }
+        if (id == null || !IDENTIFIER.matcher(id).matches()) {
+            throw new IOException("Identifiant de formulaire invalide : " + id);
+        }
+        Set<String> keys = new HashSet<>();
+        for (Field field : fields) {
+            if (!keys.add(field.key)) {
+                throw new IOException("Champ « " + field.key + " » déclaré deux fois dans le formulaire " + id);
+            }
+        }
+        return new FormPlan(id, title != null ? title : id, fields.toArray(new Field[0]));
+    }
+
+    /**
+     * Compile la définition d'un champ et prépare ses messages d'erreur.
+     */
+    private static Field compileField(JsonReader json) throws IOException {
+        String key = null, label = null, hint = null, message = null;
+        Type type = Type.TEXT;
+        boolean required = false, indexed = false;
+        int minLength = 0, maxLength = Integer.MAX_VALUE;
+        double min = Double.NEGATIVE_INFINITY, max = Double.POSITIVE_INFINITY;
+        Pattern pattern = null;
+        List<String> options = new ArrayList<>();
+        json.beginObject();
+        while (json.hasNext()) {
+            String name = json.nextName();
+            switch (name) {
+                case "key":
+                    key = json.nextString();
+                    break;
+                case "label":
+                    label = json.nextString();
+                    break;
+                case "hint":
+                    hint = json.nextString();
+                    break;
+                case "message":
+                    message = json.nextString();
+                    break;
+                case "type":
+                    try {
+                        type = Type.valueOf(json.nextString().toUpperCase(Locale.ROOT));
+                    } catch (IllegalArgumentException e) {
+                        throw new IOException("Type de champ inconnu", e);
+                    }
+                    break;
+                case "required":
+                    required = json.nextBoolean();
+                    break;
+                case "indexed":
+                    indexed = json.nextBoolean();
+                    break;
+                case "min_length":
+                    minLength = json.nextInt();
+                    break;
+                case "max_length":
+                    maxLength = json.nextInt();
+                    break;
+                case "min":
+                    min = json.nextDouble();
+                    break;
+                case "max":
+                    max = json.nextDouble();
+                    break;
+                case "pattern":
+                    try {
+                        pattern = Pattern.compile(json.nextString());
+                    } catch (PatternSyntaxException e) {
+                        throw new IOException("Expression régulière invalide", e);
+                    }
+                    break;
+                case "options":
+                    json.beginArray();
+                    while (json.hasNext()) {
+                        options.add(json.nextString());
+                    }
+                    json.endArray();
+                    break;
+                default:
+                    throw new IOException("Règle de champ inconnue : " + name);
+            }
+        }
+        json.endObject();
+        if (key == null || !IDENTIFIER.matcher(key).matches()) {
+            throw new IOException("Clé de champ invalide : " + key);
+        }
+        if (type == Type.CHOICE && options.isEmpty()) {
+            throw new IOException("Le champ à choix « " + key + " » n'a pas d'options");
+        }
+        if (indexed && CORE_KEYS.contains(key)) {
+            throw new IOException("Le champ « " + key + " » est une colonne de la table et ne peut pas être indexé ici");
+        }
+        return new Field(key, label != null ? label : key, hint, type, required, minLength, maxLength, min, max,
+                pattern, options.toArray(new String[0]), indexed, message);
+    }
+
+    /**
+     * Champ compilé : règles de validation et messages d'erreur préparés.
+     * Les méthodes de validation n'allouent rien, sauf {@link #validate(CharSequence)} pour un champ doté d'une expression régulière.
+     */
+    public static final class Field {
+
+        /** Clé du champ, dans `extra_values` ou nom de la colonne fixe. */
+        private final String key;
+        /** Libellé affiché. */
+        private final String label;
+        /** Texte d'aide affiché dans un champ vide, ou `null`. */
+        private final String hint;
+        /** Type de saisie. */
+        private final Type type;
+        /** Indique que le champ est obligatoire. */
+        private final boolean required;
+        /** Longueur minimale, espaces de début et de fin exclus. */
+        private final int minLength;
+        /** Longueur maximale, espaces de début et de fin exclus. */
+        private final int maxLength;
+        /** Valeur minimale d'un champ numérique. */
+        private final double min;
+        /** Valeur maximale d'un champ numérique. */
+        private final double max;
+        /** Expression régulière à respecter, ou `null`. */
+        private final Pattern pattern;
+        /** Valeurs possibles d'un champ à choix. */
+        private final String[] options;
+        /** Indique que le champ est indexé dans la base. */
+        private final boolean indexed;
+        /** Indique que le champ est enregistré dans une colonne fixe. */
+        private final boolean core;
+
+        /** Messages d'erreur, préparés à la compilation. */
+        private final String requiredMessage;
+        private final String lengthMessage;
+        private final String numberMessage;
+        private final String rangeMessage;
+        private final String patternMessage;
+        private final String choiceMessage;
+
+        private Field(String key, String label, String hint, Type type, boolean required, int minLength, int maxLength,
+                      double min, double max, Pattern pattern, String[] options, boolean indexed, String message) {
+            this.key = key;
+            this.label = label;
+            this.hint = hint;
+            this.type = type;
+            this.required = required;
+            this.minLength = minLength;
+            this.maxLength = maxLength;
+            this.min = min;
+            this.max = max;
+            this.pattern = pattern;
+            this.options = options;
+            this.indexed = indexed;
+            this.core = CORE_KEYS.contains(key);
+            requiredMessage = message != null ? message : "Le champ « " + label + " » est obligatoire";
+            lengthMessage = maxLength == Integer.MAX_VALUE
+                    ? String.format(Locale.FRANCE, "Au moins %d caractères", minLength)
+                    : String.format(Locale.FRANCE, "Entre %d et %d caractères", minLength, maxLength);
+            numberMessage = "Nombre attendu";
+            rangeMessage = String.format(Locale.FRANCE, "Valeur attendue entre %s et %s", format(min), format(max));
+            patternMessage = "Format invalide";
+            choiceMessage = "Valeur non prévue";
+        }
+
+        /** @return La clé du champ. */
+        public String getKey() {
+            return key;
+        }
+
+        /** @return Le libellé du champ. */
+        public String getLabel() {
+            return label;
+        }
+
+        /** @return Le texte d'aide, ou `null`. */
+        public String getHint() {
+            return hint;
+        }
+
+        /** @return Le type de saisie. */
+        public Type getType() {
+            return type;
+        }
+
+        /** @return `true` si le champ est obligatoire. */
+        public boolean isRequired() {
+            return required;
+        }
+
+        /** @return Les valeurs possibles d'un champ à choix (tableau partagé, à ne pas modifier). */
+        public String[] getOptions() {
+            return options;
+        }
+
+        /** @return `true` si le champ est indexé dans la base. */
+        public boolean isIndexed() {
+            return indexed;
+        }
+
+        /** @return `true` si le champ est enregistré dans une colonne fixe de la table `entries`. */
+        public boolean isCore() {
+            return core;
+        }
+
+        /**
+         * Valide une saisie au fil de la frappe : toutes les règles sauf l'expression régulière.
+         * Ne crée aucun objet : le texte est parcouru directement, sans `toString()`.
+         *
+         * @param value Saisie (un `Editable` convient), ou `null` pour une valeur absente.
+         * @return `null` si la saisie est valide, sinon le message d'erreur préparé.
+         */
+        public String validateWhileTyping(CharSequence value) {
+            int start = 0;
+            int end = value == null ? 0 : value.length();
+            while (start < end && Character.isWhitespace(value.charAt(start))) {
+                start++;
+            }
+            while (end > start && Character.isWhitespace(value.charAt(end - 1))) {
+                end--;
+            }
+            int length = end - start;
+            if (length == 0) {
+                return required ? requiredMessage : null;
+            }
+            if (length < minLength || length > maxLength) {
+                return lengthMessage;
+            }
+            switch (type) {
+                case NUMBER:
+                    double number = parseNumber(value);
+                    if (Double.isNaN(number)) {
+                        return numberMessage;
+                    }
+                    if (number < min || number > max) {
+                        return rangeMessage;
+                    }
+                    return null;
+                case CHOICE:
+                    for (String option : options) {
+                        if (regionEquals(option, value, start, length)) {
+                            return null;
+                        }
+                    }
+                    return choiceMessage;
+                default:
+                    return null;
+            }
+        }
+
+        /**
+         * Valide une saisie complète, avant l'enregistrement : {@link #validateWhileTyping(CharSequence)},
+         * puis l'expression régulière éventuelle.
+         *
+         * @param value Saisie, ou `null` pour une valeur absente.
+         * @return `null` si la saisie est valide, sinon le message d'erreur préparé.
+         */
+        public String validate(CharSequence value) {
+            String error = validateWhileTyping(value);
+            if (error == null && pattern != null && value != null && !isBlank(value)
+                    && !pattern.matcher(value.toString().trim()).matches()) {
+                return patternMessage;
+            }
+            return error;
+        }
+
+        private static boolean regionEquals(String option, CharSequence value, int start, int length) {
+            if (option.length() != length) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (option.charAt(i) != value.charAt(start + i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static String format(double bound) {
+            if (Double.isInfinite(bound)) {
+                return bound < 0 ? "-∞" : "+∞";
+            }
+            return bound == Math.rint(bound) ? String.valueOf((long) bound) : String.valueOf(bound);
+        }
+    }
+
+    /**
+     * Lit un nombre décimal (signe, chiffres, virgule ou point décimal) sans créer de chaîne.
+     * Les espaces de début et de fin sont ignorés ; les exposants ne sont pas acceptés.
+     *
+     * @param text Texte à lire.
+     * @return La valeur lue, ou {@link Double#NaN} si le texte n'est pas un nombre.
+     */
+    static double parseNumber(CharSequence text) {
+        int start = 0;
+        int end = text.length();
+        while (start < end && Character.isWhitespace(text.charAt(start))) {
+            start++;
+        }
+        while (end > start && Character.isWhitespace(text.charAt(end - 1))) {
+            end--;
+        }
+        boolean negative = false;
+        if (start < end && (text.charAt(start) == '-' || text.charAt(start) == '+')) {
+            negative = text.charAt(start) == '-';
+            start++;
+        }
+        double value = 0;
+        double scale = 0;
+        int digits = 0;
+        for (int i = start; i < end; i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9') {
+                value = value * 10 + (c - '0');
+                if (scale > 0) {
+                    scale *= 10;
+                }
+                digits++;
+            } else if ((c == '.' || c == ',') && scale == 0) {
+                scale = 1;
+            } else {
+                return Double.NaN;
+            }
+        }
+        if (digits == 0) {
+            return Double.NaN;
+        }
+        if (scale > 1) {
+            value /= scale;
+        }
+        return negative ? -value : value;
+    }
+
+    private static boolean isBlank(CharSequence text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (!Character.isWhitespace(text.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
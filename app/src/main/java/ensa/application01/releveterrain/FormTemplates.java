@@ -0,0 +1,123 @@
+/**
+ * FormTemplates - Chargement et mise en cache des modèles de formulaire livrés avec l'application.
+ */
+package ensa.application01.releveterrain;
+
+import android.content.Context;
+import android.content.res.AssetManager;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Registre des modèles de formulaire du répertoire `assets/forms` : chaque définition est compilée une seule fois
+ * par processus en {@link FormPlan}, puis servie depuis la mémoire. Le modèle {@link FormPlan#DEFAULT_TEMPLATE} est
+ * toujours en tête de liste. Un champ propre déclaré par plusieurs modèles doit y avoir le même type.
+ * Le premier chargement lit les fichiers et doit être effectué en arrière-plan.
+ */
+public final class FormTemplates {
+
+    /** Répertoire des définitions, dans les assets de l'application. */
+    private static final String ASSETS_DIR = "forms";
+
+    /** Modèles compilés, ou `null` avant le premier chargement. */
+    private static volatile List<FormPlan> plans;
+
+    private FormTemplates() {
+    }
+
+    /**
+     * Retourne les modèles compilés, en les chargeant au premier appel.
+     *
+     * @param context Contexte de l'application.
+     * @return Les modèles, le modèle par défaut en premier (liste non modifiable).
+     * @throws IOException Si une définition est illisible ou invalide, ou si le modèle par défaut manque.
+     */
+    public static List<FormPlan> getAll(Context context) throws IOException {
+        List<FormPlan> loaded = plans;
+        if (loaded == null) {
+            synchronized (FormTemplates.class) {
+                loaded = plans;
+                if (loaded == null) {
+                    loaded = load(context.getAssets());
+                    plans = loaded;
+                }
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * @return Les modèles déjà compilés, ou `null` s'ils n'ont pas encore été chargés.
+     */
+    public static List<FormPlan> getLoaded() {
+        return plans;
+    }
+
+    /**
+     * Compile toutes les définitions, par ordre de nom de fichier, le modèle par défaut en tête.
+     */
+    private static List<FormPlan> load(AssetManager assets) throws IOException {
+        String[] names = assets.list(ASSETS_DIR);
+        if (names == null) {
+            names = new String[0];
+        }
+        Arrays.sort(names);
+        List<FormPlan> compiled = new ArrayList<>(names.length);
+        for (String name : names) {
+            if (!name.endsWith(".json")) {
+                continue;
+            }
+            FormPlan plan = FormPlan.compile(assets.open(ASSETS_DIR + "/" + name));
+            if (plan.getId().equals(FormPlan.DEFAULT_TEMPLATE)) {
+                compiled.add(0, plan);
+            } else {
+                compiled.add(plan);
+            }
+        }
+        if (compiled.isEmpty() || !compiled.get(0).getId().equals(FormPlan.DEFAULT_TEMPLATE)) {
+            throw new IOException("Modèle de formulaire « " + FormPlan.DEFAULT_TEMPLATE + " » introuvable");
+        }
+        checkFieldTypes(compiled);
+        return Collections.unmodifiableList(compiled);
+    }
+
+    /**
+     * Vérifie qu'un champ propre déclaré par plusieurs modèles a partout le même type : la recherche d'une valeur
+     * interroge tous ces modèles en une seule requête, qui compare soit des nombres, soit du texte
+     * (voir {@link DatabaseHelper#getEntriesByFieldValue}).
+     *
+     * @param plans Modèles compilés.
+     * @throws IOException Si deux modèles déclarent la même clé avec des types différents.
+     */
+    static void checkFieldTypes(List<FormPlan> plans) throws IOException {
+        Map<String, FormPlan> owners = new HashMap<>();
+        for (FormPlan plan : plans) {
+            for (int i = 0; i < plan.size(); i++) {
+                FormPlan.Field field = plan.get(i);
+                if (field.isCore()) {
+                    continue;
+                }
+                FormPlan owner = owners.putIfAbsent(field.getKey(), plan);
+                if (owner == null) {
+                    continue;
+                }
+                FormPlan.Type type = owner.get(owner.indexOf(field.getKey())).getType();
+                if (type != field.getType()) {
+                    throw new IOException("Champ « " + field.getKey() + " » de type " + name(type) + " dans le modèle " +
+                            owner.getId() + " et " + name(field.getType()) + " dans le modèle " + plan.getId());
+                }
+            }
+        }
+    }
+
+    private static String name(FormPlan.Type type) {
+        return type.name().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,90 @@
+/**
+ * FusedLocationSource - Fournisseur de positions reposant sur les services de localisation Google Play.
+ */
+package ensa.application01.releveterrain;
+
+import android.annotation.SuppressLint;
+import android.content.Context;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+
+import com.google.android.gms.location.CurrentLocationRequest;
+import com.google.android.gms.location.FusedLocationProviderClient;
+import com.google.android.gms.location.LocationCallback;
+import com.google.android.gms.location.LocationRequest;
+import com.google.android.gms.location.LocationResult;
+import com.google.android.gms.location.LocationServices;
+import com.google.android.gms.location.Priority;
+import com.google.android.gms.tasks.CancellationTokenSource;
+
+/**
+ * Implémentation de {@link LocationSource} par le `FusedLocationProviderClient`.
+ * L'appelant doit disposer de la permission de localisation précise.
+ */
+public class FusedLocationSource implements LocationSource {
+
+    /** Client du service de localisation. */
+    private final FusedLocationProviderClient client;
+
+    /**
+     * Constructeur du fournisseur.
+     *
+     * @param context Contexte de l'application.
+     */
+    public FusedLocationSource(Context context) {
+        client = LocationServices.getFusedLocationProviderClient(context.getApplicationContext());
+    }
+
+    @SuppressLint("MissingPermission")
+    @Override
+    public void getLastLocation(Listener listener) {
+        client.getLastLocation()
+                .addOnSuccessListener(listener::onLocation)
+                .addOnFailureListener(listener::onError);
+    }
+
+    /**
+     * Demande une position fraîche : `maxUpdateAgeMillis` à 0 interdit au service de répondre avec une position en cache,
+     * et le jeton d'annulation interrompt la recherche du récepteur dès que la capture est abandonnée.
+     */
+    @SuppressLint("MissingPermission")
+    @Override
+    public Request getCurrentLocation(long timeoutMillis, Listener listener) {
+        CancellationTokenSource cancellation = new CancellationTokenSource();
+        CurrentLocationRequest request = new CurrentLocationRequest.Builder()
+                .setPriority(Priority.PRIORITY_HIGH_ACCURACY)
+                .setMaxUpdateAgeMillis(0)
+                .setDurationMillis(timeoutMillis)
+                .build();
+        client.getCurrentLocation(request, cancellation.getToken())
+                .addOnSuccessListener(location -> {
+                    if (!cancellation.getToken().isCancellationRequested()) {
+                        listener.onLocation(location);
+                    }
+                })
+                .addOnFailureListener(error -> {
+                    if (!cancellation.getToken().isCancellationRequested()) {
+                        listener.onError(error);
+                    }
+                });
+        return cancellation::cancel;
+    }
+
+    @SuppressLint("MissingPermission")
+    @Override
+    public Request requestUpdates(long intervalMillis, Listener listener) {
+        LocationCallback callback = new LocationCallback() {
+            @Override
+            public void onLocationResult(@NonNull LocationResult result) {
+                listener.onLocation(result.getLastLocation());
+            }
+        };
+        LocationRequest request = new LocationRequest.Builder(Priority.PRIORITY_HIGH_ACCURACY, intervalMillis)
+                .setMinUpdateIntervalMillis(intervalMillis / 2)
+                .build();
+        client.requestLocationUpdates(request, callback, Looper.getMainLooper())
+                .addOnFailureListener(listener::onError);
+        return () -> client.removeLocationUpdates(callback);
+    }
+}
@@ -0,0 +1,99 @@
+/**
+ * GeoGrid - Outils géographiques pour le stockage et la recherche spatiale des relevés.
+ */
+package ensa.application01.releveterrain;
+
+/**
+ * Utilitaire de calcul de la clé spatiale `geo_cell` et des distances.
+ * La surface du globe est découpée en une grille régulière de {@link #CELL_DEGREES} degrés (environ 1 km) ;
+ * chaque cellule est numérotée ligne par ligne : `ligne * COLUMNS + colonne`.
+ * Une ligne de la grille correspond donc à une plage contiguë de clés, ce qui permet à une recherche
+ * dans un rectangle d'être traduite en quelques parcours de l'index B-tree `idx_entries_geo_cell`.
+ */
+public final class GeoGrid {
+
+    /** Taille d'une cellule, en degrés. */
+    public static final double CELL_DEGREES = 0.01;
+
+    /** Nombre de colonnes de la grille (360° de longitude). */
+    static final long COLUMNS = Math.round(360 / CELL_DEGREES);
+
+    /** Nombre de lignes de la grille (180° de latitude). */
+    static final long ROWS = Math.round(180 / CELL_DEGREES);
+
+    /** Rayon moyen de la Terre, en mètres. */
+    private static final double EARTH_RADIUS_METERS = 6_371_008.8;
+
+    /** Classe utilitaire : pas d'instance. */
+    private GeoGrid() {
+    }
+
+    /**
+     * @param latitude Latitude en degrés.
+     * @return La ligne de la grille contenant cette latitude.
+     */
+    static long rowOf(double latitude) {
+        return clamp((long) Math.floor((latitude + 90) / CELL_DEGREES), ROWS - 1);
+    }
+
+    /**
+     * @param longitude Longitude en degrés.
+     * @return La colonne de la grille contenant cette longitude.
+     */
+    static long columnOf(double longitude) {
+        return clamp((long) Math.floor((longitude + 180) / CELL_DEGREES), COLUMNS - 1);
+    }
+
+    /**
+     * Calcule la clé spatiale d'une position.
+     *
+     * @param latitude  Latitude en degrés.
+     * @param longitude Longitude en degrés.
+     * @return Le numéro de la cellule contenant la position.
+     */
+    public static long cellOf(double latitude, double longitude) {
+        return rowOf(latitude) * COLUMNS + columnOf(longitude);
+    }
+
+    /**
+     * Calcule la distance orthodromique entre deux positions (formule de haversine).
+     *
+     * @param lat1 Latitude du premier point, en degrés.
+     * @param lon1 Longitude du premier point, en degrés.
+     * @param lat2 Latitude du second point, en degrés.
+     * @param lon2 Longitude du second point, en degrés.
+     * @return La distance en mètres.
+     */
+    public static double distanceMeters(double lat1, double lon1, double lat2, double lon2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLon = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2) +
+                Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2)) * Math.sin(dLon / 2) * Math.sin(dLon / 2);
+        return 2 * EARTH_RADIUS_METERS * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    /**
+     * Calcule le rectangle englobant un cercle.
+     *
+     * @param latitude     Latitude du centre, en degrés.
+     * @param longitude    Longitude du centre, en degrés.
+     * @param radiusMeters Rayon du cercle, en mètres.
+     * @return Le rectangle {latMin, latMax, lonMin, lonMax}, en degrés.
+     */
+    public static double[] boundingBox(double latitude, double longitude, double radiusMeters) {
+        double dLat = Math.toDegrees(radiusMeters / EARTH_RADIUS_METERS);
+        double cosLat = Math.cos(Math.toRadians(latitude));
+        double dLon = cosLat < 1e-9 ? 180 : Math.min(180, dLat / cosLat);
+        return new double[]{
+                Math.max(-90, latitude - dLat), Math.min(90, latitude + dLat),
+                Math.max(-180, longitude - dLon), Math.min(180, longitude + dLon)
+        };
+    }
+
+    /**
+     * Ramène une valeur dans l'intervalle [0, max].
+     */
+    private static long clamp(long value, long max) {
+        return value < 0 ? 0 : Math.min(value, max);
+    }
+}
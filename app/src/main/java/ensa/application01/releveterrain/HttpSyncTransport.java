@@ -0,0 +1,69 @@
+/**
+ * HttpSyncTransport - Envoi des modifications par requêtes HTTP POST.
+ */
+package ensa.application01.releveterrain;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+/**
+ * Transport HTTP : chaque lot est envoyé dans une requête POST `application/json` compressée (`Content-Encoding: gzip`).
+ * La réponse est lue entièrement, afin que la connexion puisse être réutilisée pour le lot suivant.
+ */
+public class HttpSyncTransport implements SyncTransport {
+
+    /** Délai maximal d'établissement de la connexion, en millisecondes. */
+    private static final int CONNECT_TIMEOUT_MS = 15_000;
+
+    /** Délai maximal d'attente de la réponse, en millisecondes. */
+    private static final int READ_TIMEOUT_MS = 30_000;
+
+    /** Adresse du point de synchronisation. */
+    private final URL endpoint;
+
+    /** Jeton transmis dans l'en-tête `Authorization`, ou `null`. */
+    private final String authToken;
+
+    /**
+     * Constructeur du transport.
+     *
+     * @param endpoint  Adresse du point de synchronisation.
+     * @param authToken Jeton d'authentification (schéma Bearer), ou `null` si le serveur n'en demande pas.
+     */
+    public HttpSyncTransport(URL endpoint, String authToken) {
+        this.endpoint = endpoint;
+        this.authToken = authToken;
+    }
+
+    @Override
+    public int upload(byte[] payload) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) endpoint.openConnection();
+        connection.setConnectTimeout(CONNECT_TIMEOUT_MS);
+        connection.setReadTimeout(READ_TIMEOUT_MS);
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        connection.setFixedLengthStreamingMode(payload.length);
+        connection.setRequestProperty("Content-Type", "application/json; charset=utf-8");
+        connection.setRequestProperty("Content-Encoding", "gzip");
+        if (authToken != null && !authToken.isEmpty()) {
+            connection.setRequestProperty("Authorization", "Bearer " + authToken);
+        }
+        try (OutputStream output = connection.getOutputStream()) {
+            output.write(payload);
+        }
+        int status = connection.getResponseCode();
+        InputStream body = status >= 400 ? connection.getErrorStream() : connection.getInputStream();
+        if (body != null) {
+            try (InputStream response = body) {
+                byte[] buffer = new byte[4096];
+                while (response.read(buffer) != -1) {
+                    // Réponse ignorée : seul le statut compte
+                }
+            }
+        }
+        return status;
+    }
+}
@@ -0,0 +1,313 @@
+/**
+ * LocationFixCapturer - Capture d'une position unique, rapide et suffisamment précise.
+ */
+package ensa.application01.releveterrain;
+
+import android.location.Location;
+import android.os.Handler;
+import android.os.SystemClock;
+
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Capture la position d'un relevé en trois temps :
+ * <ol>
+ *     <li>la dernière position connue est reprise immédiatement si elle est récente et assez précise ;</li>
+ *     <li>sinon une position fraîche est demandée, avec un délai maximal ;</li>
+ *     <li>si elle n'atteint pas la précision visée, les positions suivantes sont écoutées jusqu'à l'atteindre
+ *     ou jusqu'à l'échéance, où la meilleure position obtenue est retenue.</li>
+ * </ol>
+ * Le temps nécessaire et la précision obtenue sont rendus avec la position, pour être enregistrés avec l'entrée.
+ * Toutes les méthodes s'exécutent sur le thread du {@link Handler} fourni, qui doit être celui des écouteurs du fournisseur.
+ */
+public class LocationFixCapturer {
+
+    /** Précision visée par défaut, en mètres. */
+    public static final float DEFAULT_TARGET_ACCURACY_METERS = 20f;
+
+    /** Âge maximal par défaut d'une position en cache pour être reprise telle quelle, en millisecondes. */
+    public static final long DEFAULT_MAX_AGE_MS = 30_000;
+
+    /** Délai maximal par défaut de la capture, en millisecondes. */
+    public static final long DEFAULT_TIMEOUT_MS = 20_000;
+
+    /** Intervalle entre deux positions pendant l'affinage, en millisecondes. */
+    private static final long REFINE_INTERVAL_MS = 1_000;
+
+    /**
+     * Rappel recevant le résultat d'une capture.
+     */
+    public interface Callback {
+        /**
+         * Appelée avec la position retenue.
+         *
+         * @param fix Position capturée et mesures de la capture.
+         */
+        void onFix(Fix fix);
+
+        /**
+         * Appelée si aucune position n'a pu être obtenue avant l'échéance.
+         *
+         * @param error Erreur rencontrée ({@link TimeoutException} si le délai est écoulé).
+         */
+        void onFailure(Exception error);
+    }
+
+    /** Fournisseur des positions. */
+    private final LocationSource source;
+
+    /** Handler utilisé pour l'échéance de la capture. */
+    private final Handler handler;
+
+    /**
+     * Constructeur du capteur.
+     *
+     * @param source  Fournisseur des positions.
+     * @param handler Handler du thread sur lequel le fournisseur livre ses positions.
+     */
+    public LocationFixCapturer(LocationSource source, Handler handler) {
+        this.source = source;
+        this.handler = handler;
+    }
+
+    /**
+     * Lance une capture.
+     *
+     * @param targetAccuracyMeters Précision visée, en mètres.
+     * @param maxAgeMillis         Âge maximal d'une position en cache pour être reprise telle quelle, en millisecondes.
+     * @param timeoutMillis        Délai maximal de la capture, en millisecondes.
+     * @param callback             Rappel appelé une seule fois, sauf si la capture est annulée.
+     * @return La capture en cours, annulable.
+     */
+    public Capture capture(float targetAccuracyMeters, long maxAgeMillis, long timeoutMillis, Callback callback) {
+        Capture capture = new Capture(targetAccuracyMeters, maxAgeMillis, timeoutMillis, callback);
+        capture.start();
+        return capture;
+    }
+
+    /**
+     * @return L'âge d'une position, en millisecondes.
+     */
+    private static long ageMillis(Location location) {
+        return (SystemClock.elapsedRealtimeNanos() - location.getElapsedRealtimeNanos()) / 1_000_000;
+    }
+
+    /**
+     * Capture en cours.
+     */
+    public class Capture {
+
+        /** Précision visée, en mètres. */
+        private final float targetAccuracy;
+        /** Âge maximal d'une position reprise du cache, en millisecondes. */
+        private final long maxAgeMillis;
+        /** Délai maximal de la capture, en millisecondes. */
+        private final long timeoutMillis;
+        /** Rappel à prévenir. */
+        private final Callback callback;
+        /** Début de la capture (horloge {@link SystemClock#elapsedRealtime()}). */
+        private long startMillis;
+        /** Requête de position fraîche en cours, ou `null`. */
+        private LocationSource.Request currentRequest;
+        /** Abonnement d'affinage en cours, ou `null`. */
+        private LocationSource.Request updates;
+        /** Meilleure position obtenue jusqu'ici, ou `null`. */
+        private Location best;
+        /** Indique que la capture est terminée ou annulée. */
+        private boolean done;
+        /** Échéance de la capture. */
+        private final Runnable timeout = this::onTimeout;
+
+        Capture(float targetAccuracy, long maxAgeMillis, long timeoutMillis, Callback callback) {
+            this.targetAccuracy = targetAccuracy;
+            this.maxAgeMillis = maxAgeMillis;
+            this.timeoutMillis = timeoutMillis;
+            this.callback = callback;
+        }
+
+        /**
+         * Consulte d'abord le cache, puis le récepteur si nécessaire.
+         */
+        private void start() {
+            startMillis = SystemClock.elapsedRealtime();
+            handler.postDelayed(timeout, timeoutMillis);
+            source.getLastLocation(new LocationSource.Listener() {
+                @Override
+                public void onLocation(Location location) {
+                    if (done) {
+                        return;
+                    }
+                    if (location != null && ageMillis(location) <= maxAgeMillis) {
+                        if (consider(location)) {
+                            finish(location, true);
+                            return;
+                        }
+                    }
+                    requestFreshFix();
+                }
+
+                @Override
+                public void onError(Exception error) {
+                    if (!done) {
+                        requestFreshFix();
+                    }
+                }
+            });
+        }
+
+        /**
+         * Demande une position fraîche, limitée au temps restant avant l'échéance.
+         */
+        private void requestFreshFix() {
+            long remaining = timeoutMillis - (SystemClock.elapsedRealtime() - startMillis);
+            if (remaining <= 0) {
+                onTimeout();
+                return;
+            }
+            currentRequest = source.getCurrentLocation(remaining, new LocationSource.Listener() {
+                @Override
+                public void onLocation(Location location) {
+                    currentRequest = null;
+                    if (done) {
+                        return;
+                    }
+                    if (location != null && consider(location)) {
+                        finish(location, false);
+                    } else {
+                        refine();
+                    }
+                }
+
+                @Override
+                public void onError(Exception error) {
+                    currentRequest = null;
+                    if (!done) {
+                        refine();
+                    }
+                }
+            });
+        }
+
+        /**
+         * Écoute les positions successives jusqu'à la précision visée ou l'échéance.
+         */
+        private void refine() {
+            updates = source.requestUpdates(REFINE_INTERVAL_MS, new LocationSource.Listener() {
+                @Override
+                public void onLocation(Location location) {
+                    if (!done && location != null && consider(location)) {
+                        finish(location, false);
+                    }
+                }
+
+                @Override
+                public void onError(Exception error) {
+                    // L'échéance retiendra la meilleure position obtenue
+                }
+            });
+        }
+
+        /**
+         * Retient la position si elle est meilleure que les précédentes.
+         *
+         * @param location Position reçue.
+         * @return `true` si elle atteint la précision visée.
+         */
+        private boolean consider(Location location) {
+            if (best == null || (location.hasAccuracy() &&
+                    (!best.hasAccuracy() || location.getAccuracy() < best.getAccuracy()))) {
+                best = location;
+            }
+            return location.hasAccuracy() && location.getAccuracy() <= targetAccuracy;
+        }
+
+        /**
+         * Échéance atteinte : la meilleure position obtenue est retenue, même si elle n'atteint pas la précision visée.
+         */
+        private void onTimeout() {
+            if (done) {
+                return;
+            }
+            if (best != null) {
+                finish(best, false);
+            } else {
+                cancel();
+                callback.onFailure(new TimeoutException("Aucune position obtenue en " + timeoutMillis + " ms"));
+            }
+        }
+
+        /**
+         * Termine la capture et prévient le rappel.
+         */
+        private void finish(Location location, boolean fromCache) {
+            cancel();
+            boolean accurate = location.hasAccuracy() && location.getAccuracy() <= targetAccuracy;
+            long timeToFix = SystemClock.elapsedRealtime() - startMillis;
+            PerfMetrics.recordMillis(PerfMetrics.Metric.TIME_TO_FIX, timeToFix);
+            callback.onFix(new Fix(location, timeToFix, accurate, fromCache));
+        }
+
+        /**
+         * Annule la capture : les requêtes en cours sont interrompues et le rappel ne sera plus appelé.
+         */
+        public void cancel() {
+            done = true;
+            handler.removeCallbacks(timeout);
+            if (currentRequest != null) {
+                currentRequest.cancel();
+                currentRequest = null;
+            }
+            if (updates != null) {
+                updates.cancel();
+                updates = null;
+            }
+        }
+    }
+
+    /**
+     * Position capturée et mesures de la capture.
+     */
+    public static class Fix {
+
+        /** Position retenue. */
+        private final Location location;
+        /** Temps écoulé entre le début de la capture et la position retenue, en millisecondes. */
+        private final long timeToFixMillis;
+        /** Indique que la position atteint la précision visée. */
+        private final boolean accurate;
+        /** Indique que la position provient du cache. */
+        private final boolean fromCache;
+
+        Fix(Location location, long timeToFixMillis, boolean accurate, boolean fromCache) {
+            this.location = location;
+            this.timeToFixMillis = timeToFixMillis;
+            this.accurate = accurate;
+            this.fromCache = fromCache;
+        }
+
+        /** @return La position retenue. */
+        public Location getLocation() {
+            return location;
+        }
+
+        /** @return La précision horizontale estimée en mètres, ou `null` si elle est inconnue. */
+        public Float getAccuracy() {
+            return location.hasAccuracy() ? location.getAccuracy() : null;
+        }
+
+        /** @return Le temps nécessaire pour obtenir la position, en millisecondes. */
+        public long getTimeToFixMillis() {
+            return timeToFixMillis;
+        }
+
+        /** @return `true` si la position atteint la précision visée. */
+        public boolean isAccurate() {
+            return accurate;
+        }
+
+        /** @return `true` si la position provient du cache. */
+        public boolean isFromCache() {
+            return fromCache;
+        }
+    }
+}
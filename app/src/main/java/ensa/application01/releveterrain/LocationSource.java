@@ -0,0 +1,68 @@
+/**
+ * LocationSource - Fournisseur de positions utilisé par la capture des coordonnées.
+ */
+package ensa.application01.releveterrain;
+
+import android.location.Location;
+
+/**
+ * Abstraction du service de localisation : {@link LocationFixCapturer} ne dépend que de ces trois opérations,
+ * ce qui permet de le faire tourner sur un fournisseur simulé qui livre des positions choisies à l'avance.
+ * Les écouteurs sont appelés sur le thread principal.
+ */
+public interface LocationSource {
+
+    /**
+     * Écouteur recevant les positions d'une requête.
+     */
+    interface Listener {
+        /**
+         * Appelée pour chaque position livrée.
+         *
+         * @param location Position livrée, ou `null` si aucune position n'a pu être obtenue.
+         */
+        void onLocation(Location location);
+
+        /**
+         * Appelée si la requête a échoué.
+         *
+         * @param error Erreur rencontrée.
+         */
+        void onError(Exception error);
+    }
+
+    /**
+     * Requête en cours, qui peut être annulée.
+     */
+    interface Request {
+        /**
+         * Annule la requête : plus aucune position n'est livrée à son écouteur.
+         */
+        void cancel();
+    }
+
+    /**
+     * Livre la dernière position connue, sans solliciter le récepteur.
+     *
+     * @param listener Écouteur recevant une seule position, éventuellement `null`.
+     */
+    void getLastLocation(Listener listener);
+
+    /**
+     * Demande une position fraîche, en haute précision.
+     *
+     * @param timeoutMillis Délai maximal accordé au fournisseur, en millisecondes.
+     * @param listener      Écouteur recevant une seule position, ou `null` si le délai est écoulé.
+     * @return La requête, annulable.
+     */
+    Request getCurrentLocation(long timeoutMillis, Listener listener);
+
+    /**
+     * S'abonne aux positions successives, en haute précision, jusqu'à l'annulation de la requête.
+     *
+     * @param intervalMillis Intervalle souhaité entre deux positions, en millisecondes.
+     * @param listener       Écouteur recevant chaque position.
+     * @return La requête, à annuler pour se désabonner.
+     */
+    Request requestUpdates(long intervalMillis, Listener listener);
+}
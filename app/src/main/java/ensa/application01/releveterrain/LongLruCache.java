@@ -0,0 +1,174 @@
+/**
+ * LongLruCache - Cache LRU borné indexé par des identifiants `long`, sans conversion en `Long`.
+ */
+package ensa.application01.releveterrain;
+
+import android.util.LongSparseArray;
+
+/**
+ * Équivalent de {@link android.util.LruCache} pour des clés `long` : la lecture {@link #get(long)} ne crée aucun objet,
+ * là où `LruCache<Long, V>` convertit chaque identifiant en `Long`. Elle est destinée aux caches consultés à chaque
+ * liaison d'une ligne de liste. Les éléments sont rangés dans une {@link LongSparseArray} et chaînés du plus récemment
+ * au moins récemment utilisé ; une insertion au-delà du budget évince les moins récents.
+ * Toutes les méthodes peuvent être appelées depuis n'importe quel thread.
+ *
+ * @param <V> Type des valeurs.
+ */
+class LongLruCache<V> {
+
+    /** Élément du cache, chaîné par ordre d'utilisation. */
+    private static final class Node<V> {
+        final long key;
+        V value;
+        int size;
+        Node<V> previous;
+        Node<V> next;
+
+        Node(long key) {
+            this.key = key;
+        }
+    }
+
+    /** Éléments indexés par clé. */
+    private final LongSparseArray<Node<V>> nodes = new LongSparseArray<>();
+
+    /** Budget, dans l'unité de {@link #sizeOf(long, Object)}. */
+    private final int maxSize;
+
+    /** Élément le plus récemment utilisé, ou `null` si le cache est vide. */
+    private Node<V> head;
+
+    /** Élément le moins récemment utilisé, ou `null` si le cache est vide. */
+    private Node<V> tail;
+
+    /** Taille occupée. */
+    private int size;
+
+    /**
+     * @param maxSize Budget du cache : nombre d'éléments, sauf si {@link #sizeOf(long, Object)} est redéfinie.
+     */
+    LongLruCache(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Mesure un élément ; 1 par défaut, le budget est alors un nombre d'éléments.
+     *
+     * @param key   Clé de l'élément.
+     * @param value Valeur de l'élément.
+     * @return La taille de l'élément, positive.
+     */
+    protected int sizeOf(long key, V value) {
+        return 1;
+    }
+
+    /**
+     * @param key Clé recherchée.
+     * @return La valeur, qui devient la plus récemment utilisée, ou `null` si la clé est absente.
+     */
+    synchronized V get(long key) {
+        Node<V> node = nodes.get(key);
+        if (node == null) {
+            return null;
+        }
+        moveToHead(node);
+        return node.value;
+    }
+
+    /**
+     * Ajoute ou remplace une valeur, puis évince les éléments les moins récents au-delà du budget.
+     *
+     * @param key   Clé de l'élément.
+     * @param value Valeur, non `null`.
+     */
+    synchronized void put(long key, V value) {
+        Node<V> node = nodes.get(key);
+        if (node == null) {
+            node = new Node<>(key);
+            nodes.put(key, node);
+        } else {
+            size -= node.size;
+            unlink(node);
+        }
+        node.value = value;
+        node.size = sizeOf(key, value);
+        size += node.size;
+        linkAtHead(node);
+        trimToSize(maxSize);
+    }
+
+    /**
+     * @param key Clé de l'élément à retirer.
+     */
+    synchronized void remove(long key) {
+        Node<V> node = nodes.get(key);
+        if (node != null) {
+            nodes.remove(key);
+            unlink(node);
+            size -= node.size;
+        }
+    }
+
+    /**
+     * Évince les éléments les moins récemment utilisés jusqu'à ne pas dépasser une taille donnée.
+     *
+     * @param target Taille maximale à atteindre ; -1 pour tout vider.
+     */
+    synchronized void trimToSize(int target) {
+        while (tail != null && (size > target || target < 0)) {
+            Node<V> eldest = tail;
+            nodes.remove(eldest.key);
+            unlink(eldest);
+            size -= eldest.size;
+        }
+    }
+
+    /** Vide le cache. */
+    void evictAll() {
+        trimToSize(-1);
+    }
+
+    /** @return La taille occupée. */
+    synchronized int size() {
+        return size;
+    }
+
+    /** @return Le budget du cache. */
+    int maxSize() {
+        return maxSize;
+    }
+
+    private void moveToHead(Node<V> node) {
+        if (node != head) {
+            unlink(node);
+            linkAtHead(node);
+        }
+    }
+
+    private void linkAtHead(Node<V> node) {
+        node.previous = null;
+        node.next = head;
+        if (head != null) {
+            head.previous = node;
+        }
+        head = node;
+        if (tail == null) {
+            tail = node;
+        }
+    }
+
+    private void unlink(Node<V> node) {
+        if (node.previous != null) {
+            node.previous.next = node.next;
+        } else {
+            head = node.next;
+        }
+        if (node.next != null) {
+            node.next.previous = node.previous;
+        } else {
+            tail = node.previous;
+        }
+        node.previous = null;
+        node.next = null;
+    }
+}
@@ -13,9 +13,17 @@
 package ensa.application01.releveterrain;
 
 import android.Manifest;
+import android.content.Context;
 import android.content.Intent;
 import android.content.pm.PackageManager;
+import android.net.Uri;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.Editable;
+import android.text.TextWatcher;
+import android.view.View;
+import android.widget.AdapterView;
 import android.widget.ArrayAdapter;
 import android.widget.Button;
 import android.widget.CheckBox;
@@ -24,13 +32,17 @@ import android.widget.Spinner;
 import android.widget.TextView;
 import android.widget.Toast;
 
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.PickVisualMediaRequest;
+import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.appcompat.widget.SwitchCompat;
 import androidx.core.app.ActivityCompat;
 
-import com.google.android.gms.location.FusedLocationProviderClient;
-import com.google.android.gms.location.LocationRequest;
-import com.google.android.gms.location.LocationServices;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
 
 /**
  * Activité principale de l'application pour le relevé terrain.
@@ -39,14 +51,50 @@ import com.google.android.gms.location.LocationServices;
  */
 public class MainActivity extends AppCompatActivity {
 
-    /** Code de demande de permission pour la localisation. */
+    /** Code de demande de permission pour la localisation, avant une capture de position. */
     private static final int LOCATION_REQUEST_CODE = 100;
 
-    /** Client pour les services de localisation. */
-    private FusedLocationProviderClient fusedLocationProviderClient;
+    /** Code de demande de permission pour la localisation, avant le démarrage du suivi GPS. */
+    private static final int TRACK_REQUEST_CODE = 101;
 
-    /** Objet définissant les paramètres de la requête de localisation. */
-    private LocationRequest locationRequest;
+    /** Nombre maximal de photos jointes à un relevé en une fois. */
+    private static final int MAX_PHOTOS = 10;
+
+    /** Délai sans modification avant la sauvegarde du brouillon, en millisecondes. */
+    private static final long DRAFT_DEBOUNCE_MS = 1_000;
+
+    /** Clé de l'état sauvegardé : identifiant du modèle de formulaire affiché. */
+    private static final String STATE_TEMPLATE = "template_id";
+
+    /** Clé de l'état sauvegardé : valeurs des champs propres au modèle, que le système ne restaure pas lui-même. */
+    private static final String STATE_EXTRA_VALUES = "extra_values";
+
+    /** Capture des positions, avec précision visée et délai maximal ; créée à la première capture par {@link #getFixCapturer()}. */
+    private LocationFixCapturer fixCapturer;
+
+    /** Capture de position en cours, ou `null`. */
+    private LocationFixCapturer.Capture currentCapture;
+
+    /** Suivi GPS continu, partagé par toute l'application. */
+    private TrackLogger trackLogger;
+
+    /** Interrupteur du suivi GPS continu. */
+    private SwitchCompat switchTrackLogging;
+
+    /** Titre du formulaire, celui du modèle affiché. */
+    private TextView textViewFormTitle;
+
+    /** Choix du modèle de formulaire, visible seulement s'il en existe plusieurs. */
+    private Spinner spinnerTemplate;
+
+    /** Modèles de formulaire disponibles, ou `null` tant qu'ils ne sont pas chargés. */
+    private List<FormPlan> templates;
+
+    /** Modèle de formulaire affiché, ou `null` tant que les modèles ne sont pas chargés. */
+    private FormPlan formPlan;
+
+    /** Champs propres au modèle affiché. */
+    private FormFieldViews templateFields;
 
     // Champs de saisie pour les informations du site
     /** Champ de saisie pour le nom du site. */
@@ -84,11 +132,67 @@ public class MainActivity extends AppCompatActivity {
     /** Bouton pour afficher les entrées sauvegardées. */
     private Button buttonViewEntries;
 
+    /** Bouton pour choisir les photos à joindre. */
+    private Button buttonAddPhotos;
+
+    /** Nombre de photos choisies pour le relevé en cours. */
+    private TextView textViewPhotos;
+
+    /** Photos choisies pour le relevé en cours, jointes après son enregistrement. */
+    private final List<Uri> pendingPhotos = new ArrayList<>();
+
+    /** Sélecteur de photos du système : aucune permission de stockage n'est nécessaire. */
+    private final ActivityResultLauncher<PickVisualMediaRequest> photoPicker =
+            registerForActivityResult(new ActivityResultContracts.PickMultipleVisualMedia(MAX_PHOTOS), this::onPhotosPicked);
+
     /** Zone de texte pour afficher les coordonnées GPS capturées. */
     private TextView textViewCoordinates;
 
-    /** Instance de l'assistant pour la gestion de la base de données. */
-    private DatabaseHelper databaseHelper;
+    /** Dernière position capturée, enregistrée sous forme numérique avec l'entrée. */
+    private Coordinates capturedCoordinates;
+
+    /** Précision de la dernière position capturée en mètres, ou `null` si elle est inconnue. */
+    private Float capturedAccuracy;
+
+    /** Temps mis à obtenir la dernière position capturée, en millisecondes. */
+    private Long capturedFixTime;
+
+    /** Dépôt asynchrone des entrées : aucune opération de base de données n'est exécutée sur le thread principal. */
+    private EntryRepository entryRepository;
+
+    /** Brouillon du formulaire, écrit en arrière-plan. */
+    private DraftStore draftStore;
+
+    /** Handler du thread principal, utilisé pour différer la sauvegarde du brouillon. */
+    private final Handler draftHandler = new Handler(Looper.getMainLooper());
+
+    /** Sauvegarde différée du brouillon : replanifiée à chaque modification, elle ne s'exécute qu'une fois la saisie interrompue. */
+    private final Runnable draftSaver = this::saveDraft;
+
+    /**
+     * Indique que le brouillon précédent a été restauré (ou qu'il n'y a rien à restaurer) :
+     * aucune sauvegarde n'a lieu avant, pour ne pas écraser le brouillon par le formulaire encore vide.
+     */
+    private boolean draftReady;
+
+    /** Indique que le formulaire est en cours de remplissage à partir du brouillon. */
+    private boolean restoringDraft;
+
+    /** Relance le délai de sauvegarde du brouillon à chaque frappe ; aucune écriture n'a lieu ici. */
+    private final TextWatcher draftWatcher = new TextWatcher() {
+        @Override
+        public void beforeTextChanged(CharSequence text, int start, int count, int after) {
+        }
+
+        @Override
+        public void onTextChanged(CharSequence text, int start, int before, int count) {
+        }
+
+        @Override
+        public void afterTextChanged(Editable text) {
+            scheduleDraftSave();
+        }
+    };
 
     /**
      * Méthode appelée lors de la création de l'activité.
@@ -102,6 +206,9 @@ public class MainActivity extends AppCompatActivity {
         setContentView(R.layout.activity_main);
 
         // Initialisation des éléments de l'interface utilisateur
+        textViewFormTitle = findViewById(R.id.textViewFormTitle);
+        spinnerTemplate = findViewById(R.id.spinnerTemplate);
+        templateFields = new FormFieldViews(findViewById(R.id.layoutTemplateFields), this::scheduleDraftSave);
         editTextSiteName = findViewById(R.id.editTextSiteName);
         editTextDate = findViewById(R.id.editTextDate);
         textViewCoordinates = findViewById(R.id.textViewCoordinates);
@@ -124,21 +231,303 @@ public class MainActivity extends AppCompatActivity {
         buttonCaptureCoordinates = findViewById(R.id.buttonCaptureCoordinates);
         buttonSaveEntry = findViewById(R.id.buttonSave);
         buttonViewEntries = findViewById(R.id.buttonViewEntries);
+        switchTrackLogging = findViewById(R.id.switchTrackLogging);
+        buttonAddPhotos = findViewById(R.id.buttonAddPhotos);
+        textViewPhotos = findViewById(R.id.textViewPhotos);
 
         // Gestion des interactions entre les cases à cocher
         setupCheckBoxListeners();
 
-        // Initialisation du client de localisation
-        fusedLocationProviderClient = LocationServices.getFusedLocationProviderClient(this);
-        requestLocationPermission();
+        // Suivi GPS continu : l'interrupteur reflète l'état du suivi, qui survit à la recréation de l'activité
+        trackLogger = TrackLogger.getInstance(this);
+        switchTrackLogging.setChecked(trackLogger.isRunning());
+        switchTrackLogging.setOnCheckedChangeListener((button, checked) -> {
+            if (!checked) {
+                trackLogger.stop();
+            } else if (!trackLogger.start()) {
+                switchTrackLogging.setChecked(false);
+                requestLocationPermission(TRACK_REQUEST_CODE);
+            }
+        });
 
         // Configuration des actions des boutons
         buttonCaptureCoordinates.setOnClickListener(v -> getCurrentLocation());
         buttonSaveEntry.setOnClickListener(v -> saveEntry());
         buttonViewEntries.setOnClickListener(v -> viewSavedEntries());
+        buttonAddPhotos.setOnClickListener(v -> photoPicker.launch(new PickVisualMediaRequest.Builder()
+                .setMediaType(ActivityResultContracts.PickVisualMedia.ImageOnly.INSTANCE)
+                .build()));
+
+        // Initialisation de la base de données, ouverte en arrière-plan une fois la première image affichée :
+        // le préchauffage ne concurrence pas le dessin du formulaire, et une opération plus précoce ouvre la base elle-même
+        entryRepository = EntryRepository.getInstance(this);
+        Looper.myQueue().addIdleHandler(() -> {
+            entryRepository.warmUp();
+            return false;
+        });
+
+        // Brouillon : chaque modification relance un délai, et seule la dernière version est écrite en arrière-plan
+        draftStore = DraftStore.get(this, "main");
+        editTextSiteName.addTextChangedListener(draftWatcher);
+        editTextDate.addTextChangedListener(draftWatcher);
+        editTextDescription.addTextChangedListener(draftWatcher);
+        editTextObservations.addTextChangedListener(draftWatcher);
+        // Une erreur affichée est revalidée à chaque frappe, et disparaît dès que la saisie est corrigée
+        editTextSiteName.addTextChangedListener(new LiveValidator(editTextSiteName, "site_name"));
+        editTextDate.addTextChangedListener(new LiveValidator(editTextDate, "date"));
+        editTextDescription.addTextChangedListener(new LiveValidator(editTextDescription, "description"));
+        editTextObservations.addTextChangedListener(new LiveValidator(editTextObservations, "observations"));
+        spinnerTerrainType.setOnItemSelectedListener(new AdapterView.OnItemSelectedListener() {
+            @Override
+            public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
+                scheduleDraftSave();
+            }
+
+            @Override
+            public void onNothingSelected(AdapterView<?> parent) {
+            }
+        });
+        // Modèles de formulaire, compilés une fois par processus : le brouillon n'est relu qu'ensuite,
+        // car il peut appartenir à un autre modèle que celui par défaut
+        entryRepository.loadFormTemplates(new EntryRepository.Callback<List<FormPlan>>() {
+            @Override
+            public void onSuccess(List<FormPlan> loaded) {
+                if (isDestroyed()) {
+                    return;
+                }
+                setTemplates(loaded);
+                restoreForm(savedInstanceState);
+            }
 
-        // Initialisation de la base de données
-        databaseHelper = new DatabaseHelper(this);
+            @Override
+            public void onError(Exception error) {
+                if (isDestroyed()) {
+                    return;
+                }
+                Toast.makeText(MainActivity.this, "Modèles de formulaire illisibles.", Toast.LENGTH_LONG).show();
+                restoreForm(savedInstanceState);
+            }
+        });
+    }
+
+    /**
+     * Restaure le formulaire : depuis l'état sauvegardé après une recréation de l'activité, sinon depuis le brouillon.
+     *
+     * @param savedInstanceState État sauvegardé de l'activité, ou `null`.
+     */
+    private void restoreForm(Bundle savedInstanceState) {
+        if (savedInstanceState == null) {
+            draftStore.load(new EntryRepository.Callback<Entry>() {
+                @Override
+                public void onSuccess(Entry draft) {
+                    restoreDraft(draft);
+                }
+
+                @Override
+                public void onError(Exception error) {
+                    draftReady = true;
+                    reportFullyDrawn();
+                }
+            });
+        } else {
+            // Les champs fixes sont restaurés par le système, les champs du modèle par l'état sauvegardé ;
+            // le brouillon sur disque reste valable
+            selectTemplate(savedInstanceState.getString(STATE_TEMPLATE));
+            templateFields.setValues(FormPlan.decodeExtraValues(savedInstanceState.getString(STATE_EXTRA_VALUES)));
+            draftReady = true;
+            reportFullyDrawn();
+        }
+    }
+
+    /**
+     * Mémorise le modèle affiché et les valeurs de ses champs propres, que le système ne restaure pas
+     * (ces vues sont créées par programme, sans identifiant).
+     *
+     * @param outState État à sauvegarder.
+     */
+    @Override
+    protected void onSaveInstanceState(@NonNull Bundle outState) {
+        super.onSaveInstanceState(outState);
+        if (formPlan != null) {
+            outState.putString(STATE_TEMPLATE, formPlan.getId());
+            outState.putString(STATE_EXTRA_VALUES, formPlan.encodeExtraValues(collectValues()));
+        }
+    }
+
+    /**
+     * Affiche le modèle par défaut et, s'il existe plusieurs modèles, la liste permettant d'en changer.
+     *
+     * @param loaded Modèles chargés, le modèle par défaut en premier.
+     */
+    private void setTemplates(List<FormPlan> loaded) {
+        templates = loaded;
+        applyTemplate(loaded.get(0));
+        if (loaded.size() < 2) {
+            return;
+        }
+        List<String> titles = new ArrayList<>(loaded.size());
+        for (FormPlan plan : loaded) {
+            titles.add(plan.getTitle());
+        }
+        ArrayAdapter<String> adapter = new ArrayAdapter<>(this, android.R.layout.simple_spinner_item, titles);
+        adapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
+        spinnerTemplate.setAdapter(adapter);
+        spinnerTemplate.setVisibility(View.VISIBLE);
+        spinnerTemplate.setOnItemSelectedListener(new AdapterView.OnItemSelectedListener() {
+            @Override
+            public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
+                if (templates.get(position) != formPlan) {
+                    applyTemplate(templates.get(position));
+                    scheduleDraftSave();
+                }
+            }
+
+            @Override
+            public void onNothingSelected(AdapterView<?> parent) {
+            }
+        });
+    }
+
+    /**
+     * Sélectionne un modèle par son identifiant ; le modèle affiché est conservé si l'identifiant est inconnu.
+     *
+     * @param templateId Identifiant du modèle, ou `null`.
+     */
+    private void selectTemplate(String templateId) {
+        if (templates == null || templateId == null) {
+            return;
+        }
+        for (int i = 0; i < templates.size(); i++) {
+            if (templates.get(i).getId().equals(templateId)) {
+                if (templates.size() > 1) {
+                    spinnerTemplate.setSelection(i);
+                }
+                applyTemplate(templates.get(i));
+                return;
+            }
+        }
+    }
+
+    /**
+     * Affiche un modèle : titre et champs propres. Les champs fixes et leurs saisies sont conservés.
+     *
+     * @param plan Modèle à afficher.
+     */
+    private void applyTemplate(FormPlan plan) {
+        if (plan == formPlan) {
+            return;
+        }
+        formPlan = plan;
+        textViewFormTitle.setText(plan.getTitle());
+        templateFields.bind(plan);
+    }
+
+    /**
+     * Remplit le formulaire à partir du brouillon, sauf si l'utilisateur a déjà commencé une saisie.
+     * Le formulaire est alors complet : le démarrage est signalé au système (`reportFullyDrawn`).
+     *
+     * @param draft Brouillon lu, ou `null` s'il n'y en a pas.
+     */
+    private void restoreDraft(Entry draft) {
+        draftReady = true;
+        if (draft == null || isFinishing() || isDestroyed() || !isFormEmpty()) {
+            reportFullyDrawn();
+            return;
+        }
+        restoringDraft = true;
+        try {
+            selectTemplate(draft.getTemplateId());
+            templateFields.setValues(FormPlan.decodeExtraValues(draft.getExtraValues()));
+            editTextSiteName.setText(draft.getSiteName());
+            editTextDate.setText(draft.getDate());
+            editTextDescription.setText(draft.getDescription());
+            editTextObservations.setText(draft.getObservations());
+            if (draft.getTerrainType() != null) {
+                @SuppressWarnings("unchecked")
+                ArrayAdapter<CharSequence> adapter = (ArrayAdapter<CharSequence>) spinnerTerrainType.getAdapter();
+                int position = adapter.getPosition(draft.getTerrainType());
+                if (position >= 0) {
+                    spinnerTerrainType.setSelection(position);
+                }
+            }
+            checkBoxGoodCondition.setChecked("Bon état".equals(draft.getCondition()));
+            checkBoxDamaged.setChecked("Endommagé".equals(draft.getCondition()));
+            checkBoxMoy.setChecked("Moyenne".equals(draft.getCondition()));
+            if (draft.getLatitude() != null && draft.getLongitude() != null) {
+                capturedCoordinates = new Coordinates(draft.getLatitude(), draft.getLongitude());
+                capturedAccuracy = draft.getFixAccuracy();
+                capturedFixTime = draft.getFixTimeMillis();
+                textViewCoordinates.setText(capturedCoordinates.format());
+            }
+        } finally {
+            restoringDraft = false;
+        }
+        reportFullyDrawn();
+        Toast.makeText(this, "Brouillon restauré.", Toast.LENGTH_SHORT).show();
+    }
+
+    /**
+     * @return `true` si aucun champ de saisie n'a encore été rempli.
+     */
+    private boolean isFormEmpty() {
+        return editTextSiteName.length() == 0 && editTextDate.length() == 0
+                && editTextDescription.length() == 0 && editTextObservations.length() == 0
+                && capturedCoordinates == null && templateFields.isEmpty();
+    }
+
+    /**
+     * Relance le délai de sauvegarde du brouillon. Appelée à chaque modification du formulaire ;
+     * des modifications rapprochées ne produisent qu'une seule écriture.
+     */
+    private void scheduleDraftSave() {
+        if (!draftReady || restoringDraft) {
+            return;
+        }
+        draftHandler.removeCallbacks(draftSaver);
+        draftHandler.postDelayed(draftSaver, DRAFT_DEBOUNCE_MS);
+    }
+
+    /**
+     * @return `true` une fois le brouillon restauré, ou l'absence de brouillon constatée : les modifications suivantes sont sauvegardées.
+     */
+    boolean isDraftReady() {
+        return draftReady;
+    }
+
+    /**
+     * Confie le contenu actuel du formulaire au stockage des brouillons, qui l'écrit en arrière-plan.
+     * Seule la copie des champs s'exécute sur le thread principal.
+     */
+    private void saveDraft() {
+        draftHandler.removeCallbacks(draftSaver);
+        if (isFormEmpty()) {
+            draftStore.clear();
+            return;
+        }
+        Entry draft = new Entry(-1, editTextSiteName.getText().toString(), editTextDate.getText().toString(),
+                capturedCoordinates != null ? capturedCoordinates.format() : null,
+                editTextDescription.getText().toString(), spinnerTerrainType.getSelectedItem().toString(),
+                editTextObservations.getText().toString(), determineCondition());
+        if (capturedCoordinates != null) {
+            draft.setLocation(capturedCoordinates.getLatitude(), capturedCoordinates.getLongitude());
+            draft.setFixQuality(capturedAccuracy, capturedFixTime);
+        }
+        if (formPlan != null) {
+            draft.setTemplate(formPlan.getId(), formPlan.encodeExtraValues(collectValues()));
+        }
+        draftStore.save(draft);
+    }
+
+    /**
+     * Écrit sans attendre le brouillon en attente lorsque l'activité passe en arrière-plan,
+     * car le processus peut alors être arrêté à tout moment.
+     */
+    @Override
+    protected void onPause() {
+        super.onPause();
+        if (draftHandler.hasCallbacks(draftSaver)) {
+            saveDraft();
+        }
     }
 
     /**
@@ -150,6 +539,7 @@ public class MainActivity extends AppCompatActivity {
                 checkBoxDamaged.setChecked(false);
                 checkBoxMoy.setChecked(false);
             }
+            onConditionChanged();
         });
 
         checkBoxDamaged.setOnClickListener(v -> {
@@ -157,6 +547,7 @@ public class MainActivity extends AppCompatActivity {
                 checkBoxGoodCondition.setChecked(false);
                 checkBoxMoy.setChecked(false);
             }
+            onConditionChanged();
         });
 
         checkBoxMoy.setOnClickListener(v -> {
@@ -164,104 +555,324 @@ public class MainActivity extends AppCompatActivity {
                 checkBoxGoodCondition.setChecked(false);
                 checkBoxDamaged.setChecked(false);
             }
+            onConditionChanged();
         });
     }
 
     /**
-     * Demande les permissions de localisation à l'utilisateur.
-     * Si les permissions sont déjà accordées, configure la requête de localisation.
+     * Retire l'erreur « état requis » dès qu'une case est cochée, puis sauvegarde le brouillon.
      */
-    private void requestLocationPermission() {
-        if (ActivityCompat.checkSelfPermission(this, Manifest.permission.ACCESS_FINE_LOCATION) != PackageManager.PERMISSION_GRANTED) {
-            ActivityCompat.requestPermissions(this, new String[]{Manifest.permission.ACCESS_FINE_LOCATION}, LOCATION_REQUEST_CODE);
-        } else {
-            setupLocationRequest();
+    private void onConditionChanged() {
+        if (checkBoxGoodCondition.isChecked() || checkBoxDamaged.isChecked() || checkBoxMoy.isChecked()) {
+            checkBoxGoodCondition.setError(null);
         }
+        scheduleDraftSave();
+    }
+
+    /**
+     * Demande la permission de localisation à l'utilisateur, au moment où elle devient nécessaire
+     * (première capture ou premier démarrage du suivi) plutôt qu'à l'ouverture de l'application.
+     * L'action est reprise par {@link #onRequestPermissionsResult} si la permission est accordée.
+     *
+     * @param requestCode {@link #LOCATION_REQUEST_CODE} ou {@link #TRACK_REQUEST_CODE}, selon l'action à reprendre.
+     */
+    private void requestLocationPermission(int requestCode) {
+        ActivityCompat.requestPermissions(this, new String[]{Manifest.permission.ACCESS_FINE_LOCATION}, requestCode);
     }
 
     /**
-     * Configure la requête de localisation.
+     * Retourne la capture de positions, en la créant à la première utilisation : le client des services
+     * de localisation Google Play n'est pas initialisé au démarrage de l'application.
+     *
+     * @return La capture de positions de l'activité.
      */
-    private void setupLocationRequest() {
-        locationRequest = new LocationRequest.Builder(30000) // Mise à jour toutes les 30 secondes
-                .setMinUpdateIntervalMillis(5000) // Intervalle minimum de mise à jour
-                .setPriority(LocationRequest.PRIORITY_BALANCED_POWER_ACCURACY) // Priorité équilibrée
-                .build();
+    private LocationFixCapturer getFixCapturer() {
+        if (fixCapturer == null) {
+            fixCapturer = new LocationFixCapturer(new FusedLocationSource(this), new Handler(Looper.getMainLooper()));
+        }
+        return fixCapturer;
     }
 
     /**
-     * Récupère la localisation actuelle du périphérique.
-     * Affiche les coordonnées GPS capturées dans une zone de texte.
+     * Capture la position actuelle du périphérique, après avoir demandé la permission si nécessaire.
+     * Une position récente et précise (celle du suivi GPS, par exemple) est reprise immédiatement ;
+     * sinon le récepteur est sollicité jusqu'à atteindre la précision visée ou l'échéance.
+     * Affiche les coordonnées GPS capturées dans une zone de texte, avec leur précision.
      */
     private void getCurrentLocation() {
-        if (ActivityCompat.checkSelfPermission(this, Manifest.permission.ACCESS_FINE_LOCATION) == PackageManager.PERMISSION_GRANTED) {
-            fusedLocationProviderClient.getLastLocation()
-                    .addOnSuccessListener(location -> {
-                        if (location != null) {
-                            double latitude = location.getLatitude();
-                            double longitude = location.getLongitude();
-                            textViewCoordinates.setText("Latitude: " + latitude + "\nLongitude: " + longitude);
-                        } else {
-                            Toast.makeText(this, "Impossible d'obtenir la localisation.", Toast.LENGTH_SHORT).show();
+        if (ActivityCompat.checkSelfPermission(this, Manifest.permission.ACCESS_FINE_LOCATION) != PackageManager.PERMISSION_GRANTED) {
+            requestLocationPermission(LOCATION_REQUEST_CODE);
+            return;
+        }
+        if (currentCapture != null) {
+            return;
+        }
+        CharSequence previousText = textViewCoordinates.getText();
+        buttonCaptureCoordinates.setEnabled(false);
+        textViewCoordinates.setText("Recherche de la position…");
+        currentCapture = getFixCapturer().capture(LocationFixCapturer.DEFAULT_TARGET_ACCURACY_METERS,
+                LocationFixCapturer.DEFAULT_MAX_AGE_MS, LocationFixCapturer.DEFAULT_TIMEOUT_MS,
+                new LocationFixCapturer.Callback() {
+                    @Override
+                    public void onFix(LocationFixCapturer.Fix fix) {
+                        currentCapture = null;
+                        buttonCaptureCoordinates.setEnabled(true);
+                        capturedCoordinates = new Coordinates(fix.getLocation().getLatitude(), fix.getLocation().getLongitude());
+                        capturedAccuracy = fix.getAccuracy();
+                        capturedFixTime = fix.getTimeToFixMillis();
+                        textViewCoordinates.setText(capturedCoordinates.format());
+                        scheduleDraftSave();
+                        String accuracy = capturedAccuracy != null
+                                ? String.format(Locale.FRANCE, "±%.0f m", capturedAccuracy) : "précision inconnue";
+                        String message = String.format(Locale.FRANCE, "Position obtenue (%s) en %.1f s", accuracy, capturedFixTime / 1000f);
+                        if (!fix.isAccurate()) {
+                            message += " — précision visée non atteinte";
                         }
-                    })
-                    .addOnFailureListener(e -> Toast.makeText(this, "Erreur lors de l'obtention de la localisation.", Toast.LENGTH_SHORT).show());
-        } else {
-            Toast.makeText(this, "Permission de localisation refusée.", Toast.LENGTH_SHORT).show();
+                        Toast.makeText(MainActivity.this, message, Toast.LENGTH_SHORT).show();
+                    }
+
+                    @Override
+                    public void onFailure(Exception error) {
+                        currentCapture = null;
+                        buttonCaptureCoordinates.setEnabled(true);
+                        textViewCoordinates.setText(previousText);
+                        Toast.makeText(MainActivity.this, "Impossible d'obtenir la localisation.", Toast.LENGTH_SHORT).show();
+                    }
+                });
+    }
+
+    /**
+     * Mémorise les photos choisies pour le relevé en cours.
+     *
+     * @param uris Photos choisies, éventuellement aucune si l'utilisateur a annulé.
+     */
+    private void onPhotosPicked(List<Uri> uris) {
+        if (uris.isEmpty()) {
+            return;
         }
+        pendingPhotos.clear();
+        pendingPhotos.addAll(uris);
+        textViewPhotos.setText(pendingPhotos.size() == 1 ? "1 photo" : pendingPhotos.size() + " photos");
     }
 
     /**
      * Enregistre les informations de l'utilisateur dans la base de données locale.
+     * Les champs sont d'abord validés selon les règles du modèle de formulaire ; l'erreur est affichée sur le champ fautif.
      * Affiche un message de confirmation ou d'erreur selon le succès de l'enregistrement.
      */
     private void saveEntry() {
+        if (currentCapture != null) {
+            Toast.makeText(this, "Recherche de la position en cours…", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        if (formPlan == null) {
+            Toast.makeText(this, "Formulaire en cours de chargement…", Toast.LENGTH_SHORT).show();
+            return;
+        }
+        // Validation des champs selon le modèle
+        CharSequence[] values = collectValues();
+        for (int i = 0; i < formPlan.size(); i++) {
+            String error = formPlan.get(i).validate(values[i]);
+            if (error != null) {
+                showFieldError(i, error);
+                return;
+            }
+        }
+
         String siteName = editTextSiteName.getText().toString();
         String date = editTextDate.getText().toString();
         String coordinates = textViewCoordinates.getText().toString();
         String description = editTextDescription.getText().toString();
         String observations = editTextObservations.getText().toString();
         String terrainType = spinnerTerrainType.getSelectedItem().toString();
-
         String condition = determineCondition();
-        // Validation des champs obligatoires
-        if (siteName.isEmpty()) {
-            editTextSiteName.setError("Le nom du site est obligatoire");
-            editTextSiteName.requestFocus();
-            return;
+        Entry entry = new Entry(-1, siteName, date, coordinates, description, terrainType, observations, condition);
+        if (capturedCoordinates != null) {
+            entry.setLocation(capturedCoordinates.getLatitude(), capturedCoordinates.getLongitude());
+            entry.setFixQuality(capturedAccuracy, capturedFixTime);
         }
+        entry.setTemplate(formPlan.getId(), formPlan.encodeExtraValues(values));
+
+        // L'insertion est confiée au dépôt ; le bouton est désactivé jusqu'au résultat.
+        // Pendant le suivi GPS, les positions accumulées sont d'abord livrées pour que le relevé soit rattaché au bon point :
+        // cette attente appartient au dépôt, et non à l'activité, pour que le relevé soit enregistré même si l'écran
+        // est quitté ou recréé avant la fin de la livraison.
+        buttonSaveEntry.setEnabled(false);
+        List<Uri> photos = new ArrayList<>(pendingPhotos);
+        entryRepository.insertEntryAfter(trackLogger.flush(), entry, new EntryRepository.Callback<Long>() {
+            @Override
+            public void onSuccess(Long id) {
+                Context app = getApplicationContext();
+                if (id == -1) {
+                    Toast.makeText(app, "Erreur lors de l'enregistrement.", Toast.LENGTH_SHORT).show();
+                    if (!isDestroyed()) {
+                        buttonSaveEntry.setEnabled(true);
+                    }
+                    return;
+                }
+                Toast.makeText(app, "Entrée enregistrée avec succès!", Toast.LENGTH_SHORT).show();
+                // Le brouillon et les photos ne dépendent pas de l'écran : ils sont traités même s'il a disparu
+                draftHandler.removeCallbacks(draftSaver);
+                draftStore.clear();
+                attachPhotos(app, id, photos);
+                if (!isDestroyed()) {
+                    buttonSaveEntry.setEnabled(true);
+                    pendingPhotos.removeAll(photos);
+                    textViewPhotos.setText(pendingPhotos.isEmpty() ? "Aucune photo"
+                            : pendingPhotos.size() == 1 ? "1 photo" : pendingPhotos.size() + " photos");
+                }
+            }
+
+            @Override
+            public void onError(Exception error) {
+                Toast.makeText(getApplicationContext(), "Erreur lors de l'enregistrement.", Toast.LENGTH_SHORT).show();
+                if (!isDestroyed()) {
+                    buttonSaveEntry.setEnabled(true);
+                }
+            }
+        });
+    }
 
-        if (date.isEmpty()) {
-            editTextDate.setError("La date du relevé est obligatoire");
-            editTextDate.requestFocus();
+    /**
+     * Joint des photos à l'entrée enregistrée ; elles sont réduites et stockées en arrière-plan.
+     *
+     * @param app     Contexte de l'application, pour les messages affichés même si l'écran a disparu.
+     * @param entryId Identifiant de l'entrée enregistrée.
+     * @param photos  Photos choisies au moment de l'enregistrement.
+     */
+    private void attachPhotos(Context app, long entryId, List<Uri> photos) {
+        if (photos.isEmpty()) {
             return;
         }
+        entryRepository.addPhotos(entryId, photos, new EntryRepository.Callback<Integer>() {
+            @Override
+            public void onSuccess(Integer count) {
+                Toast.makeText(app, count == 1 ? "1 photo jointe." : count + " photos jointes.", Toast.LENGTH_SHORT).show();
+            }
 
-        if (description.isEmpty()) {
-            editTextDescription.setError("La description est obligatoire");
-            editTextDescription.requestFocus();
-            return;
+            @Override
+            public void onError(Exception error) {
+                Toast.makeText(app, "Erreur lors de l'enregistrement des photos.", Toast.LENGTH_SHORT).show();
+            }
+        });
+    }
+
+    /**
+     * Rassemble la saisie de chaque champ du modèle affiché, sans copier les textes.
+     *
+     * @return La saisie de chaque champ, indexée par position dans le modèle ; `null` pour un champ sans widget.
+     */
+    private CharSequence[] collectValues() {
+        CharSequence[] values = new CharSequence[formPlan.size()];
+        for (int i = 0; i < values.length; i++) {
+            FormPlan.Field field = formPlan.get(i);
+            if (!field.isCore()) {
+                values[i] = templateFields.getValue(i);
+                continue;
+            }
+            switch (field.getKey()) {
+                case "site_name":
+                    values[i] = editTextSiteName.getText();
+                    break;
+                case "date":
+                    values[i] = editTextDate.getText();
+                    break;
+                case "description":
+                    values[i] = editTextDescription.getText();
+                    break;
+                case "observations":
+                    values[i] = editTextObservations.getText();
+                    break;
+                case "terrain_type":
+                    values[i] = (CharSequence) spinnerTerrainType.getSelectedItem();
+                    break;
+                case "condition":
+                    // Aucune case cochée : valeur absente, et non « Non spécifié »
+                    values[i] = checkBoxGoodCondition.isChecked() || checkBoxDamaged.isChecked()
+                            || checkBoxMoy.isChecked() ? determineCondition() : "";
+                    break;
+                default:
+                    break;
+            }
         }
-        if (observations.isEmpty()) {
-            editTextDescription.setError("Les observations sont obligatoires");
-            editTextDescription.requestFocus();
-            return;
+        return values;
+    }
+
+    /**
+     * Affiche une erreur de validation sur le champ concerné et lui donne le focus.
+     * Une liste déroulante ne pouvant pas afficher d'erreur, le message est alors présenté dans un toast.
+     *
+     * @param index   Position du champ dans le modèle.
+     * @param message Message d'erreur.
+     */
+    private void showFieldError(int index, String message) {
+        View view;
+        switch (formPlan.get(index).getKey()) {
+            case "site_name":
+                view = editTextSiteName;
+                break;
+            case "date":
+                view = editTextDate;
+                break;
+            case "description":
+                view = editTextDescription;
+                break;
+            case "observations":
+                view = editTextObservations;
+                break;
+            case "terrain_type":
+                view = spinnerTerrainType;
+                break;
+            case "condition":
+                view = checkBoxGoodCondition;
+                break;
+            default:
+                view = templateFields.getView(index);
+                break;
         }
-        if (terrainType.isEmpty()) {
-            editTextDescription.setError("Le type du terrain obligatoire");
-            editTextDescription.requestFocus();
-            return;
+        if (view instanceof TextView) {
+            ((TextView) view).setError(message);
         }
-        if (determineCondition().isEmpty()) {
-            editTextDescription.setError("L'etat des l'infrastructures obligatoire");
-            editTextDescription.requestFocus();
-            return;
+        if (!(view instanceof EditText)) {
+            Toast.makeText(this, message, Toast.LENGTH_SHORT).show();
         }
-        long id = databaseHelper.insertEntry(siteName, date, coordinates, description, observations, terrainType, condition);
-        if (id != -1) {
-            Toast.makeText(this, "Entrée enregistrée avec succès!", Toast.LENGTH_SHORT).show();
-        } else {
-            Toast.makeText(this, "Erreur lors de l'enregistrement.", Toast.LENGTH_SHORT).show();
+        if (view != null) {
+            view.requestFocus();
+        }
+    }
+
+    /**
+     * Revalide un champ fixe à chaque frappe tant qu'il affiche une erreur, selon les règles du modèle affiché.
+     * Aucune allocation : la recherche du champ et la validation travaillent sur le texte en place.
+     */
+    private class LiveValidator implements TextWatcher {
+
+        /** Champ surveillé. */
+        private final EditText editText;
+
+        /** Clé du champ dans les modèles. */
+        private final String key;
+
+        LiveValidator(EditText editText, String key) {
+            this.editText = editText;
+            this.key = key;
+        }
+
+        @Override
+        public void beforeTextChanged(CharSequence text, int start, int count, int after) {
+        }
+
+        @Override
+        public void onTextChanged(CharSequence text, int start, int before, int count) {
+        }
+
+        @Override
+        public void afterTextChanged(Editable text) {
+            if (editText.getError() == null || formPlan == null) {
+                return;
+            }
+            int index = formPlan.indexOf(key);
+            editText.setError(index < 0 ? null : formPlan.get(index).validateWhileTyping(text));
         }
     }
 
@@ -280,6 +891,22 @@ public class MainActivity extends AppCompatActivity {
         return "Non spécifié";
     }
 
+    /**
+     * Annule la capture de position en cours, puis arrête le suivi GPS lorsque l'utilisateur quitte l'application :
+     * sans service au premier plan, le suivi ne doit pas continuer à consommer de l'énergie en arrière-plan.
+     */
+    @Override
+    protected void onDestroy() {
+        if (currentCapture != null) {
+            currentCapture.cancel();
+            currentCapture = null;
+        }
+        if (isFinishing()) {
+            trackLogger.stop();
+        }
+        super.onDestroy();
+    }
+
     /**
      * Lance une nouvelle activité pour afficher les entrées sauvegardées.
      */
@@ -289,8 +916,8 @@ public class MainActivity extends AppCompatActivity {
     }
 
     /**
-     * Gère le résultat des permissions demandées (localisation).
-     * Configure la requête de localisation si la permission est accordée.
+     * Gère le résultat des permissions demandées (localisation) : la capture ou le suivi qui les a
+     * déclenchées reprend si elles sont accordées.
      *
      * @param requestCode Code de la demande.
      * @param permissions Tableau des permissions demandées.
@@ -299,10 +926,15 @@ public class MainActivity extends AppCompatActivity {
     @Override
     public void onRequestPermissionsResult(int requestCode, @NonNull String[] permissions, @NonNull int[] grantResults) {
         super.onRequestPermissionsResult(requestCode, permissions, grantResults);
-        if (requestCode == LOCATION_REQUEST_CODE && grantResults.length > 0 && grantResults[0] == PackageManager.PERMISSION_GRANTED) {
-            setupLocationRequest();
-        } else {
+        if (requestCode != LOCATION_REQUEST_CODE && requestCode != TRACK_REQUEST_CODE) {
+            return;
+        }
+        if (grantResults.length == 0 || grantResults[0] != PackageManager.PERMISSION_GRANTED) {
             Toast.makeText(this, "Permission de localisation refusée.", Toast.LENGTH_SHORT).show();
+        } else if (requestCode == LOCATION_REQUEST_CODE) {
+            getCurrentLocation();
+        } else {
+            switchTrackLogging.setChecked(true);
         }
     }
 }
@@ -0,0 +1,109 @@
+/**
+ * MaintenanceWorker - Tâche d'arrière-plan d'archivage des relevés anciens et de compactage de la base.
+ */
+package ensa.application01.releveterrain;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.work.Constraints;
+import androidx.work.Data;
+import androidx.work.ExistingPeriodicWorkPolicy;
+import androidx.work.PeriodicWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tâche WorkManager quotidienne, exécutée seulement lorsque l'appareil est en charge et inactif :
+ * <ol>
+ *     <li>les relevés plus anciens que la durée de rétention (`RETENTION_DAYS` dans `build.gradle`) et déjà synchronisés
+ *     sont déplacés vers des archives compressées par {@link EntryArchiver} ;</li>
+ *     <li>les pages libérées sont rendues au système par `PRAGMA incremental_vacuum`, par petites étapes.</li>
+ * </ol>
+ * Chaque lot et chaque étape passe par la file d'écriture du dépôt : un enregistrement de l'utilisateur n'est jamais
+ * bloqué longtemps, et la tâche s'interrompt entre deux étapes si le système la stoppe.
+ */
+public class MaintenanceWorker extends Worker {
+
+    /** Nom de la tâche périodique. */
+    private static final String PERIODIC_WORK = "releve-maintenance-periodic";
+
+    /** Période de la maintenance, en heures. */
+    private static final long PERIODIC_INTERVAL_HOURS = 24;
+
+    /** Nombre de pages restituées par étape de compactage (1 Mio avec des pages de 4 Kio). */
+    private static final int VACUUM_PAGES_PER_STEP = 256;
+
+    /**
+     * Constructeur appelé par WorkManager.
+     *
+     * @param context Contexte de l'application.
+     * @param params  Paramètres de la tâche.
+     */
+    public MaintenanceWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    /**
+     * Planifie la maintenance périodique. Une planification déjà existante est conservée.
+     *
+     * @param context Contexte de l'application.
+     */
+    public static void schedulePeriodic(Context context) {
+        PeriodicWorkRequest request = new PeriodicWorkRequest.Builder(MaintenanceWorker.class,
+                PERIODIC_INTERVAL_HOURS, TimeUnit.HOURS)
+                .setConstraints(new Constraints.Builder()
+                        .setRequiresCharging(true)
+                        .setRequiresDeviceIdle(true)
+                        .build())
+                .build();
+        WorkManager.getInstance(context)
+                .enqueueUniquePeriodicWork(PERIODIC_WORK, ExistingPeriodicWorkPolicy.KEEP, request);
+    }
+
+    /**
+     * Archive les relevés anciens lot par lot, puis compacte la base.
+     * Une archive impossible à écrire (stockage plein) reporte la tâche ; le compactage a lieu dans tous les cas.
+     *
+     * @return Le résultat de la tâche, accompagné du nombre de relevés archivés et de pages restituées.
+     */
+    @NonNull
+    @Override
+    public Result doWork() {
+        EntryRepository repository = EntryRepository.getInstance(getApplicationContext());
+        int archived = 0;
+        boolean archiveFailed = false;
+        if (BuildConfig.RETENTION_DAYS > 0) {
+            long cutoff = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(BuildConfig.RETENTION_DAYS);
+            try {
+                int batch;
+                do {
+                    batch = repository.archiveOldEntries(cutoff);
+                    archived += batch;
+                } while (batch > 0 && !isStopped());
+            } catch (IOException e) {
+                archiveFailed = true;
+            } catch (Exception e) {
+                return Result.retry();
+            }
+        }
+
+        long releasedPages;
+        try {
+            releasedPages = repository.compactDatabase(VACUUM_PAGES_PER_STEP, this::isStopped);
+        } catch (Exception e) {
+            return Result.retry();
+        }
+        if (archiveFailed) {
+            return Result.retry();
+        }
+        return Result.success(new Data.Builder()
+                .putInt("archived", archived)
+                .putLong("released_pages", releasedPages)
+                .build());
+    }
+}
@@ -0,0 +1,247 @@
+/**
+ * PerfMetrics - Mesure des temps des chemins critiques de l'application (enregistrement, lectures, liste, position).
+ */
+package ensa.application01.releveterrain;
+
+import android.util.JsonWriter;
+
+import java.io.IOException;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histogrammes de latence alimentés depuis n'importe quel thread, consultés par l'écran de diagnostic.
+ * <ul>
+ *     <li>L'enregistrement n'utilise que des compteurs sans verrou ({@link LongAdder}) : un thread qui mesure
+ *     n'attend jamais un autre, et la liaison d'une ligne de la liste n'ajoute que deux lectures d'horloge et trois additions.</li>
+ *     <li>Les durées sont rangées dans des classes de puissances de deux, en microsecondes : la mémoire est fixe
+ *     quel que soit le nombre de mesures, et les percentiles sont connus à un facteur deux près, ce qui suffit à repérer une régression.</li>
+ *     <li>Désactivées, les mesures ne coûtent qu'une lecture de champ `volatile` : {@link #start()} ne lit pas l'horloge
+ *     et {@link #stop(Metric, long)} ne touche aucun compteur.</li>
+ * </ul>
+ * Utilisation : `long start = PerfMetrics.start(); ... PerfMetrics.stop(Metric.INSERT, start);`.
+ */
+public final class PerfMetrics {
+
+    /**
+     * Chemins mesurés.
+     */
+    public enum Metric {
+        /** Enregistrement d'une entrée saisie, sur le thread d'écriture. */
+        INSERT("insert"),
+        /** Transaction d'une insertion groupée (import), de son ouverture à sa validation. */
+        INSERT_BATCH("insert_batch"),
+        /** Lecture de la base : pages de la liste, recherche, proximité, entrée isolée, effectifs. */
+        QUERY("query"),
+        /** Liaison d'une ligne de la liste, sur le thread principal. */
+        LIST_BIND("list_bind"),
+        /** Délai d'obtention d'une position, de la demande à la position retenue. */
+        TIME_TO_FIX("time_to_fix");
+
+        /** Nom utilisé dans l'export JSON. */
+        private final String key;
+
+        Metric(String key) {
+            this.key = key;
+        }
+
+        /**
+         * @return Le nom de la mesure dans l'export JSON.
+         */
+        public String getKey() {
+            return key;
+        }
+    }
+
+    /** Valeur retournée par {@link #start()} lorsque les mesures sont désactivées. */
+    public static final long NOT_STARTED = Long.MIN_VALUE;
+
+    /** Nombre de classes de durée : la dernière regroupe tout ce qui dépasse 2^30 µs (environ 18 minutes). */
+    private static final int BUCKETS = 32;
+
+    /** Indique si les mesures sont enregistrées. */
+    private static volatile boolean enabled = BuildConfig.DEBUG;
+
+    /** Histogramme de chaque mesure, indexé par {@link Metric#ordinal()}. */
+    private static final Histogram[] HISTOGRAMS = new Histogram[Metric.values().length];
+
+    static {
+        for (int i = 0; i < HISTOGRAMS.length; i++) {
+            HISTOGRAMS[i] = new Histogram();
+        }
+    }
+
+    private PerfMetrics() {
+    }
+
+    /**
+     * @return `true` si les mesures sont enregistrées.
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Active ou désactive les mesures. Les valeurs déjà enregistrées sont conservées.
+     *
+     * @param enabled `true` pour enregistrer les mesures.
+     */
+    public static void setEnabled(boolean enabled) {
+        PerfMetrics.enabled = enabled;
+    }
+
+    /**
+     * Début d'une mesure.
+     *
+     * @return L'instant de départ à passer à {@link #stop(Metric, long)}, ou {@link #NOT_STARTED} si les mesures sont désactivées.
+     */
+    public static long start() {
+        return enabled ? System.nanoTime() : NOT_STARTED;
+    }
+
+    /**
+     * Fin d'une mesure commencée par {@link #start()}. Sans effet si la mesure n'a pas commencé.
+     *
+     * @param metric Chemin mesuré.
+     * @param start  Valeur retournée par {@link #start()}.
+     */
+    public static void stop(Metric metric, long start) {
+        if (start != NOT_STARTED) {
+            HISTOGRAMS[metric.ordinal()].record((System.nanoTime() - start) / 1000);
+        }
+    }
+
+    /**
+     * Enregistre une durée mesurée ailleurs, par exemple le délai d'obtention d'une position.
+     *
+     * @param metric        Chemin mesuré.
+     * @param elapsedMillis Durée en millisecondes.
+     */
+    public static void recordMillis(Metric metric, long elapsedMillis) {
+        if (enabled) {
+            HISTOGRAMS[metric.ordinal()].record(elapsedMillis * 1000);
+        }
+    }
+
+    /**
+     * Remet toutes les mesures à zéro.
+     */
+    public static void reset() {
+        for (Histogram histogram : HISTOGRAMS) {
+            histogram.reset();
+        }
+    }
+
+    /**
+     * Écrit l'état de toutes les mesures sous forme d'objet JSON : effectif, moyenne, percentiles et maximum en millisecondes,
+     * puis les classes non vides (borne supérieure en microsecondes → effectif).
+     * Les compteurs continuent d'évoluer pendant la lecture : les valeurs d'une même mesure peuvent différer d'une unité.
+     *
+     * @param json Écrivain JSON, positionné là où l'objet doit être écrit.
+     * @throws IOException Si l'écriture échoue.
+     */
+    public static void writeJson(JsonWriter json) throws IOException {
+        json.beginObject();
+        for (Metric metric : Metric.values()) {
+            json.name(metric.getKey());
+            HISTOGRAMS[metric.ordinal()].writeJson(json);
+        }
+        json.endObject();
+    }
+
+    /**
+     * @return La classe d'une durée : 0 pour moins de 2 µs, puis `k` pour l'intervalle [2^k, 2^(k+1)[.
+     */
+    private static int bucketOf(long micros) {
+        if (micros < 2) {
+            return 0;
+        }
+        return Math.min(BUCKETS - 1, 63 - Long.numberOfLeadingZeros(micros));
+    }
+
+    /**
+     * @return La borne supérieure d'une classe, en microsecondes.
+     */
+    private static long upperBoundOf(int bucket) {
+        return 1L << (bucket + 1);
+    }
+
+    /**
+     * Histogramme à classes logarithmiques, sans verrou.
+     */
+    private static class Histogram {
+
+        /** Effectif de chaque classe. */
+        private final LongAdder[] buckets = new LongAdder[BUCKETS];
+        /** Somme des durées, en microsecondes. */
+        private final LongAdder sum = new LongAdder();
+        /** Plus grande durée, en microsecondes. */
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        Histogram() {
+            for (int i = 0; i < BUCKETS; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        void record(long micros) {
+            if (micros < 0) {
+                micros = 0;
+            }
+            buckets[bucketOf(micros)].increment();
+            sum.add(micros);
+            max.accumulate(micros);
+        }
+
+        void reset() {
+            for (LongAdder bucket : buckets) {
+                bucket.reset();
+            }
+            sum.reset();
+            max.reset();
+        }
+
+        void writeJson(JsonWriter json) throws IOException {
+            long[] counts = new long[BUCKETS];
+            long count = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                counts[i] = buckets[i].sum();
+                count += counts[i];
+            }
+            json.beginObject();
+            json.name("count").value(count);
+            if (count > 0) {
+                json.name("mean_ms").value(sum.sum() / 1000.0 / count);
+                json.name("p50_ms").value(percentile(counts, count, 0.50) / 1000.0);
+                json.name("p90_ms").value(percentile(counts, count, 0.90) / 1000.0);
+                json.name("p99_ms").value(percentile(counts, count, 0.99) / 1000.0);
+                json.name("max_ms").value(max.get() / 1000.0);
+                json.name("buckets_us");
+                json.beginObject();
+                for (int i = 0; i < BUCKETS; i++) {
+                    if (counts[i] > 0) {
+                        json.name(String.valueOf(upperBoundOf(i))).value(counts[i]);
+                    }
+                }
+                json.endObject();
+            }
+            json.endObject();
+        }
+
+        /**
+         * @return La borne supérieure de la classe contenant le percentile demandé, en microsecondes,
+         * plafonnée par le maximum observé.
+         */
+        private long percentile(long[] counts, long count, double fraction) {
+            long rank = (long) Math.ceil(count * fraction);
+            long seen = 0;
+            for (int i = 0; i < BUCKETS; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(upperBoundOf(i), max.get());
+                }
+            }
+            return max.get();
+        }
+    }
+}
@@ -0,0 +1,47 @@
+/**
+ * ReleveApplication - Point d'entrée du processus de l'application.
+ */
+package ensa.application01.releveterrain;
+
+import android.app.Application;
+import android.os.StrictMode;
+
+import androidx.annotation.NonNull;
+import androidx.work.Configuration;
+
+/**
+ * Application du relevé terrain.
+ * Dans les versions de développement, StrictMode signale toute lecture ou écriture disque et tout accès réseau
+ * effectué sur le thread principal : les accès à la base, aux fichiers et aux brouillons doivent tous passer par un thread d'arrière-plan.
+ * WorkManager est initialisé à la demande (son initialiseur automatique est retiré du manifeste) : sa base interne
+ * n'est plus préparée pendant le démarrage, mais au premier appel à `WorkManager.getInstance`, depuis la file d'écriture du dépôt.
+ */
+public class ReleveApplication extends Application implements Configuration.Provider {
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        if (BuildConfig.DEBUG) {
+            StrictMode.setThreadPolicy(new StrictMode.ThreadPolicy.Builder()
+                    .detectDiskReads()
+                    .detectDiskWrites()
+                    .detectNetwork()
+                    .penaltyLog()
+                    .build());
+            StrictMode.setVmPolicy(new StrictMode.VmPolicy.Builder()
+                    .detectLeakedClosableObjects()
+                    .detectLeakedSqlLiteObjects()
+                    .penaltyLog()
+                    .build());
+        }
+    }
+
+    /**
+     * @return La configuration de WorkManager, lue lors de sa première utilisation.
+     */
+    @NonNull
+    @Override
+    public Configuration getWorkManagerConfiguration() {
+        return new Configuration.Builder().build();
+    }
+}
@@ -0,0 +1,284 @@
+/**
+ * SyncEngine - Envoi des modifications locales au serveur central.
+ */
+package ensa.application01.releveterrain;
+
+import android.os.SystemClock;
+import android.util.JsonWriter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.BooleanSupplier;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Moteur de synchronisation par deltas.
+ * Seules les entrées consignées dans le journal `entry_changes` sont envoyées, par lots compressés ;
+ * un lot n'est retiré du journal qu'après avoir été accepté par le serveur.
+ * Le serveur doit traiter chaque modification comme une écriture idempotente sur (`device`, `id`) :
+ * un lot renvoyé après une réponse perdue ne crée donc pas de doublon.
+ */
+public class SyncEngine {
+
+    /** Nombre maximal de modifications par requête. */
+    static final int BATCH_SIZE = 200;
+
+    /** Nombre maximal d'envois d'un même lot avant d'abandonner la synchronisation. */
+    static final int MAX_ATTEMPTS = 4;
+
+    /** Délai avant la première nouvelle tentative, en millisecondes ; il double à chaque échec. */
+    static final long INITIAL_BACKOFF_MS = 1_000;
+
+    /** Délai maximal entre deux tentatives, en millisecondes. */
+    static final long MAX_BACKOFF_MS = 30_000;
+
+    /**
+     * Erreur définitive : le serveur a refusé un lot (statut 4xx), le renvoyer à l'identique ne servirait à rien.
+     */
+    public static class RejectedException extends IOException {
+
+        /** Statut HTTP renvoyé par le serveur. */
+        private final int status;
+
+        RejectedException(int status) {
+            super("Lot refusé par le serveur (HTTP " + status + ")");
+            this.status = status;
+        }
+
+        /** @return Le statut HTTP renvoyé par le serveur. */
+        public int getStatus() {
+            return status;
+        }
+    }
+
+    /**
+     * Retrait du journal des modifications acceptées par le serveur.
+     */
+    public interface Acknowledger {
+        /**
+         * Retire du journal les modifications jusqu'au numéro d'ordre donné (voir {@link DatabaseHelper#acknowledgeChanges(long)}).
+         *
+         * @param upToSeq Numéro d'ordre de la dernière modification acceptée par le serveur.
+         * @return Le nombre de modifications retirées.
+         * @throws Exception Si l'écriture n'a pas pu avoir lieu.
+         */
+        int acknowledge(long upToSeq) throws Exception;
+    }
+
+    /** Helper d'accès à la base de données, pour la lecture du journal. */
+    private final DatabaseHelper databaseHelper;
+
+    /** Retrait du journal des lots acceptés. */
+    private final Acknowledger acknowledger;
+
+    /** Canal d'envoi des lots. */
+    private final SyncTransport transport;
+
+    /** Identifiant de cette installation, transmis avec chaque lot. */
+    private final String deviceId;
+
+    /** Délai avant la première nouvelle tentative, en millisecondes. */
+    private final long initialBackoffMillis;
+
+    /**
+     * Constructeur du moteur de synchronisation.
+     *
+     * @param databaseHelper Helper d'accès à la base de données, pour la lecture du journal.
+     * @param acknowledger   Retrait des lots acceptés, à exécuter sur le thread d'écriture de la base.
+     * @param transport      Canal d'envoi des lots.
+     * @param deviceId       Identifiant stable de cette installation.
+     */
+    public SyncEngine(DatabaseHelper databaseHelper, Acknowledger acknowledger, SyncTransport transport, String deviceId) {
+        this(databaseHelper, acknowledger, transport, deviceId, INITIAL_BACKOFF_MS);
+    }
+
+    /**
+     * Constructeur permettant de raccourcir le délai entre deux tentatives, pour les tests.
+     *
+     * @param initialBackoffMillis Délai avant la première nouvelle tentative, en millisecondes ; il double à chaque échec.
+     */
+    SyncEngine(DatabaseHelper databaseHelper, Acknowledger acknowledger, SyncTransport transport, String deviceId,
+               long initialBackoffMillis) {
+        this.databaseHelper = databaseHelper;
+        this.acknowledger = acknowledger;
+        this.transport = transport;
+        this.deviceId = deviceId;
+        this.initialBackoffMillis = initialBackoffMillis;
+    }
+
+    /**
+     * Envoie toutes les modifications en attente, lot par lot.
+     * Un échec réseau ou une erreur serveur (5xx, 408, 429) est retenté avec un délai exponentiel.
+     * Les lots déjà acceptés restent acquis si la synchronisation s'interrompt.
+     *
+     * @param stopped Indique que la synchronisation doit s'arrêter au plus tôt (contraintes plus satisfaites, annulation).
+     * @return Les mesures de la synchronisation.
+     * @throws RejectedException Si le serveur refuse définitivement un lot.
+     * @throws IOException       Si un lot n'a pas pu être envoyé après {@link #MAX_ATTEMPTS} tentatives.
+     */
+    public SyncStats sync(BooleanSupplier stopped) throws IOException {
+        long start = SystemClock.elapsedRealtime();
+        SyncStats stats = new SyncStats();
+        try {
+            while (!stopped.getAsBoolean()) {
+                List<EntryChange> changes = databaseHelper.getPendingChanges(BATCH_SIZE);
+                if (changes.isEmpty()) {
+                    break;
+                }
+                ByteArrayOutputStream payload = new ByteArrayOutputStream(16 * 1024);
+                long uncompressed = encode(changes, payload);
+                byte[] body = payload.toByteArray();
+                upload(body, stats, stopped);
+                acknowledge(changes.get(changes.size() - 1).getSeq());
+                stats.recordBatch(changes.size(), uncompressed);
+                if (changes.size() < BATCH_SIZE) {
+                    break;
+                }
+            }
+        } finally {
+            stats.setElapsedMillis(SystemClock.elapsedRealtime() - start);
+        }
+        return stats;
+    }
+
+    /**
+     * Retire un lot accepté du journal. En cas d'échec, le lot reste dans le journal et sera renvoyé :
+     * le serveur le traite comme une écriture idempotente.
+     */
+    private void acknowledge(long upToSeq) throws IOException {
+        try {
+            acknowledger.acknowledge(upToSeq);
+        } catch (IOException e) {
+            throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Synchronisation interrompue");
+        } catch (Exception e) {
+            throw new IOException("Impossible de retirer le lot du journal", e);
+        }
+    }
+
+    /**
+     * Envoie un lot, en le retentant avec un délai exponentiel tant que l'erreur est passagère.
+     */
+    private void upload(byte[] body, SyncStats stats, BooleanSupplier stopped) throws IOException {
+        long backoff = initialBackoffMillis;
+        for (int attempt = 1; ; attempt++) {
+            IOException failure;
+            stats.recordRequest(body.length, attempt > 1);
+            try {
+                int status = transport.upload(body);
+                if (status >= 200 && status < 300) {
+                    return;
+                }
+                if (status >= 400 && status < 500 && status != 408 && status != 429) {
+                    throw new RejectedException(status);
+                }
+                failure = new IOException("Erreur temporaire du serveur (HTTP " + status + ")");
+            } catch (RejectedException e) {
+                throw e;
+            } catch (IOException e) {
+                failure = e;
+            }
+            if (attempt == MAX_ATTEMPTS || stopped.getAsBoolean()) {
+                throw failure;
+            }
+            // Délai aléatoire entre la moitié et la totalité du délai, pour étaler les reprises des appareils
+            long delay = backoff / 2 + ThreadLocalRandom.current().nextLong(backoff / 2 + 1);
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Synchronisation interrompue");
+            }
+            backoff = Math.min(backoff * 2, MAX_BACKOFF_MS);
+        }
+    }
+
+    /**
+     * Encode un lot en JSON compressé :
+     * `{"device": "...", "changes": [{"seq": 1, "op": "upsert", "id": 42, "entry": {...}}, ...]}`.
+     *
+     * @param changes Modifications du lot.
+     * @param target  Flux recevant le document compressé.
+     * @return La taille du document avant compression, en octets.
+     */
+    private long encode(List<EntryChange> changes, OutputStream target) throws IOException {
+        GZIPOutputStream gzip = new GZIPOutputStream(target);
+        CountingOutputStream counting = new CountingOutputStream(gzip);
+        try (JsonWriter json = new JsonWriter(new OutputStreamWriter(counting, StandardCharsets.UTF_8))) {
+            json.beginObject();
+            json.name("device").value(deviceId);
+            json.name("changes").beginArray();
+            for (EntryChange change : changes) {
+                json.beginObject();
+                json.name("seq").value(change.getSeq());
+                json.name("id").value(change.getEntryId());
+                if (change.isDeleted()) {
+                    json.name("op").value(EntryChange.OPERATION_DELETE);
+                } else {
+                    json.name("op").value(EntryChange.OPERATION_UPSERT);
+                    writeEntry(json, change.getEntry());
+                }
+                json.endObject();
+            }
+            json.endArray();
+            json.endObject();
+        }
+        return counting.count;
+    }
+
+    /**
+     * Écrit le contenu d'une entrée sous la clé `entry`.
+     */
+    private static void writeEntry(JsonWriter json, Entry entry) throws IOException {
+        json.name("entry").beginObject();
+        json.name("site_name").value(entry.getSiteName());
+        json.name("date").value(entry.getDate());
+        json.name("date_epoch").value(entry.getDateEpoch());
+        json.name("coordinates").value(entry.getCoordinates());
+        json.name("latitude").value(entry.getLatitude());
+        json.name("longitude").value(entry.getLongitude());
+        json.name("fix_accuracy").value(entry.getFixAccuracy());
+        json.name("fix_time_ms").value(entry.getFixTimeMillis());
+        json.name("description").value(entry.getDescription());
+        json.name("terrain_type").value(entry.getTerrainType());
+        json.name("observations").value(entry.getObservations());
+        json.name("condition").value(entry.getCondition());
+        json.name("template_id").value(entry.getTemplateId());
+        json.name("extra_values").value(entry.getExtraValues());
+        json.endObject();
+    }
+
+    /**
+     * Flux comptant les octets écrits avant compression.
+     */
+    private static class CountingOutputStream extends FilterOutputStream {
+
+        /** Nombre d'octets écrits. */
+        private long count;
+
+        CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] buffer, int offset, int length) throws IOException {
+            out.write(buffer, offset, length);
+            count += length;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/**
+ * SyncStats - Mesures d'une synchronisation.
+ */
+package ensa.application01.releveterrain;
+
+/**
+ * Compteurs d'une exécution de {@link SyncEngine#sync(java.util.function.BooleanSupplier)}.
+ * Ils permettent de vérifier que le volume envoyé et le nombre de requêtes suivent le nombre de modifications,
+ * et non la taille de la table.
+ */
+public class SyncStats {
+
+    /** Nombre de modifications acceptées par le serveur. */
+    private int changesSent;
+    /** Nombre de requêtes envoyées, nouvelles tentatives comprises. */
+    private int requestCount;
+    /** Nombre de nouvelles tentatives après un échec. */
+    private int retryCount;
+    /** Volume envoyé, en octets compressés, nouvelles tentatives comprises. */
+    private long bytesSent;
+    /** Volume des documents avant compression, en octets. */
+    private long uncompressedBytes;
+    /** Durée de la synchronisation, en millisecondes. */
+    private long elapsedMillis;
+
+    /**
+     * Comptabilise une requête envoyée.
+     *
+     * @param bytes Taille du corps de la requête.
+     * @param retry `true` s'il s'agit d'une nouvelle tentative.
+     */
+    void recordRequest(long bytes, boolean retry) {
+        requestCount++;
+        bytesSent += bytes;
+        if (retry) {
+            retryCount++;
+        }
+    }
+
+    /**
+     * Comptabilise un lot accepté par le serveur.
+     *
+     * @param changes           Nombre de modifications du lot.
+     * @param uncompressedBytes Taille du document avant compression.
+     */
+    void recordBatch(int changes, long uncompressedBytes) {
+        changesSent += changes;
+        this.uncompressedBytes += uncompressedBytes;
+    }
+
+    /**
+     * @param elapsedMillis Durée de la synchronisation, en millisecondes.
+     */
+    void setElapsedMillis(long elapsedMillis) {
+        this.elapsedMillis = elapsedMillis;
+    }
+
+    /** @return Le nombre de modifications acceptées par le serveur. */
+    public int getChangesSent() {
+        return changesSent;
+    }
+
+    /** @return Le nombre de requêtes envoyées, nouvelles tentatives comprises. */
+    public int getRequestCount() {
+        return requestCount;
+    }
+
+    /** @return Le nombre de nouvelles tentatives. */
+    public int getRetryCount() {
+        return retryCount;
+    }
+
+    /** @return Le volume envoyé, en octets compressés. */
+    public long getBytesSent() {
+        return bytesSent;
+    }
+
+    /** @return Le volume des lots acceptés avant compression, en octets. */
+    public long getUncompressedBytes() {
+        return uncompressedBytes;
+    }
+
+    /** @return La durée de la synchronisation, en millisecondes. */
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+}
@@ -0,0 +1,23 @@
+/**
+ * SyncTransport - Canal d'envoi des modifications vers le serveur central.
+ */
+package ensa.application01.releveterrain;
+
+import java.io.IOException;
+
+/**
+ * Envoie un lot de modifications au serveur.
+ * L'implémentation de production passe par HTTP ({@link HttpSyncTransport}) ; une autre implémentation peut viser
+ * un serveur HTTP local de test ou simuler des réponses, sans rien changer au moteur de synchronisation.
+ */
+public interface SyncTransport {
+
+    /**
+     * Envoie un lot de modifications.
+     *
+     * @param payload Corps de la requête : document JSON compressé au format gzip.
+     * @return Le code de statut HTTP de la réponse (2xx : lot accepté).
+     * @throws IOException Si le serveur n'a pas pu être joint ou si la réponse n'a pas été reçue.
+     */
+    int upload(byte[] payload) throws IOException;
+}
@@ -0,0 +1,180 @@
+/**
+ * SyncWorker - Tâche d'arrière-plan de synchronisation avec le serveur central.
+ */
+package ensa.application01.releveterrain;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import androidx.annotation.NonNull;
+import androidx.work.BackoffPolicy;
+import androidx.work.Constraints;
+import androidx.work.Data;
+import androidx.work.ExistingPeriodicWorkPolicy;
+import androidx.work.ExistingWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.OneTimeWorkRequest;
+import androidx.work.PeriodicWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tâche WorkManager exécutant {@link SyncEngine} lorsque le réseau est disponible et la batterie suffisante.
+ * Le système regroupe et diffère ces tâches : la synchronisation ne réveille jamais l'appareil pour rien.
+ * Sans point de synchronisation configuré (`SYNC_ENDPOINT` vide dans `build.gradle`), rien n'est planifié.
+ */
+public class SyncWorker extends Worker {
+
+    /** Nom de la tâche périodique. */
+    private static final String PERIODIC_WORK = "releve-sync-periodic";
+
+    /** Nom de la tâche ponctuelle demandée après des modifications. */
+    private static final String ONE_TIME_WORK = "releve-sync";
+
+    /** Période de la synchronisation de fond, en heures. */
+    private static final long PERIODIC_INTERVAL_HOURS = 6;
+
+    /** Délai avant une synchronisation demandée, en minutes : les modifications proches partent dans le même envoi. */
+    private static final long REQUEST_DELAY_MINUTES = 10;
+
+    /** Délai initial de nouvelle tentative par WorkManager, en secondes ; il double à chaque échec. */
+    private static final long BACKOFF_SECONDS = 60;
+
+    /** Nom du fichier de préférences de la synchronisation. */
+    private static final String PREFERENCES = "sync";
+
+    /** Clé de l'identifiant de cette installation. */
+    private static final String KEY_DEVICE_ID = "device_id";
+
+    /** Préfixe des clés mémorisant les mesures de la dernière synchronisation réussie. */
+    private static final String KEY_LAST_PREFIX = "last_";
+
+    /** Verrou empêchant deux synchronisations simultanées (tâche périodique et tâche ponctuelle). */
+    private static final Object SYNC_LOCK = new Object();
+
+    /**
+     * Constructeur appelé par WorkManager.
+     *
+     * @param context Contexte de l'application.
+     * @param params  Paramètres de la tâche.
+     */
+    public SyncWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    /**
+     * Planifie la synchronisation périodique, si un point de synchronisation est configuré.
+     * Une planification déjà existante est conservée.
+     *
+     * @param context Contexte de l'application.
+     */
+    public static void schedulePeriodic(Context context) {
+        if (BuildConfig.SYNC_ENDPOINT.isEmpty()) {
+            return;
+        }
+        PeriodicWorkRequest request = new PeriodicWorkRequest.Builder(SyncWorker.class,
+                PERIODIC_INTERVAL_HOURS, TimeUnit.HOURS)
+                .setConstraints(constraints())
+                .setBackoffCriteria(BackoffPolicy.EXPONENTIAL, BACKOFF_SECONDS, TimeUnit.SECONDS)
+                .build();
+        WorkManager.getInstance(context)
+                .enqueueUniquePeriodicWork(PERIODIC_WORK, ExistingPeriodicWorkPolicy.KEEP, request);
+    }
+
+    /**
+     * Demande une synchronisation prochaine, après de nouvelles modifications.
+     * Tant qu'une demande est en attente, les suivantes sont ignorées : une rafale d'enregistrements ne produit qu'un envoi.
+     *
+     * @param context Contexte de l'application.
+     */
+    public static void requestSync(Context context) {
+        if (BuildConfig.SYNC_ENDPOINT.isEmpty()) {
+            return;
+        }
+        OneTimeWorkRequest request = new OneTimeWorkRequest.Builder(SyncWorker.class)
+                .setConstraints(constraints())
+                .setInitialDelay(REQUEST_DELAY_MINUTES, TimeUnit.MINUTES)
+                .setBackoffCriteria(BackoffPolicy.EXPONENTIAL, BACKOFF_SECONDS, TimeUnit.SECONDS)
+                .build();
+        WorkManager.getInstance(context).enqueueUniqueWork(ONE_TIME_WORK, ExistingWorkPolicy.KEEP, request);
+    }
+
+    /**
+     * @return Les conditions d'exécution : réseau disponible et batterie non faible.
+     */
+    private static Constraints constraints() {
+        return new Constraints.Builder()
+                .setRequiredNetworkType(NetworkType.CONNECTED)
+                .setRequiresBatteryNotLow(true)
+                .build();
+    }
+
+    /**
+     * Exécute la synchronisation. Un échec passager est confié au délai exponentiel de WorkManager ;
+     * un refus définitif du serveur met fin à la tâche sans nouvelle tentative.
+     *
+     * @return Le résultat de la tâche, accompagné des mesures de la synchronisation en cas de succès.
+     */
+    @NonNull
+    @Override
+    public Result doWork() {
+        URL endpoint;
+        try {
+            endpoint = new URL(BuildConfig.SYNC_ENDPOINT);
+        } catch (MalformedURLException e) {
+            return Result.failure();
+        }
+        SharedPreferences preferences = getApplicationContext().getSharedPreferences(PREFERENCES, Context.MODE_PRIVATE);
+        EntryRepository repository = EntryRepository.getInstance(getApplicationContext());
+        SyncEngine engine = new SyncEngine(repository.getDatabaseHelper(), repository::acknowledgeSyncedChanges,
+                new HttpSyncTransport(endpoint, BuildConfig.SYNC_TOKEN), deviceId(preferences));
+
+        SyncStats stats;
+        try {
+            synchronized (SYNC_LOCK) {
+                stats = engine.sync(this::isStopped);
+            }
+        } catch (SyncEngine.RejectedException e) {
+            return Result.failure();
+        } catch (IOException e) {
+            return Result.retry();
+        }
+
+        preferences.edit()
+                .putLong(KEY_LAST_PREFIX + "time", System.currentTimeMillis())
+                .putInt(KEY_LAST_PREFIX + "changes", stats.getChangesSent())
+                .putInt(KEY_LAST_PREFIX + "requests", stats.getRequestCount())
+                .putLong(KEY_LAST_PREFIX + "bytes", stats.getBytesSent())
+                .apply();
+        return Result.success(new Data.Builder()
+                .putInt("changes", stats.getChangesSent())
+                .putInt("requests", stats.getRequestCount())
+                .putInt("retries", stats.getRetryCount())
+                .putLong("bytes", stats.getBytesSent())
+                .putLong("uncompressed_bytes", stats.getUncompressedBytes())
+                .putLong("elapsed_ms", stats.getElapsedMillis())
+                .build());
+    }
+
+    /**
+     * Retourne l'identifiant de cette installation, en le créant au premier appel.
+     *
+     * @param preferences Préférences de la synchronisation.
+     * @return Un identifiant aléatoire stable.
+     */
+    private static String deviceId(SharedPreferences preferences) {
+        String deviceId = preferences.getString(KEY_DEVICE_ID, null);
+        if (deviceId == null) {
+            deviceId = UUID.randomUUID().toString();
+            preferences.edit().putString(KEY_DEVICE_ID, deviceId).commit();
+        }
+        return deviceId;
+    }
+}
@@ -0,0 +1,387 @@
+/**
+ * ThumbnailLoader - Chargement asynchrone des vignettes affichées dans la liste des relevés.
+ */
+package ensa.application01.releveterrain;
+
+import android.app.ActivityManager;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.View;
+import android.widget.ImageView;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Charge la vignette de la première photo de chaque entrée, sans jamais décoder d'image sur le thread principal.
+ * <ul>
+ *     <li>Les vignettes décodées sont gardées dans un cache mémoire LRU, mesuré en octets et vidé lorsque le système manque de mémoire ;
+ *     les entrées sans photo sont mémorisées aussi, pour ne pas interroger la base à chaque défilement.</li>
+ *     <li>Les chargements sont traités du plus récent au plus ancien : pendant un défilement rapide, les lignes visibles passent
+ *     avant celles déjà sorties de l'écran, dont les requêtes sont annulées lorsque leur vue est recyclée ou réutilisée.</li>
+ *     <li>La liaison d'une ligne ne crée aucun objet : les caches sont indexés par `long` ({@link LongLruCache}) et chaque vue
+ *     garde une seule requête, réutilisée d'un chargement au suivant.</li>
+ *     <li>Chaque chargement relève un numéro d'invalidation global ; un chargement commencé avant l'invalidation de son entrée
+ *     n'enregistre pas son résultat, devenu périmé, dans les caches. Seules les invalidations récentes sont mémorisées :
+ *     au-delà, un chargement plus ancien que la plus récente invalidation oubliée n'est pas mis en cache, par prudence.</li>
+ *     <li>Les écouteurs ({@link OnInvalidatedListener}) sont prévenus de chaque invalidation, pour relier les lignes affichées.</li>
+ * </ul>
+ * {@link #load(long, ImageView)}, {@link #cancel(ImageView)} et {@link #invalidate(long)} doivent être appelées sur le thread principal.
+ */
+public class ThumbnailLoader implements ComponentCallbacks2 {
+
+    /** Nombre de threads de décodage. */
+    private static final int DECODE_THREADS = 2;
+
+    /** Fraction de la classe mémoire de l'application consacrée aux vignettes (1/8). */
+    private static final int MEMORY_CLASS_DIVISOR = 8;
+
+    /** Nombre d'entrées sans photo mémorisées. */
+    private static final int WITHOUT_PHOTO_CACHE_SIZE = 1024;
+
+    /** Nombre d'invalidations récentes mémorisées. */
+    private static final int INVALIDATIONS_CACHE_SIZE = 256;
+
+    /**
+     * Écouteur prévenu, sur le thread principal, de l'invalidation de la vignette d'une entrée.
+     */
+    public interface OnInvalidatedListener {
+        /**
+         * @param entryId Identifiant de l'entrée dont la vignette a changé.
+         */
+        void onThumbnailInvalidated(long entryId);
+    }
+
+    /** Contexte de l'application. */
+    private final Context context;
+
+    /** Helper d'accès à la base de données. */
+    private final DatabaseHelper databaseHelper;
+
+    /** Stockage des photos et de leurs vignettes. */
+    private final AttachmentStore attachmentStore;
+
+    /** Vignettes décodées, indexées par identifiant d'entrée ; la taille est mesurée en octets. */
+    private final LongLruCache<Bitmap> thumbnails;
+
+    /** Entrées connues pour n'avoir aucune photo. */
+    private final LongLruCache<Boolean> withoutPhoto = new LongLruCache<>(WITHOUT_PHOTO_CACHE_SIZE);
+
+    /**
+     * Numéro de la dernière invalidation de chaque entrée récemment invalidée.
+     * Sert aussi de verrou entre l'invalidation et l'enregistrement d'un résultat dans les caches.
+     */
+    private final LongLruCache<Long> invalidations = new LongLruCache<>(INVALIDATIONS_CACHE_SIZE);
+
+    /** Numéro de la dernière invalidation, toutes entrées confondues. Protégé par {@link #invalidations}. */
+    private long epoch;
+
+    /** Numéro de la plus récente invalidation possiblement oubliée par {@link #invalidations}. */
+    private long forgottenInvalidation;
+
+    /** Écouteurs des invalidations. Lue et modifiée sur le thread principal. */
+    private final List<OnInvalidatedListener> invalidatedListeners = new ArrayList<>();
+
+    /** Exécuteur des chargements, servi du plus récent au plus ancien. */
+    private final ThreadPoolExecutor executor;
+
+    /** Handler permettant de remettre les vignettes sur le thread principal. */
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Constructeur du chargeur.
+     *
+     * @param context         Contexte de l'application.
+     * @param databaseHelper  Helper d'accès à la base de données.
+     * @param attachmentStore Stockage des photos.
+     */
+    public ThumbnailLoader(Context context, DatabaseHelper databaseHelper, AttachmentStore attachmentStore) {
+        this.context = context;
+        this.databaseHelper = databaseHelper;
+        this.attachmentStore = attachmentStore;
+        ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        int maxBytes = activityManager.getMemoryClass() * 1024 * 1024 / MEMORY_CLASS_DIVISOR;
+        thumbnails = new LongLruCache<Bitmap>(maxBytes) {
+            @Override
+            protected int sizeOf(long key, Bitmap value) {
+                return value.getAllocationByteCount();
+            }
+        };
+        executor = new ThreadPoolExecutor(DECODE_THREADS, DECODE_THREADS, 30, TimeUnit.SECONDS,
+                new LifoQueue(), new EntryRepository.BackgroundThreadFactory("releve-thumbnail"));
+        executor.allowCoreThreadTimeOut(true);
+        context.registerComponentCallbacks(this);
+    }
+
+    /**
+     * Affiche la vignette d'une entrée dans une vue, immédiatement si elle est en mémoire, sinon dès qu'elle est chargée.
+     * La vue est masquée tant qu'aucune vignette n'est connue, et toujours si l'entrée n'a pas de photo.
+     * Le chargement précédemment demandé pour la même vue est annulé.
+     *
+     * @param entryId Identifiant de l'entrée.
+     * @param view    Vue recevant la vignette.
+     */
+    public void load(long entryId, ImageView view) {
+        cancel(view);
+        Bitmap cached = thumbnails.get(entryId);
+        if (cached != null) {
+            show(view, cached);
+            return;
+        }
+        view.setImageDrawable(null);
+        view.setVisibility(View.GONE);
+        if (withoutPhoto.get(entryId) != null) {
+            return;
+        }
+        Object tag = view.getTag();
+        Request request;
+        if (tag instanceof Request) {
+            request = (Request) tag;
+        } else {
+            request = new Request(view);
+            view.setTag(request);
+        }
+        if (request.target(entryId, currentEpoch())) {
+            executor.execute(request);
+        }
+    }
+
+    /**
+     * Annule le chargement en attente pour une vue, par exemple lorsque sa ligne est recyclée.
+     * S'il n'a pas encore commencé, il est abandonné sans interroger la base ; sinon son résultat n'est pas affiché.
+     *
+     * @param view Vue dont le chargement est annulé.
+     */
+    public void cancel(ImageView view) {
+        Object tag = view.getTag();
+        if (tag instanceof Request) {
+            ((Request) tag).cancel();
+        }
+    }
+
+    /**
+     * Oublie ce qui est connu de la vignette d'une entrée, par exemple après l'ajout d'une photo,
+     * puis prévient les écouteurs pour que les lignes affichant cette entrée soient reliées.
+     * Un chargement de cette entrée déjà en cours n'enregistrera pas son résultat.
+     *
+     * @param entryId Identifiant de l'entrée.
+     */
+    public void invalidate(long entryId) {
+        synchronized (invalidations) {
+            if (invalidations.size() >= INVALIDATIONS_CACHE_SIZE) {
+                // L'ajout évince l'invalidation la moins récente, qui reste couverte par ce plancher
+                forgottenInvalidation = epoch;
+            }
+            invalidations.put(entryId, ++epoch);
+            thumbnails.remove(entryId);
+            withoutPhoto.remove(entryId);
+        }
+        for (int i = 0; i < invalidatedListeners.size(); i++) {
+            invalidatedListeners.get(i).onThumbnailInvalidated(entryId);
+        }
+    }
+
+    /**
+     * @param listener Écouteur à prévenir de chaque invalidation.
+     */
+    public void addOnInvalidatedListener(OnInvalidatedListener listener) {
+        invalidatedListeners.add(listener);
+    }
+
+    /**
+     * @param listener Écouteur à retirer.
+     */
+    public void removeOnInvalidatedListener(OnInvalidatedListener listener) {
+        invalidatedListeners.remove(listener);
+    }
+
+    /**
+     * @return Le numéro de la dernière invalidation, à relever au début d'un chargement.
+     */
+    private long currentEpoch() {
+        synchronized (invalidations) {
+            return epoch;
+        }
+    }
+
+    /**
+     * Indique si un chargement peut enregistrer son résultat. À appeler en tenant le verrou {@link #invalidations}.
+     *
+     * @param entryId    Identifiant de l'entrée chargée.
+     * @param startEpoch Numéro relevé au début du chargement.
+     * @return `true` si l'entrée n'a pas été invalidée depuis, ou si cela ne peut pas être exclu.
+     */
+    private boolean isCurrent(long entryId, long startEpoch) {
+        if (startEpoch < forgottenInvalidation) {
+            return false;
+        }
+        Long invalidated = invalidations.get(entryId);
+        return invalidated == null || invalidated <= startEpoch;
+    }
+
+    /**
+     * Arrête un chargeur temporaire (mesures de performance) : les chargements en cours se terminent,
+     * les suivants sont refusés et le cache n'est plus prévenu des manques de mémoire.
+     *
+     * @throws InterruptedException Si l'attente de la fin des chargements est interrompue.
+     */
+    void shutdown() throws InterruptedException {
+        context.unregisterComponentCallbacks(this);
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Affiche une vignette dans une vue.
+     */
+    private static void show(ImageView view, Bitmap bitmap) {
+        view.setImageBitmap(bitmap);
+        view.setVisibility(View.VISIBLE);
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        if (level >= TRIM_MEMORY_BACKGROUND) {
+            thumbnails.evictAll();
+        } else if (level >= TRIM_MEMORY_UI_HIDDEN) {
+            thumbnails.trimToSize(thumbnails.maxSize() / 2);
+        }
+    }
+
+    @Override
+    public void onConfigurationChanged(@NonNull Configuration newConfig) {
+    }
+
+    @Override
+    public void onLowMemory() {
+        onTrimMemory(TRIM_MEMORY_COMPLETE);
+    }
+
+    /**
+     * Chargement de la vignette d'une vue, réutilisé pour chaque entrée liée à cette vue.
+     * Le thread principal le redirige vers une autre entrée par {@link #target(long, long)} ; un chargement encore
+     * en file prend alors directement la nouvelle cible, sans être remis en file. Chaque cible reçoit un numéro :
+     * un résultat n'est affiché que si la vue attend toujours la cible pour laquelle il a été produit.
+     */
+    private class Request implements Runnable {
+
+        /** Vue recevant la vignette. */
+        private final ImageView view;
+        /** Identifiant de l'entrée à charger. */
+        private long entryId;
+        /** Numéro d'invalidation relevé à la demande. */
+        private long startEpoch;
+        /** Numéro de la cible courante, incrémenté à chaque demande ou annulation. */
+        private int target;
+        /** Indique qu'une cible attend son résultat. */
+        private boolean pending;
+        /** Indique que la requête est en file et n'a pas encore commencé. */
+        private boolean queued;
+
+        Request(ImageView view) {
+            this.view = view;
+        }
+
+        /**
+         * Dirige la requête vers une entrée.
+         *
+         * @return `true` si la requête doit être mise en file, `false` si elle y est déjà.
+         */
+        synchronized boolean target(long entryId, long startEpoch) {
+            this.entryId = entryId;
+            this.startEpoch = startEpoch;
+            target++;
+            pending = true;
+            if (queued) {
+                return false;
+            }
+            queued = true;
+            return true;
+        }
+
+        /** Abandonne la cible courante. */
+        synchronized void cancel() {
+            target++;
+            pending = false;
+        }
+
+        @Override
+        public void run() {
+            long entryId;
+            long startEpoch;
+            int target;
+            synchronized (this) {
+                queued = false;
+                if (!pending) {
+                    return;
+                }
+                entryId = this.entryId;
+                startEpoch = this.startEpoch;
+                target = this.target;
+            }
+            Bitmap bitmap = thumbnails.get(entryId);
+            if (bitmap == null) {
+                Attachment attachment = databaseHelper.getFirstAttachment(entryId);
+                if (attachment == null) {
+                    synchronized (invalidations) {
+                        if (isCurrent(entryId, startEpoch)) {
+                            withoutPhoto.put(entryId, Boolean.TRUE);
+                        }
+                    }
+                    return;
+                }
+                try {
+                    bitmap = attachmentStore.loadThumbnail(attachment);
+                } catch (IOException e) {
+                    return;
+                }
+                // Transfère l'image vers la mémoire graphique ici plutôt qu'au premier dessin
+                bitmap.prepareToDraw();
+                synchronized (invalidations) {
+                    if (!isCurrent(entryId, startEpoch)) {
+                        // Photo modifiée pendant le décodage : la ligne, reliée après l'invalidation, relance le chargement
+                        return;
+                    }
+                    thumbnails.put(entryId, bitmap);
+                }
+            }
+            Bitmap result = bitmap;
+            mainHandler.post(() -> deliver(target, result));
+        }
+
+        /**
+         * Affiche un résultat, sur le thread principal, si la vue l'attend toujours.
+         */
+        private void deliver(int target, Bitmap bitmap) {
+            synchronized (this) {
+                if (!pending || this.target != target) {
+                    return;
+                }
+                pending = false;
+            }
+            show(view, bitmap);
+        }
+    }
+
+    /**
+     * File servie du dernier élément ajouté au premier : `ThreadPoolExecutor` ajoute par {@link #offer(Object)}
+     * et retire par la tête, ce qui donne un ordre LIFO.
+     */
+    private static class LifoQueue extends LinkedBlockingDeque<Runnable> {
+
+        @Override
+        public boolean offer(Runnable runnable) {
+            return offerFirst(runnable);
+        }
+    }
+}
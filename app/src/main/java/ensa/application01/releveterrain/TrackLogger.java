@@ -0,0 +1,314 @@
+/**
+ * TrackLogger - Suivi GPS continu, par lots, à fréquence adaptée à la vitesse.
+ */
+package ensa.application01.releveterrain;
+
+import android.Manifest;
+import android.annotation.SuppressLint;
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.location.Location;
+import android.os.HandlerThread;
+import android.os.Process;
+
+import androidx.annotation.NonNull;
+import androidx.core.content.ContextCompat;
+
+import com.google.android.gms.location.FusedLocationProviderClient;
+import com.google.android.gms.location.LocationCallback;
+import com.google.android.gms.location.LocationRequest;
+import com.google.android.gms.location.LocationResult;
+import com.google.android.gms.location.LocationServices;
+import com.google.android.gms.location.Priority;
+import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Enregistre la trace GPS de l'opérateur dans la table `track_points`.
+ * <p>
+ * Les positions sont demandées par lots ({@link LocationRequest.Builder#setMaxUpdateDelayMillis(long)}) :
+ * la puce GNSS les accumule et l'application n'est réveillée qu'une fois par lot, qui est écrit en une seule transaction.
+ * L'intervalle suit la vitesse mesurée : une position par minute à l'arrêt, plus souvent à pied ou en véhicule.
+ * Les positions sont livrées sur un thread dédié, jamais sur le thread principal.
+ */
+public class TrackLogger {
+
+    /** Vitesse à partir de laquelle l'opérateur est considéré en mouvement, en mètres par seconde. */
+    private static final float WALKING_SPEED = 0.7f;
+
+    /** Vitesse à partir de laquelle l'opérateur est considéré en véhicule, en mètres par seconde (≈ 15 km/h). */
+    private static final float VEHICLE_SPEED = 4f;
+
+    /** Nombre de positions accumulées par lot, au plus. */
+    private static final int BATCH_FACTOR = 6;
+
+    /** Délai maximal de livraison d'un lot, en millisecondes. */
+    private static final long MAX_BATCH_DELAY_MS = 5 * 60_000;
+
+    /** Nombre de lots consécutifs confirmant un changement de régime avant de modifier la requête. */
+    private static final int PROFILE_CONFIRMATIONS = 2;
+
+    /**
+     * Régimes d'échantillonnage, du plus économe au plus fin.
+     */
+    enum Profile {
+        /**
+         * À l'arrêt : une position par minute, précision équilibrée. Sans déplacement minimal, la position est répétée
+         * à chaque intervalle : un relevé saisi sur place trouve toujours un point de trace récent auquel se rattacher.
+         */
+        STATIONARY(60_000, Priority.PRIORITY_BALANCED_POWER_ACCURACY, 0f),
+        /** À pied : une position toutes les 10 secondes. */
+        WALKING(10_000, Priority.PRIORITY_HIGH_ACCURACY, 5f),
+        /** En véhicule : une position toutes les 3 secondes. */
+        VEHICLE(3_000, Priority.PRIORITY_HIGH_ACCURACY, 10f);
+
+        /** Intervalle souhaité entre deux positions, en millisecondes. */
+        final long intervalMillis;
+        /** Priorité de la requête. */
+        final int priority;
+        /** Déplacement minimal entre deux positions livrées, en mètres. */
+        final float minDistanceMeters;
+
+        Profile(long intervalMillis, int priority, float minDistanceMeters) {
+            this.intervalMillis = intervalMillis;
+            this.priority = priority;
+            this.minDistanceMeters = minDistanceMeters;
+        }
+
+        /**
+         * @return La requête de localisation correspondant à ce régime, avec livraison par lots.
+         */
+        LocationRequest toRequest() {
+            return new LocationRequest.Builder(priority, intervalMillis)
+                    .setMinUpdateIntervalMillis(intervalMillis / 2)
+                    .setMinUpdateDistanceMeters(minDistanceMeters)
+                    .setMaxUpdateDelayMillis(Math.min(intervalMillis * BATCH_FACTOR, MAX_BATCH_DELAY_MS))
+                    .build();
+        }
+
+        /**
+         * @param speed Vitesse en mètres par seconde.
+         * @return Le régime adapté à cette vitesse.
+         */
+        static Profile forSpeed(float speed) {
+            if (speed >= VEHICLE_SPEED) {
+                return VEHICLE;
+            }
+            return speed >= WALKING_SPEED ? WALKING : STATIONARY;
+        }
+    }
+
+    /** Instance unique du suivi. */
+    private static volatile TrackLogger instance;
+
+    /** Contexte de l'application. */
+    private final Context context;
+
+    /** Client du service de localisation, créé au premier démarrage du suivi. */
+    private FusedLocationProviderClient client;
+
+    /** Thread recevant les positions, ou `null` si le suivi est arrêté. */
+    private HandlerThread thread;
+
+    /** Régime en cours. Lu et modifié uniquement sur le thread du suivi. */
+    private Profile profile = Profile.WALKING;
+
+    /** Régime suggéré par les derniers lots, pas encore appliqué. */
+    private Profile candidate;
+
+    /** Nombre de lots consécutifs ayant confirmé le régime candidat. */
+    private int confirmations;
+
+    /** Dernière position reçue, ou `null`. */
+    private volatile Location lastFix;
+
+    /** Callback recevant les lots de positions. */
+    private final LocationCallback callback = new LocationCallback() {
+        @Override
+        public void onLocationResult(@NonNull LocationResult result) {
+            onLocations(result.getLocations());
+        }
+    };
+
+    /**
+     * Constructeur privé : utiliser {@link #getInstance(Context)}.
+     *
+     * @param context Contexte de l'application.
+     */
+    private TrackLogger(Context context) {
+        this.context = context;
+    }
+
+    /**
+     * Retourne l'instance unique du suivi, en la créant si nécessaire.
+     *
+     * @param context N'importe quel contexte : seul le contexte de l'application est conservé.
+     * @return Le suivi partagé.
+     */
+    public static TrackLogger getInstance(Context context) {
+        if (instance == null) {
+            synchronized (TrackLogger.class) {
+                if (instance == null) {
+                    instance = new TrackLogger(context.getApplicationContext());
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * @return `true` si le suivi est en cours.
+     */
+    public synchronized boolean isRunning() {
+        return thread != null;
+    }
+
+    /**
+     * Démarre le suivi, dans le régime « à pied » en attendant une première mesure de vitesse.
+     *
+     * @return `true` si le suivi est démarré, `false` si la permission de localisation précise manque.
+     */
+    @SuppressLint("MissingPermission")
+    public synchronized boolean start() {
+        if (thread != null) {
+            return true;
+        }
+        if (ContextCompat.checkSelfPermission(context, Manifest.permission.ACCESS_FINE_LOCATION)
+                != PackageManager.PERMISSION_GRANTED) {
+            return false;
+        }
+        if (client == null) {
+            client = LocationServices.getFusedLocationProviderClient(context);
+        }
+        thread = new HandlerThread("releve-track", Process.THREAD_PRIORITY_BACKGROUND);
+        thread.start();
+        profile = Profile.WALKING;
+        candidate = null;
+        confirmations = 0;
+        client.requestLocationUpdates(profile.toRequest(), callback, thread.getLooper());
+        return true;
+    }
+
+    /**
+     * Arrête le suivi. Les positions encore accumulées par le service de localisation sont abandonnées.
+     */
+    public synchronized void stop() {
+        if (thread == null) {
+            return;
+        }
+        client.removeLocationUpdates(callback);
+        thread.quitSafely();
+        thread = null;
+    }
+
+    /**
+     * Demande la livraison immédiate des positions accumulées, par exemple avant d'enregistrer un relevé.
+     *
+     * @return Une tâche terminée une fois les positions livrées (immédiatement si le suivi est arrêté).
+     */
+    public synchronized Task<Void> flush() {
+        if (thread == null) {
+            return Tasks.forResult(null);
+        }
+        return client.flushLocations();
+    }
+
+    /**
+     * @return La dernière position reçue par le suivi, ou `null`.
+     */
+    public Location getLastFix() {
+        return lastFix;
+    }
+
+    /**
+     * Traite un lot de positions, sur le thread du suivi : écriture groupée, puis adaptation du régime.
+     *
+     * @param locations Positions du lot, de la plus ancienne à la plus récente.
+     */
+    private void onLocations(List<Location> locations) {
+        if (locations.isEmpty()) {
+            return;
+        }
+        Location previous = lastFix;
+        lastFix = locations.get(locations.size() - 1);
+        EntryRepository.getInstance(context).insertTrackPoints(toTrackPoints(locations), null);
+        adaptProfile(previous, locations);
+    }
+
+    /**
+     * @param locations Positions d'un lot.
+     * @return Les points de trace correspondants, à insérer (leur identifiant vaut -1).
+     */
+    static List<TrackPoint> toTrackPoints(List<Location> locations) {
+        List<TrackPoint> points = new ArrayList<>(locations.size());
+        for (Location location : locations) {
+            points.add(new TrackPoint(-1, location.getTime(), location.getLatitude(), location.getLongitude(),
+                    location.hasAccuracy() ? location.getAccuracy() : null,
+                    location.hasSpeed() ? location.getSpeed() : null));
+        }
+        return points;
+    }
+
+    /**
+     * Change de régime si la vitesse médiane de plusieurs lots consécutifs le justifie.
+     * La requête n'est renouvelée qu'à un changement effectif, et la confirmation évite les oscillations.
+     *
+     * @param previous  Dernière position du lot précédent, ou `null`.
+     * @param locations Positions du lot courant.
+     */
+    @SuppressLint("MissingPermission")
+    private void adaptProfile(Location previous, List<Location> locations) {
+        Profile measured = Profile.forSpeed(medianSpeed(previous, locations));
+        if (measured == profile) {
+            candidate = null;
+            confirmations = 0;
+            return;
+        }
+        if (measured != candidate) {
+            candidate = measured;
+            confirmations = 0;
+        }
+        if (++confirmations < PROFILE_CONFIRMATIONS) {
+            return;
+        }
+        synchronized (this) {
+            if (thread == null) {
+                return;
+            }
+            profile = measured;
+            candidate = null;
+            confirmations = 0;
+            client.requestLocationUpdates(profile.toRequest(), callback, thread.getLooper());
+        }
+    }
+
+    /**
+     * Calcule la vitesse médiane d'un lot : la vitesse mesurée par le récepteur si elle est connue,
+     * sinon la distance parcourue depuis la position précédente divisée par le temps écoulé.
+     *
+     * @param previous  Dernière position du lot précédent, ou `null`.
+     * @param locations Positions du lot courant.
+     * @return La vitesse médiane en mètres par seconde.
+     */
+    private static float medianSpeed(Location previous, List<Location> locations) {
+        float[] speeds = new float[locations.size()];
+        int count = 0;
+        for (Location location : locations) {
+            if (location.hasSpeed()) {
+                speeds[count++] = location.getSpeed();
+            } else if (previous != null && location.getTime() > previous.getTime()) {
+                speeds[count++] = previous.distanceTo(location) * 1000f / (location.getTime() - previous.getTime());
+            }
+            previous = location;
+        }
+        if (count == 0) {
+            return 0f;
+        }
+        Arrays.sort(speeds, 0, count);
+        return speeds[count / 2];
+    }
+}
@@ -0,0 +1,72 @@
+/**
+ * TrackPoint - Position enregistrée par le suivi GPS.
+ */
+package ensa.application01.releveterrain;
+
+/**
+ * Ligne de la table `track_points` : une position datée, avec sa précision et la vitesse mesurée.
+ */
+public class TrackPoint {
+
+    /** Identifiant du point, ou -1 s'il n'a pas encore été enregistré. */
+    private final long id;
+    /** Date de la position, en millisecondes depuis l'époque Unix. */
+    private final long timeMillis;
+    /** Latitude en degrés. */
+    private final double latitude;
+    /** Longitude en degrés. */
+    private final double longitude;
+    /** Précision horizontale estimée en mètres, ou `null` si elle est inconnue. */
+    private final Float accuracy;
+    /** Vitesse en mètres par seconde, ou `null` si elle est inconnue. */
+    private final Float speed;
+
+    /**
+     * Constructeur d'un point de trace.
+     *
+     * @param id         Identifiant du point, ou -1.
+     * @param timeMillis Date de la position, en millisecondes depuis l'époque Unix.
+     * @param latitude   Latitude en degrés.
+     * @param longitude  Longitude en degrés.
+     * @param accuracy   Précision horizontale en mètres, ou `null`.
+     * @param speed      Vitesse en mètres par seconde, ou `null`.
+     */
+    public TrackPoint(long id, long timeMillis, double latitude, double longitude, Float accuracy, Float speed) {
+        this.id = id;
+        this.timeMillis = timeMillis;
+        this.latitude = latitude;
+        this.longitude = longitude;
+        this.accuracy = accuracy;
+        this.speed = speed;
+    }
+
+    /** @return L'identifiant du point. */
+    public long getId() {
+        return id;
+    }
+
+    /** @return La date de la position, en millisecondes depuis l'époque Unix. */
+    public long getTimeMillis() {
+        return timeMillis;
+    }
+
+    /** @return La latitude en degrés. */
+    public double getLatitude() {
+        return latitude;
+    }
+
+    /** @return La longitude en degrés. */
+    public double getLongitude() {
+        return longitude;
+    }
+
+    /** @return La précision horizontale en mètres, ou `null`. */
+    public Float getAccuracy() {
+        return accuracy;
+    }
+
+    /** @return La vitesse en mètres par seconde, ou `null`. */
+    public Float getSpeed() {
+        return speed;
+    }
+}
@@ -1,33 +1,170 @@
 /**
  * ViewListActivity - Activité permettant d'afficher la liste des relevés de terrain sauvegardés.
- * Cette classe récupère les entrées de la base de données et les affiche dans une `ListView`.
+ * Cette classe récupère les entrées de la base de données page par page et les affiche dans une `RecyclerView`.
+ * Un champ de recherche permet de filtrer les relevés par mots-clés au fil de la saisie.
+ * Les entrées enregistrées pendant que la liste est ouverte y sont ajoutées sans recharger toute la table.
  */
 package ensa.application01.releveterrain;
 
-import android.database.Cursor;
+import android.content.Intent;
+import android.net.Uri;
 import android.os.Bundle;
-import android.widget.ListView;
-import android.widget.SimpleCursorAdapter;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.Editable;
+import android.text.TextWatcher;
+import android.widget.Button;
+import android.widget.CheckBox;
+import android.widget.EditText;
+import android.view.View;
+import android.widget.TextView;
 import android.widget.Toast;
 
+import androidx.activity.result.ActivityResultLauncher;
+import androidx.activity.result.contract.ActivityResultContracts;
+import androidx.annotation.NonNull;
+import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 
 /**
  * Classe représentant l'activité permettant d'afficher les relevés de terrain sous forme de liste.
  */
 public class ViewListActivity extends AppCompatActivity {
 
-    // ListView pour afficher les entrées
-    /** ListView pour afficher les entrées. */
-    private ListView listViewEntries;
+    /** Nombre d'entrées chargées par page. */
+    private static final int PAGE_SIZE = 50;
+
+    /** Nombre de lignes restantes avant la fin de la liste à partir duquel la page suivante est chargée. */
+    private static final int PREFETCH_DISTANCE = 10;
+
+    /** Nombre maximal de résultats affichés pour une recherche. */
+    private static final int SEARCH_LIMIT = 200;
+
+    /** Nombre maximal de nouvelles entrées ajoutées en tête ; au-delà, la liste repart de la première page. */
+    private static final int MAX_PREPEND = 200;
+
+    /** Délai de regroupement des mises à jour de la synthèse pendant un import, en millisecondes. */
+    private static final long SUMMARY_DEBOUNCE_MS = 500;
+
+    /** Types de documents proposés à l'import. */
+    private static final String[] IMPORT_MIME_TYPES = {"text/*", "application/json", "application/geo+json",
+            "application/gzip", "application/octet-stream"};
+
+    /** Délai d'attente après la dernière frappe avant de lancer la recherche, en millisecondes. */
+    private static final long SEARCH_DEBOUNCE_MS = 150;
+
+    // RecyclerView pour afficher les entrées
+    /** RecyclerView pour afficher les entrées. */
+    private RecyclerView recyclerViewEntries;
+
+    /** Gestionnaire de disposition de la liste, utilisé pour connaître la dernière ligne visible. */
+    private LinearLayoutManager layoutManager;
+
+    /** Champ de recherche par mots-clés. */
+    private EditText editTextSearch;
+
+    /** Synthèse des relevés : total et effectifs par condition. */
+    private TextView textViewSummary;
+
+    /** Case à cocher pour compresser les exports au format gzip. */
+    private CheckBox checkBoxExportGzip;
+
+    /** Case à cocher pour n'exporter que les entrées créées depuis le dernier export. */
+    private CheckBox checkBoxExportIncremental;
+
+    /** Bouton d'export au format CSV. */
+    private Button buttonExportCsv;
+
+    /** Bouton d'export au format GeoJSON. */
+    private Button buttonExportGeoJson;
+
+    // Dépôt pour interagir avec la base de données
+    /** Bouton d'import d'un fichier. */
+    private Button buttonImport;
+
+    /** Avancement et bilan du dernier import. */
+    private TextView textViewImportStatus;
+
+    /** Sélecteur de document utilisé pour choisir le fichier à importer. */
+    private final ActivityResultLauncher<String[]> importLauncher =
+            registerForActivityResult(new ActivityResultContracts.OpenDocument(), this::importEntries);
+
+    /** Dépôt asynchrone pour interagir avec la base de données. */
+    private EntryRepository entryRepository;
+
+    /** Adaptateur contenant les pages déjà chargées ou les résultats de recherche. */
+    private EntryAdapter adapter;
+
+    /** Indique que la dernière page a été atteinte : plus aucune entrée à charger. */
+    private boolean endReached;
+
+    /** Indique qu'une page est en cours de chargement, pour ne pas demander deux fois la même page. */
+    private boolean loading;
+
+    /** Indique que la première page a été chargée : la liste connaît alors son entrée la plus récente. */
+    private boolean firstPageLoaded;
+
+    /** Indique qu'un chargement des nouvelles entrées est en cours. */
+    private boolean refreshing;
+
+    /** Indique qu'une insertion a été signalée pendant un chargement des nouvelles entrées. */
+    private boolean refreshPending;
 
-    // Helper pour interagir avec la base de données
-    /** Helper pour interagir avec la base de données. */
-    private DatabaseHelper databaseHelper;
+    /** Handler utilisé pour regrouper les mises à jour de la synthèse. */
+    private final Handler summaryHandler = new Handler(Looper.getMainLooper());
+
+    /** Mise à jour différée de la synthèse. */
+    private final Runnable summaryRunnable = this::loadSummary;
+
+    /** Écouteur des insertions : ne charge que les lignes ajoutées depuis la plus récente affichée. */
+    private final DatabaseHelper.OnEntriesInsertedListener insertedListener = (firstId, lastId) -> {
+        loadNewEntries();
+        // Un import notifie chaque lot : la synthèse n'est recalculée qu'une fois les notifications retombées
+        summaryHandler.removeCallbacks(summaryRunnable);
+        summaryHandler.postDelayed(summaryRunnable, SUMMARY_DEBOUNCE_MS);
+    };
+
+    /**
+     * Écouteur des modifications et suppressions : seules les lignes concernées changent.
+     * Il reste enregistré tant que l'activité existe, pour qu'un archivage en arrière-plan ne laisse pas de lignes périmées.
+     */
+    private final EntryRepository.OnEntriesChangedListener changedListener = new EntryRepository.OnEntriesChangedListener() {
+        @Override
+        public void onEntryUpdated(Entry entry) {
+            adapter.updateEntry(entry);
+            summaryHandler.removeCallbacks(summaryRunnable);
+            summaryHandler.postDelayed(summaryRunnable, SUMMARY_DEBOUNCE_MS);
+        }
+
+        @Override
+        public void onEntriesDeleted(List<Long> ids) {
+            adapter.removeEntries(ids);
+            summaryHandler.removeCallbacks(summaryRunnable);
+            summaryHandler.postDelayed(summaryRunnable, SUMMARY_DEBOUNCE_MS);
+        }
+    };
+
+    /** Recherche en cours, ou chaîne vide si la liste affiche toutes les entrées. */
+    private String currentQuery = "";
+
+    /** Numéro de la dernière requête lancée : les réponses des requêtes plus anciennes sont ignorées. */
+    private int requestGeneration;
+
+    /** Handler utilisé pour différer la recherche pendant la saisie. */
+    private final Handler searchHandler = new Handler(Looper.getMainLooper());
+
+    /** Recherche différée, replanifiée à chaque frappe. */
+    private final Runnable searchRunnable = this::applySearch;
 
     /**
      * Méthode appelée lors de la création de l'activité.
-     * Initialise la vue et charge les entrées depuis la base de données.
+     * Initialise la vue et charge la première page d'entrées depuis la base de données.
      *
      * @param savedInstanceState Instance sauvegardée de l'activité (peut contenir des données pour recréer l'état de l'activité).
      */
@@ -37,49 +174,365 @@ public class ViewListActivity extends AppCompatActivity {
         setContentView(R.layout.activity_view_list);
 
         // Initialisation des composants
-        listViewEntries = findViewById(R.id.listViewEntries);
-        databaseHelper = new DatabaseHelper(this);
+        recyclerViewEntries = findViewById(R.id.recyclerViewEntries);
+        editTextSearch = findViewById(R.id.editTextSearch);
+        textViewSummary = findViewById(R.id.textViewSummary);
+        checkBoxExportGzip = findViewById(R.id.checkBoxExportGzip);
+        checkBoxExportIncremental = findViewById(R.id.checkBoxExportIncremental);
+        buttonExportCsv = findViewById(R.id.buttonExportCsv);
+        buttonExportGeoJson = findViewById(R.id.buttonExportGeoJson);
+        buttonExportCsv.setOnClickListener(v -> exportEntries(EntryExporter.Format.CSV));
+        buttonExportGeoJson.setOnClickListener(v -> exportEntries(EntryExporter.Format.GEOJSON));
+        buttonImport = findViewById(R.id.buttonImport);
+        textViewImportStatus = findViewById(R.id.textViewImportStatus);
+        buttonImport.setOnClickListener(v -> importLauncher.launch(IMPORT_MIME_TYPES));
+        // Écran de diagnostic, volontairement discret : appui long sur le titre
+        findViewById(R.id.textViewTitle).setOnLongClickListener(v -> {
+            startActivity(new Intent(this, DiagnosticsActivity.class));
+            return true;
+        });
+        entryRepository = EntryRepository.getInstance(this);
+        adapter = new EntryAdapter(entryRepository.getThumbnailLoader());
+        layoutManager = new LinearLayoutManager(this);
+        recyclerViewEntries.setLayoutManager(layoutManager);
+        recyclerViewEntries.setHasFixedSize(true);
+        recyclerViewEntries.setAdapter(adapter);
+        adapter.setOnEntryLongClickListener(this::confirmDelete);
+        entryRepository.addOnEntriesChangedListener(changedListener);
+
+        // Chargement de la page suivante à l'approche de la fin de la liste
+        recyclerViewEntries.addOnScrollListener(new RecyclerView.OnScrollListener() {
+            @Override
+            public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+                int total = adapter.getItemCount();
+                if (total > 0 && layoutManager.findLastVisibleItemPosition() >= total - PREFETCH_DISTANCE) {
+                    loadNextPage();
+                }
+            }
+        });
 
-        // Charger et afficher les entrées
-        loadEntries();
+        // Recherche au fil de la saisie, différée pour ne lancer qu'une requête par pause de frappe
+        editTextSearch.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                searchHandler.removeCallbacks(searchRunnable);
+                searchHandler.postDelayed(searchRunnable, SEARCH_DEBOUNCE_MS);
+            }
+        });
+
+        // Charger et afficher la première page
+        loadNextPage();
+    }
+
+    /**
+     * Commence à écouter les insertions, et récupère celles survenues pendant que l'activité était arrêtée.
+     */
+    @Override
+    protected void onStart() {
+        super.onStart();
+        entryRepository.addOnEntriesInsertedListener(insertedListener);
+        loadNewEntries();
+        loadSummary();
     }
 
     /**
-     * Charge les entrées de la base de données et les affiche dans la `ListView`.
-     * Si aucune entrée n'est disponible, un message s'affiche.
+     * Cesse d'écouter les insertions tant que la liste n'est pas visible.
      */
-    private void loadEntries() {
-        // Récupération de toutes les entrées depuis la base de données
-        Cursor cursor = databaseHelper.getAllEntries();
-        if (cursor.getCount() > 0) {
-            // Colonnes à afficher depuis la base de données
-            String[] from = {
-                    "site_name", "date", "coordinates", "description",
-                    "terrain_type", "observations", "condition",
-            };
-
-            // Identifiants des vues dans le fichier XML `item_entry.xml`
-            int[] to = {
-                    R.id.editTextSiteName, R.id.editTextDate, R.id.textViewCoordinates,
-                    R.id.editTextDescription, R.id.spinnerTerrainType, R.id.editTextObservations,
-                    R.id.checkBoxCondition
-            };
-
-            // Création et configuration de l'adaptateur pour la liste
-            SimpleCursorAdapter adapter = new SimpleCursorAdapter(
-                    this,
-                    R.layout.item_entry,
-                    cursor,
-                    from,
-                    to,
-                    0
-            );
-
-            // Liaison de l'adaptateur avec la `ListView`
-            listViewEntries.setAdapter(adapter);
-        } else {
-            // Affichage d'un message si aucune entrée n'est trouvée
-            Toast.makeText(this, "Aucune entrée trouvée.", Toast.LENGTH_SHORT).show();
+    @Override
+    protected void onStop() {
+        entryRepository.removeOnEntriesInsertedListener(insertedListener);
+        super.onStop();
+    }
+
+    /**
+     * Demande confirmation avant de supprimer un relevé et ses photos.
+     * La ligne disparaît de la liste lorsque le dépôt signale la suppression.
+     *
+     * @param entry Relevé choisi par un appui long.
+     */
+    private void confirmDelete(Entry entry) {
+        new AlertDialog.Builder(this)
+                .setTitle("Supprimer le relevé")
+                .setMessage("Supprimer « " + entry.getSiteName() + " » du " + entry.getDate() + " et ses photos ?")
+                .setNegativeButton("Annuler", null)
+                .setPositiveButton("Supprimer", (dialog, which) -> entryRepository.deleteEntry(entry.getId(),
+                        new EntryRepository.Callback<Boolean>() {
+                            @Override
+                            public void onSuccess(Boolean deleted) {
+                                if (!isDestroyed() && !deleted) {
+                                    Toast.makeText(ViewListActivity.this, "Ce relevé n'existe plus.",
+                                            Toast.LENGTH_SHORT).show();
+                                }
+                            }
+
+                            @Override
+                            public void onError(Exception error) {
+                                if (!isDestroyed()) {
+                                    Toast.makeText(ViewListActivity.this, "Échec de la suppression : " + error.getMessage(),
+                                            Toast.LENGTH_LONG).show();
+                                }
+                            }
+                        }))
+                .show();
+    }
+
+    /**
+     * Exporte les relevés dans le dossier `exports` de l'application, en arrière-plan ; le dossier est résolu par
+     * la tâche d'export, et non sur le thread principal. Les boutons d'export sont désactivés jusqu'à la fin de l'opération.
+     *
+     * @param format Format du fichier à produire.
+     */
+    private void exportEntries(EntryExporter.Format format) {
+        buttonExportCsv.setEnabled(false);
+        buttonExportGeoJson.setEnabled(false);
+        entryRepository.exportEntries(format, checkBoxExportGzip.isChecked(), checkBoxExportIncremental.isChecked(),
+                new EntryRepository.Callback<EntryExporter.Summary>() {
+                    @Override
+                    public void onSuccess(EntryExporter.Summary summary) {
+                        if (isDestroyed()) {
+                            return;
+                        }
+                        buttonExportCsv.setEnabled(true);
+                        buttonExportGeoJson.setEnabled(true);
+                        Toast.makeText(ViewListActivity.this, summary.getCount() + " relevé(s) exporté(s) dans " +
+                                summary.getFile().getPath(), Toast.LENGTH_LONG).show();
+                    }
+
+                    @Override
+                    public void onError(Exception error) {
+                        if (isDestroyed()) {
+                            return;
+                        }
+                        buttonExportCsv.setEnabled(true);
+                        buttonExportGeoJson.setEnabled(true);
+                        Toast.makeText(ViewListActivity.this, "Erreur lors de l'export.", Toast.LENGTH_SHORT).show();
+                    }
+                });
+    }
+
+    /**
+     * Importe le document choisi par l'utilisateur, en affichant l'avancement puis le bilan.
+     * Les nouvelles entrées apparaissent dans la liste au fil des lots validés.
+     *
+     * @param uri Document choisi, ou `null` si l'utilisateur a annulé.
+     */
+    private void importEntries(Uri uri) {
+        if (uri == null) {
+            return;
+        }
+        buttonImport.setEnabled(false);
+        textViewImportStatus.setVisibility(View.VISIBLE);
+        textViewImportStatus.setText("Import en cours…");
+        entryRepository.importEntries(uri, progress -> {
+            if (isDestroyed()) {
+                return;
+            }
+            String percent = progress.getPercent() >= 0 ? progress.getPercent() + " % · " : "";
+            textViewImportStatus.setText("Import en cours : " + percent + progress.getRowsRead() + " ligne(s) lue(s) · " +
+                    progress.getRowsPerSecond() + " lignes/s");
+        }, new EntryRepository.Callback<EntryImporter.Summary>() {
+            @Override
+            public void onSuccess(EntryImporter.Summary summary) {
+                if (isDestroyed()) {
+                    return;
+                }
+                buttonImport.setEnabled(true);
+                BulkInsertResult result = summary.getResult();
+                textViewImportStatus.setText(result.getInsertedCount() + " relevé(s) importé(s), " +
+                        result.getSkippedCount() + " doublon(s) ignoré(s), " +
+                        (summary.getMalformedRows() + result.getFailures().size()) + " ligne(s) rejetée(s) en " +
+                        summary.getElapsedMillis() / 1000.0 + " s (" + summary.getRowsPerSecond() + " lignes/s)");
+            }
+
+            @Override
+            public void onError(Exception error) {
+                if (isDestroyed()) {
+                    return;
+                }
+                buttonImport.setEnabled(true);
+                textViewImportStatus.setText("Erreur lors de l'import : " + error.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Affiche le nombre total de relevés et leur répartition par condition.
+     * Les effectifs sont servis par le cache du dépôt et mis à jour à chaque insertion sans recompter la table.
+     */
+    private void loadSummary() {
+        entryRepository.loadStatistics(new EntryRepository.Callback<EntryStatistics>() {
+            @Override
+            public void onSuccess(EntryStatistics statistics) {
+                if (isDestroyed()) {
+                    return;
+                }
+                StringBuilder summary = new StringBuilder();
+                summary.append(statistics.getTotal()).append(" relevé(s)");
+                for (Map.Entry<String, Integer> count : statistics.getCountsByCondition().entrySet()) {
+                    summary.append(" · ").append(count.getKey().isEmpty() ? "Non renseigné" : count.getKey())
+                            .append(" : ").append(count.getValue());
+                }
+                textViewSummary.setText(summary);
+            }
+
+            @Override
+            public void onError(Exception error) {
+                // La synthèse est facultative : la liste reste utilisable
+            }
+        });
+    }
+
+    /**
+     * Charge les entrées plus récentes que la première ligne affichée et les insère en tête de liste.
+     * Le coût est proportionnel au nombre de nouvelles entrées, et non à la taille de la table.
+     * Pendant une recherche, la liste n'est pas modifiée : elle sera rechargée à la fin de la recherche.
+     */
+    private void loadNewEntries() {
+        if (!firstPageLoaded || !currentQuery.isEmpty()) {
+            return;
         }
+        if (refreshing) {
+            refreshPending = true;
+            return;
+        }
+        refreshing = true;
+        int generation = requestGeneration;
+        entryRepository.loadEntriesAfter(adapter.getFirstLoadedId(), MAX_PREPEND, new EntryRepository.Callback<List<Entry>>() {
+            @Override
+            public void onSuccess(List<Entry> newest) {
+                refreshing = false;
+                if (isDestroyed() || generation != requestGeneration) {
+                    return;
+                }
+                if (newest.size() == MAX_PREPEND) {
+                    // Trop de nouvelles entrées (import massif) : on repart de la première page
+                    reloadFirstPage();
+                    return;
+                }
+                if (!newest.isEmpty()) {
+                    adapter.prependEntries(newest);
+                }
+                if (refreshPending) {
+                    refreshPending = false;
+                    loadNewEntries();
+                }
+            }
+
+            @Override
+            public void onError(Exception error) {
+                refreshing = false;
+                refreshPending = false;
+            }
+        });
+    }
+
+    /**
+     * Vide la liste et recharge la première page.
+     */
+    private void reloadFirstPage() {
+        requestGeneration++;
+        adapter.replaceAll(Collections.emptyList());
+        endReached = false;
+        loading = false;
+        firstPageLoaded = false;
+        refreshPending = false;
+        loadNextPage();
+    }
+
+    /**
+     * Annule la recherche différée éventuellement en attente.
+     */
+    @Override
+    protected void onDestroy() {
+        entryRepository.removeOnEntriesChangedListener(changedListener);
+        searchHandler.removeCallbacks(searchRunnable);
+        summaryHandler.removeCallbacks(summaryRunnable);
+        super.onDestroy();
+    }
+
+    /**
+     * Lance la recherche correspondant au texte saisi, ou revient à la liste complète si le champ est vide.
+     */
+    private void applySearch() {
+        String query = editTextSearch.getText().toString().trim();
+        if (query.equals(currentQuery)) {
+            return;
+        }
+        currentQuery = query;
+        if (query.isEmpty()) {
+            // Retour à la liste paginée
+            reloadFirstPage();
+            return;
+        }
+        int generation = ++requestGeneration;
+        entryRepository.searchEntries(query, SEARCH_LIMIT, new EntryRepository.Callback<List<Entry>>() {
+            @Override
+            public void onSuccess(List<Entry> results) {
+                if (isDestroyed() || generation != requestGeneration) {
+                    return;
+                }
+                adapter.replaceAll(results);
+            }
+
+            @Override
+            public void onError(Exception error) {
+                if (!isDestroyed() && generation == requestGeneration) {
+                    Toast.makeText(ViewListActivity.this, "Erreur lors de la recherche.", Toast.LENGTH_SHORT).show();
+                }
+            }
+        });
+    }
+
+    /**
+     * Charge la page suivant la dernière entrée affichée et l'ajoute à la `RecyclerView`.
+     * La requête est exécutée en arrière-plan ; ne fait rien pendant une recherche, si une page est déjà
+     * en cours de chargement ou si toutes les entrées ont déjà été chargées.
+     */
+    private void loadNextPage() {
+        if (endReached || loading || !currentQuery.isEmpty()) {
+            return;
+        }
+        loading = true;
+        int generation = requestGeneration;
+        entryRepository.loadEntriesPage(adapter.getLastLoadedId(), PAGE_SIZE, new EntryRepository.Callback<List<Entry>>() {
+            @Override
+            public void onSuccess(List<Entry> page) {
+                if (isDestroyed() || generation != requestGeneration) {
+                    return;
+                }
+                loading = false;
+                if (!firstPageLoaded) {
+                    // Première page affichée : l'écran est complet pour la mesure du démarrage
+                    reportFullyDrawn();
+                }
+                firstPageLoaded = true;
+                if (page.size() < PAGE_SIZE) {
+                    endReached = true;
+                }
+                if (!page.isEmpty()) {
+                    adapter.appendPage(page);
+                } else if (adapter.getLoadedCount() == 0) {
+                    // Affichage d'un message si aucune entrée n'est trouvée
+                    Toast.makeText(ViewListActivity.this, "Aucune entrée trouvée.", Toast.LENGTH_SHORT).show();
+                }
+            }
+
+            @Override
+            public void onError(Exception error) {
+                if (isDestroyed() || generation != requestGeneration) {
+                    return;
+                }
+                loading = false;
+                Toast.makeText(ViewListActivity.this, "Erreur lors du chargement des entrées.", Toast.LENGTH_SHORT).show();
+            }
+        });
     }
 }
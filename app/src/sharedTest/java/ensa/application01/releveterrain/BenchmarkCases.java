@@ -0,0 +1,167 @@
+/**
+ * BenchmarkCases - Opérations mesurées sur la persistance et la liste des relevés.
+ */
+package ensa.application01.releveterrain;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.widget.FrameLayout;
+
+import java.util.List;
+
+/**
+ * Cas de mesure communs aux bancs JMH exécutés sur la JVM (Robolectric) et aux mesures sur appareil (androidTest) :
+ * les deux environnements chronomètrent exactement les mêmes opérations, sur les mêmes données ({@link BenchmarkData}).
+ * <ul>
+ *     <li>insertion ligne à ligne ({@link DatabaseHelper#insertEntry(Entry)}) et par lots
+ *     ({@link DatabaseHelper#insertEntries(Iterable, int)}) ;</li>
+ *     <li>parcours complet ({@link DatabaseHelper#getAllEntries()}) et page en tête ou en fin de table
+ *     ({@link DatabaseHelper#getEntriesPage(long, int)}) ;</li>
+ *     <li>décodage curseur → {@link Entry}, par différence entre la lecture décodée et le simple parcours du curseur ;</li>
+ *     <li>liaison d'une ligne de la liste ({@link EntryAdapter.EntryViewHolder}), avec et sans mesure de la vue.</li>
+ * </ul>
+ * Chaque opération retourne une valeur dépendant du travail effectué, à consommer par l'appelant pour qu'il ne soit pas éliminé.
+ */
+final class BenchmarkCases {
+
+    /** Tailles de table auxquelles les lectures sont mesurées. */
+    static final int[] DATASET_SIZES = {1_000, 10_000, 100_000};
+
+    /** Nombre de lignes insérées par opération d'insertion. */
+    static final int INSERT_ROWS = 1_000;
+
+    /** Taille des pages lues. */
+    static final int PAGE_SIZE = 50;
+
+    /** Nombre de lignes lues pour mesurer le décodage. */
+    static final int DECODE_ROWS = 1_000;
+
+    /** Nombre de lignes liées par opération de liaison. */
+    static final int BIND_ROWS = 500;
+
+    /** Largeur utilisée pour mesurer les lignes de la liste, en pixels. */
+    static final int BIND_WIDTH_PX = 1080;
+
+    private BenchmarkCases() {
+    }
+
+    /**
+     * Ouvre une base de mesure vide, distincte de celle de l'utilisateur.
+     *
+     * @param context Contexte de l'application.
+     * @param name    Nom du fichier de la base, supprimé s'il existe.
+     * @return Le helper de la base neuve.
+     */
+    static DatabaseHelper openFresh(Context context, String name) {
+        context.deleteDatabase(name);
+        return new DatabaseHelper(context, name);
+    }
+
+    /**
+     * Insère les entrées une à une, chacune dans sa propre transaction implicite.
+     *
+     * @return Le dernier identifiant inséré.
+     */
+    static long insertSingle(DatabaseHelper databaseHelper, List<Entry> entries) {
+        long last = -1;
+        for (Entry entry : entries) {
+            last = databaseHelper.insertEntry(entry);
+        }
+        return last;
+    }
+
+    /**
+     * Insère les entrées par lots de {@link DatabaseHelper#DEFAULT_BATCH_SIZE}, avec une requête précompilée.
+     *
+     * @return Le nombre de lignes insérées.
+     */
+    static int insertBatched(DatabaseHelper databaseHelper, List<Entry> entries) {
+        return databaseHelper.insertEntries(entries, DatabaseHelper.DEFAULT_BATCH_SIZE).getInsertedCount();
+    }
+
+    /**
+     * Parcourt toute la table par {@link DatabaseHelper#getAllEntries()}, comme l'ancienne liste.
+     *
+     * @return Le nombre de lignes lues.
+     */
+    static int fullScan(DatabaseHelper databaseHelper) {
+        int rows = 0;
+        try (Cursor cursor = databaseHelper.getAllEntries()) {
+            while (cursor.moveToNext()) {
+                cursor.getString(1);
+                rows++;
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * @return La première page de la liste (entrées les plus récentes).
+     */
+    static List<Entry> firstPage(DatabaseHelper databaseHelper) {
+        return databaseHelper.getEntriesPage(DatabaseHelper.FIRST_PAGE, PAGE_SIZE);
+    }
+
+    /**
+     * @return La dernière page de la liste ; les identifiants commencent à 1 dans une base neuve.
+     */
+    static List<Entry> lastPage(DatabaseHelper databaseHelper) {
+        return databaseHelper.getEntriesPage(PAGE_SIZE + 1, PAGE_SIZE);
+    }
+
+    /**
+     * @return {@link #DECODE_ROWS} entrées lues et décodées en objets.
+     */
+    static List<Entry> decodeEntries(DatabaseHelper databaseHelper) {
+        return databaseHelper.getEntriesFrom(0, DECODE_ROWS);
+    }
+
+    /**
+     * Parcourt les mêmes lignes que {@link #decodeEntries(DatabaseHelper)} sans construire d'objet :
+     * la différence des deux mesures est le coût du décodage.
+     *
+     * @return Le nombre de lignes parcourues.
+     */
+    static int stepCursor(DatabaseHelper databaseHelper) {
+        int rows = 0;
+        try (Cursor cursor = databaseHelper.getReadableDatabase().rawQuery(
+                "SELECT * FROM entries WHERE id > 0 ORDER BY id LIMIT " + DECODE_ROWS, null)) {
+            while (cursor.moveToNext()) {
+                rows++;
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Crée une ligne de la liste telle que l'adaptateur la crée.
+     *
+     * @param context         Contexte portant le thème de l'application.
+     * @param thumbnailLoader Chargeur des vignettes.
+     * @return La ligne, prête à être liée.
+     */
+    static EntryAdapter.EntryViewHolder createViewHolder(Context context, ThumbnailLoader thumbnailLoader) {
+        FrameLayout parent = new FrameLayout(context);
+        View itemView = LayoutInflater.from(context).inflate(R.layout.item_entry_summary, parent, false);
+        return new EntryAdapter.EntryViewHolder(itemView, thumbnailLoader);
+    }
+
+    /**
+     * Lie successivement chaque entrée à la même ligne.
+     *
+     * @return La largeur mesurée de la ligne (0 si elle n'est pas mesurée).
+     */
+    static int bind(EntryAdapter.EntryViewHolder holder, List<Entry> entries, boolean measure) {
+        int widthSpec = View.MeasureSpec.makeMeasureSpec(BIND_WIDTH_PX, View.MeasureSpec.EXACTLY);
+        int heightSpec = View.MeasureSpec.makeMeasureSpec(0, View.MeasureSpec.UNSPECIFIED);
+        for (Entry entry : entries) {
+            holder.bind(entry);
+            if (measure) {
+                holder.itemView.measure(widthSpec, heightSpec);
+            }
+        }
+        return holder.itemView.getMeasuredWidth();
+    }
+}
@@ -0,0 +1,74 @@
+/**
+ * BenchmarkData - Relevés générés pour les mesures de performance, identiques d'une exécution à l'autre.
+ */
+package ensa.application01.releveterrain;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Générateur de relevés réalistes à graine fixe, partagé par les bancs JMH (JVM) et les mesures sur appareil :
+ * textes de longueur variable, dates et positions réparties sur le Maroc, valeurs des listes de l'écran de saisie.
+ * Deux générateurs de même graine produisent exactement les mêmes entrées. Non synchronisé.
+ */
+final class BenchmarkData {
+
+    /** Types de terrain, identiques à ceux de l'écran de saisie. */
+    static final String[] TERRAIN_TYPES = {"Herbe", "Sable", "Roche", "Boueux", "Autre"};
+
+    /** États des infrastructures, identiques à ceux de l'écran de saisie. */
+    static final String[] CONDITIONS = {"Bon état", "Endommagé", "Moyenne"};
+
+    /** Graine utilisée par défaut. */
+    static final long DEFAULT_SEED = 42;
+
+    /** Générateur des valeurs. */
+    private final Random random;
+
+    /** Numéro de la prochaine entrée générée. */
+    private int generated;
+
+    BenchmarkData() {
+        this(DEFAULT_SEED);
+    }
+
+    BenchmarkData(long seed) {
+        random = new Random(seed);
+    }
+
+    /**
+     * Génère des entrées sans identifiant, numérotées à la suite des précédentes (« Site 0 », « Site 1 »…).
+     *
+     * @param count Nombre d'entrées.
+     * @return Les entrées générées.
+     */
+    List<Entry> generate(int count) {
+        List<Entry> entries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int n = generated++;
+            double latitude = 30 + random.nextDouble() * 6;
+            double longitude = -10 + random.nextDouble() * 9;
+            String date = (1 + random.nextInt(28)) + "/" + (1 + random.nextInt(12)) + "/" + (2015 + random.nextInt(10));
+            Entry entry = new Entry(-1, "Site " + n, date, new Coordinates(latitude, longitude).format(),
+                    text("Description du site " + n, 40 + random.nextInt(160)),
+                    TERRAIN_TYPES[random.nextInt(TERRAIN_TYPES.length)],
+                    text("Observations", 20 + random.nextInt(120)),
+                    CONDITIONS[random.nextInt(CONDITIONS.length)]);
+            entry.setLocation(latitude, longitude);
+            entries.add(entry);
+        }
+        return entries;
+    }
+
+    /**
+     * @return Un texte commençant par `prefix`, complété de mots jusqu'à environ `length` caractères.
+     */
+    String text(String prefix, int length) {
+        StringBuilder builder = new StringBuilder(length + 16).append(prefix);
+        while (builder.length() < length) {
+            builder.append(' ').append(Long.toString(random.nextInt(1 << 20), 36));
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,142 @@
+/**
+ * BenchmarkSuiteTest - Exécution des bancs JMH sur la JVM, avec la SQLite native de Robolectric.
+ */
+package ensa.application01.releveterrain;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.openjdk.jmh.runner.options.TimeValue;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Lance les bancs {@link InsertBenchmark}, {@link QueryBenchmark} et {@link BindBenchmark} dans le processus de test :
+ * JMH est exécuté sans fork, pour que les bancs s'exécutent dans le bac à sable Robolectric (SQLite native, ressources
+ * de l'application). Les résultats sont écrits au format JSON de JMH dans `app/build/outputs/benchmark/` :
+ * `jmh-results.json` pour la dernière exécution, et une copie horodatée pour suivre l'évolution d'une exécution à l'autre.
+ * <p>
+ * Réglages, passés à Gradle (voir `app/build.gradle`) :
+ * <ul>
+ *     <li>`-Preleve.benchmark.full=true` : itérations plus nombreuses et plus longues, pour des mesures à comparer ;
+ *     par défaut, un passage court vérifie que les bancs s'exécutent à chaque build ;</li>
+ *     <li>`-Preleve.benchmark.baseline=<fichier>` : résultats JSON d'une exécution de référence ; le test échoue si
+ *     un banc est plus lent que la référence au-delà de la tolérance (`-Preleve.benchmark.tolerance`, 0.25 par défaut).</li>
+ * </ul>
+ */
+@RunWith(RobolectricTestRunner.class)
+public class BenchmarkSuiteTest {
+
+    @Test
+    public void runBenchmarks() throws Exception {
+        boolean full = Boolean.parseBoolean(System.getProperty("releve.benchmark.full", "false"));
+        File outputDir = new File(System.getProperty("releve.benchmark.output", "build/outputs/benchmark"));
+        assertTrue("Répertoire des résultats : " + outputDir, outputDir.isDirectory() || outputDir.mkdirs());
+        File resultFile = new File(outputDir, "jmh-results.json");
+
+        Options options = new OptionsBuilder()
+                .include(InsertBenchmark.class.getName())
+                .include(QueryBenchmark.class.getName())
+                .include(BindBenchmark.class.getName())
+                .forks(0)
+                .threads(1)
+                .warmupIterations(full ? 3 : 1)
+                .warmupTime(TimeValue.seconds(1))
+                .measurementIterations(full ? 5 : 2)
+                .measurementTime(TimeValue.seconds(full ? 2 : 1))
+                .shouldFailOnError(true)
+                .resultFormat(ResultFormatType.JSON)
+                .result(resultFile.getPath())
+                .build();
+        Collection<RunResult> results = new Runner(options).run();
+        assertFalse("Aucun banc exécuté", results.isEmpty());
+
+        String stamp = new SimpleDateFormat("yyyyMMdd-HHmmss", Locale.ROOT).format(new Date());
+        Files.copy(resultFile.toPath(), new File(outputDir, "jmh-" + stamp + ".json").toPath(),
+                StandardCopyOption.REPLACE_EXISTING);
+
+        String baseline = System.getProperty("releve.benchmark.baseline", "");
+        if (!baseline.isEmpty()) {
+            double tolerance = Double.parseDouble(System.getProperty("releve.benchmark.tolerance", "0.25"));
+            List<String> regressions = compare(read(new File(baseline)), read(resultFile), tolerance);
+            assertTrue("Régressions par rapport à " + baseline + " :\n" + String.join("\n", regressions),
+                    regressions.isEmpty());
+        }
+    }
+
+    /**
+     * Compare deux exécutions banc par banc (même méthode, mêmes paramètres). Un banc absent de la référence est ignoré.
+     *
+     * @param baseline  Résultats de référence.
+     * @param current   Résultats de l'exécution courante.
+     * @param tolerance Dégradation relative tolérée (0.25 : 25 %).
+     * @return La description de chaque banc dégradé au-delà de la tolérance.
+     */
+    private static List<String> compare(JSONArray baseline, JSONArray current, double tolerance) throws Exception {
+        Map<String, JSONObject> reference = new HashMap<>();
+        for (int i = 0; i < baseline.length(); i++) {
+            JSONObject result = baseline.getJSONObject(i);
+            reference.put(keyOf(result), result);
+        }
+        List<String> regressions = new ArrayList<>();
+        for (int i = 0; i < current.length(); i++) {
+            JSONObject result = current.getJSONObject(i);
+            JSONObject previous = reference.get(keyOf(result));
+            if (previous == null) {
+                continue;
+            }
+            double before = previous.getJSONObject("primaryMetric").getDouble("score");
+            double after = result.getJSONObject("primaryMetric").getDouble("score");
+            // Débit : plus grand est meilleur ; temps moyen : plus petit est meilleur
+            boolean higherIsBetter = "thrpt".equals(result.getString("mode"));
+            double degradation = higherIsBetter ? (before - after) / before : (after - before) / before;
+            if (before > 0 && degradation > tolerance) {
+                regressions.add(String.format(Locale.ROOT, "%s : %.3f -> %.3f %s (%+.0f %%)", keyOf(result), before, after,
+                        result.getJSONObject("primaryMetric").getString("scoreUnit"), degradation * 100));
+            }
+        }
+        return regressions;
+    }
+
+    /**
+     * @return L'identifiant d'un résultat : nom complet du banc suivi de ses paramètres, par exemple `...fullScan rows=1000`.
+     */
+    private static String keyOf(JSONObject result) throws Exception {
+        StringBuilder key = new StringBuilder(result.getString("benchmark"));
+        JSONObject params = result.optJSONObject("params");
+        if (params != null) {
+            for (Iterator<String> names = params.keys(); names.hasNext(); ) {
+                String name = names.next();
+                key.append(' ').append(name).append('=').append(params.getString(name));
+            }
+        }
+        return key.toString();
+    }
+
+    private static JSONArray read(File file) throws IOException, org.json.JSONException {
+        return new JSONArray(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,71 @@
+/**
+ * BindBenchmark - Banc JMH de la liaison des lignes de la liste des relevés.
+ */
+package ensa.application01.releveterrain;
+
+import android.content.Context;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Temps moyen de liaison d'une ligne de la liste ({@link EntryAdapter.EntryViewHolder#bind(Entry)}), avec et sans mesure
+ * de la vue à la largeur d'un téléphone. Les entrées n'ont pas de photo : après le premier passage, le chargeur
+ * de vignettes répond depuis la mémoire, comme pendant un défilement. Lancé par {@link BenchmarkSuiteTest}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BindBenchmark {
+
+    /** Nom de la base dédiée à ce banc. */
+    private static final String DATABASE_NAME = "benchmark-bind.db";
+
+    private Context context;
+    private DatabaseHelper databaseHelper;
+    private ThumbnailLoader thumbnailLoader;
+    private EntryAdapter.EntryViewHolder holder;
+    private List<Entry> entries;
+
+    @Setup(Level.Trial)
+    public void inflate() {
+        context = RuntimeEnvironment.getApplication();
+        databaseHelper = BenchmarkCases.openFresh(context, DATABASE_NAME);
+        databaseHelper.insertEntries(new BenchmarkData().generate(BenchmarkCases.BIND_ROWS), DatabaseHelper.DEFAULT_BATCH_SIZE);
+        entries = databaseHelper.getEntriesFrom(0, BenchmarkCases.BIND_ROWS);
+        thumbnailLoader = new ThumbnailLoader(context, databaseHelper, new AttachmentStore(context));
+        holder = BenchmarkCases.createViewHolder(context, thumbnailLoader);
+    }
+
+    @TearDown(Level.Trial)
+    public void close() throws InterruptedException {
+        // Les recherches de vignettes lancées par la liaison doivent se terminer avant la fermeture de la base
+        thumbnailLoader.shutdown();
+        databaseHelper.close();
+        context.deleteDatabase(DATABASE_NAME);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BenchmarkCases.BIND_ROWS)
+    public int bind() {
+        return BenchmarkCases.bind(holder, entries, false);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BenchmarkCases.BIND_ROWS)
+    public int bindAndMeasure() {
+        return BenchmarkCases.bind(holder, entries, true);
+    }
+}
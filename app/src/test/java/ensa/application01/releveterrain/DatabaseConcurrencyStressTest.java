@@ -0,0 +1,258 @@
+/**
+ * DatabaseConcurrencyStressTest - Écritures et lectures concurrentes, avec et sans WAL.
+ */
+package ensa.application01.releveterrain;
+
+import android.content.Context;
+import android.database.DatabaseUtils;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Un écrivain insère des relevés en boucle pendant que plusieurs lecteurs parcourent la liste page par page,
+ * comme l'écran de liste pendant un enregistrement ou un import. Le même scénario est exécuté sur une base
+ * en journal d'annulation (réglages de SQLite par défaut, avant le passage en WAL) puis en WAL (réglages de l'application).
+ * <p>
+ * Le rapport (débit de l'écrivain et des lecteurs, latences p50, p99 et maximale) est écrit dans
+ * `app/build/outputs/benchmark/stress-wal.txt`. Le test vérifie la cohérence des pages lues, pas les chiffres,
+ * qui dépendent de la machine ; `-Preleve.benchmark.full=true` allonge chaque scénario.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class DatabaseConcurrencyStressTest {
+
+    private static final String DATABASE_NAME = "test-stress.db";
+
+    /** Lignes présentes avant le début du scénario. */
+    private static final int INITIAL_ROWS = 10_000;
+
+    /** Nombre de threads lecteurs. */
+    private static final int READERS = 3;
+
+    /** Pages lues par un lecteur avant de repartir du début de la liste. */
+    private static final int PAGES_PER_PASS = 20;
+
+    /**
+     * Mesures d'un scénario.
+     */
+    private static class Report {
+        final String mode;
+        final long durationNanos;
+        final long[] writeNanos;
+        final long[] readNanos;
+
+        Report(String mode, long durationNanos, long[] writeNanos, long[] readNanos) {
+            this.mode = mode;
+            this.durationNanos = durationNanos;
+            this.writeNanos = writeNanos;
+            this.readNanos = readNanos;
+        }
+
+        String format() {
+            double seconds = durationNanos / 1e9;
+            return String.format(Locale.ROOT,
+                    "%-8s écrivain : %7.0f lignes/s  p50 %7.3f ms  p99 %7.3f ms  max %7.3f ms%n" +
+                            "%-8s lecteurs : %7.0f pages/s  p50 %7.3f ms  p99 %7.3f ms  max %7.3f ms%n",
+                    mode, writeNanos.length / seconds,
+                    percentileMillis(writeNanos, 0.50), percentileMillis(writeNanos, 0.99), percentileMillis(writeNanos, 1),
+                    mode, readNanos.length / seconds,
+                    percentileMillis(readNanos, 0.50), percentileMillis(readNanos, 0.99), percentileMillis(readNanos, 1));
+        }
+    }
+
+    @Test
+    public void writerAndPagingReadersWithAndWithoutWal() throws Exception {
+        boolean full = Boolean.parseBoolean(System.getProperty("releve.benchmark.full", "false"));
+        long durationMillis = full ? 10_000 : 2_000;
+
+        Report rollback = run(false, durationMillis);
+        Report wal = run(true, durationMillis);
+
+        write(rollback.format() + wal.format());
+    }
+
+    /**
+     * Exécute le scénario sur une base neuve.
+     *
+     * @param writeAheadLogging `true` pour les réglages de l'application, `false` pour le journal d'annulation.
+     * @param durationMillis    Durée du scénario.
+     * @return Les durées de chaque insertion et de chaque lecture de page.
+     */
+    private Report run(boolean writeAheadLogging, long durationMillis) throws Exception {
+        Context context = ApplicationProvider.getApplicationContext();
+        context.deleteDatabase(DATABASE_NAME);
+        DatabaseHelper databaseHelper = new DatabaseHelper(context, DATABASE_NAME, writeAheadLogging);
+        try {
+            BenchmarkData data = new BenchmarkData();
+            databaseHelper.insertEntries(data.generate(INITIAL_ROWS), DatabaseHelper.DEFAULT_BATCH_SIZE);
+            // Entrées de l'écrivain générées d'avance et réutilisées en boucle, pour ne mesurer que la base
+            List<Entry> pending = data.generate(5_000);
+
+            AtomicBoolean running = new AtomicBoolean(true);
+            AtomicReference<Throwable> failure = new AtomicReference<>();
+            CountDownLatch start = new CountDownLatch(1);
+            LongSamples writes = new LongSamples();
+            List<LongSamples> reads = new ArrayList<>();
+            List<Thread> threads = new ArrayList<>();
+
+            threads.add(new Thread(() -> guard(failure, () -> {
+                start.await();
+                for (int i = 0; running.get(); i++) {
+                    long begin = System.nanoTime();
+                    databaseHelper.insertEntry(pending.get(i % pending.size()));
+                    writes.add(System.nanoTime() - begin);
+                }
+            }), "stress-writer"));
+            for (int r = 0; r < READERS; r++) {
+                LongSamples samples = new LongSamples();
+                reads.add(samples);
+                threads.add(new Thread(() -> guard(failure, () -> {
+                    start.await();
+                    while (running.get()) {
+                        long beforeId = DatabaseHelper.FIRST_PAGE;
+                        for (int page = 0; page < PAGES_PER_PASS && running.get(); page++) {
+                            long begin = System.nanoTime();
+                            List<Entry> entries = databaseHelper.getEntriesPage(beforeId, BenchmarkCases.PAGE_SIZE);
+                            samples.add(System.nanoTime() - begin);
+                            assertPage(entries, beforeId);
+                            beforeId = entries.get(entries.size() - 1).getId();
+                        }
+                    }
+                }), "stress-reader-" + r));
+            }
+
+            for (Thread thread : threads) {
+                thread.start();
+            }
+            long begin = System.nanoTime();
+            start.countDown();
+            Thread.sleep(durationMillis);
+            running.set(false);
+            for (Thread thread : threads) {
+                thread.join(TimeUnit.SECONDS.toMillis(30));
+            }
+            long elapsed = System.nanoTime() - begin;
+            if (failure.get() != null) {
+                throw new AssertionError("Échec en mode " + (writeAheadLogging ? "WAL" : "journal"), failure.get());
+            }
+
+            LongSamples allReads = new LongSamples();
+            for (LongSamples samples : reads) {
+                allReads.addAll(samples);
+            }
+            assertTrue("Aucune insertion", writes.size() > 0);
+            assertTrue("Aucune lecture", allReads.size() > 0);
+            assertEquals(INITIAL_ROWS + writes.size(),
+                    DatabaseUtils.queryNumEntries(databaseHelper.getReadableDatabase(), "entries"));
+            return new Report(writeAheadLogging ? "WAL" : "journal", elapsed, writes.toArray(), allReads.toArray());
+        } finally {
+            databaseHelper.close();
+            context.deleteDatabase(DATABASE_NAME);
+        }
+    }
+
+    /**
+     * Vérifie qu'une page est complète et strictement antérieure à la précédente :
+     * une lecture concurrente d'une insertion ne doit ni sauter ni répéter de ligne.
+     */
+    private static void assertPage(List<Entry> entries, long beforeId) {
+        assertEquals(BenchmarkCases.PAGE_SIZE, entries.size());
+        long previous = beforeId;
+        for (Entry entry : entries) {
+            assertTrue("Page non triée", entry.getId() < previous);
+            previous = entry.getId();
+        }
+    }
+
+    /**
+     * Opération d'un thread du scénario.
+     */
+    private interface Task {
+        void run() throws Exception;
+    }
+
+    /**
+     * Exécute une tâche et conserve sa première erreur, relancée par le thread du test.
+     */
+    private static void guard(AtomicReference<Throwable> failure, Task task) {
+        try {
+            task.run();
+        } catch (Throwable e) {
+            failure.compareAndSet(null, e);
+        }
+    }
+
+    /**
+     * @return Le percentile demandé, en millisecondes (1 pour le maximum).
+     */
+    private static double percentileMillis(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.min(sorted.length - 1, Math.ceil(percentile * sorted.length) - 1);
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+
+    private static void write(String report) throws IOException {
+        File dir = new File(System.getProperty("releve.benchmark.output", "build/outputs/benchmark"));
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Répertoire des résultats indisponible : " + dir);
+        }
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(new File(dir, "stress-wal.txt")), StandardCharsets.UTF_8)) {
+            writer.write(report);
+        }
+    }
+
+    /**
+     * Durées mesurées par un seul thread, sans boîte autour de chaque valeur.
+     */
+    private static class LongSamples {
+        private long[] values = new long[1024];
+        private int size;
+
+        void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        void addAll(LongSamples other) {
+            for (int i = 0; i < other.size; i++) {
+                add(other.values[i]);
+            }
+        }
+
+        int size() {
+            return size;
+        }
+
+        /** @return Les durées triées. */
+        long[] toArray() {
+            long[] sorted = Arrays.copyOf(values, size);
+            Arrays.sort(sorted);
+            return sorted;
+        }
+    }
+}
@@ -0,0 +1,229 @@
+/**
+ * DatabaseHelperBulkInsertTest - Tests de l'insertion groupée des entrées.
+ */
+package ensa.application01.releveterrain;
+
+import android.content.Context;
+import android.database.DatabaseUtils;
+import android.database.sqlite.SQLiteConstraintException;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Vérifie {@link DatabaseHelper#insertEntries(Iterable, int, boolean)} : bilan des lignes en échec, validation par lots,
+ * dédoublonnage et plages transmises aux écouteurs. Le débit comparé à l'insertion ligne à ligne est mesuré par {@link InsertBenchmark}.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class DatabaseHelperBulkInsertTest {
+
+    private static final String DATABASE_NAME = "test-bulk-insert.db";
+
+    /** Nom de site refusé par le déclencheur installé dans {@link #rejectSite()}. */
+    private static final String REJECTED_SITE = "Refusé";
+
+    private Context context;
+    private DatabaseHelper databaseHelper;
+
+    /** Plages reçues par l'écouteur, sous la forme {premier, dernier, lignes validées au moment de l'appel}. */
+    private final List<long[]> ranges = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        context = ApplicationProvider.getApplicationContext();
+        databaseHelper = BenchmarkCases.openFresh(context, DATABASE_NAME);
+        databaseHelper.addOnEntriesInsertedListener((firstId, lastId) -> ranges.add(new long[]{firstId, lastId, count()}));
+    }
+
+    @After
+    public void tearDown() {
+        databaseHelper.close();
+        context.deleteDatabase(DATABASE_NAME);
+    }
+
+    @Test
+    public void insertsEveryRowAndReportsTheRange() {
+        BulkInsertResult result = databaseHelper.insertEntries(new BenchmarkData().generate(10), 100);
+
+        assertEquals(10, result.getInsertedCount());
+        assertEquals(0, result.getSkippedCount());
+        assertTrue(result.getFailures().isEmpty());
+        assertEquals(1, result.getFirstInsertedId());
+        assertEquals(10, result.getLastInsertedId());
+        assertEquals(10, count());
+    }
+
+    @Test
+    public void failedRowsAreReportedWithoutInterruptingTheBatch() {
+        rejectSite();
+        List<Entry> entries = new BenchmarkData().generate(6);
+        Entry first = rejected(entries, 2);
+        Entry second = rejected(entries, 4);
+
+        BulkInsertResult result = databaseHelper.insertEntries(entries, 100);
+
+        assertEquals(4, result.getInsertedCount());
+        assertEquals(2, result.getFailures().size());
+        BulkInsertResult.RowFailure failure = result.getFailures().get(0);
+        assertEquals(2, failure.getIndex());
+        assertSame(first, failure.getEntry());
+        assertTrue(failure.getError() instanceof SQLiteConstraintException);
+        assertEquals(4, result.getFailures().get(1).getIndex());
+        assertSame(second, result.getFailures().get(1).getEntry());
+        // Les lignes voisines de l'échec sont validées dans la même transaction
+        assertEquals(4, count());
+    }
+
+    @Test
+    public void listenerIsNotifiedOncePerCommittedBatch() {
+        databaseHelper.insertEntries(new BenchmarkData().generate(7), 3);
+
+        assertRanges(new long[]{1, 3}, new long[]{4, 6}, new long[]{7, 7});
+        // Chaque plage est annoncée après la validation de son lot, jamais avant
+        assertEquals(3, ranges.get(0)[2]);
+        assertEquals(6, ranges.get(1)[2]);
+        assertEquals(7, ranges.get(2)[2]);
+    }
+
+    @Test
+    public void listenerRangesSkipFailedRows() {
+        rejectSite();
+        List<Entry> entries = new BenchmarkData().generate(6);
+        rejected(entries, 0);
+        rejected(entries, 3);
+        rejected(entries, 4);
+        rejected(entries, 5);
+
+        databaseHelper.insertEntries(entries, 3);
+
+        // Second lot entièrement refusé : aucune notification
+        assertRanges(new long[]{1, 2});
+    }
+
+    @Test
+    public void completedBatchesStayCommittedWhenTheSourceFails() {
+        List<Entry> entries = new BenchmarkData().generate(5);
+        Iterable<Entry> failing = () -> new Iterator<Entry>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return true;
+            }
+
+            @Override
+            public Entry next() {
+                if (next == entries.size()) {
+                    throw new IllegalStateException("Source interrompue");
+                }
+                return entries.get(next++);
+            }
+        };
+
+        try {
+            databaseHelper.insertEntries(failing, 2);
+            fail("L'erreur de la source doit être propagée");
+        } catch (IllegalStateException expected) {
+            // Attendu
+        }
+
+        // Les deux lots complets sont validés ; la cinquième ligne, dans le lot en cours, est annulée
+        assertEquals(4, count());
+        assertRanges(new long[]{1, 2}, new long[]{3, 4});
+    }
+
+    @Test
+    public void skipDuplicatesIgnoresExistingAndRepeatedRows() {
+        List<Entry> entries = new BenchmarkData().generate(3);
+        databaseHelper.insertEntries(entries.subList(0, 2), 100);
+        ranges.clear();
+
+        Entry existing = copyOf(entries.get(0));
+        Entry fresh = entries.get(2);
+        Entry repeated = copyOf(fresh);
+        BulkInsertResult result = databaseHelper.insertEntries(Arrays.asList(existing, fresh, repeated), 100, true);
+
+        assertEquals(1, result.getInsertedCount());
+        assertEquals(2, result.getSkippedCount());
+        assertTrue(result.getFailures().isEmpty());
+        assertEquals(3, result.getFirstInsertedId());
+        assertEquals(3, count());
+        assertRanges(new long[]{3, 3});
+    }
+
+    @Test
+    public void duplicatesAreInsertedWhenNotSkipped() {
+        Entry entry = new BenchmarkData().generate(1).get(0);
+
+        BulkInsertResult result = databaseHelper.insertEntries(Arrays.asList(entry, copyOf(entry)), 100);
+
+        assertEquals(2, result.getInsertedCount());
+        assertEquals(0, result.getSkippedCount());
+        assertEquals(2, count());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nonPositiveBatchSizeIsRejected() {
+        databaseHelper.insertEntries(new BenchmarkData().generate(1), 0);
+    }
+
+    /**
+     * Installe un déclencheur qui fait échouer l'insertion des entrées nommées {@link #REJECTED_SITE},
+     * comme le ferait une contrainte violée par une ligne isolée.
+     */
+    private void rejectSite() {
+        databaseHelper.getWritableDatabase().execSQL("CREATE TRIGGER reject_site BEFORE INSERT ON entries" +
+                " WHEN NEW.site_name = '" + REJECTED_SITE + "' BEGIN SELECT RAISE(ABORT, 'site refusé'); END");
+    }
+
+    /**
+     * Remplace une entrée de la liste par une entrée qui sera refusée.
+     *
+     * @return L'entrée refusée.
+     */
+    private static Entry rejected(List<Entry> entries, int index) {
+        Entry source = entries.get(index);
+        Entry entry = new Entry(-1, REJECTED_SITE, source.getDate(), source.getCoordinates(), source.getDescription(),
+                source.getTerrainType(), source.getObservations(), source.getCondition());
+        entries.set(index, entry);
+        return entry;
+    }
+
+    /**
+     * @return Une entrée de même site, date et coordonnées : un doublon au sens du dédoublonnage.
+     */
+    private static Entry copyOf(Entry source) {
+        return new Entry(-1, source.getSiteName(), source.getDate(), source.getCoordinates(), "Autre description",
+                source.getTerrainType(), source.getObservations(), source.getCondition());
+    }
+
+    private void assertRanges(long[]... expected) {
+        assertEquals(expected.length, ranges.size());
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals("Premier identifiant du lot " + i, expected[i][0], ranges.get(i)[0]);
+            assertEquals("Dernier identifiant du lot " + i, expected[i][1], ranges.get(i)[1]);
+        }
+    }
+
+    /**
+     * @return Le nombre de lignes validées, lu sur une connexion de lecture.
+     */
+    private long count() {
+        return DatabaseUtils.queryNumEntries(databaseHelper.getReadableDatabase(), "entries");
+    }
+}
@@ -0,0 +1,194 @@
+/**
+ * DatabaseHelperFormFieldTest - Tests de l'enregistrement et de la recherche des champs propres aux modèles.
+ */
+package ensa.application01.releveterrain;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Vérifie les champs propres aux modèles de formulaire dans la base :
+ * <ul>
+ *     <li>{@link DatabaseHelper#ensureFieldIndexes(List)} crée un index `json_extract` par clé indexée, partagé
+ *     entre modèles, et la recherche d'une valeur le parcourt ;</li>
+ *     <li>{@link DatabaseHelper#getEntriesByFieldValue} compare un champ numérique comme nombre et un champ texte
+ *     comme texte, sans sortir des modèles demandés ;</li>
+ *     <li>la migration de la version 9 à la version 10 conserve les relevés, les rattache au modèle par défaut
+ *     et journalise la modification des nouvelles colonnes.</li>
+ * </ul>
+ */
+@RunWith(RobolectricTestRunner.class)
+public class DatabaseHelperFormFieldTest {
+
+    private static final String DATABASE_NAME = "test-form-fields.db";
+
+    private Context context;
+    private DatabaseHelper databaseHelper;
+
+    @Before
+    public void setUp() {
+        context = ApplicationProvider.getApplicationContext();
+        context.deleteDatabase(DATABASE_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        if (databaseHelper != null) {
+            databaseHelper.close();
+        }
+        context.deleteDatabase(DATABASE_NAME);
+    }
+
+    @Test
+    public void indexedFieldsGetOneSharedIndexUsedByTheLookup() throws IOException {
+        databaseHelper = BenchmarkCases.openFresh(context, DATABASE_NAME);
+
+        databaseHelper.ensureFieldIndexes(plans());
+        // Un second chargement ne recrée rien
+        databaseHelper.ensureFieldIndexes(plans());
+
+        SQLiteDatabase db = databaseHelper.getReadableDatabase();
+        assertEquals(Arrays.asList("idx_entries_field_erosion", "idx_entries_field_hauteur_eau_cm"),
+                strings(db.rawQuery("SELECT name FROM sqlite_master WHERE type = 'index'" +
+                        " AND name LIKE 'idx_entries_field_%' ORDER BY name", null)));
+        String plan = String.join("\n", strings(db.rawQuery("EXPLAIN QUERY PLAN SELECT id FROM entries" +
+                " WHERE template_id IN ('berge') AND json_extract(extra_values, '$.hauteur_eau_cm') = CAST('12' AS REAL)",
+                null), "detail"));
+        assertTrue(plan, plan.contains("idx_entries_field_hauteur_eau_cm"));
+    }
+
+    @Test
+    public void numericFieldIsComparedAsANumber() throws IOException {
+        databaseHelper = BenchmarkCases.openFresh(context, DATABASE_NAME);
+        databaseHelper.ensureFieldIndexes(plans());
+        long id = insert("berge", "{\"hauteur_eau_cm\":12,\"erosion\":\"Forte\"}");
+        insert("berge", "{\"hauteur_eau_cm\":120,\"erosion\":\"Faible\"}");
+
+        assertEquals(Collections.singletonList(id), ids(databaseHelper.getEntriesByFieldValue(
+                Collections.singletonList("berge"), "hauteur_eau_cm", true, "12.0", 10)));
+        assertEquals(Collections.singletonList(id), ids(databaseHelper.getEntriesByFieldValue(
+                Collections.singletonList("berge"), "hauteur_eau_cm", true, "12", 10)));
+        // Comparée comme texte, la saisie « 12 » ne retrouve pas le nombre 12 enregistré
+        assertTrue(databaseHelper.getEntriesByFieldValue(
+                Collections.singletonList("berge"), "hauteur_eau_cm", false, "12", 10).isEmpty());
+    }
+
+    @Test
+    public void textFieldIsComparedExactlyWithinTheRequestedTemplates() throws IOException {
+        databaseHelper = BenchmarkCases.openFresh(context, DATABASE_NAME);
+        databaseHelper.ensureFieldIndexes(plans());
+        long berge = insert("berge", "{\"erosion\":\"Forte\"}");
+        long lac = insert("lac", "{\"erosion\":\"Forte\"}");
+        insert("berge", "{\"erosion\":\"Faible\"}");
+
+        assertEquals(Collections.singletonList(berge), ids(databaseHelper.getEntriesByFieldValue(
+                Collections.singletonList("berge"), "erosion", false, "Forte", 10)));
+        assertEquals(Arrays.asList(lac, berge), ids(databaseHelper.getEntriesByFieldValue(
+                Arrays.asList("berge", "lac"), "erosion", false, "Forte", 10)));
+        assertTrue(databaseHelper.getEntriesByFieldValue(
+                Collections.singletonList("berge"), "erosion", false, "forte", 10).isEmpty());
+        assertTrue(databaseHelper.getEntriesByFieldValue(
+                Collections.emptyList(), "erosion", false, "Forte", 10).isEmpty());
+    }
+
+    @Test
+    public void upgradeFromVersion9KeepsEntriesUnderTheDefaultTemplate() {
+        // Base de la version 9 : table de la version 1, puis les migrations jusqu'à la 9, comme une installation ancienne
+        File file = context.getDatabasePath(DATABASE_NAME);
+        assertTrue(file.getParentFile().isDirectory() || file.getParentFile().mkdirs());
+        SQLiteDatabase db = SQLiteDatabase.openOrCreateDatabase(file, null);
+        db.execSQL("CREATE TABLE entries(id INTEGER PRIMARY KEY AUTOINCREMENT, site_name TEXT, date TEXT," +
+                " coordinates TEXT, description TEXT, terrain_type TEXT, observations TEXT, condition TEXT)");
+        new DatabaseHelper(context, DATABASE_NAME).onUpgrade(db, 1, 9);
+        ContentValues values = new ContentValues();
+        values.put("site_name", "Berge nord");
+        values.put("date", "15/06/2024");
+        values.put("description", "Talus en cours d'érosion");
+        db.insert("entries", null, values);
+        db.setVersion(9);
+        db.close();
+
+        databaseHelper = new DatabaseHelper(context, DATABASE_NAME);
+        Entry entry = databaseHelper.getEntry(1);
+
+        assertEquals("Berge nord", entry.getSiteName());
+        assertEquals("Talus en cours d'érosion", entry.getDescription());
+        assertEquals(FormPlan.DEFAULT_TEMPLATE, entry.getTemplateId());
+        assertNull(entry.getExtraValues());
+        // Le déclencheur recréé journalise aussi la modification des champs propres
+        databaseHelper.acknowledgeChanges(Long.MAX_VALUE);
+        databaseHelper.getWritableDatabase().execSQL("UPDATE entries SET extra_values = '{\"station\":\"BR-042\"}'");
+        assertEquals(1, databaseHelper.countPendingChanges());
+    }
+
+    private long insert(String templateId, String extraValues) {
+        Entry entry = new Entry(-1, "Site", "15/06/2024", "34.0, -6.8", "Berge", "Sable", "RAS", "Bon état");
+        entry.setTemplate(templateId, extraValues);
+        return databaseHelper.insertEntry(entry);
+    }
+
+    /**
+     * @return Deux modèles déclarant les mêmes champs indexés, qui doivent partager leurs index.
+     */
+    private static List<FormPlan> plans() throws IOException {
+        String fields = "[{\"key\": \"site_name\"}, {\"key\": \"hauteur_eau_cm\", \"type\": \"number\", \"indexed\": true}," +
+                " {\"key\": \"erosion\", \"type\": \"choice\", \"options\": [\"Faible\", \"Forte\"], \"indexed\": true}," +
+                " {\"key\": \"station\"}]";
+        return Arrays.asList(compile("{\"id\": \"berge\", \"fields\": " + fields + "}"),
+                compile("{\"id\": \"lac\", \"fields\": " + fields + "}"));
+    }
+
+    private static FormPlan compile(String json) throws IOException {
+        return FormPlan.compile(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static List<Long> ids(List<Entry> entries) {
+        Long[] ids = new Long[entries.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = entries.get(i).getId();
+        }
+        return Arrays.asList(ids);
+    }
+
+    private static List<String> strings(Cursor cursor) {
+        return strings(cursor, null);
+    }
+
+    /**
+     * @return Les valeurs d'une colonne du curseur (la première si `column` est `null`), qui est fermé.
+     */
+    private static List<String> strings(Cursor cursor, String column) {
+        try {
+            int index = column == null ? 0 : cursor.getColumnIndexOrThrow(column);
+            String[] values = new String[cursor.getCount()];
+            for (int i = 0; cursor.moveToNext(); i++) {
+                values[i] = cursor.getString(index);
+            }
+            return Arrays.asList(values);
+        } finally {
+            cursor.close();
+        }
+    }
+}
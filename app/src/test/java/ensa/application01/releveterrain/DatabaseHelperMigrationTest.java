@@ -0,0 +1,176 @@
+/**
+ * DatabaseHelperMigrationTest - Tests de la mise à jour d'une base ancienne et de la reprise des migrations de données.
+ */
+package ensa.application01.releveterrain;
+
+import android.content.ContentValues;
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteException;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Vérifie la mise à jour d'une base créée par la première version de l'application :
+ * <ul>
+ *     <li>les relevés sont conservés à l'ouverture par la version courante, puis complétés par les migrations de données
+ *     (date triable, position numérique) ;</li>
+ *     <li>une migration de données interrompue au milieu d'un lot reprend, à la réouverture, après le dernier lot validé
+ *     enregistré dans `migration_state`, sans retraiter ni sauter de ligne.</li>
+ * </ul>
+ */
+@RunWith(RobolectricTestRunner.class)
+public class DatabaseHelperMigrationTest {
+
+    private static final String DATABASE_NAME = "test-migration.db";
+
+    /** Nombre de relevés de la base de la version 1. */
+    private static final int ENTRIES = 5;
+
+    private Context context;
+    private DatabaseHelper databaseHelper;
+
+    @Before
+    public void setUp() {
+        context = ApplicationProvider.getApplicationContext();
+        context.deleteDatabase(DATABASE_NAME);
+        createVersion1Database();
+    }
+
+    @After
+    public void tearDown() {
+        if (databaseHelper != null) {
+            databaseHelper.close();
+        }
+        context.deleteDatabase(DATABASE_NAME);
+    }
+
+    @Test
+    public void version1EntriesAreKeptAndCompletedByTheDataMigrations() {
+        databaseHelper = new DatabaseHelper(context, DATABASE_NAME);
+
+        List<Entry> entries = databaseHelper.getEntriesFrom(0, 10);
+        assertEquals(ENTRIES, entries.size());
+        for (int i = 0; i < ENTRIES; i++) {
+            Entry entry = entries.get(i);
+            assertEquals(i + 1, entry.getId());
+            assertEquals("Site " + (i + 1), entry.getSiteName());
+            assertEquals(date(i + 1), entry.getDate());
+            assertEquals("34.0, -6.8", entry.getCoordinates());
+            assertEquals("Roche", entry.getTerrainType());
+        }
+        // Les relevés existants sont à envoyer lors de la première synchronisation
+        assertEquals(ENTRIES, databaseHelper.countPendingChanges());
+        assertEquals(0, count("date_epoch IS NOT NULL"));
+
+        while (databaseHelper.runDataMigrationStep(DatabaseHelper.MIGRATION_BATCH_SIZE)) {
+            // Lots suivants
+        }
+
+        assertEquals(ENTRIES, count("date_epoch IS NOT NULL AND latitude IS NOT NULL AND geo_cell IS NOT NULL"));
+        assertEquals(-1, migrationCursor("date_epoch"));
+        assertEquals(-1, migrationCursor("coordinates"));
+        // Les recalculs ne sont pas des modifications à synchroniser
+        assertEquals(ENTRIES, databaseHelper.countPendingChanges());
+    }
+
+    @Test
+    public void interruptedBatchResumesAfterTheLastCommittedBatch() {
+        databaseHelper = new DatabaseHelper(context, DATABASE_NAME);
+        assertTrue(databaseHelper.runDataMigrationStep(2));
+        assertEquals(2, migrationCursor("date_epoch"));
+
+        // Le lot suivant échoue au milieu (la ligne 3 est déjà mise à jour) : il est annulé en entier
+        databaseHelper.getWritableDatabase().execSQL("CREATE TRIGGER interrupt_migration BEFORE UPDATE OF date_epoch" +
+                " ON entries WHEN new.id = 4 BEGIN SELECT RAISE(ABORT, 'interruption'); END");
+        try {
+            databaseHelper.runDataMigrationStep(2);
+            fail("L'interruption du lot doit être signalée");
+        } catch (SQLiteException expected) {
+            // Attendu
+        }
+        databaseHelper.getWritableDatabase().execSQL("DROP TRIGGER interrupt_migration");
+        // Arrêt de l'application, puis réouverture
+        databaseHelper.close();
+        databaseHelper = new DatabaseHelper(context, DATABASE_NAME);
+
+        assertEquals(2, migrationCursor("date_epoch"));
+        assertEquals(2, count("date_epoch IS NOT NULL"));
+        assertEquals(0, count("id > 2 AND date_epoch IS NOT NULL"));
+
+        assertTrue(databaseHelper.runDataMigrationStep(2));
+        assertEquals(4, migrationCursor("date_epoch"));
+        assertEquals(4, count("date_epoch IS NOT NULL"));
+        int steps = 0;
+        while (databaseHelper.runDataMigrationStep(2)) {
+            steps++;
+        }
+        // Un lot pour la ligne 5, puis trois pour les positions
+        assertEquals(4, steps);
+        assertEquals(ENTRIES, count("date_epoch IS NOT NULL AND latitude IS NOT NULL"));
+        assertEquals(-1, migrationCursor("date_epoch"));
+        assertEquals(-1, migrationCursor("coordinates"));
+        assertFalse(databaseHelper.runDataMigrationStep(2));
+    }
+
+    /**
+     * Crée la base telle que l'écrivait la version 1 : la seule table `entries`, avec des relevés.
+     */
+    private void createVersion1Database() {
+        File file = context.getDatabasePath(DATABASE_NAME);
+        assertTrue(file.getParentFile().isDirectory() || file.getParentFile().mkdirs());
+        SQLiteDatabase db = SQLiteDatabase.openOrCreateDatabase(file, null);
+        try {
+            db.execSQL("CREATE TABLE entries(id INTEGER PRIMARY KEY AUTOINCREMENT, site_name TEXT, date TEXT," +
+                    " coordinates TEXT, description TEXT, terrain_type TEXT, observations TEXT, condition TEXT)");
+            for (int i = 1; i <= ENTRIES; i++) {
+                ContentValues values = new ContentValues();
+                values.put("site_name", "Site " + i);
+                values.put("date", date(i));
+                values.put("coordinates", "34.0, -6.8");
+                values.put("description", "Affleurement rocheux");
+                values.put("terrain_type", "Roche");
+                values.put("observations", "RAS");
+                values.put("condition", "Bon état");
+                db.insertOrThrow("entries", null, values);
+            }
+            db.setVersion(1);
+        } finally {
+            db.close();
+        }
+    }
+
+    private static String date(int day) {
+        return day + "/06/2024";
+    }
+
+    private int count(String where) {
+        try (Cursor cursor = databaseHelper.getReadableDatabase().rawQuery("SELECT COUNT(*) FROM entries WHERE " + where, null)) {
+            cursor.moveToFirst();
+            return cursor.getInt(0);
+        }
+    }
+
+    private long migrationCursor(String name) {
+        try (Cursor cursor = databaseHelper.getReadableDatabase().rawQuery(
+                "SELECT last_id FROM migration_state WHERE name = ?", new String[]{name})) {
+            assertTrue(cursor.moveToFirst());
+            return cursor.getLong(0);
+        }
+    }
+}
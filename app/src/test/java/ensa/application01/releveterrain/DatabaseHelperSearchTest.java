@@ -0,0 +1,120 @@
+/**
+ * DatabaseHelperSearchTest - Tests du classement de la recherche plein texte.
+ */
+package ensa.application01.releveterrain;
+
+import android.content.Context;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Vérifie le classement BM25 de {@link DatabaseHelper#searchEntries(String, int)} : le score calculé en Java
+ * pour FTS4 ({@link DatabaseHelper#bm25(byte[])}), puis l'ordre des résultats sur la base de test.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class DatabaseHelperSearchTest {
+
+    private static final String DATABASE_NAME = "test-search.db";
+
+    private Context context;
+    private DatabaseHelper databaseHelper;
+
+    @Before
+    public void setUp() {
+        context = ApplicationProvider.getApplicationContext();
+        databaseHelper = BenchmarkCases.openFresh(context, DATABASE_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        databaseHelper.close();
+        context.deleteDatabase(DATABASE_NAME);
+    }
+
+    @Test
+    public void moreOccurrencesScoreHigher() {
+        // Une expression, deux colonnes, 100 documents de longueur moyenne 10
+        double once = DatabaseHelper.bm25(matchinfo(100, 10, 10, 1, 5));
+        double twice = DatabaseHelper.bm25(matchinfo(100, 10, 10, 2, 5));
+        assertTrue(twice > once);
+    }
+
+    @Test
+    public void shorterDocumentsScoreHigher() {
+        double shortDocument = DatabaseHelper.bm25(matchinfo(100, 10, 4, 1, 5));
+        double longDocument = DatabaseHelper.bm25(matchinfo(100, 10, 40, 1, 5));
+        assertTrue(shortDocument > longDocument);
+    }
+
+    @Test
+    public void rarerWordsScoreHigher() {
+        double rare = DatabaseHelper.bm25(matchinfo(100, 10, 10, 1, 2));
+        double common = DatabaseHelper.bm25(matchinfo(100, 10, 10, 1, 90));
+        assertTrue(rare > common);
+        // Même présent presque partout, un mot trouvé contribue positivement
+        assertTrue(common > 0);
+    }
+
+    @Test
+    public void resultsAreRankedByRelevanceRatherThanRecency() {
+        databaseHelper.insertEntries(Arrays.asList(
+                entry("Pertinent", "érosion érosion érosion du talus", "érosion"),
+                entry("Moyen", "érosion d'une berge longue avec végétation dense et rochers nombreux", ""),
+                entry("Sans rapport", "prairie sèche", "rien à signaler")), 100);
+
+        List<Entry> found = databaseHelper.searchEntries("erosion", 10);
+
+        assertEquals(2, found.size());
+        assertEquals("Pertinent", found.get(0).getSiteName());
+        assertEquals("Moyen", found.get(1).getSiteName());
+    }
+
+    @Test
+    public void limitKeepsTheBestResults() {
+        databaseHelper.insertEntries(Arrays.asList(
+                entry("Meilleur", "fissure fissure fissure", "fissure"),
+                entry("Récent 1", "une fissure dans un long mur de pierre sèche", ""),
+                entry("Récent 2", "une fissure dans un autre long mur de pierre", "")), 100);
+
+        List<Entry> found = databaseHelper.searchEntries("fiss", 1);
+
+        assertEquals(1, found.size());
+        assertEquals("Meilleur", found.get(0).getSiteName());
+    }
+
+    /**
+     * Construit la sortie `matchinfo('pcnalx')` d'une expression trouvée dans la première de deux colonnes.
+     */
+    private static byte[] matchinfo(int documents, int averageLength, int length, int hits, int documentsWithHits) {
+        int[] values = {
+                1, 2, documents,
+                averageLength, averageLength,
+                length, length,
+                hits, hits * 3, documentsWithHits,
+                0, 0, 0
+        };
+        ByteBuffer buffer = ByteBuffer.allocate(values.length * 4).order(ByteOrder.nativeOrder());
+        for (int value : values) {
+            buffer.putInt(value);
+        }
+        return buffer.array();
+    }
+
+    private static Entry entry(String siteName, String description, String observations) {
+        return new Entry(-1, siteName, "01/01/2024", "", description, "Herbe", observations, "Bon état");
+    }
+}
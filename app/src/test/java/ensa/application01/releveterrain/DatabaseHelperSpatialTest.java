@@ -0,0 +1,126 @@
+/**
+ * DatabaseHelperSpatialTest - Tests de la recherche des entrées proches d'une position.
+ */
+package ensa.application01.releveterrain;
+
+import android.content.Context;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Vérifie que {@link DatabaseHelper#getEntriesWithinRadius(double, double, double, int)} applique la limite
+ * après le filtre et le tri par distance : les entrées retournées sont les plus proches, et non les plus récentes.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class DatabaseHelperSpatialTest {
+
+    private static final String DATABASE_NAME = "test-spatial.db";
+
+    /** Centre de la recherche. */
+    private static final double LATITUDE = 34.0;
+    private static final double LONGITUDE = -6.8;
+
+    /** Rayon terrestre moyen utilisé par {@link GeoGrid}, en mètres. */
+    private static final double EARTH_RADIUS_METERS = 6_371_008.8;
+
+    private Context context;
+    private DatabaseHelper databaseHelper;
+
+    @Before
+    public void setUp() {
+        context = ApplicationProvider.getApplicationContext();
+        databaseHelper = BenchmarkCases.openFresh(context, DATABASE_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        databaseHelper.close();
+        context.deleteDatabase(DATABASE_NAME);
+    }
+
+    @Test
+    public void limitKeepsTheNearestEntriesRatherThanTheNewest() {
+        List<Entry> entries = new ArrayList<>();
+        // Les plus proches sont insérées d'abord : ce sont les plus anciennes
+        entries.add(at("Proche 100 m", 100));
+        entries.add(at("Proche 300 m", 300));
+        for (int i = 0; i < 20; i++) {
+            entries.add(at("Loin " + i, 5_000 + i * 100));
+        }
+        // Dans le rectangle englobant mais hors du cercle : coin du rectangle
+        entries.add(at("Coin", 9_000, 9_000));
+        databaseHelper.insertEntries(entries, 100);
+
+        List<Entry> nearest = databaseHelper.getEntriesWithinRadius(LATITUDE, LONGITUDE, 10_000, 3);
+
+        assertEquals(3, nearest.size());
+        assertEquals("Proche 100 m", nearest.get(0).getSiteName());
+        assertEquals("Proche 300 m", nearest.get(1).getSiteName());
+        assertEquals("Loin 0", nearest.get(2).getSiteName());
+    }
+
+    @Test
+    public void entriesOutsideTheCircleAreExcluded() {
+        List<Entry> entries = new ArrayList<>();
+        entries.add(at("Dedans", 900));
+        entries.add(at("Coin", 900, 900));
+        entries.add(at("Dehors", 1_500));
+        databaseHelper.insertEntries(entries, 100);
+
+        List<Entry> found = databaseHelper.getEntriesWithinRadius(LATITUDE, LONGITUDE, 1_000, 10);
+
+        assertEquals(1, found.size());
+        assertEquals("Dedans", found.get(0).getSiteName());
+    }
+
+    @Test
+    public void resultsAreSortedByDistance() {
+        List<Entry> entries = new ArrayList<>();
+        for (int i = 10; i > 0; i--) {
+            entries.add(at("Site " + i, i * 50));
+        }
+        databaseHelper.insertEntries(entries, 100);
+
+        List<Entry> found = databaseHelper.getEntriesWithinRadius(LATITUDE, LONGITUDE, 1_000, 100);
+
+        assertEquals(10, found.size());
+        double previous = -1;
+        for (Entry entry : found) {
+            double distance = GeoGrid.distanceMeters(LATITUDE, LONGITUDE, entry.getLatitude(), entry.getLongitude());
+            assertTrue(distance >= previous);
+            previous = distance;
+        }
+    }
+
+    /**
+     * @return Une entrée située à `northMeters` au nord du centre.
+     */
+    private static Entry at(String siteName, double northMeters) {
+        return at(siteName, northMeters, 0);
+    }
+
+    /**
+     * @return Une entrée décalée du centre de `northMeters` vers le nord et de `eastMeters` vers l'est.
+     */
+    private static Entry at(String siteName, double northMeters, double eastMeters) {
+        double metersPerDegree = Math.toRadians(EARTH_RADIUS_METERS);
+        double latitude = LATITUDE + northMeters / metersPerDegree;
+        double longitude = LONGITUDE + eastMeters / (metersPerDegree * Math.cos(Math.toRadians(LATITUDE)));
+        Entry entry = new Entry(-1, siteName, "01/01/2024", new Coordinates(latitude, longitude).format(),
+                "", "Herbe", "", "Bon état");
+        entry.setLocation(latitude, longitude);
+        return entry;
+    }
+}
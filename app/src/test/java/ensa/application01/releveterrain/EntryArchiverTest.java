@@ -0,0 +1,127 @@
+/**
+ * EntryArchiverTest - Tests de l'archivage des relevés anciens et du mode de compaction de la base.
+ */
+package ensa.application01.releveterrain;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteException;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Vérifie {@link EntryArchiver} : un lot archivé quitte la base avec ses photos, et un échec de la suppression
+ * remet les photos en place sans laisser de fichier d'archive. Vérifie aussi qu'une base neuve est créée
+ * en mode `auto_vacuum = INCREMENTAL`, sans attendre le `VACUUM` complet de la maintenance.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class EntryArchiverTest {
+
+    private static final String DATABASE_NAME = "test-archive.db";
+
+    /** Nombre d'entrées de la base de test. */
+    private static final int ENTRIES = 3;
+
+    private Context context;
+    private DatabaseHelper databaseHelper;
+    private AttachmentStore attachmentStore;
+    private Attachment photo;
+    private File archiveDir;
+
+    @Before
+    public void setUp() throws IOException {
+        context = ApplicationProvider.getApplicationContext();
+        databaseHelper = BenchmarkCases.openFresh(context, DATABASE_NAME);
+        databaseHelper.insertEntries(new BenchmarkData().generate(ENTRIES), 100);
+        // Entrées déjà synchronisées : elles peuvent être archivées
+        databaseHelper.acknowledgeChanges(Long.MAX_VALUE);
+        attachmentStore = new AttachmentStore(context);
+        photo = new Attachment(-1, 1, "photo-test.jpg", 4, 3, 3, System.currentTimeMillis());
+        File file = attachmentStore.getFile(photo);
+        assertTrue(file.getParentFile().isDirectory() || file.getParentFile().mkdirs());
+        try (FileOutputStream output = new FileOutputStream(file)) {
+            output.write(new byte[]{1, 2, 3});
+        }
+        databaseHelper.insertAttachment(photo);
+        archiveDir = new File(context.getCacheDir(), "archive-test");
+    }
+
+    @After
+    public void tearDown() {
+        databaseHelper.close();
+        context.deleteDatabase(DATABASE_NAME);
+        attachmentStore.getFile(photo).delete();
+        deleteRecursively(archiveDir);
+    }
+
+    @Test
+    public void archivedBatchLeavesTheDatabaseWithItsPhotos() throws IOException {
+        List<Long> archived = new EntryArchiver(databaseHelper, attachmentStore, archiveDir).archiveBatch(Long.MAX_VALUE);
+
+        assertEquals(Arrays.asList(1L, 2L, 3L), archived);
+        assertTrue(databaseHelper.getEntriesFrom(0, 10).isEmpty());
+        assertFalse(attachmentStore.getFile(photo).exists());
+        assertTrue(new File(new File(archiveDir, "photos"), photo.getFileName()).isFile());
+        assertEquals(1, archiveFiles().length);
+        // L'archivage n'est pas une suppression à transmettre au serveur
+        assertEquals(0, databaseHelper.countPendingChanges());
+    }
+
+    @Test
+    public void failedDeleteRestoresPhotosAndDiscardsTheArchive() throws IOException {
+        databaseHelper.getWritableDatabase().execSQL("CREATE TRIGGER reject_delete BEFORE DELETE ON entries" +
+                " BEGIN SELECT RAISE(ABORT, 'suppression refusée'); END");
+
+        try {
+            new EntryArchiver(databaseHelper, attachmentStore, archiveDir).archiveBatch(Long.MAX_VALUE);
+            fail("L'échec de la suppression doit être signalé");
+        } catch (SQLiteException expected) {
+            // Attendu
+        }
+
+        assertEquals(ENTRIES, databaseHelper.getEntriesFrom(0, 10).size());
+        assertTrue(attachmentStore.getFile(photo).isFile());
+        assertFalse(new File(new File(archiveDir, "photos"), photo.getFileName()).exists());
+        assertArrayEquals(new File[0], archiveFiles());
+    }
+
+    @Test
+    public void freshDatabaseUsesIncrementalVacuum() {
+        assertTrue(databaseHelper.isIncrementalVacuumEnabled());
+    }
+
+    /**
+     * @return Les fichiers d'archive du répertoire de test, finaux ou temporaires.
+     */
+    private File[] archiveFiles() {
+        File[] files = archiveDir.listFiles((dir, name) -> name.startsWith("releves-"));
+        return files != null ? files : new File[0];
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,194 @@
+/**
+ * EntryCacheTest - Tests des règles de mise à jour et d'invalidation du cache des relevés.
+ */
+package ensa.application01.releveterrain;
+
+import android.content.ComponentCallbacks2;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Vérifie {@link EntryCache} :
+ * <ul>
+ *     <li>une lecture concurrente d'une écriture ne remet en cache ni une entrée périmée, ni une entrée supprimée,
+ *     ni une première page ou des effectifs dépassés ;</li>
+ *     <li>une insertion complète la première page et les effectifs, une modification ou une suppression les corrige
+ *     et oublie les effectifs ;</li>
+ *     <li>les compteurs de succès et d'échecs tiennent compte des entrées comme des synthèses.</li>
+ * </ul>
+ */
+@RunWith(RobolectricTestRunner.class)
+public class EntryCacheTest {
+
+    private EntryCache cache;
+
+    @Before
+    public void setUp() {
+        cache = new EntryCache(ApplicationProvider.getApplicationContext());
+    }
+
+    @Test
+    public void readRacingWithAnUpdateDoesNotCacheTheStaleEntry() {
+        long version = cache.getVersion();
+        Entry stale = entry(1, "Rocheux");
+        // La modification est validée pendant la lecture
+        cache.onUpdated(entry(1, "Sableux"));
+
+        cache.putAll(Collections.singletonList(stale), version);
+
+        assertEquals("Sableux", cache.get(1).getTerrainType());
+    }
+
+    @Test
+    public void readRacingWithADeleteDoesNotResurrectTheEntry() {
+        long version = cache.getVersion();
+        Entry deleted = entry(1, "Rocheux");
+        cache.onDeleted(Collections.singletonList(1L));
+
+        cache.putAll(Collections.singletonList(deleted), version);
+
+        assertNull(cache.get(1));
+    }
+
+    @Test
+    public void readWithoutConcurrentWriteIsCached() {
+        Entry loaded = entry(1, "Rocheux");
+
+        cache.putAll(Collections.singletonList(loaded), cache.getVersion());
+
+        assertSame(loaded, cache.get(1));
+    }
+
+    @Test
+    public void staleHeadIsDiscardedWithItsEntries() {
+        long version = cache.getVersion();
+        List<Entry> page = Arrays.asList(entry(2, "Rocheux"), entry(1, "Rocheux"));
+        cache.onDeleted(Collections.singletonList(2L));
+
+        cache.putHead(page, true, version);
+
+        assertNull(cache.getHead(2));
+        assertNull(cache.get(2));
+        assertNull(cache.get(1));
+    }
+
+    @Test
+    public void staleCountsAreDiscarded() {
+        long version = cache.getVersion();
+        cache.onInserted(entry(1, "Rocheux"));
+
+        cache.putCounts(counts("Rocheux", 0), counts("Bon", 0), version);
+
+        assertNull(cache.getCountsByTerrainType());
+    }
+
+    @Test
+    public void insertPrependsToTheHeadAndIncrementsTheCounts() {
+        cache.putHead(Collections.singletonList(entry(1, "Rocheux")), true, cache.getVersion());
+        cache.putCounts(counts("Rocheux", 1), counts("Bon", 1), cache.getVersion());
+
+        cache.onInserted(entry(2, "Sableux"));
+
+        List<Entry> head = cache.getHead(10);
+        assertEquals(2, head.size());
+        assertEquals(2, head.get(0).getId());
+        assertEquals(Integer.valueOf(1), cache.getCountsByTerrainType().get("Sableux"));
+        assertEquals(Integer.valueOf(1), cache.getCountsByTerrainType().get("Rocheux"));
+        assertEquals(Integer.valueOf(2), cache.getCountsByCondition().get("Bon"));
+    }
+
+    @Test
+    public void updateReplacesTheEntryInTheHeadAndForgetsTheCounts() {
+        cache.putHead(Arrays.asList(entry(2, "Rocheux"), entry(1, "Rocheux")), true, cache.getVersion());
+        cache.putCounts(counts("Rocheux", 2), counts("Bon", 2), cache.getVersion());
+
+        cache.onUpdated(entry(1, "Sableux"));
+
+        assertEquals("Sableux", cache.getHead(2).get(1).getTerrainType());
+        assertEquals("Sableux", cache.get(1).getTerrainType());
+        assertNull(cache.getCountsByTerrainType());
+        assertNull(cache.getCountsByCondition());
+    }
+
+    @Test
+    public void deleteRemovesTheEntryEverywhere() {
+        cache.putHead(Arrays.asList(entry(2, "Rocheux"), entry(1, "Rocheux")), true, cache.getVersion());
+
+        cache.onDeleted(Collections.singletonList(2L));
+
+        List<Entry> head = cache.getHead(10);
+        assertEquals(1, head.size());
+        assertEquals(1, head.get(0).getId());
+        assertNull(cache.get(2));
+    }
+
+    @Test
+    public void summaryInvalidationKeepsDecodedEntries() {
+        cache.putHead(Collections.singletonList(entry(1, "Rocheux")), true, cache.getVersion());
+
+        cache.invalidateSummaries();
+
+        assertNull(cache.getHead(1));
+        assertEquals(1, cache.get(1).getId());
+    }
+
+    @Test
+    public void incompleteHeadShorterThanTheRequestIsAMiss() {
+        cache.putHead(Collections.singletonList(entry(1, "Rocheux")), false, cache.getVersion());
+
+        assertNull(cache.getHead(2));
+        assertEquals(1, cache.getHead(1).size());
+    }
+
+    @Test
+    public void hitAndMissCountersCoverEntriesAndSummaries() {
+        cache.get(1);
+        cache.getHead(10);
+        cache.recordCountsLookup(false);
+        assertEquals(0, cache.getHitCount());
+        assertEquals(3, cache.getMissCount());
+
+        cache.putHead(Collections.singletonList(entry(1, "Rocheux")), true, cache.getVersion());
+        cache.get(1);
+        cache.getHead(10);
+        cache.recordCountsLookup(true);
+
+        assertEquals(3, cache.getHitCount());
+        assertEquals(3, cache.getMissCount());
+    }
+
+    @Test
+    public void backgroundTrimEmptiesTheCache() {
+        cache.putHead(Collections.singletonList(entry(1, "Rocheux")), true, cache.getVersion());
+
+        cache.onTrimMemory(ComponentCallbacks2.TRIM_MEMORY_BACKGROUND);
+
+        assertEquals(0, cache.getSizeBytes());
+        assertNull(cache.getHead(1));
+    }
+
+    private static Entry entry(long id, String terrainType) {
+        return new Entry(id, "Site " + id, "15/06/2024", "34.0, -6.8", "Affleurement", terrainType, "RAS", "Bon");
+    }
+
+    private static Map<String, Integer> counts(String key, int count) {
+        Map<String, Integer> counts = new HashMap<>();
+        counts.put(key, count);
+        return counts;
+    }
+}
@@ -0,0 +1,248 @@
+/**
+ * EntryExporterTest - Tests de l'export CSV et GeoJSON des relevés.
+ */
+package ensa.application01.releveterrain;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Vérifie {@link EntryExporter} : échappement CSV et GeoJSON, géométrie nulle, compression gzip,
+ * reprise de l'export incrémental et mémoire constante sur un grand nombre de lignes.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class EntryExporterTest {
+
+    private static final String DATABASE_NAME = "test-export.db";
+
+    /** Texte contenant tous les caractères à protéger. */
+    private static final String TRICKY = "Virgule, \"guillemets\"\r\net saut de ligne\t\\ fin\u0001";
+
+    private Context context;
+    private DatabaseHelper databaseHelper;
+    private SharedPreferences preferences;
+    private File dir;
+
+    @Before
+    public void setUp() {
+        context = ApplicationProvider.getApplicationContext();
+        databaseHelper = BenchmarkCases.openFresh(context, DATABASE_NAME);
+        preferences = context.getSharedPreferences("test-export", Context.MODE_PRIVATE);
+        preferences.edit().clear().commit();
+        dir = new File(context.getCacheDir(), "export-test");
+        assertTrue(dir.isDirectory() || dir.mkdirs());
+    }
+
+    @After
+    public void tearDown() {
+        databaseHelper.close();
+        context.deleteDatabase(DATABASE_NAME);
+        for (File file : dir.listFiles()) {
+            file.delete();
+        }
+    }
+
+    @Test
+    public void csvQuotesCommasQuotesAndNewlines() throws Exception {
+        databaseHelper.insertEntries(Arrays.asList(entry("Site, simple", TRICKY, true)), 100);
+        File target = new File(dir, "releves.csv");
+
+        assertEquals(1, new EntryExporter(databaseHelper, preferences).export(target, EntryExporter.Format.CSV, false, false));
+
+        String csv = read(target, false);
+        assertTrue(csv.startsWith("id,site_name,"));
+        assertTrue(csv.contains(",\"Site, simple\","));
+        assertTrue(csv.contains(",\"Virgule, \"\"guillemets\"\"\r\net saut de ligne\t\\ fin\u0001\","));
+        // Les champs sans caractère spécial ne sont pas entourés de guillemets
+        assertTrue(csv.contains(",Herbe,"));
+        assertTrue(csv.endsWith("\r\n"));
+    }
+
+    @Test
+    public void geoJsonEscapesStringsAndWritesNullGeometry() throws Exception {
+        databaseHelper.insertEntries(Arrays.asList(entry("Localisé", TRICKY, true), entry("Sans position", "", false)), 100);
+        File target = new File(dir, "releves.geojson");
+
+        new EntryExporter(databaseHelper, preferences).export(target, EntryExporter.Format.GEOJSON, false, false);
+
+        JSONObject collection = new JSONObject(read(target, false));
+        assertEquals("FeatureCollection", collection.getString("type"));
+        JSONArray features = collection.getJSONArray("features");
+        assertEquals(2, features.length());
+        JSONObject located = features.getJSONObject(0);
+        assertEquals(TRICKY, located.getJSONObject("properties").getString("description"));
+        JSONArray point = located.getJSONObject("geometry").getJSONArray("coordinates");
+        assertEquals(-6.8, point.getDouble(0), 1e-7);
+        assertEquals(34.0, point.getDouble(1), 1e-7);
+        assertTrue(features.getJSONObject(1).isNull("geometry"));
+    }
+
+    @Test
+    public void gzipExportDecompressesToTheSameContent() throws Exception {
+        databaseHelper.insertEntries(new BenchmarkData().generate(2_500), DatabaseHelper.DEFAULT_BATCH_SIZE);
+        EntryExporter exporter = new EntryExporter(databaseHelper, preferences);
+        File plain = new File(dir, "releves.csv");
+        File compressed = new File(dir, "releves.csv.gz");
+
+        assertEquals(2_500, exporter.export(plain, EntryExporter.Format.CSV, false, false));
+        assertEquals(2_500, exporter.export(compressed, EntryExporter.Format.CSV, true, false));
+
+        assertEquals(read(plain, false), read(compressed, true));
+        assertTrue(compressed.length() < plain.length());
+        assertFalse(new File(dir, "releves.csv.gz.tmp").exists());
+    }
+
+    @Test
+    public void incrementalExportResumesAfterTheLastExportedId() throws Exception {
+        BenchmarkData data = new BenchmarkData();
+        databaseHelper.insertEntries(data.generate(3), 100);
+        EntryExporter exporter = new EntryExporter(databaseHelper, preferences);
+
+        assertEquals(3, exporter.export(new File(dir, "1.csv"), EntryExporter.Format.CSV, false, true));
+        databaseHelper.insertEntries(data.generate(2), 100);
+        File second = new File(dir, "2.csv");
+        assertEquals(2, exporter.export(second, EntryExporter.Format.CSV, false, true));
+        assertEquals(Arrays.asList("4", "5"), ids(read(second, false)));
+
+        // Rien de nouveau : fichier réduit à l'en-tête
+        assertEquals(0, exporter.export(new File(dir, "3.csv"), EntryExporter.Format.CSV, false, true));
+        // La position est propre à chaque format, et un export complet l'ignore
+        assertEquals(5, exporter.export(new File(dir, "1.geojson"), EntryExporter.Format.GEOJSON, false, true));
+        assertEquals(5, exporter.export(new File(dir, "tout.csv"), EntryExporter.Format.CSV, false, false));
+    }
+
+    @Test
+    public void failedExportDoesNotAdvanceTheIncrementalPosition() throws Exception {
+        databaseHelper.insertEntries(new BenchmarkData().generate(3), 100);
+        EntryExporter exporter = new EntryExporter(databaseHelper, preferences);
+
+        try {
+            exporter.export(new File(new File(dir, "absent"), "releves.csv"), EntryExporter.Format.CSV, false, true);
+            fail("Le répertoire absent doit faire échouer l'export");
+        } catch (IOException expected) {
+            // Attendu
+        }
+
+        assertEquals(3, exporter.export(new File(dir, "releves.csv"), EntryExporter.Format.CSV, false, true));
+    }
+
+    @Test
+    public void memoryStaysBoundedOnALargeTable() throws Exception {
+        int windows = 100;
+        SyntheticTable table = new SyntheticTable(context, windows * 1_000);
+        File target = new File(dir, "grand.csv.gz");
+        try {
+            int count = new EntryExporter(table, preferences).export(target, EntryExporter.Format.CSV, true, false);
+
+            assertEquals(windows * 1_000, count);
+            // Environ 100 Mo de texte produit : une implémentation qui garderait les lignes dépasserait largement cette marge
+            long growth = table.usedAtEnd - table.usedAfterWarmup;
+            assertTrue("Mémoire conservée pendant l'export : " + growth / 1024 + " Kio", growth < 16L * 1024 * 1024);
+        } finally {
+            table.close();
+        }
+    }
+
+    /**
+     * Table simulée servant des fenêtres d'entrées volumineuses générées à la demande, et relevant la mémoire occupée
+     * (après un ramasse-miettes) au début et à la fin de l'export.
+     */
+    private static class SyntheticTable extends DatabaseHelper {
+        private final int rows;
+        private final String description;
+        private int windows;
+        long usedAfterWarmup;
+        long usedAtEnd;
+
+        SyntheticTable(Context context, int rows) {
+            super(context, DATABASE_NAME);
+            this.rows = rows;
+            char[] text = new char[1_000];
+            Arrays.fill(text, 'x');
+            description = new String(text);
+        }
+
+        @Override
+        public List<Entry> getEntriesFrom(long afterId, int limit) {
+            windows++;
+            if (windows == 5) {
+                usedAfterWarmup = usedMemory();
+            }
+            List<Entry> window = new ArrayList<>(limit);
+            for (long id = afterId + 1; id <= Math.min(rows, afterId + limit); id++) {
+                // Texte distinct pour chaque ligne : rien n'est partagé entre les fenêtres
+                window.add(new Entry(id, "Site " + id, "01/01/2024", "", description + id, "Herbe",
+                        new String(description.toCharArray()), "Bon état"));
+            }
+            if (window.isEmpty() || window.get(window.size() - 1).getId() == rows) {
+                usedAtEnd = usedMemory();
+            }
+            return window;
+        }
+
+        private static long usedMemory() {
+            Runtime runtime = Runtime.getRuntime();
+            System.gc();
+            return runtime.totalMemory() - runtime.freeMemory();
+        }
+    }
+
+    private static Entry entry(String siteName, String description, boolean located) {
+        Entry entry = new Entry(-1, siteName, "01/01/2024", located ? "34.0, -6.8" : "", description, "Herbe",
+                "RAS", "Bon état");
+        if (located) {
+            entry.setLocation(34.0, -6.8);
+        }
+        return entry;
+    }
+
+    /**
+     * @return Les identifiants des lignes d'un CSV sans champ multiligne.
+     */
+    private static List<String> ids(String csv) {
+        List<String> ids = new ArrayList<>();
+        String[] lines = csv.split("\r\n");
+        for (int i = 1; i < lines.length; i++) {
+            ids.add(lines[i].substring(0, lines[i].indexOf(',')));
+        }
+        return ids;
+    }
+
+    private static String read(File file, boolean gzip) throws IOException {
+        try (InputStream input = gzip ? new GZIPInputStream(new FileInputStream(file)) : new FileInputStream(file)) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                bytes.write(buffer, 0, read);
+            }
+            return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+}
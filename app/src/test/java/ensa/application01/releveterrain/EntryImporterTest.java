@@ -0,0 +1,136 @@
+/**
+ * EntryImporterTest - Tests du découpage de l'import en lots.
+ */
+package ensa.application01.releveterrain;
+
+import android.content.Context;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Vérifie que {@link EntryImporter} remet les entrées à l'écrivain lot par lot, dans l'ordre du fichier,
+ * et cumule correctement les bilans des lots.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class EntryImporterTest {
+
+    private static final String SOURCE_NAME = "test-import-source.db";
+    private static final String TARGET_NAME = "test-import-target.db";
+
+    /** Lignes du fichier importé : deux lots complets et un lot partiel. */
+    private static final int ROWS = 2 * EntryImporter.BATCH_SIZE + 500;
+
+    private Context context;
+    private DatabaseHelper target;
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        context = ApplicationProvider.getApplicationContext();
+        DatabaseHelper source = BenchmarkCases.openFresh(context, SOURCE_NAME);
+        try {
+            source.insertEntries(new BenchmarkData().generate(ROWS), DatabaseHelper.DEFAULT_BATCH_SIZE);
+            file = new File(context.getCacheDir(), "import.csv.gz");
+            new EntryExporter(source, context.getSharedPreferences("test-import", Context.MODE_PRIVATE))
+                    .export(file, EntryExporter.Format.CSV, true, false);
+        } finally {
+            source.close();
+            context.deleteDatabase(SOURCE_NAME);
+        }
+        target = BenchmarkCases.openFresh(context, TARGET_NAME);
+    }
+
+    @After
+    public void tearDown() {
+        target.close();
+        context.deleteDatabase(TARGET_NAME);
+        file.delete();
+    }
+
+    @Test
+    public void entriesAreHandedOverBatchByBatch() throws IOException {
+        List<Integer> sizes = new ArrayList<>();
+        List<String> firstSites = new ArrayList<>();
+        EntryImporter importer = new EntryImporter(batch -> {
+            sizes.add(batch.size());
+            firstSites.add(batch.get(0).getSiteName());
+            return target.insertEntries(batch, batch.size(), true);
+        });
+
+        EntryImporter.Summary summary = importFile(importer);
+
+        assertEquals(Arrays.asList(EntryImporter.BATCH_SIZE, EntryImporter.BATCH_SIZE, 500), sizes);
+        assertEquals(Arrays.asList("Site 0", "Site " + EntryImporter.BATCH_SIZE, "Site " + 2 * EntryImporter.BATCH_SIZE),
+                firstSites);
+        assertEquals(ROWS, summary.getRowsRead());
+        assertEquals(ROWS, summary.getResult().getInsertedCount());
+        assertEquals(1, summary.getResult().getFirstInsertedId());
+        assertEquals(ROWS, summary.getResult().getLastInsertedId());
+    }
+
+    @Test
+    public void reimportSkipsEveryRow() throws IOException {
+        importFile(new EntryImporter(target));
+
+        EntryImporter.Summary summary = importFile(new EntryImporter(target));
+
+        assertEquals(0, summary.getResult().getInsertedCount());
+        assertEquals(ROWS, summary.getResult().getSkippedCount());
+    }
+
+    @Test
+    public void failurePositionsAreRelativeToTheWholeFile() throws IOException {
+        int rejected = EntryImporter.BATCH_SIZE + 7;
+        target.getWritableDatabase().execSQL("CREATE TRIGGER reject_site BEFORE INSERT ON entries" +
+                " WHEN NEW.site_name = 'Site " + rejected + "' BEGIN SELECT RAISE(ABORT, 'site refusé'); END");
+
+        EntryImporter.Summary summary = importFile(new EntryImporter(target));
+
+        assertEquals(ROWS - 1, summary.getResult().getInsertedCount());
+        assertEquals(1, summary.getResult().getFailures().size());
+        assertEquals(rejected, summary.getResult().getFailures().get(0).getIndex());
+    }
+
+    @Test
+    public void writerFailureStopsTheImportAndKeepsEarlierBatches() {
+        EntryImporter importer = new EntryImporter(batch -> {
+            if (target.getEntriesFrom(0, Integer.MAX_VALUE).size() >= EntryImporter.BATCH_SIZE) {
+                throw new IllegalStateException("Écrivain arrêté");
+            }
+            return target.insertEntries(batch, batch.size(), true);
+        });
+
+        try {
+            importFile(importer);
+            fail("L'erreur de l'écrivain doit interrompre l'import");
+        } catch (IllegalStateException | IOException expected) {
+            assertTrue(expected.getMessage().contains("Écrivain arrêté"));
+        }
+
+        assertEquals(EntryImporter.BATCH_SIZE, target.getEntriesFrom(0, Integer.MAX_VALUE).size());
+    }
+
+    private EntryImporter.Summary importFile(EntryImporter importer) throws IOException {
+        try (InputStream input = new FileInputStream(file)) {
+            return importer.importFrom(input, file.length(), null);
+        }
+    }
+}
@@ -0,0 +1,183 @@
+/**
+ * FormPlanTest - Tests de la compilation et des règles de validation des modèles de formulaire.
+ */
+package ensa.application01.releveterrain;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Vérifie {@link FormPlan} : refus des définitions invalides (identifiants et clés injectables en SQL, expressions
+ * régulières, règles inconnues...), chaque règle de validation, l'encodage des champs propres, et le refus par
+ * {@link FormTemplates} d'une clé déclarée avec des types différents par deux modèles.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class FormPlanTest {
+
+    @Test
+    public void compilesFieldsInOrderAndSeparatesCoreKeys() throws IOException {
+        FormPlan plan = compile("berge", "{\"key\": \"site_name\", \"label\": \"Nom du site\", \"required\": true}",
+                "{\"key\": \"hauteur_eau_cm\", \"type\": \"number\", \"indexed\": true}");
+
+        assertEquals("berge", plan.getId());
+        assertEquals(2, plan.size());
+        assertEquals(1, plan.indexOf("hauteur_eau_cm"));
+        assertEquals(-1, plan.indexOf("inconnu"));
+        assertTrue(plan.get(0).isCore());
+        assertFalse(plan.get(1).isCore());
+        assertTrue(plan.get(1).isIndexed());
+        assertEquals(FormPlan.Type.NUMBER, plan.get(1).getType());
+        // Sans libellé, la clé est affichée
+        assertEquals("hauteur_eau_cm", plan.get(1).getLabel());
+    }
+
+    @Test
+    public void rejectsKeysThatAreNotPlainIdentifiers() {
+        for (String key : Arrays.asList("Hauteur", "1er", "hauteur-eau", "a') OR 1=1 --", "x$.y", "",
+                "cle_beaucoup_trop_longue_pour_un_index_sql")) {
+            assertRejected("{\"key\": \"" + key.replace("\"", "\\\"") + "\"}");
+        }
+        assertRejected("{\"label\": \"Sans clé\"}");
+    }
+
+    @Test
+    public void rejectsInvalidTemplateIdentifier() {
+        try {
+            compile("Berge;DROP", "{\"key\": \"station\"}");
+            fail("Identifiant de modèle invalide accepté");
+        } catch (IOException expected) {
+            // Attendu
+        }
+    }
+
+    @Test
+    public void rejectsInvalidPatternUnknownTypeAndUnknownRule() {
+        assertRejected("{\"key\": \"station\", \"pattern\": \"[A-Z\"}");
+        assertRejected("{\"key\": \"station\", \"type\": \"couleur\"}");
+        assertRejected("{\"key\": \"station\", \"maximum\": 3}");
+    }
+
+    @Test
+    public void rejectsDuplicateKeysChoiceWithoutOptionsAndIndexedCoreField() {
+        assertRejected("{\"key\": \"station\"}", "{\"key\": \"station\"}");
+        assertRejected("{\"key\": \"erosion\", \"type\": \"choice\"}");
+        assertRejected("{\"key\": \"site_name\", \"indexed\": true}");
+    }
+
+    @Test
+    public void requiredFieldUsesItsCustomMessage() throws IOException {
+        FormPlan.Field field = field("{\"key\": \"site_name\", \"required\": true, \"message\": \"Nom obligatoire\"}");
+
+        assertEquals("Nom obligatoire", field.validate(null));
+        assertEquals("Nom obligatoire", field.validate("   "));
+        assertNull(field.validate("Berge nord"));
+        // Un champ facultatif laissé vide est valide
+        assertNull(field("{\"key\": \"observations\"}").validate(""));
+    }
+
+    @Test
+    public void lengthIsMeasuredWithoutSurroundingSpaces() throws IOException {
+        FormPlan.Field field = field("{\"key\": \"station\", \"min_length\": 3, \"max_length\": 5}");
+
+        assertEquals("Entre 3 et 5 caractères", field.validate("  ab  "));
+        assertNull(field.validate("  abc  "));
+        assertNull(field.validate("abcde"));
+        assertEquals("Entre 3 et 5 caractères", field.validate("abcdef"));
+        assertEquals("Au moins 2 caractères", field("{\"key\": \"station\", \"min_length\": 2}").validate("a"));
+    }
+
+    @Test
+    public void numberMustParseAndStayInRange() throws IOException {
+        FormPlan.Field field = field("{\"key\": \"hauteur_eau_cm\", \"type\": \"number\", \"min\": 0, \"max\": 1000}");
+
+        assertNull(field.validate("12"));
+        assertNull(field.validate(" 12,5 "));
+        assertNull(field.validate("1000"));
+        assertEquals("Nombre attendu", field.validate("12 cm"));
+        assertEquals("Nombre attendu", field.validate("1e3"));
+        assertEquals("Valeur attendue entre 0 et 1000", field.validate("-1"));
+        assertEquals("Valeur attendue entre 0 et 1000", field.validate("1000.5"));
+    }
+
+    @Test
+    public void choiceMustBeOneOfTheOptions() throws IOException {
+        FormPlan.Field field = field("{\"key\": \"erosion\", \"type\": \"choice\", \"options\": [\"Faible\", \"Forte\"]}");
+
+        assertNull(field.validate("Forte"));
+        assertNull(field.validate(" Forte "));
+        assertEquals("Valeur non prévue", field.validate("forte"));
+        assertEquals("Valeur non prévue", field.validate("Fort"));
+    }
+
+    @Test
+    public void patternIsOnlyCheckedOnSave() throws IOException {
+        FormPlan.Field field = field("{\"key\": \"station\", \"pattern\": \"[A-Z]{2}-[0-9]{3}\"}");
+
+        assertNull(field.validateWhileTyping("BR-0"));
+        assertEquals("Format invalide", field.validate("BR-0"));
+        assertNull(field.validate(" BR-042 "));
+    }
+
+    @Test
+    public void extraValuesKeepNumbersAsJsonNumbersAndSkipCoreFields() throws IOException {
+        FormPlan plan = compile("berge", "{\"key\": \"site_name\"}",
+                "{\"key\": \"hauteur_eau_cm\", \"type\": \"number\"}",
+                "{\"key\": \"station\"}", "{\"key\": \"erosion\", \"type\": \"choice\", \"options\": [\"Forte\"]}");
+
+        String json = plan.encodeExtraValues(new CharSequence[]{"Berge nord", "12,5", " BR-042 ", ""});
+
+        assertEquals("{\"hauteur_eau_cm\":12.5,\"station\":\"BR-042\"}", json);
+        Map<String, String> decoded = FormPlan.decodeExtraValues(json);
+        assertEquals("12.5", decoded.get("hauteur_eau_cm"));
+        assertEquals("BR-042", decoded.get("station"));
+        assertNull(plan.encodeExtraValues(new CharSequence[]{"Berge nord", null, " ", null}));
+        assertTrue(FormPlan.decodeExtraValues("{illisible").isEmpty());
+    }
+
+    @Test
+    public void sameKeyWithDifferentTypesInTwoTemplatesIsRejected() throws IOException {
+        FormPlan releve = compile("releve", "{\"key\": \"site_name\"}", "{\"key\": \"profondeur\", \"type\": \"number\"}");
+        FormPlan berge = compile("berge", "{\"key\": \"site_name\", \"type\": \"date\"}", "{\"key\": \"profondeur\"}");
+
+        try {
+            FormTemplates.checkFieldTypes(Arrays.asList(releve, berge));
+            fail("Types contradictoires acceptés");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage().contains("profondeur"));
+        }
+        // Les colonnes fixes ne sont pas concernées, et un même type est accepté
+        FormPlan lac = compile("lac", "{\"key\": \"profondeur\", \"type\": \"number\"}");
+        FormTemplates.checkFieldTypes(Arrays.asList(releve, lac));
+    }
+
+    private static FormPlan compile(String id, String... fields) throws IOException {
+        String json = "{\"id\": \"" + id + "\", \"fields\": [" + String.join(", ", fields) + "]}";
+        return FormPlan.compile(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static FormPlan.Field field(String definition) throws IOException {
+        return compile("test", definition).get(0);
+    }
+
+    private static void assertRejected(String... fields) {
+        try {
+            compile("test", fields);
+            fail("Définition invalide acceptée : " + String.join(", ", fields));
+        } catch (IOException expected) {
+            // Attendu
+        }
+    }
+}
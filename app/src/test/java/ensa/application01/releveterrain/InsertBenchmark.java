@@ -0,0 +1,80 @@
+/**
+ * InsertBenchmark - Banc JMH du débit d'insertion, ligne à ligne et par lots.
+ */
+package ensa.application01.releveterrain;
+
+import android.content.Context;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Débit d'insertion en lignes par seconde : {@link DatabaseHelper#insertEntry(Entry)} (une transaction implicite par ligne)
+ * contre {@link DatabaseHelper#insertEntries(Iterable, int)} (requête précompilée, une transaction par lot),
+ * et surcoût de la recherche des doublons ({@link DatabaseHelper#insertEntries(Iterable, int, boolean)}).
+ * La base est recréée à chaque itération, pour que les deux variantes insèrent dans une table de même taille.
+ * Lancé par {@link BenchmarkSuiteTest}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class InsertBenchmark {
+
+    /** Nom de la base dédiée à ce banc. */
+    private static final String DATABASE_NAME = "benchmark-insert.db";
+
+    private Context context;
+    private DatabaseHelper databaseHelper;
+    private List<Entry> entries;
+
+    @Setup(Level.Trial)
+    public void generate() {
+        context = RuntimeEnvironment.getApplication();
+        entries = new BenchmarkData().generate(BenchmarkCases.INSERT_ROWS);
+    }
+
+    @Setup(Level.Iteration)
+    public void open() {
+        databaseHelper = BenchmarkCases.openFresh(context, DATABASE_NAME);
+    }
+
+    @TearDown(Level.Iteration)
+    public void close() {
+        databaseHelper.close();
+        context.deleteDatabase(DATABASE_NAME);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BenchmarkCases.INSERT_ROWS)
+    public long insertSingle() {
+        return BenchmarkCases.insertSingle(databaseHelper, entries);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BenchmarkCases.INSERT_ROWS)
+    public int insertBatched() {
+        return BenchmarkCases.insertBatched(databaseHelper, entries);
+    }
+
+    /**
+     * Après la première invocation de l'itération, toutes les lignes sont déjà présentes : la mesure est celle
+     * d'un réimport du même fichier, où chaque ligne coûte une recherche dans l'index de dédoublonnage.
+     */
+    @Benchmark
+    @OperationsPerInvocation(BenchmarkCases.INSERT_ROWS)
+    public int insertBatchedSkipDuplicates() {
+        return databaseHelper.insertEntries(entries, DatabaseHelper.DEFAULT_BATCH_SIZE, true).getInsertedCount();
+    }
+}
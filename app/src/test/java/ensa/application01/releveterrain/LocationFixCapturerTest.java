@@ -0,0 +1,323 @@
+/**
+ * LocationFixCapturerTest - Tests de la capture de position sur un fournisseur simulé.
+ */
+package ensa.application01.releveterrain;
+
+import android.location.Location;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * Vérifie {@link LocationFixCapturer} : reprise d'une position en cache récente, cache trop ancien, affinage jusqu'à
+ * la précision visée, échéance retenant la meilleure position, annulation et échec sans aucune position.
+ * Le fournisseur simulé livre les positions à la demande du test ; l'horloge avance avec le looper principal.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class LocationFixCapturerTest {
+
+    private static final float TARGET = 20f;
+    private static final long MAX_AGE = 30_000;
+    private static final long TIMEOUT = 20_000;
+
+    private FakeLocationSource source;
+    private RecordingCallback callback;
+    private LocationFixCapturer capturer;
+
+    /**
+     * Fournisseur simulé : les requêtes sont mémorisées et le test leur livre positions ou erreurs.
+     */
+    private static class FakeLocationSource implements LocationSource {
+        Listener lastLocationListener;
+        final List<FakeRequest> currentRequests = new ArrayList<>();
+        final List<FakeRequest> updateRequests = new ArrayList<>();
+
+        @Override
+        public void getLastLocation(Listener listener) {
+            lastLocationListener = listener;
+        }
+
+        @Override
+        public Request getCurrentLocation(long timeoutMillis, Listener listener) {
+            FakeRequest request = new FakeRequest(timeoutMillis, listener);
+            currentRequests.add(request);
+            return request;
+        }
+
+        @Override
+        public Request requestUpdates(long intervalMillis, Listener listener) {
+            FakeRequest request = new FakeRequest(intervalMillis, listener);
+            updateRequests.add(request);
+            return request;
+        }
+
+        FakeRequest currentRequest() {
+            assertEquals(1, currentRequests.size());
+            return currentRequests.get(0);
+        }
+
+        FakeRequest updates() {
+            assertEquals(1, updateRequests.size());
+            return updateRequests.get(0);
+        }
+    }
+
+    /**
+     * Requête simulée ; une requête annulée ne livre plus rien, comme le fournisseur réel.
+     */
+    private static class FakeRequest implements LocationSource.Request {
+        final long millis;
+        final LocationSource.Listener listener;
+        boolean cancelled;
+
+        FakeRequest(long millis, LocationSource.Listener listener) {
+            this.millis = millis;
+            this.listener = listener;
+        }
+
+        void deliver(Location location) {
+            if (!cancelled) {
+                listener.onLocation(location);
+            }
+        }
+
+        void fail(Exception error) {
+            if (!cancelled) {
+                listener.onError(error);
+            }
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+    }
+
+    /**
+     * Rappel consignant chaque appel reçu.
+     */
+    private static class RecordingCallback implements LocationFixCapturer.Callback {
+        final List<LocationFixCapturer.Fix> fixes = new ArrayList<>();
+        final List<Exception> failures = new ArrayList<>();
+
+        @Override
+        public void onFix(LocationFixCapturer.Fix fix) {
+            fixes.add(fix);
+        }
+
+        @Override
+        public void onFailure(Exception error) {
+            failures.add(error);
+        }
+
+        LocationFixCapturer.Fix onlyFix() {
+            assertTrue("Aucun échec attendu : " + failures, failures.isEmpty());
+            assertEquals(1, fixes.size());
+            return fixes.get(0);
+        }
+
+        boolean silent() {
+            return fixes.isEmpty() && failures.isEmpty();
+        }
+    }
+
+    @Before
+    public void setUp() {
+        // Horloge éloignée de zéro, pour pouvoir dater des positions anciennes
+        advance(600_000);
+        source = new FakeLocationSource();
+        callback = new RecordingCallback();
+        capturer = new LocationFixCapturer(source, new Handler(Looper.getMainLooper()));
+    }
+
+    @Test
+    public void recentAccurateCachedFixIsUsedImmediately() {
+        Location cached = location(8f, 5_000);
+
+        capture();
+        source.lastLocationListener.onLocation(cached);
+
+        LocationFixCapturer.Fix fix = callback.onlyFix();
+        assertSame(cached, fix.getLocation());
+        assertTrue(fix.isFromCache());
+        assertTrue(fix.isAccurate());
+        assertEquals(0, fix.getTimeToFixMillis());
+        assertTrue(source.currentRequests.isEmpty());
+        assertTrue(source.updateRequests.isEmpty());
+    }
+
+    @Test
+    public void staleCachedFixTriggersAFreshRequest() {
+        capture();
+        advance(1_000);
+        source.lastLocationListener.onLocation(location(5f, MAX_AGE + 1));
+
+        assertTrue(callback.silent());
+        // Le fournisseur ne dispose que du temps restant avant l'échéance
+        assertEquals(TIMEOUT - 1_000, source.currentRequest().millis);
+
+        Location fresh = location(12f, 0);
+        advance(2_000);
+        source.currentRequest().deliver(fresh);
+
+        LocationFixCapturer.Fix fix = callback.onlyFix();
+        assertSame(fresh, fix.getLocation());
+        assertFalse(fix.isFromCache());
+        assertTrue(fix.isAccurate());
+        assertEquals(3_000, fix.getTimeToFixMillis());
+    }
+
+    @Test
+    public void recentButInaccurateCachedFixTriggersAFreshRequest() {
+        capture();
+        source.lastLocationListener.onLocation(location(150f, 1_000));
+
+        assertTrue(callback.silent());
+        assertEquals(1, source.currentRequests.size());
+    }
+
+    @Test
+    public void refinementStopsAtTheTargetAccuracy() {
+        capture();
+        source.lastLocationListener.onLocation(null);
+        source.currentRequest().deliver(location(60f, 0));
+
+        FakeRequest updates = source.updates();
+        updates.deliver(location(40f, 0));
+        assertTrue(callback.silent());
+        Location precise = location(15f, 0);
+        advance(4_000);
+        updates.deliver(precise);
+
+        LocationFixCapturer.Fix fix = callback.onlyFix();
+        assertSame(precise, fix.getLocation());
+        assertTrue(fix.isAccurate());
+        assertEquals(4_000, fix.getTimeToFixMillis());
+        assertTrue(updates.cancelled);
+        // L'échéance a été retirée : aucun second appel
+        advance(TIMEOUT);
+        assertEquals(1, callback.fixes.size());
+    }
+
+    @Test
+    public void deadlineKeepsTheBestFix() {
+        capture();
+        source.lastLocationListener.onLocation(null);
+        source.currentRequest().deliver(location(60f, 0));
+        FakeRequest updates = source.updates();
+        Location best = location(35f, 0);
+        updates.deliver(best);
+        updates.deliver(location(50f, 0));
+        // Une position sans précision connue ne remplace pas une position dont la précision est connue
+        updates.deliver(new Location("test"));
+
+        advance(TIMEOUT - 1);
+        assertTrue(callback.silent());
+        advance(1);
+
+        LocationFixCapturer.Fix fix = callback.onlyFix();
+        assertSame(best, fix.getLocation());
+        assertFalse(fix.isAccurate());
+        assertFalse(fix.isFromCache());
+        assertEquals(35f, fix.getAccuracy(), 0f);
+        assertEquals(TIMEOUT, fix.getTimeToFixMillis());
+        assertTrue(updates.cancelled);
+    }
+
+    @Test
+    public void cancelStopsRequestsAndSilencesTheCallback() {
+        LocationFixCapturer.Capture capture = capture();
+        source.lastLocationListener.onLocation(null);
+        FakeRequest current = source.currentRequest();
+
+        capture.cancel();
+
+        assertTrue(current.cancelled);
+        // Une position livrée malgré l'annulation, puis l'échéance, ne doivent rien déclencher
+        current.listener.onLocation(location(5f, 0));
+        advance(TIMEOUT * 2);
+        assertTrue(callback.silent());
+        assertTrue(source.updateRequests.isEmpty());
+    }
+
+    @Test
+    public void cancelDuringRefinementStopsUpdates() {
+        LocationFixCapturer.Capture capture = capture();
+        source.lastLocationListener.onLocation(null);
+        source.currentRequest().deliver(null);
+        FakeRequest updates = source.updates();
+
+        capture.cancel();
+
+        assertTrue(updates.cancelled);
+        advance(TIMEOUT * 2);
+        assertTrue(callback.silent());
+    }
+
+    @Test
+    public void failsWithTimeoutWhenNoFixIsObtained() {
+        capture();
+        source.lastLocationListener.onError(new SecurityException("Permission refusée"));
+        source.currentRequest().fail(new IllegalStateException("Récepteur indisponible"));
+        FakeRequest updates = source.updates();
+        updates.fail(new IllegalStateException("Récepteur indisponible"));
+
+        advance(TIMEOUT);
+
+        assertTrue(callback.fixes.isEmpty());
+        assertEquals(1, callback.failures.size());
+        assertTrue(callback.failures.get(0) instanceof TimeoutException);
+        assertTrue(updates.cancelled);
+    }
+
+    @Test
+    public void lateCacheAnswerAfterTheDeadlineFails() {
+        capture();
+        advance(TIMEOUT);
+
+        assertEquals(1, callback.failures.size());
+        // Le cache répond après l'échéance : la capture est terminée, rien n'est redemandé
+        source.lastLocationListener.onLocation(location(150f, 0));
+        assertTrue(source.currentRequests.isEmpty());
+        assertTrue(callback.fixes.isEmpty());
+    }
+
+    private LocationFixCapturer.Capture capture() {
+        return capturer.capture(TARGET, MAX_AGE, TIMEOUT, callback);
+    }
+
+    /**
+     * @return Une position de précision donnée, datée de `ageMillis` millisecondes.
+     */
+    private static Location location(float accuracy, long ageMillis) {
+        Location location = new Location("test");
+        location.setLatitude(34.0);
+        location.setLongitude(-6.8);
+        location.setAccuracy(accuracy);
+        location.setElapsedRealtimeNanos(SystemClock.elapsedRealtimeNanos() - ageMillis * 1_000_000);
+        return location;
+    }
+
+    /**
+     * Avance l'horloge et exécute les messages du looper principal arrivés à échéance.
+     */
+    private static void advance(long millis) {
+        shadowOf(Looper.getMainLooper()).idleFor(Duration.ofMillis(millis));
+    }
+}
@@ -0,0 +1,73 @@
+/**
+ * LongLruCacheTest - Tests du cache LRU indexé par des identifiants `long`.
+ */
+package ensa.application01.releveterrain;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Vérifie {@link LongLruCache} : éviction du moins récemment utilisé, remplacement d'une valeur,
+ * budget mesuré par {@link LongLruCache#sizeOf(long, Object)} et réduction explicite.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class LongLruCacheTest {
+
+    @Test
+    public void evictsTheLeastRecentlyUsedEntry() {
+        LongLruCache<String> cache = new LongLruCache<>(2);
+        cache.put(1, "un");
+        cache.put(2, "deux");
+        // La lecture rend l'entrée 1 plus récente que la 2
+        assertEquals("un", cache.get(1));
+
+        cache.put(3, "trois");
+
+        assertEquals(2, cache.size());
+        assertNull(cache.get(2));
+        assertEquals("un", cache.get(1));
+        assertEquals("trois", cache.get(3));
+    }
+
+    @Test
+    public void replacingAValueKeepsASingleEntry() {
+        LongLruCache<String> cache = new LongLruCache<>(2);
+        cache.put(1, "un");
+        cache.put(1, "premier");
+        cache.put(2, "deux");
+
+        assertEquals(2, cache.size());
+        assertEquals("premier", cache.get(1));
+        cache.remove(1);
+        assertNull(cache.get(1));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void budgetIsMeasuredBySizeOf() {
+        LongLruCache<String> cache = new LongLruCache<String>(10) {
+            @Override
+            protected int sizeOf(long key, String value) {
+                return value.length();
+            }
+        };
+        cache.put(1, "abcd");
+        cache.put(2, "efgh");
+        cache.put(3, "ijkl");
+
+        assertEquals(8, cache.size());
+        assertNull(cache.get(1));
+
+        cache.trimToSize(cache.maxSize() / 2);
+        assertEquals(4, cache.size());
+        assertEquals("ijkl", cache.get(3));
+
+        cache.evictAll();
+        assertEquals(0, cache.size());
+        assertNull(cache.get(3));
+    }
+}
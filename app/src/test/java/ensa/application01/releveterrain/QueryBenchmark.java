@@ -0,0 +1,81 @@
+/**
+ * QueryBenchmark - Banc JMH des lectures de la liste : parcours complet, pages et décodage.
+ */
+package ensa.application01.releveterrain;
+
+import android.content.Context;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latence moyenne des lectures à 1 000, 10 000 et 100 000 lignes : parcours complet par {@link DatabaseHelper#getAllEntries()},
+ * première et dernière page par clé, lecture décodée de {@link BenchmarkCases#DECODE_ROWS} lignes et simple parcours
+ * des mêmes lignes (la différence des deux est le coût du décodage curseur → {@link Entry}).
+ * La table est remplie une fois par taille. Lancé par {@link BenchmarkSuiteTest}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class QueryBenchmark {
+
+    /** Nom de la base dédiée à ce banc. */
+    private static final String DATABASE_NAME = "benchmark-query.db";
+
+    /** Taille de la table ; les valeurs reprennent {@link BenchmarkCases#DATASET_SIZES}. */
+    @Param({"1000", "10000", "100000"})
+    public int rows;
+
+    private Context context;
+    private DatabaseHelper databaseHelper;
+
+    @Setup(Level.Trial)
+    public void fill() {
+        context = RuntimeEnvironment.getApplication();
+        databaseHelper = BenchmarkCases.openFresh(context, DATABASE_NAME);
+        databaseHelper.insertEntries(new BenchmarkData().generate(rows), DatabaseHelper.DEFAULT_BATCH_SIZE);
+    }
+
+    @TearDown(Level.Trial)
+    public void close() {
+        databaseHelper.close();
+        context.deleteDatabase(DATABASE_NAME);
+    }
+
+    @Benchmark
+    public int fullScan() {
+        return BenchmarkCases.fullScan(databaseHelper);
+    }
+
+    @Benchmark
+    public List<Entry> firstPage() {
+        return BenchmarkCases.firstPage(databaseHelper);
+    }
+
+    @Benchmark
+    public List<Entry> lastPage() {
+        return BenchmarkCases.lastPage(databaseHelper);
+    }
+
+    @Benchmark
+    public List<Entry> decodeEntries() {
+        return BenchmarkCases.decodeEntries(databaseHelper);
+    }
+
+    @Benchmark
+    public int stepCursor() {
+        return BenchmarkCases.stepCursor(databaseHelper);
+    }
+}
@@ -0,0 +1,237 @@
+/**
+ * SyncEngineTest - Tests du moteur de synchronisation avec un transport simulé.
+ */
+package ensa.application01.releveterrain;
+
+import android.content.Context;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Vérifie {@link SyncEngine} : reprise des erreurs passagères (5xx, 408, 429, réseau), refus définitif des autres 4xx,
+ * retrait du journal seulement après une réponse 2xx, et maintien dans le journal des entrées modifiées pendant l'envoi.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class SyncEngineTest {
+
+    private static final String DATABASE_NAME = "test-sync.db";
+
+    /** Nombre d'entrées à synchroniser. */
+    private static final int ENTRIES = 3;
+
+    private Context context;
+    private DatabaseHelper databaseHelper;
+    private FakeTransport transport;
+
+    /** Numéros d'ordre transmis au retrait du journal, dans l'ordre des appels. */
+    private final List<Long> acknowledged = new ArrayList<>();
+
+    /**
+     * Transport rejouant une suite de réponses et conservant les lots reçus.
+     * La réponse -1 simule une erreur réseau.
+     */
+    private static class FakeTransport implements SyncTransport {
+        final Deque<Integer> responses = new ArrayDeque<>();
+        final List<byte[]> payloads = new ArrayList<>();
+        Runnable onUpload;
+
+        FakeTransport respond(Integer... statuses) {
+            responses.addAll(Arrays.asList(statuses));
+            return this;
+        }
+
+        @Override
+        public int upload(byte[] payload) throws IOException {
+            payloads.add(payload);
+            if (onUpload != null) {
+                onUpload.run();
+            }
+            Integer status = responses.isEmpty() ? 200 : responses.poll();
+            if (status == -1) {
+                throw new IOException("Réseau indisponible");
+            }
+            return status;
+        }
+    }
+
+    @Before
+    public void setUp() {
+        context = ApplicationProvider.getApplicationContext();
+        databaseHelper = BenchmarkCases.openFresh(context, DATABASE_NAME);
+        databaseHelper.insertEntries(new BenchmarkData().generate(ENTRIES), 100);
+        transport = new FakeTransport();
+    }
+
+    @After
+    public void tearDown() {
+        databaseHelper.close();
+        context.deleteDatabase(DATABASE_NAME);
+    }
+
+    @Test
+    public void transientServerErrorsAreRetried() throws Exception {
+        transport.respond(503, 408, 429, 200);
+
+        SyncStats stats = engine().sync(() -> false);
+
+        assertEquals(4, transport.payloads.size());
+        assertEquals(4, stats.getRequestCount());
+        assertEquals(3, stats.getRetryCount());
+        assertEquals(ENTRIES, stats.getChangesSent());
+        assertEquals(0, databaseHelper.countPendingChanges());
+    }
+
+    @Test
+    public void networkErrorsAreRetried() throws Exception {
+        transport.respond(-1, 200);
+
+        engine().sync(() -> false);
+
+        assertEquals(2, transport.payloads.size());
+        assertEquals(0, databaseHelper.countPendingChanges());
+    }
+
+    @Test
+    public void otherClientErrorsAreNotRetried() {
+        for (int status : new int[]{400, 401, 403, 404, 409, 413, 422}) {
+            transport.payloads.clear();
+            transport.respond(status);
+            try {
+                engine().sync(() -> false);
+                fail("HTTP " + status + " doit être un refus définitif");
+            } catch (SyncEngine.RejectedException e) {
+                assertEquals(status, e.getStatus());
+            } catch (IOException e) {
+                fail("HTTP " + status + " ne doit pas être retenté : " + e);
+            }
+            assertEquals(1, transport.payloads.size());
+            assertEquals(ENTRIES, databaseHelper.countPendingChanges());
+        }
+        assertTrue(acknowledged.isEmpty());
+    }
+
+    @Test
+    public void retriesStopAfterMaxAttempts() {
+        Integer[] failures = new Integer[SyncEngine.MAX_ATTEMPTS];
+        Arrays.fill(failures, 500);
+        transport.respond(failures);
+
+        try {
+            engine().sync(() -> false);
+            fail("Le lot doit être abandonné après " + SyncEngine.MAX_ATTEMPTS + " tentatives");
+        } catch (SyncEngine.RejectedException e) {
+            fail("Une erreur 5xx n'est pas un refus définitif");
+        } catch (IOException expected) {
+            // Attendu
+        }
+
+        assertEquals(SyncEngine.MAX_ATTEMPTS, transport.payloads.size());
+        assertEquals(ENTRIES, databaseHelper.countPendingChanges());
+        assertTrue(acknowledged.isEmpty());
+    }
+
+    @Test
+    public void logIsAcknowledgedOnlyAfterSuccess() throws Exception {
+        List<Long> pendingDuringUpload = new ArrayList<>();
+        transport.onUpload = () -> pendingDuringUpload.add(databaseHelper.countPendingChanges());
+        transport.respond(500, 200);
+
+        engine().sync(() -> false);
+
+        // Pendant chaque envoi, y compris après l'échec, tout le lot est encore dans le journal
+        assertEquals(Arrays.asList((long) ENTRIES, (long) ENTRIES), pendingDuringUpload);
+        assertEquals(1, acknowledged.size());
+        assertEquals(0, databaseHelper.countPendingChanges());
+        assertEquals(ENTRIES, changesIn(transport.payloads.get(1)).length());
+    }
+
+    @Test
+    public void entriesEditedDuringUploadStayQueued() throws Exception {
+        Entry edited = databaseHelper.getEntry(2);
+        transport.onUpload = () -> {
+            transport.onUpload = null;
+            databaseHelper.updateEntry(new Entry(edited.getId(), edited.getSiteName(), edited.getDate(),
+                    edited.getCoordinates(), "Description corrigée", edited.getTerrainType(),
+                    edited.getObservations(), edited.getCondition()));
+        };
+
+        engine().sync(() -> false);
+
+        assertEquals(1, databaseHelper.countPendingChanges());
+        List<EntryChange> pending = databaseHelper.getPendingChanges(10);
+        assertEquals(edited.getId(), pending.get(0).getEntryId());
+        assertEquals("Description corrigée", pending.get(0).getEntry().getDescription());
+
+        // La synchronisation suivante envoie la nouvelle version
+        engine().sync(() -> false);
+        JSONArray changes = changesIn(transport.payloads.get(transport.payloads.size() - 1));
+        assertEquals(1, changes.length());
+        assertEquals("Description corrigée", changes.getJSONObject(0).getJSONObject("entry").getString("description"));
+        assertEquals(0, databaseHelper.countPendingChanges());
+    }
+
+    @Test
+    public void stoppedSyncDoesNotRetry() {
+        transport.respond(503);
+
+        try {
+            engine().sync(() -> transport.payloads.size() > 0);
+        } catch (IOException expected) {
+            // Attendu : l'erreur passagère est remise à WorkManager
+        }
+
+        assertEquals(1, transport.payloads.size());
+        assertEquals(ENTRIES, databaseHelper.countPendingChanges());
+    }
+
+    /**
+     * @return Un moteur aux délais raccourcis, dont le retrait du journal est consigné.
+     */
+    private SyncEngine engine() {
+        return new SyncEngine(databaseHelper, upToSeq -> {
+            acknowledged.add(upToSeq);
+            return databaseHelper.acknowledgeChanges(upToSeq);
+        }, transport, "appareil-test", 1);
+    }
+
+    /**
+     * @return Les modifications d'un lot envoyé.
+     */
+    private static JSONArray changesIn(byte[] payload) throws Exception {
+        try (InputStream input = new GZIPInputStream(new ByteArrayInputStream(payload))) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = input.read(buffer)) != -1) {
+                bytes.write(buffer, 0, read);
+            }
+            JSONObject document = new JSONObject(new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+            assertEquals("appareil-test", document.getString("device"));
+            return document.getJSONArray("changes");
+        }
+    }
+}
@@ -0,0 +1,167 @@
+/**
+ * TrackLinkTest - Tests du rattachement des relevés à la trace GPS.
+ */
+package ensa.application01.releveterrain;
+
+import android.app.Activity;
+import android.content.Context;
+import android.location.Location;
+import android.os.Looper;
+
+import androidx.test.core.app.ApplicationProvider;
+
+import com.google.android.gms.tasks.TaskCompletionSource;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.android.controller.ActivityController;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * Vérifie le rattachement d'un relevé au point de trace le plus proche :
+ * <ul>
+ *     <li>à l'arrêt, le suivi livre une position par minute même sans déplacement, et le relevé saisi sur place
+ *     est rattaché à la dernière ;</li>
+ *     <li>un relevé dont l'enregistrement attend encore la livraison des positions est inséré même si l'activité
+ *     qui l'a demandé est arrêtée entre-temps.</li>
+ * </ul>
+ */
+@RunWith(RobolectricTestRunner.class)
+public class TrackLinkTest {
+
+    private static final String DATABASE_NAME = "test-track.db";
+
+    /** Délai maximal d'attente d'une opération en arrière-plan, en millisecondes. */
+    private static final long TIMEOUT_MS = 10_000;
+
+    private Context context;
+    private DatabaseHelper databaseHelper;
+    private EntryRepository repository;
+
+    @Before
+    public void setUp() {
+        context = ApplicationProvider.getApplicationContext();
+        databaseHelper = BenchmarkCases.openFresh(context, DATABASE_NAME);
+        repository = new EntryRepository(context, databaseHelper);
+    }
+
+    @After
+    public void tearDown() {
+        databaseHelper.close();
+        context.deleteDatabase(DATABASE_NAME);
+    }
+
+    @Test
+    public void stationaryProfileHasNoDistanceFloor() {
+        assertEquals(0f, TrackLogger.Profile.STATIONARY.toRequest().getMinUpdateDistanceMeters(), 0f);
+        // Une position au moins toutes les deux minutes : l'écart toléré pour le rattachement
+        assertTrue(TrackLogger.Profile.STATIONARY.intervalMillis < 2 * 60_000);
+    }
+
+    @Test
+    public void entrySavedWhileStationaryIsLinkedToTheLatestFix() throws InterruptedException {
+        // Positions d'un opérateur immobile depuis dix minutes, telles que livrées à chaque intervalle
+        long now = System.currentTimeMillis();
+        List<Location> locations = new ArrayList<>();
+        for (long time = now - 10 * 60_000; time < now; time += TrackLogger.Profile.STATIONARY.intervalMillis) {
+            Location location = new Location("test");
+            location.setLatitude(34.0);
+            location.setLongitude(-6.8);
+            location.setAccuracy(15f);
+            location.setTime(time);
+            locations.add(location);
+        }
+        Integer inserted = await(callback -> repository.insertTrackPoints(TrackLogger.toTrackPoints(locations), callback));
+        assertEquals(locations.size(), inserted.intValue());
+
+        Long id = await(callback -> repository.insertEntry(newEntry(), callback));
+
+        Long trackPointId = databaseHelper.getEntry(id).getTrackPointId();
+        assertNotNull("Le relevé doit être rattaché à la trace", trackPointId);
+        TrackPoint latest = databaseHelper.getNearestTrackPoint(now, 2 * 60_000);
+        assertEquals(locations.get(locations.size() - 1).getTime(), latest.getTimeMillis());
+        assertEquals(latest.getId(), trackPointId.longValue());
+    }
+
+    @Test
+    public void entryIsSavedWhenTheActivityStopsBeforeTheFlushCompletes() throws InterruptedException {
+        ActivityController<Activity> controller = Robolectric.buildActivity(Activity.class).setup();
+        TaskCompletionSource<Void> flush = new TaskCompletionSource<>();
+        AtomicReference<Long> result = new AtomicReference<>();
+
+        repository.insertEntryAfter(flush.getTask(), newEntry(), new EntryRepository.Callback<Long>() {
+            @Override
+            public void onSuccess(Long id) {
+                result.set(id);
+            }
+
+            @Override
+            public void onError(Exception error) {
+                fail("Insertion en échec : " + error);
+            }
+        });
+        controller.pause().stop().destroy();
+        shadowOf(Looper.getMainLooper()).idle();
+        assertNull(result.get());
+
+        // Les positions sont livrées après la disparition de l'écran
+        flush.setResult(null);
+
+        Long id = awaitResult(result);
+        assertEquals(1, databaseHelper.getEntriesFrom(0, 10).size());
+        assertEquals("Site immobile", databaseHelper.getEntry(id).getSiteName());
+    }
+
+    private static Entry newEntry() {
+        return new Entry(-1, "Site immobile", "15/06/2024", "34.0, -6.8", "Affleurement", "Rocheux", "RAS", "Bon");
+    }
+
+    /**
+     * Lance une opération du dépôt et attend son résultat, livré sur le thread principal.
+     */
+    private static <T> T await(Consumer<EntryRepository.Callback<T>> operation) throws InterruptedException {
+        AtomicReference<T> result = new AtomicReference<>();
+        operation.accept(new EntryRepository.Callback<T>() {
+            @Override
+            public void onSuccess(T value) {
+                result.set(value);
+            }
+
+            @Override
+            public void onError(Exception error) {
+                fail("Opération en échec : " + error);
+            }
+        });
+        return awaitResult(result);
+    }
+
+    /**
+     * Exécute les messages du thread principal jusqu'à l'arrivée du résultat d'une tâche d'arrière-plan.
+     */
+    private static <T> T awaitResult(AtomicReference<T> result) throws InterruptedException {
+        // L'horloge de Robolectric n'avance pas d'elle-même : l'attente est comptée en pauses réelles
+        for (long waited = 0; result.get() == null; waited += 10) {
+            if (waited > TIMEOUT_MS) {
+                fail("Aucun résultat après " + TIMEOUT_MS + " ms");
+            }
+            shadowOf(Looper.getMainLooper()).idle();
+            Thread.sleep(10);
+        }
+        return result.get();
+    }
+}
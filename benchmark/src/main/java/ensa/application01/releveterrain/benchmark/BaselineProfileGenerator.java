@@ -0,0 +1,45 @@
+/**
+ * BaselineProfileGenerator - Génération du profil de référence de l'application sur un appareil.
+ */
+package ensa.application01.releveterrain.benchmark;
+
+import androidx.benchmark.macro.junit4.BaselineProfileRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import kotlin.Unit;
+
+/**
+ * Rejoue le démarrage puis la consultation de la liste jusqu'à obtenir un profil stable, et l'écrit dans
+ * `benchmark/build/outputs/connected_android_test_additional_output/benchmark/.../BaselineProfileGenerator_generate-baseline-prof.txt`.
+ * Les règles de l'application y sont à reporter dans `app/src/main/baseline-prof.txt`.
+ * <p>
+ * Lancement (Android 13 ou plus, ou appareil rooté) :
+ * `./gradlew :benchmark:connectedBenchmarkAndroidTest -Pandroid.testInstrumentationRunnerArguments.class=ensa.application01.releveterrain.benchmark.BaselineProfileGenerator`.
+ */
+@RunWith(AndroidJUnit4.class)
+public class BaselineProfileGenerator {
+
+    /** Nombre maximal de répétitions du parcours. */
+    private static final int MAX_ITERATIONS = 15;
+
+    /** Nombre de répétitions consécutives produisant le même profil pour le considérer stable. */
+    private static final int STABLE_ITERATIONS = 3;
+
+    @Rule
+    public final BaselineProfileRule baselineProfileRule = new BaselineProfileRule();
+
+    @Test
+    public void generate() {
+        baselineProfileRule.collect(Journeys.PACKAGE_NAME, MAX_ITERATIONS, STABLE_ITERATIONS, null,
+                false, false, rule -> true, scope -> {
+                    scope.pressHome();
+                    Journeys.startForm(scope);
+                    Journeys.browseEntries(scope);
+                    return Unit.INSTANCE;
+                });
+    }
+}
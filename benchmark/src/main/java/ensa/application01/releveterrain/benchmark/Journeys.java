@@ -0,0 +1,62 @@
+/**
+ * Journeys - Parcours de l'application rejoués par les mesures de démarrage et la génération du profil de référence.
+ */
+package ensa.application01.releveterrain.benchmark;
+
+import androidx.benchmark.macro.MacrobenchmarkScope;
+import androidx.test.uiautomator.By;
+import androidx.test.uiautomator.BySelector;
+import androidx.test.uiautomator.Direction;
+import androidx.test.uiautomator.UiDevice;
+import androidx.test.uiautomator.UiObject2;
+import androidx.test.uiautomator.Until;
+
+/**
+ * Parcours pilotés par UI Automator : démarrage jusqu'au formulaire, puis ouverture et défilement de la liste des relevés.
+ * Ils reproduisent les chemins couverts par `app/src/main/baseline-prof.txt`.
+ */
+final class Journeys {
+
+    /** Paquet de l'application mesurée. */
+    static final String PACKAGE_NAME = "ensa.application01.releveterrain";
+
+    /** Délai d'attente d'un écran, en millisecondes. */
+    private static final long TIMEOUT_MS = 5_000;
+
+    private Journeys() {
+    }
+
+    /**
+     * Lance le formulaire de saisie et attend qu'il soit affiché.
+     *
+     * @param scope Contexte de la mesure.
+     */
+    static void startForm(MacrobenchmarkScope scope) {
+        scope.startActivityAndWait();
+        scope.getDevice().wait(Until.hasObject(By.res(PACKAGE_NAME, "buttonSave")), TIMEOUT_MS);
+    }
+
+    /**
+     * Ouvre la liste des relevés depuis le formulaire, puis la fait défiler dans les deux sens.
+     *
+     * @param scope Contexte de la mesure.
+     */
+    static void browseEntries(MacrobenchmarkScope scope) {
+        UiDevice device = scope.getDevice();
+        BySelector viewEntries = By.res(PACKAGE_NAME, "buttonViewEntries");
+        // Le bouton est au bas du formulaire, qui défile
+        UiObject2 form = device.findObject(By.scrollable(true));
+        if (form != null) {
+            form.scrollUntil(Direction.DOWN, Until.findObject(viewEntries));
+        }
+        device.wait(Until.findObject(viewEntries), TIMEOUT_MS).click();
+
+        UiObject2 list = device.wait(Until.findObject(By.res(PACKAGE_NAME, "recyclerViewEntries")), TIMEOUT_MS);
+        // Marge latérale pour que le geste ne déclenche pas le retour système
+        list.setGestureMargin(device.getDisplayWidth() / 5);
+        list.fling(Direction.DOWN);
+        device.waitForIdle();
+        list.fling(Direction.UP);
+        device.waitForIdle();
+    }
+}
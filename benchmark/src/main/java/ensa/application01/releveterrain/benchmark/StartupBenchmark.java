@@ -0,0 +1,61 @@
+/**
+ * StartupBenchmark - Mesure du démarrage à froid, sans puis avec le profil de référence.
+ */
+package ensa.application01.releveterrain.benchmark;
+
+import androidx.benchmark.macro.BaselineProfileMode;
+import androidx.benchmark.macro.CompilationMode;
+import androidx.benchmark.macro.StartupMode;
+import androidx.benchmark.macro.StartupTimingMetric;
+import androidx.benchmark.macro.junit4.MacrobenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.Collections;
+
+import kotlin.Unit;
+
+/**
+ * Démarrage à froid du formulaire, mesuré par {@link StartupTimingMetric} : `timeToInitialDisplayMs` (première image)
+ * et `timeToFullDisplayMs` (signalé par `reportFullyDrawn()` une fois le brouillon restauré).
+ * Les deux tests ne diffèrent que par la compilation : code interprété comme au premier lancement sans profil,
+ * ou profil de référence embarqué exigé. Leur écart mesure le gain du profil.
+ * <p>
+ * Lancement : `./gradlew :benchmark:connectedBenchmarkAndroidTest -Pandroid.testInstrumentationRunnerArguments.class=ensa.application01.releveterrain.benchmark.StartupBenchmark`.
+ * Les résultats (médiane, minimum, maximum) sont écrits dans `benchmark/build/outputs/connected_android_test_additional_output`.
+ */
+@RunWith(AndroidJUnit4.class)
+public class StartupBenchmark {
+
+    /** Nombre de démarrages mesurés par test. */
+    private static final int ITERATIONS = 10;
+
+    @Rule
+    public final MacrobenchmarkRule benchmarkRule = new MacrobenchmarkRule();
+
+    @Test
+    public void startupWithoutCompilation() {
+        measureColdStartup(new CompilationMode.None());
+    }
+
+    @Test
+    public void startupWithBaselineProfile() {
+        measureColdStartup(new CompilationMode.Partial(BaselineProfileMode.Require, 0));
+    }
+
+    private void measureColdStartup(CompilationMode compilationMode) {
+        benchmarkRule.measureRepeated(Journeys.PACKAGE_NAME, Collections.singletonList(new StartupTimingMetric()),
+                compilationMode, StartupMode.COLD, ITERATIONS,
+                scope -> {
+                    scope.pressHome();
+                    return Unit.INSTANCE;
+                },
+                scope -> {
+                    Journeys.startForm(scope);
+                    return Unit.INSTANCE;
+                });
+    }
+}
@@ -0,0 +1,73 @@
+#!/usr/bin/env bash
+#
+# startup-benchmark.sh - Mesure du démarrage à froid et capture du profil de référence, sur un appareil relié par adb.
+#
+# Utilisation :
+#   ./gradlew :app:installBenchmark
+#   scripts/startup-benchmark.sh measure [lancements]   # démarrage sans profil, puis avec le profil de référence
+#   scripts/startup-benchmark.sh profile                # capture d'un nouveau profil (adb root requis)
+#
+# La mesure « TotalTime » d'`am start -W` est le délai jusqu'à la première image (time to initial display) ;
+# « Fully drawn » est signalé par reportFullyDrawn(), une fois le brouillon du formulaire restauré.
+
+set -euo pipefail
+
+PKG="ensa.application01.releveterrain"
+ACTIVITY="$PKG/.MainActivity"
+RUNS="${2:-15}"
+
+# Lance l'application à froid RUNS fois et affiche la médiane des deux délais, en millisecondes
+measure_runs() {
+    local label="$1" initial=() full=()
+    for _ in $(seq "$RUNS"); do
+        adb shell am force-stop "$PKG"
+        sleep 1
+        adb logcat -c
+        initial+=("$(adb shell am start-activity -W -S -n "$ACTIVITY" | awk -F': ' '/TotalTime/ {print $2}' | tr -d '\r')")
+        sleep 2
+        full+=("$(adb logcat -d -s ActivityTaskManager | sed -n "s/.*Fully drawn $PKG\/\.MainActivity: +\([0-9s]*\)ms.*/\1/p" \
+            | head -n 1 | awk -F's' '{ if (NF > 1) print $1 * 1000 + $2; else print $1 }')")
+    done
+    printf '%-22s première image : %5s ms   formulaire complet : %5s ms   (médianes sur %s lancements)\n' \
+        "$label" "$(median "${initial[@]}")" "$(median "${full[@]}")" "$RUNS"
+}
+
+median() {
+    printf '%s\n' "$@" | grep -E '^[0-9]+$' | sort -n | awk '{ v[NR] = $1 } END { if (NR == 0) print "-"; else print v[int((NR + 1) / 2)] }'
+}
+
+case "${1:-}" in
+    measure)
+        # Sans profil : code vérifié mais interprété, comme au premier lancement après installation sans profileinstaller
+        adb shell cmd package compile -f -m verify "$PKG" > /dev/null
+        measure_runs "sans profil"
+        # Avec le profil de référence embarqué dans l'APK, installé comme le ferait le Play Store
+        adb shell cmd package compile --reset "$PKG" > /dev/null
+        adb shell am broadcast -a androidx.profileinstaller.action.INSTALL_PROFILE \
+            "$PKG/androidx.profileinstaller.ProfileInstallReceiver" > /dev/null
+        adb shell am force-stop "$PKG"
+        adb shell cmd package compile -f -m speed-profile "$PKG" > /dev/null
+        measure_runs "profil de référence"
+        ;;
+    profile)
+        adb root > /dev/null
+        adb wait-for-device
+        adb shell cmd package compile --reset "$PKG" > /dev/null
+        adb shell am start-activity -W -S -n "$ACTIVITY" > /dev/null
+        read -r -p "Ouvrez la liste des relevés, faites-la défiler, puis appuyez sur Entrée… "
+        # Écriture sur disque du profil accumulé par le JIT, puis conversion en texte
+        adb shell killall -s SIGUSR1 "$PKG"
+        sleep 2
+        adb shell pm dump-profiles --dump-classes-and-methods "$PKG"
+        mkdir -p app/build/outputs
+        adb pull "/data/misc/profman/$PKG-primary.prof.txt" app/build/outputs/baseline-prof-capture.txt > /dev/null
+        grep 'ensa/application01/releveterrain' app/build/outputs/baseline-prof-capture.txt \
+            > app/build/outputs/baseline-prof-app.txt || true
+        echo "Profil capturé : app/build/outputs/baseline-prof-capture.txt"
+        echo "Règles de l'application : app/build/outputs/baseline-prof-app.txt, à reporter dans app/src/main/baseline-prof.txt"
+        ;;
+    *)
+        echo "Utilisation : $0 measure [lancements] | profile" >&2
+        exit 1
+        ;;
+esac